@@ -0,0 +1,80 @@
+package org.geotools.data.snowflake;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.geotools.api.feature.Feature;
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.visitor.AbstractCalcResult;
+import org.geotools.feature.visitor.CalcResult;
+import org.geotools.feature.visitor.FeatureAttributeVisitor;
+import org.geotools.feature.visitor.FeatureCalc;
+
+// Counts the distinct values of an attribute for callers that can live with an estimate, e.g. to size a legend or pick a classification.
+// Snowflake datastores push it down as APPROX_COUNT_DISTINCT, which answers from a HyperLogLog sketch (about 1.6% error) instead of
+// sorting or hashing every value like COUNT(DISTINCT ...). Other stores visit the features and return the exact count
+public class SnowflakeApproxUniqueCountVisitor implements FeatureCalc, FeatureAttributeVisitor {
+
+	private final Expression expression;
+
+	// Values seen when the features are visited one by one
+	private final Set<Object> values = new HashSet<>();
+
+	// Count set by the datastore when it ran the aggregate itself
+	private Long count;
+
+	public SnowflakeApproxUniqueCountVisitor(String attribute) {
+		this(CommonFactoryFinder.getFilterFactory(null).property(attribute));
+	}
+
+	public SnowflakeApproxUniqueCountVisitor(Expression expression) {
+		this.expression = expression;
+	}
+
+	public Expression getExpression() {
+		return expression;
+	}
+
+	@Override
+	public List<Expression> getExpressions() {
+		return Collections.singletonList(expression);
+	}
+
+	@Override
+	public void visit(Feature feature) {
+
+		Object value = expression.evaluate(feature);
+		if (value != null) {
+			values.add(value);
+		}
+	}
+
+	// Called by the datastore with the result of the aggregate
+	public void setValue(Object value) {
+		count = value instanceof Number ? ((Number) value).longValue() : null;
+	}
+
+	public long getCount() {
+		return count != null ? count : values.size();
+	}
+
+	public void reset() {
+		values.clear();
+		count = null;
+	}
+
+	@Override
+	public CalcResult getResult() {
+
+		long result = getCount();
+		return new AbstractCalcResult() {
+			@Override
+			public Object getValue() {
+				return result;
+			}
+		};
+	}
+}
@@ -0,0 +1,161 @@
+package org.geotools.data.snowflake;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+import net.snowflake.client.core.QueryStatus;
+import net.snowflake.client.jdbc.SnowflakeConnection;
+import net.snowflake.client.jdbc.SnowflakePreparedStatement;
+import net.snowflake.client.jdbc.SnowflakeResultSet;
+import net.snowflake.client.jdbc.SnowflakeStatement;
+
+// Runs queries with the driver's asynchronous execution: the query is submitted, the pooled session goes back to the pool while the
+// warehouse works, its status is polled with whichever session is free, and the results are opened by query id once it's done. Long
+// queries then only hold a connection while their rows are streamed, so a small pool can serve many more of them at once. Used by the
+// connections of SnowflakeDataSource for the queries reading the configured tables, the heavy layers. Short queries such as SRID probes,
+// bounds and counts would only pay for the extra round trips
+public class SnowflakeAsyncQueries {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeAsyncQueries.class);
+
+	// Upper cased names of the tables whose queries run asynchronously, none when empty
+	private final Set<String> tables = Collections.synchronizedSet(new HashSet<>());
+
+	// The status is checked as soon as the query is submitted, then polls start fast, for queries that finish quickly, and back off up to
+	// the maximum interval
+	private volatile long minPollMillis = 50;
+	private volatile long maxPollMillis = 1000;
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicInteger running = new AtomicInteger();
+
+	// Limits asynchronous execution to the queries reading this table
+	public void addTable(String tableName) {
+		tables.add(tableName.toUpperCase(Locale.ROOT));
+	}
+
+	public void setPollInterval(long min, long max, TimeUnit unit) {
+		this.minPollMillis = Math.max(unit.toMillis(min), 1);
+		this.maxPollMillis = Math.max(unit.toMillis(max), minPollMillis);
+	}
+
+	// Queries submitted since the datastore was created
+	public long getSubmitted() {
+		return submitted.get();
+	}
+
+	// Queries running in the warehouse without holding a connection right now
+	public int getRunning() {
+		return running.get();
+	}
+
+	// Returns true if the statement should run asynchronously
+	boolean accepts(String sql) {
+
+		if (sql == null || tables.isEmpty() || !SnowflakeResultCache.isQuery(sql)) {
+			return false;
+		}
+		for (String table : SnowflakeResultCache.getTables(sql)) {
+			if (tables.contains(table.substring(table.indexOf('.') + 1).toUpperCase(Locale.ROOT))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Submits the query of the statement, with the parameters bound so far for prepared statements, and returns its query id
+	String submit(Statement statement, String sql) throws SQLException {
+
+		ResultSet rs = statement instanceof PreparedStatement ? statement.unwrap(SnowflakePreparedStatement.class).executeAsyncQuery()
+				: statement.unwrap(SnowflakeStatement.class).executeAsyncQuery(sql);
+		String queryId = rs.unwrap(SnowflakeResultSet.class).getQueryID();
+		submitted.incrementAndGet();
+		LOGGER.fine("Submitted query " + queryId + ": " + sql);
+		return queryId;
+	}
+
+	// Waits for the query to finish, borrowing a session from the pool for each status check. A timeout in seconds above 0 cancels the
+	// query once it's exceeded, like a statement's query timeout
+	void await(SnowflakeDataSource dataSource, String queryId, int timeout) throws SQLException {
+
+		long start = System.currentTimeMillis();
+		long poll = minPollMillis;
+		running.incrementAndGet();
+		try {
+			while (true) {
+				QueryStatus status = getStatus(dataSource, queryId);
+				if (status != null && !QueryStatus.isStillRunning(status)) {
+					if (QueryStatus.isAnError(status)) {
+						throw new SQLException("Query " + queryId + " " + status.getDescription() + ": " + status.getErrorMessage(), null,
+								status.getErrorCode());
+					}
+					LOGGER.fine("Query " + queryId + " finished in " + (System.currentTimeMillis() - start) + "ms");
+					return;
+				}
+
+				if (timeout > 0 && System.currentTimeMillis() - start > TimeUnit.SECONDS.toMillis(timeout)) {
+					cancel(dataSource, queryId);
+					throw new SQLTimeoutException("Query " + queryId + " was cancelled after " + timeout + "s");
+				}
+
+				Thread.sleep(poll);
+				poll = Math.min(poll * 2, maxPollMillis);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel(dataSource, queryId);
+			throw new SQLException("Interrupted while waiting for query " + queryId, e);
+		} finally {
+			running.decrementAndGet();
+		}
+	}
+
+	// Returns the status of the query, or null if no session could be borrowed to check it, in which case it's checked again later
+	private static QueryStatus getStatus(SnowflakeDataSource dataSource, String queryId) throws SQLException {
+
+		Connection cx;
+		try {
+			cx = dataSource.borrow();
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "No connection to check query " + queryId + " with, waiting", e);
+			return null;
+		}
+		try {
+			ResultSet rs = cx.unwrap(SnowflakeConnection.class).createResultSet(queryId);
+			return rs.unwrap(SnowflakeResultSet.class).getStatus();
+		} finally {
+			cx.close();
+		}
+	}
+
+	// Opens the results of a finished query
+	ResultSet open(Connection cx, String queryId) throws SQLException {
+		return cx.unwrap(SnowflakeConnection.class).createResultSet(queryId);
+	}
+
+	// Cancels the query, failures only get logged as the caller is already giving up on it
+	private static void cancel(SnowflakeDataSource dataSource, String queryId) {
+
+		try (Connection cx = dataSource.borrow(); PreparedStatement ps = cx.prepareStatement("SELECT SYSTEM$CANCEL_QUERY(?)")) {
+			ps.setString(1, queryId);
+			ps.executeQuery().close();
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "Unable to cancel query " + queryId, e);
+		}
+	}
+}
@@ -0,0 +1,396 @@
+package org.geotools.data.snowflake;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.util.Converters;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.WKBWriter;
+
+// Buffers features and writes them to a Snowflake table in large batches instead of GeoTools' one INSERT per feature.
+// Geometries travel as hex EWKB strings, which Snowflake converts into GEOMETRY and GEOGRAPHY columns on load
+public class SnowflakeBulkWriter implements Closeable {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeBulkWriter.class);
+
+	// How buffered features reach Snowflake
+	public static enum Mode {
+		// JDBC batch inserts. Once a batch holds more than CLIENT_STAGE_ARRAY_BINDING_THRESHOLD bind values the driver stages them itself
+		BATCH,
+		// Gzipped CSV uploaded to the table stage with PUT and loaded with COPY INTO
+		STAGE
+	}
+
+	private final Connection cx;
+	private final boolean closeConnection;
+	private final Transaction transaction;
+	private final SnowflakeDialect dialect;
+	private final String schemaName;
+	private final SimpleFeatureType featureType;
+	private final int[] sqlTypes;
+	private final List<Object[]> buffer = new ArrayList<>();
+	private final WKBWriter wkbWriter = new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN, true);
+
+	private Mode mode = Mode.BATCH;
+	private int batchSize = 10000;
+	private boolean flushOnCommit = true;
+	private PreparedStatement insert;
+	private long written;
+	private int batches;
+
+	// Creates a writer for the provided type of the datastore, using the bulk write settings the datastore was configured with
+	public SnowflakeBulkWriter(JDBCDataStore dataStore, String typeName, Transaction transaction) throws IOException {
+		this(dataStore.getConnection(transaction), transaction == Transaction.AUTO_COMMIT, transaction, dataStore.getDatabaseSchema(),
+				dataStore.getSchema(typeName), SnowflakeDataStoreFactory.getSnowflakeDialect(dataStore));
+	}
+
+	SnowflakeBulkWriter(Connection cx, boolean closeConnection, Transaction transaction, String schemaName, SimpleFeatureType featureType,
+			SnowflakeDialect dialect) {
+		this.cx = cx;
+		this.closeConnection = closeConnection;
+		this.transaction = transaction;
+		this.schemaName = schemaName;
+		this.featureType = featureType;
+		this.dialect = dialect;
+		this.mode = dialect.getBulkWriteMode();
+		this.batchSize = dialect.getBulkWriteBatchSize();
+		this.flushOnCommit = dialect.isBulkWriteFlushOnCommit();
+
+		sqlTypes = new int[featureType.getAttributeCount()];
+		for (int i = 0; i < sqlTypes.length; i++) {
+			sqlTypes[i] = getSqlType(featureType.getDescriptor(i));
+		}
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	// Number of buffered features that triggers a flush
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	// Whether commit() also writes a partially filled batch, or leaves it buffered for the next flush
+	public void setFlushOnCommit(boolean flushOnCommit) {
+		this.flushOnCommit = flushOnCommit;
+	}
+
+	public boolean isFlushOnCommit() {
+		return flushOnCommit;
+	}
+
+	// Number of features sent to Snowflake so far
+	public long getWrittenCount() {
+		return written;
+	}
+
+	// Number of batches sent to Snowflake so far
+	public int getBatchCount() {
+		return batches;
+	}
+
+	// Buffers the feature, attributes are matched by name against the target type
+	public void write(SimpleFeature feature) throws IOException {
+
+		Object[] row = new Object[sqlTypes.length];
+		for (int i = 0; i < row.length; i++) {
+			AttributeDescriptor descriptor = featureType.getDescriptor(i);
+			row[i] = toValue(i, descriptor, feature.getAttribute(descriptor.getLocalName()));
+		}
+		buffer.add(row);
+
+		if (buffer.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	// Sends every buffered feature to Snowflake
+	public void flush() throws IOException {
+
+		if (buffer.isEmpty()) {
+			return;
+		}
+
+		long start = System.nanoTime();
+		try {
+			if (mode == Mode.STAGE) {
+				copyBuffer();
+			} else {
+				insertBuffer();
+			}
+		} catch (SQLException e) {
+			throw new IOException("Error writing " + buffer.size() + " features to " + featureType.getTypeName(), e);
+		}
+
+		written += buffer.size();
+		batches++;
+		LOGGER.fine("Wrote " + buffer.size() + " features to " + featureType.getTypeName() + " in "
+				+ (System.nanoTime() - start) / 1000000 + "ms (" + mode + ")");
+		buffer.clear();
+	}
+
+	// Commits the features written so far, flushing the partial batch first unless flush-on-commit was disabled
+	public void commit() throws IOException {
+
+		if (flushOnCommit) {
+			flush();
+		}
+		if (transaction != Transaction.AUTO_COMMIT) {
+			transaction.commit();
+		}
+	}
+
+	// Flushes the remaining features and releases the statement and connection
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			JDBCDataStore dataStore = dialect.getDataStore();
+			if (insert != null) {
+				closeSafe(insert, dataStore);
+				insert = null;
+			}
+			if (closeConnection) {
+				if (dataStore != null) {
+					dataStore.closeSafe(cx);
+				} else {
+					try {
+						cx.close();
+					} catch (SQLException e) {
+						LOGGER.fine("Error closing connection: " + e.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	// Binds the buffer as a single JDBC batch
+	private void insertBuffer() throws SQLException {
+
+		if (insert == null) {
+			StringBuffer sql = new StringBuffer("INSERT INTO ");
+			encodeTableName(sql);
+			sql.append(" (");
+			encodeColumnNames(sql);
+			sql.append(") VALUES (");
+			for (int i = 0; i < sqlTypes.length; i++) {
+				sql.append(i == 0 ? "?" : ", ?");
+			}
+			sql.append(")");
+
+			LOGGER.fine(sql.toString());
+			insert = cx.prepareStatement(sql.toString());
+		}
+
+		for (Object[] row : buffer) {
+			for (int i = 0; i < row.length; i++) {
+				if (row[i] == null) {
+					insert.setNull(i + 1, sqlTypes[i]);
+				} else {
+					insert.setObject(i + 1, row[i], sqlTypes[i]);
+				}
+			}
+			insert.addBatch();
+		}
+		insert.executeBatch();
+	}
+
+	// Writes the buffer to a gzipped CSV file, uploads it to the table stage and loads it with COPY INTO
+	private void copyBuffer() throws SQLException, IOException {
+
+		String fileName = "gt-bulk-" + UUID.randomUUID() + ".csv.gz";
+		File file = new File(System.getProperty("java.io.tmpdir"), fileName);
+
+		try {
+			try (Writer csv = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file), 65536),
+					StandardCharsets.UTF_8))) {
+				for (Object[] row : buffer) {
+					writeCsvRow(row, csv);
+				}
+			}
+
+			StringBuffer stage = new StringBuffer("@");
+			if (schemaName != null) {
+				dialect.encodeSchemaName(schemaName, stage);
+				stage.append(".");
+			}
+			stage.append("%");
+			dialect.encodeTableName(featureType.getTypeName(), stage);
+
+			StringBuffer copy = new StringBuffer("COPY INTO ");
+			encodeTableName(copy);
+			copy.append(" (");
+			encodeColumnNames(copy);
+			copy.append(") FROM ").append(stage);
+			copy.append(" FILES = ('").append(fileName).append("')");
+			copy.append(" FILE_FORMAT = (TYPE = CSV FIELD_OPTIONALLY_ENCLOSED_BY = '\"' NULL_IF = ('\\\\N') COMPRESSION = GZIP)");
+			copy.append(" PURGE = TRUE");
+
+			Statement st = cx.createStatement();
+			try {
+				st.execute("PUT 'file://" + file.getAbsolutePath().replace('\\', '/') + "' " + stage
+						+ " SOURCE_COMPRESSION = GZIP AUTO_COMPRESS = FALSE");
+				LOGGER.fine(copy.toString());
+				st.execute(copy.toString());
+			} finally {
+				closeSafe(st, dialect.getDataStore());
+			}
+		} finally {
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+	}
+
+	// Writes a CSV row, every non null value is quoted and nulls are written as an unquoted \N
+	static void writeCsvRow(Object[] row, Writer csv) throws IOException {
+
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0) {
+				csv.write(',');
+			}
+			if (row[i] == null) {
+				csv.write("\\N");
+			} else {
+				csv.write('"');
+				csv.write(row[i].toString().replace("\"", "\"\""));
+				csv.write('"');
+			}
+		}
+		csv.write('\n');
+	}
+
+	// Converts an attribute value into what gets bound or written for it
+	private Object toValue(int column, AttributeDescriptor descriptor, Object value) {
+
+		if (value == null) {
+			return null;
+		}
+
+		if (value instanceof Geometry) {
+			Geometry geometry = (Geometry) value;
+			if (geometry instanceof LinearRing) {
+				geometry = geometry.getFactory().createLineString(((LinearRing) geometry).getCoordinateSequence());
+			}
+
+			Integer srid = descriptor instanceof GeometryDescriptor
+					? (Integer) descriptor.getUserData().get(JDBCDataStore.JDBC_NATIVE_SRID) : null;
+			if (srid != null && srid > 0 && geometry.getSRID() != srid) {
+				geometry = geometry.copy();
+				geometry.setSRID(srid);
+			}
+			return HexFormat.of().formatHex(wkbWriter.write(geometry));
+		}
+
+		switch (sqlTypes[column]) {
+			case Types.TIMESTAMP:
+				return Converters.convert(value, Timestamp.class);
+			case Types.DATE:
+				return Converters.convert(value, java.sql.Date.class);
+			case Types.TIME:
+				return Converters.convert(value, Time.class);
+			case Types.VARCHAR:
+				return value.toString();
+			default:
+				return value;
+		}
+	}
+
+	// Picks the JDBC type a column is bound as, Snowflake needs every row of an array bind to use the same type
+	private static int getSqlType(AttributeDescriptor descriptor) {
+
+		Class<?> binding = descriptor.getType().getBinding();
+
+		if (Geometry.class.isAssignableFrom(binding) || String.class.equals(binding)) {
+			return Types.VARCHAR;
+		} else if (Long.class.equals(binding) || Integer.class.equals(binding) || Short.class.equals(binding)
+				|| Byte.class.equals(binding) || BigInteger.class.equals(binding)) {
+			return Types.BIGINT;
+		} else if (Double.class.equals(binding) || Float.class.equals(binding)) {
+			return Types.DOUBLE;
+		} else if (BigDecimal.class.equals(binding)) {
+			return Types.DECIMAL;
+		} else if (Boolean.class.equals(binding)) {
+			return Types.BOOLEAN;
+		} else if (java.sql.Date.class.equals(binding)) {
+			return Types.DATE;
+		} else if (Time.class.equals(binding)) {
+			return Types.TIME;
+		} else if (java.util.Date.class.isAssignableFrom(binding)) {
+			return Types.TIMESTAMP;
+		}
+		return Types.VARCHAR;
+	}
+
+	private void encodeTableName(StringBuffer sql) {
+		if (schemaName != null) {
+			dialect.encodeSchemaName(schemaName, sql);
+			sql.append(".");
+		}
+		dialect.encodeTableName(featureType.getTypeName(), sql);
+	}
+
+	private void encodeColumnNames(StringBuffer sql) {
+		for (int i = 0; i < sqlTypes.length; i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			dialect.encodeColumnName(null, featureType.getDescriptor(i).getLocalName(), sql);
+		}
+	}
+
+	private static void closeSafe(Statement st, JDBCDataStore dataStore) {
+		if (dataStore != null) {
+			dataStore.closeSafe(st);
+			return;
+		}
+		try {
+			st.close();
+		} catch (SQLException e) {
+			LOGGER.fine("Error closing statement: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package org.geotools.data.snowflake;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.locationtech.jts.geom.Envelope;
+
+import com.uber.h3core.AreaUnit;
+import com.uber.h3core.H3Core;
+import com.uber.h3core.LengthUnit;
+import com.uber.h3core.util.LatLng;
+
+// A column holding the H3 cell (e.g. H3_POINT_TO_CELL) or the geohash (ST_GEOHASH) of a point layer's geometry. Snowflake has no
+// spatial index, but a table clustered on such a column keeps nearby points in the same micro-partitions, so spatial filters are
+// prefixed with the cells covering the filter's envelope (computed here, in longitude/latitude) and Snowflake prunes every partition
+// whose range of cells misses them. Coverings that would take more than MAX_CELLS cells at the column's resolution use coarser cells,
+// each written as the range of the column's values inside it: geohashes of a cell share its prefix, and the H3 cells below a cell are
+// numbered contiguously
+public class SnowflakeCellIndex {
+
+	public static enum Type {H3, GEOHASH};
+
+	// Most values and ranges a prefilter lists
+	static final int MAX_CELLS = 100;
+
+	private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+	// Length of ST_GEOHASH values when no precision is given. Geohash cells are matched as prefixes up to this length, so the column
+	// can hold geohashes of the configured length or longer ones
+	static final int GEOHASH_MAX_LENGTH = 20;
+
+	// The resolution digits of H3 cells, 3 bits each from resolution 1 down from bit 44, and the resolution itself at bit 52
+	private static final int H3_MAX_RESOLUTION = 15;
+	private static final int H3_RESOLUTION_OFFSET = 52;
+
+	private final String column;
+	private final Type type;
+	private final int resolution;
+
+	public SnowflakeCellIndex(String column, Type type, int resolution) {
+		if (type == Type.H3 ? resolution < 0 || resolution > H3_MAX_RESOLUTION : resolution < 1 || resolution > 12) {
+			throw new IllegalArgumentException("Invalid " + type + " resolution: " + resolution);
+		}
+		this.column = column;
+		this.type = type;
+		this.resolution = resolution;
+	}
+
+	// Parses COLUMN:H3:<resolution> or COLUMN:GEOHASH:<length>
+	public static SnowflakeCellIndex parse(String spec) {
+
+		String[] parts = spec.trim().split("\\s*:\\s*");
+		if (parts.length != 3) {
+			throw new IllegalArgumentException("Expected COLUMN:H3:<resolution> or COLUMN:GEOHASH:<length>: " + spec);
+		}
+		return new SnowflakeCellIndex(parts[0], Type.valueOf(parts[1].toUpperCase(Locale.ROOT)), Integer.parseInt(parts[2]));
+	}
+
+	public String getColumn() {
+		return column;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getResolution() {
+		return resolution;
+	}
+
+	// The cells covering an envelope: column values (Long H3 cells) and inclusive [low, high] ranges of H3 cells or geohashes
+	static class Covering {
+
+		final String column;
+		final List<Object> values = new ArrayList<>();
+		final List<Object[]> ranges = new ArrayList<>();
+
+		Covering(String column) {
+			this.column = column;
+		}
+	}
+
+	// Returns the cells covering the longitude/latitude envelope, or null when no covering of at most MAX_CELLS cells exists
+	Covering cover(Envelope envelope) {
+
+		Envelope world = envelope.intersection(new Envelope(-180, 180, -90, 90));
+		if (world.isNull()) {
+			return null;
+		}
+		return type == Type.H3 ? coverH3(world) : coverGeohash(world);
+	}
+
+	// Enumerates the geohash cells of the envelope at the longest length, up to the column's, keeping them under MAX_CELLS. Each is
+	// written as the range of the geohashes it prefixes
+	private Covering coverGeohash(Envelope envelope) {
+
+		for (int length = resolution; length >= 1; length--) {
+			int lonBits = (5 * length + 1) / 2;
+			int latBits = 5 * length / 2;
+			double width = 360d / (1L << lonBits);
+			double height = 180d / (1L << latBits);
+			long minI = (long) Math.floor((envelope.getMinX() + 180) / width);
+			long maxI = Math.min((long) Math.floor((envelope.getMaxX() + 180) / width), (1L << lonBits) - 1);
+			long minJ = (long) Math.floor((envelope.getMinY() + 90) / height);
+			long maxJ = Math.min((long) Math.floor((envelope.getMaxY() + 90) / height), (1L << latBits) - 1);
+			if ((maxI - minI + 1) * (maxJ - minJ + 1) > MAX_CELLS) {
+				continue;
+			}
+
+			Covering covering = new Covering(column);
+			char[] fill = new char[GEOHASH_MAX_LENGTH - length];
+			Arrays.fill(fill, 'z');
+			for (long i = minI; i <= maxI; i++) {
+				for (long j = minJ; j <= maxJ; j++) {
+					String geohash = geohash(-90 + (j + 0.5) * height, -180 + (i + 0.5) * width, length);
+					covering.ranges.add(new Object[] {geohash, geohash + new String(fill)});
+				}
+			}
+			return covering;
+		}
+		return null;
+	}
+
+	// Returns the geohash of the point
+	static String geohash(double latitude, double longitude, int length) {
+
+		double[] lat = {-90, 90};
+		double[] lon = {-180, 180};
+		StringBuilder geohash = new StringBuilder(length);
+		boolean even = true;
+		int bit = 0;
+		int ch = 0;
+		while (geohash.length() < length) {
+			double[] range = even ? lon : lat;
+			double value = even ? longitude : latitude;
+			double mid = (range[0] + range[1]) / 2;
+			ch <<= 1;
+			if (value >= mid) {
+				ch |= 1;
+				range[0] = mid;
+			} else {
+				range[1] = mid;
+			}
+			even = !even;
+			if (++bit == 5) {
+				geohash.append(BASE32.charAt(ch));
+				bit = 0;
+				ch = 0;
+			}
+		}
+		return geohash.toString();
+	}
+
+	// Covers the envelope with H3 cells at the finest resolution keeping them under MAX_CELLS. H3 cells only hold their center, so
+	// cells crossed by the envelope's edges and their neighbours are added, and cells coarser than the column's are widened with
+	// their neighbours too, as a cell's descendants can stick out into them
+	private Covering coverH3(Envelope envelope) {
+
+		// Boxes half the world wide or more are ambiguous on the sphere
+		if (envelope.getWidth() >= 180) {
+			return null;
+		}
+		H3Core h3 = H3.INSTANCE;
+		double latitude = Math.cos(Math.toRadians((envelope.getMinY() + envelope.getMaxY()) / 2));
+		double area = envelope.getWidth() * envelope.getHeight() * latitude * SnowflakeFilterToSQLHelper.METERS_PER_DEGREE
+				* SnowflakeFilterToSQLHelper.METERS_PER_DEGREE;
+
+		for (int r = resolution; r >= 0; r--) {
+			if (area / h3.getHexagonAreaAvg(r, AreaUnit.m2) > MAX_CELLS) {
+				continue;
+			}
+			Set<Long> cells = coverH3(h3, envelope, r);
+			if (r < resolution) {
+				for (Long cell : new ArrayList<>(cells)) {
+					cells.addAll(h3.gridDisk(cell, 1));
+				}
+			}
+			if (cells.size() > MAX_CELLS) {
+				continue;
+			}
+
+			Covering covering = new Covering(column);
+			if (r == resolution) {
+				covering.values.addAll(cells);
+				return covering;
+			}
+			List<long[]> ranges = new ArrayList<>();
+			for (Long cell : cells) {
+				ranges.add(childRange(cell, r, resolution));
+			}
+			// Neighbouring cells often number on, so they're merged into fewer ranges
+			ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+			Object[] last = null;
+			for (long[] range : ranges) {
+				if (last != null && range[0] <= (Long) last[1] + 1) {
+					last[1] = Math.max((Long) last[1], range[1]);
+				} else {
+					last = new Object[] {range[0], range[1]};
+					covering.ranges.add(last);
+				}
+			}
+			return covering;
+		}
+		return null;
+	}
+
+	// Returns the cells whose center is in the envelope, plus the cells of points along its edges and their neighbours
+	private static Set<Long> coverH3(H3Core h3, Envelope envelope, int resolution) {
+
+		List<LatLng> ring = Arrays.asList(new LatLng(envelope.getMinY(), envelope.getMinX()), new LatLng(envelope.getMinY(), envelope.getMaxX()),
+				new LatLng(envelope.getMaxY(), envelope.getMaxX()), new LatLng(envelope.getMaxY(), envelope.getMinX()));
+		Set<Long> cells = new HashSet<>(h3.polygonToCells(ring, Collections.emptyList(), resolution));
+
+		double step = h3.getHexagonEdgeLengthAvg(resolution, LengthUnit.m) / 4 / SnowflakeFilterToSQLHelper.METERS_PER_DEGREE;
+		Set<Long> edges = new HashSet<>();
+		for (int i = 0; i < ring.size(); i++) {
+			LatLng from = ring.get(i);
+			LatLng to = ring.get((i + 1) % ring.size());
+			double length = Math.max(Math.abs(to.lat - from.lat), Math.abs(to.lng - from.lng));
+			int steps = (int) Math.ceil(length / step);
+			for (int s = 0; s <= steps; s++) {
+				double t = steps == 0 ? 0 : (double) s / steps;
+				edges.add(h3.latLngToCell(from.lat + (to.lat - from.lat) * t, from.lng + (to.lng - from.lng) * t, resolution));
+			}
+		}
+		for (Long cell : edges) {
+			cells.addAll(h3.gridDisk(cell, 1));
+		}
+		return cells;
+	}
+
+	// Returns the lowest and highest index of the cells at the child resolution below the cell: the resolution field set to the
+	// child's, and the digits between both resolutions all 0 or all 6 (digits past the child resolution stay 7)
+	static long[] childRange(long cell, int resolution, int childResolution) {
+
+		long base = (cell & ~(0xFL << H3_RESOLUTION_OFFSET)) | ((long) childResolution << H3_RESOLUTION_OFFSET);
+		long low = base;
+		long high = base;
+		for (int digit = resolution + 1; digit <= childResolution; digit++) {
+			int shift = (H3_MAX_RESOLUTION - digit) * 3;
+			low &= ~(7L << shift);
+			high = (high & ~(7L << shift)) | (6L << shift);
+		}
+		return new long[] {low, high};
+	}
+
+	// The H3 library loads its native code once
+	private static class H3 {
+
+		static final H3Core INSTANCE;
+
+		static {
+			try {
+				INSTANCE = H3Core.newInstance();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to load the H3 library", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,402 @@
+package org.geotools.data.snowflake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.geotools.util.logging.Logging;
+
+import net.snowflake.client.jdbc.SnowflakeStatement;
+
+// Wraps the pooled connections handed out by SnowflakeDataSource, so the queries of the statements they create go through the
+// datastore's query pipeline (row counts from metadata, keyset paging, the result cache and asynchronous execution), get tagged and
+// measured, and writes invalidate what they touch. Everything else goes straight to the driver. While an asynchronous query runs
+// the pooled connection is handed back, the proxy borrows another one the next time it's used, replays the session commands and
+// connection settings of the first on it and recreates its statements there
+class SnowflakeConnectionProxy implements InvocationHandler {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeConnectionProxy.class);
+
+	// Statements changing the session rather than reading or writing data
+	private static final Pattern SESSION_COMMAND = Pattern.compile("^\\s*(?:ALTER\\s+SESSION|USE|SET|UNSET)\\b", Pattern.CASE_INSENSITIVE);
+
+	// The pooled connection, null while detached
+	private Connection delegate;
+	private boolean closed;
+	private final SnowflakeDataSource dataSource;
+
+	// Time spent waiting for the pooled connection, not yet reported with a query
+	private long borrowNanos;
+
+	// Session commands run through the connection (e.g. the datastore's SQL on borrow) and its setters called so far, in order, for
+	// the pooled connection borrowed after an asynchronous query handed the first one back
+	private final List<String> sessionCommands = new ArrayList<>();
+	private final Map<Method, Object[]> settings = new LinkedHashMap<>();
+
+	private SnowflakeConnectionProxy(Connection delegate, SnowflakeDataSource dataSource, long borrowNanos) {
+		this.delegate = delegate;
+		this.dataSource = dataSource;
+		this.borrowNanos = borrowNanos;
+	}
+
+	static Connection wrap(Connection cx, SnowflakeDataSource dataSource, long borrowNanos) {
+		return (Connection) Proxy.newProxyInstance(SnowflakeConnectionProxy.class.getClassLoader(), new Class<?>[] {Connection.class},
+				new SnowflakeConnectionProxy(cx, dataSource, borrowNanos));
+	}
+
+	// Records the layer a statement created by a wrapped connection works on, for its query tag and metrics
+	static void setLayer(Statement statement, String layer) {
+
+		if (Proxy.isProxyClass(statement.getClass()) && Proxy.getInvocationHandler(statement) instanceof StatementHandler) {
+			((StatementHandler) Proxy.getInvocationHandler(statement)).layer = layer;
+		}
+	}
+
+	// Returns the QUERY_TAG of a statement: a JSON object with the application, the layer and the operation
+	static String getQueryTag(String application, String layer, String sql) {
+		return "{\"application\":" + toJSON(application) + ",\"layer\":" + toJSON(layer) + ",\"operation\":"
+				+ toJSON(SnowflakeQueryMetrics.getOperation(sql)) + "}";
+	}
+
+	private static String toJSON(String value) {
+
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder json = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+		String name = method.getName();
+		if (("unwrap".equals(name) || "isWrapperFor".equals(name)) && ((Class<?>) args[0]).isInstance(proxy)) {
+			return "unwrap".equals(name) ? proxy : Boolean.TRUE;
+		}
+		if ("close".equals(name)) {
+			closed = true;
+			detach();
+			return null;
+		}
+		if ("isClosed".equals(name)) {
+			return closed || (delegate != null && delegate.isClosed());
+		}
+
+		Connection cx = connection();
+		Object result = forward(cx, method, args);
+		if ("createStatement".equals(name)) {
+			return wrap((Statement) result, Statement.class, null, (Connection) proxy, cx, method, args);
+		}
+		if ("prepareStatement".equals(name)) {
+			return wrap((Statement) result, PreparedStatement.class, (String) args[0], (Connection) proxy, cx, method, args);
+		}
+		if (name.startsWith("set") && !"setSavepoint".equals(name)) {
+			settings.put(method, args);
+		}
+		return result;
+	}
+
+	// Returns the pooled connection, borrowing a new one if it was handed back
+	private Connection connection() throws SQLException {
+
+		if (delegate == null) {
+			if (closed) {
+				throw new SQLException("Connection is closed");
+			}
+			long start = System.nanoTime();
+			delegate = dataSource.borrow();
+			borrowNanos += System.nanoTime() - start;
+			try {
+				restoreSession(delegate);
+			} catch (SQLException e) {
+				detach();
+				throw e;
+			}
+		}
+		return delegate;
+	}
+
+	// Applies the connection settings and session commands of the connection handed back to the one borrowed in its place
+	private void restoreSession(Connection cx) throws SQLException {
+
+		for (Map.Entry<Method, Object[]> setting : settings.entrySet()) {
+			call(cx, setting.getKey(), setting.getValue());
+		}
+		if (!sessionCommands.isEmpty()) {
+			try (Statement statement = cx.createStatement()) {
+				for (String command : sessionCommands) {
+					statement.execute(command);
+				}
+			}
+		}
+	}
+
+	// Hands the pooled connection back to the pool, which also closes the statements created on it
+	private void detach() {
+
+		if (delegate != null) {
+			try {
+				delegate.close();
+			} catch (SQLException e) {
+				LOGGER.log(Level.FINE, "Error returning connection to the pool", e);
+			}
+			delegate = null;
+		}
+	}
+
+	private Statement wrap(Statement statement, Class<? extends Statement> type, String sql, Connection connection, Connection owner,
+			Method factory, Object[] factoryArgs) {
+		return (Statement) Proxy.newProxyInstance(SnowflakeConnectionProxy.class.getClassLoader(), new Class<?>[] {type},
+				new StatementHandler(statement, sql, connection, owner, factory, factoryArgs));
+	}
+
+	// Calls the method on the target, throwing what the method threw instead of the reflection wrapper around it
+	static Object forward(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Like forward(), for callers that can only throw SQLException
+	private static Object call(Object target, Method method, Object[] args) throws SQLException {
+		try {
+			return forward(target, method, args);
+		} catch (SQLException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new SQLException(e);
+		}
+	}
+
+	// Intercepts query execution, recording the bind values of prepared statements so they can be part of the cache key
+	private class StatementHandler implements InvocationHandler {
+
+		// The driver statement and the pooled connection it was created on, with the call that created it
+		private Statement statement;
+		private Connection owner;
+		private final Method factory;
+		private final Object[] factoryArgs;
+		// Setter calls on the statement, settings keyed on their name and bind values on their index, to recreate it with
+		private final Map<Object, Map.Entry<Method, Object[]>> setters = new LinkedHashMap<>();
+
+		private final String sql;
+		private final Connection connection;
+		private final Map<Integer, Object> parameters = new TreeMap<>();
+		private final List<String> batch = new ArrayList<>();
+		// The layer set by the dialect, and the query tag last set on the statement
+		private String layer;
+		private String tag;
+
+		StatementHandler(Statement statement, String sql, Connection connection, Connection owner, Method factory, Object[] factoryArgs) {
+			this.statement = statement;
+			this.sql = sql;
+			this.connection = connection;
+			this.owner = owner;
+			this.factory = factory;
+			this.factoryArgs = factoryArgs;
+		}
+
+		// Returns the driver statement, recreated with its settings and bind values when the pooled connection it was created on was
+		// handed back during an asynchronous query, which closed it
+		private Statement statement() throws SQLException {
+
+			Connection cx = connection();
+			if (owner != cx) {
+				statement = (Statement) call(cx, factory, factoryArgs);
+				owner = cx;
+				tag = null;
+				for (Map.Entry<Method, Object[]> setter : setters.values()) {
+					call(statement, setter.getKey(), setter.getValue());
+				}
+			}
+			return statement;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+			if ("getConnection".equals(name)) {
+				return connection;
+			}
+			if (("unwrap".equals(name) || "isWrapperFor".equals(name)) && ((Class<?>) args[0]).isInstance(proxy)) {
+				return "unwrap".equals(name) ? proxy : Boolean.TRUE;
+			}
+
+			if ("close".equals(name) && owner != delegate) {
+				// Closed along with the pooled connection it was created on
+				return null;
+			}
+
+			if (sql != null && name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+				parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+				setters.put(args[0], new SimpleEntry<>(method, args));
+			} else if (name.startsWith("set") && args != null && args.length == 1) {
+				setters.put(name, new SimpleEntry<>(method, args));
+			} else if ("clearParameters".equals(name)) {
+				parameters.clear();
+				setters.keySet().removeIf(key -> key instanceof Integer);
+			} else if ("executeQuery".equals(name)) {
+				return executeQuery((Statement) proxy, method, args);
+			} else if (name.startsWith("execute")) {
+				String write = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+				loadFilterGeometries(write);
+				tag(write);
+				invalidate(write);
+				Object result = SnowflakeConnectionProxy.forward(statement(), method, args);
+				if (write != null && SESSION_COMMAND.matcher(write).find()) {
+					sessionCommands.remove(write);
+					sessionCommands.add(write);
+				}
+				return result;
+			} else if ("addBatch".equals(name) && args != null && args.length == 1 && args[0] instanceof String) {
+				batch.add((String) args[0]);
+			}
+			return SnowflakeConnectionProxy.forward(statement(), method, args);
+		}
+
+		// Runs the query through the pipeline, measuring it when query metrics are enabled
+		private ResultSet executeQuery(Statement proxy, Method method, Object[] args) throws Throwable {
+
+			String query = args != null && args.length > 0 ? (String) args[0] : sql;
+			loadFilterGeometries(query);
+			tag(query);
+			SnowflakeQueryMetrics metrics = dataSource.getQueryMetrics();
+			long start = System.nanoTime();
+			ResultSet rs = executeQuery(proxy, method, args, query);
+			if (metrics == null) {
+				return rs;
+			}
+			long borrow = borrowNanos;
+			borrowNanos = 0;
+			return metrics.track(rs, query, layer, borrow, start);
+		}
+
+		private ResultSet executeQuery(Statement proxy, Method method, Object[] args, String query) throws Throwable {
+
+			SnowflakeRowCounts rowCounts = dataSource.getRowCounts();
+			ResultSet count = rowCounts != null ? rowCounts.count(query, parameters, connection(), proxy) : null;
+			if (count != null) {
+				return count;
+			}
+
+			SnowflakeKeysetPaging paging = dataSource.getKeysetPaging();
+			SnowflakeKeysetPaging.Page page = paging != null && connection().getAutoCommit() ? paging.page(query, parameters) : null;
+			if (page != null && page.isSeek()) {
+				return page.seek(connection(), proxy);
+			}
+			ResultSet rs = executeCached(proxy, method, args, query);
+			return page != null ? page.record(rs, proxy) : rs;
+		}
+
+		private ResultSet executeCached(Statement proxy, Method method, Object[] args, String query) throws Throwable {
+
+			SnowflakeResultCache cache = dataSource.getResultCache();
+			String key = cache != null ? cache.key(query, sql != null ? parameters : null) : null;
+			if (key == null) {
+				return execute(method, args, query);
+			}
+
+			ResultSet cached = cache.get(key, connection(), proxy);
+			if (cached != null) {
+				return cached;
+			}
+			ResultSet rs = execute(method, args, query);
+			return cache.record(key, query, rs, connection());
+		}
+
+		// Runs the query, asynchronously when it qualifies. Connections in a transaction are kept, the query has to see their writes
+		private ResultSet execute(Method method, Object[] args, String query) throws Throwable {
+
+			SnowflakeAsyncQueries async = dataSource.getAsyncQueries();
+			if (async == null || !async.accepts(query) || !connection().getAutoCommit()) {
+				return (ResultSet) SnowflakeConnectionProxy.forward(statement(), method, args);
+			}
+
+			int timeout = statement().getQueryTimeout();
+			String queryId = async.submit(statement(), query);
+			detach();
+			async.await(dataSource, queryId, timeout);
+			return async.open(connection(), queryId);
+		}
+
+		// Loads the filter geometries the statement reads into its session if it doesn't hold them yet, see SnowflakeFilterGeometries
+		private void loadFilterGeometries(String query) throws SQLException {
+
+			SnowflakeFilterGeometries geometries = dataSource.getFilterGeometries();
+			if (geometries != null && query != null && query.contains(SnowflakeFilterGeometries.TABLE)) {
+				geometries.load(statement().getConnection(), query);
+			}
+		}
+
+		// Tags the statement's next query with the application, layer and operation, which shows in Snowflake's QUERY_HISTORY
+		private void tag(String query) {
+
+			String application = dataSource.getQueryTag();
+			if (application == null) {
+				return;
+			}
+			String tag = getQueryTag(application, layer, query);
+			if (tag.equals(this.tag)) {
+				return;
+			}
+			try {
+				statement().unwrap(SnowflakeStatement.class).setParameter("QUERY_TAG", tag);
+				this.tag = tag;
+			} catch (SQLException e) {
+				LOGGER.log(Level.FINE, "Unable to set the query tag", e);
+			}
+		}
+
+		// Drops the cached results of whatever the write modified
+		private void invalidate(String write) {
+
+			SnowflakeRowCounts rowCounts = dataSource.getRowCounts();
+			if (rowCounts != null && (write == null || !SnowflakeResultCache.isQuery(write))) {
+				rowCounts.invalidate();
+			}
+			SnowflakeKeysetPaging paging = dataSource.getKeysetPaging();
+			if (paging != null && (write == null || !SnowflakeResultCache.isQuery(write))) {
+				paging.invalidate();
+			}
+			SnowflakeResultCache cache = dataSource.getResultCache();
+			if (cache == null) {
+				return;
+			}
+			if (write != null) {
+				cache.invalidateWritten(write);
+			}
+			for (String sql : batch) {
+				cache.invalidateWritten(sql);
+			}
+			batch.clear();
+		}
+	}
+}
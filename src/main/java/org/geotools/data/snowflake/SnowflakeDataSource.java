@@ -0,0 +1,487 @@
+package org.geotools.data.snowflake;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.dbcp.AbandonedConfig;
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.dbcp.ConnectionFactory;
+import org.apache.commons.dbcp.PoolableConnectionFactory;
+import org.apache.commons.dbcp.SQLNestedException;
+import org.apache.commons.pool.KeyedObjectPoolFactory;
+import org.geotools.util.logging.Logging;
+
+// Connection pool used by the Snowflake datastore. On top of commons-dbcp it skips the validation query for connections that were in
+// use a moment ago, can open its minimum idle connections up front (Snowflake logins take hundreds of milliseconds), can cap its size
+// to what the warehouse runs concurrently, and keeps borrow and creation statistics that are published over JMX
+public class SnowflakeDataSource extends BasicDataSource implements SnowflakeDataSourceMXBean {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeDataSource.class);
+
+	// Connections returned to the pool within this many milliseconds are handed out again without running the validation query
+	private volatile long validationIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+
+	// When each pooled connection was last returned or created, weakly keyed so destroyed connections drop out on their own
+	private final Map<Connection, Long> lastUsed = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final AtomicLong borrows = new AtomicLong();
+	private final AtomicLong borrowWaitNanos = new AtomicLong();
+	private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+	private final AtomicLong creates = new AtomicLong();
+	private final AtomicLong validationsRun = new AtomicLong();
+	private final AtomicLong validationsSkipped = new AtomicLong();
+
+	private ObjectName objectName;
+
+	// Optional cache of query results, consulted by the statements of every connection handed out
+	private volatile SnowflakeResultCache resultCache;
+
+	// Optional asynchronous execution of queries, which releases the session while the warehouse runs them
+	private volatile SnowflakeAsyncQueries asyncQueries;
+
+	// Optional answers to count statements from table metadata and samples
+	private volatile SnowflakeRowCounts rowCounts;
+
+	// Optional seeking to where the previous page of a sorted query ended
+	private volatile SnowflakeKeysetPaging keysetPaging;
+
+	// Optional application name tagging every query (QUERY_TAG) along with its layer and operation
+	private volatile String queryTag;
+
+	// Optional timing of every query read through the datastore
+	private volatile SnowflakeQueryMetrics queryMetrics;
+
+	// Filter geometries too large for the SQL, loaded into a temporary table of the sessions when enabled
+	private volatile SnowflakeFilterGeometries filterGeometries;
+
+	// Sets how long a connection can sit in the pool and still be handed out without validation, 0 validates on every borrow
+	public void setValidationInterval(long interval, TimeUnit unit) {
+		this.validationIntervalMillis = unit.toMillis(interval);
+	}
+
+	public long getValidationIntervalMillis() {
+		return validationIntervalMillis;
+	}
+
+	// Returns the properties passed to the Snowflake driver on login
+	Properties getConnectionProperties() {
+		return connectionProperties;
+	}
+
+	public SnowflakeResultCache getResultCache() {
+		return resultCache;
+	}
+
+	public void setResultCache(SnowflakeResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	public SnowflakeAsyncQueries getAsyncQueries() {
+		return asyncQueries;
+	}
+
+	public void setAsyncQueries(SnowflakeAsyncQueries asyncQueries) {
+		this.asyncQueries = asyncQueries;
+	}
+
+	public SnowflakeRowCounts getRowCounts() {
+		return rowCounts;
+	}
+
+	public void setRowCounts(SnowflakeRowCounts rowCounts) {
+		this.rowCounts = rowCounts;
+	}
+
+	public SnowflakeKeysetPaging getKeysetPaging() {
+		return keysetPaging;
+	}
+
+	public void setKeysetPaging(SnowflakeKeysetPaging keysetPaging) {
+		this.keysetPaging = keysetPaging;
+	}
+
+	public String getQueryTag() {
+		return queryTag;
+	}
+
+	public void setQueryTag(String queryTag) {
+		this.queryTag = queryTag;
+	}
+
+	public SnowflakeQueryMetrics getQueryMetrics() {
+		return queryMetrics;
+	}
+
+	public void setQueryMetrics(SnowflakeQueryMetrics queryMetrics) {
+		this.queryMetrics = queryMetrics;
+	}
+
+	public boolean isFilterGeometryTable() {
+		return filterGeometries != null;
+	}
+
+	SnowflakeFilterGeometries getFilterGeometries() {
+		return filterGeometries;
+	}
+
+	// Has every session of the pool create the filter geometry table when it is opened, next to the other SQL run on login, must be
+	// set before the first connection is
+	@SuppressWarnings("unchecked")
+	public void setFilterGeometryTable(boolean filterGeometryTable) {
+
+		List<String> initSqls = new ArrayList<>(getConnectionInitSqls());
+		initSqls.remove(SnowflakeFilterGeometries.TABLE_DDL);
+		if (filterGeometryTable) {
+			initSqls.add(SnowflakeFilterGeometries.TABLE_DDL);
+		}
+		setConnectionInitSqls(initSqls);
+		if (!filterGeometryTable) {
+			filterGeometries = null;
+		} else if (filterGeometries == null) {
+			filterGeometries = new SnowflakeFilterGeometries();
+		}
+	}
+
+	// Routes the statements of the connection through the row counts, keyset paging, the result cache, asynchronous execution, query
+	// tags, query metrics and the loading of filter geometries when any is enabled
+	@Override
+	public Connection getConnection() throws SQLException {
+
+		long start = System.nanoTime();
+		Connection cx = borrow();
+		boolean wrapped = resultCache != null || asyncQueries != null || rowCounts != null || keysetPaging != null || queryTag != null
+				|| queryMetrics != null || filterGeometries != null;
+		return wrapped ? SnowflakeConnectionProxy.wrap(cx, this, System.nanoTime() - start) : cx;
+	}
+
+	// Borrows a pooled connection as it is, timing how long the caller waits for it
+	Connection borrow() throws SQLException {
+
+		long start = System.nanoTime();
+		try {
+			return super.getConnection();
+		} finally {
+			long wait = System.nanoTime() - start;
+			borrows.incrementAndGet();
+			borrowWaitNanos.addAndGet(wait);
+			maxBorrowWaitNanos.accumulateAndGet(wait, Math::max);
+		}
+	}
+
+	// Opens the pool's minimum idle connections (at least one, at most its maximum active connections) in parallel and returns them
+	// to the pool, so the first requests don't pay for the logins
+	public void prewarm() throws SQLException {
+
+		int count = Math.max(getMinIdle(), 1);
+		if (getMaxActive() > 0) {
+			count = Math.min(count, getMaxActive());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(count, 8));
+		try {
+			List<Future<Connection>> logins = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				logins.add(executor.submit(this::borrow));
+			}
+
+			List<Connection> connections = new ArrayList<>();
+			SQLException failure = null;
+			for (Future<Connection> login : logins) {
+				try {
+					connections.add(login.get());
+				} catch (Exception e) {
+					if (failure == null) {
+						failure = e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e);
+					}
+				}
+			}
+			for (Connection cx : connections) {
+				cx.close();
+			}
+
+			if (failure != null) {
+				throw failure;
+			}
+			LOGGER.fine("Prewarmed " + connections.size() + " Snowflake connections");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// Caps the pool at the number of queries the current warehouse runs at once (MAX_CONCURRENCY_LEVEL times MAX_CLUSTER_COUNT). Any
+	// connection past that would only hold a query queued in the warehouse. Returns the resulting maximum number of active connections
+	public int sizeToWarehouse() throws SQLException {
+
+		Connection cx = borrow();
+		try {
+			String warehouse = queryString(cx, "SELECT CURRENT_WAREHOUSE()", 1);
+			if (warehouse == null) {
+				LOGGER.warning("No warehouse is in use, leaving the pool size at " + getMaxActive());
+				return getMaxActive();
+			}
+
+			String identifier = "\"" + warehouse.replace("\"", "\"\"") + "\"";
+			String concurrency = queryString(cx, "SHOW PARAMETERS LIKE 'MAX_CONCURRENCY_LEVEL' IN WAREHOUSE " + identifier, "value");
+			String clusters = queryString(cx, "SHOW WAREHOUSES LIKE '" + warehouse.replace("'", "''") + "'", "max_cluster_count");
+
+			int limit = (concurrency != null ? Integer.parseInt(concurrency) : 8) * (clusters != null ? Integer.parseInt(clusters) : 1);
+			if (getMaxActive() < 0 || getMaxActive() > limit) {
+				LOGGER.info("Limiting the connection pool to " + limit + " connections to match warehouse " + warehouse);
+				setMaxActive(limit);
+				if (getMaxIdle() > limit) {
+					setMaxIdle(limit);
+				}
+			}
+			return getMaxActive();
+		} finally {
+			cx.close();
+		}
+	}
+
+	// Returns the column of the first row of the query, or null if it returned nothing. SHOW commands need columns accessed by name,
+	// everything else by index
+	private static String queryString(Connection cx, String sql, Object column) throws SQLException {
+
+		Statement st = cx.createStatement();
+		try {
+			ResultSet rs = st.executeQuery(sql);
+			try {
+				if (!rs.next()) {
+					return null;
+				}
+				return column instanceof Integer ? rs.getString((Integer) column) : rs.getString((String) column);
+			} finally {
+				rs.close();
+			}
+		} finally {
+			st.close();
+		}
+	}
+
+	// Publishes the pool statistics as an MXBean under the provided name, failures only get logged
+	public void registerMBean(String name) {
+
+		try {
+			ObjectName objectName = new ObjectName("org.geotools.data.snowflake:type=ConnectionPool,name=" + ObjectName.quote(name)
+					+ ",id=" + Integer.toHexString(System.identityHashCode(this)));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			this.objectName = objectName;
+		} catch (Exception e) {
+			LOGGER.log(Level.FINE, "Unable to register the connection pool MXBean", e);
+		}
+	}
+
+	// Unregisters the MXBean along with closing the pool
+	@Override
+	public synchronized void close() throws SQLException {
+
+		if (objectName != null) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				if (server.isRegistered(objectName)) {
+					server.unregisterMBean(objectName);
+				}
+			} catch (Exception e) {
+				LOGGER.log(Level.FINE, "Unable to unregister the connection pool MXBean", e);
+			}
+			objectName = null;
+		}
+		super.close();
+	}
+
+	@Override
+	public long getConnectionsCreated() {
+		return creates.get();
+	}
+
+	@Override
+	public long getBorrowCount() {
+		return borrows.get();
+	}
+
+	@Override
+	public double getAverageBorrowWaitMillis() {
+		long count = borrows.get();
+		return count == 0 ? 0 : borrowWaitNanos.get() / 1e6 / count;
+	}
+
+	@Override
+	public double getMaxBorrowWaitMillis() {
+		return maxBorrowWaitNanos.get() / 1e6;
+	}
+
+	@Override
+	public long getValidationsRun() {
+		return validationsRun.get();
+	}
+
+	@Override
+	public long getValidationsSkipped() {
+		return validationsSkipped.get();
+	}
+
+	@Override
+	public long getResultCacheHits() {
+		SnowflakeResultCache cache = resultCache;
+		return cache != null ? cache.getHits() : 0;
+	}
+
+	@Override
+	public long getResultCacheMisses() {
+		SnowflakeResultCache cache = resultCache;
+		return cache != null ? cache.getMisses() : 0;
+	}
+
+	@Override
+	public long getAsyncQueriesSubmitted() {
+		SnowflakeAsyncQueries async = asyncQueries;
+		return async != null ? async.getSubmitted() : 0;
+	}
+
+	@Override
+	public int getAsyncQueriesRunning() {
+		SnowflakeAsyncQueries async = asyncQueries;
+		return async != null ? async.getRunning() : 0;
+	}
+
+	@Override
+	public long getRowCountsFromMetadata() {
+		SnowflakeRowCounts counts = rowCounts;
+		return counts != null ? counts.getMetadataCounts() : 0;
+	}
+
+	@Override
+	public long getRowCountsEstimated() {
+		SnowflakeRowCounts counts = rowCounts;
+		return counts != null ? counts.getEstimatedCounts() : 0;
+	}
+
+	@Override
+	public long getKeysetPageSeeks() {
+		SnowflakeKeysetPaging paging = keysetPaging;
+		return paging != null ? paging.getSeeks() : 0;
+	}
+
+	@Override
+	public long getQueriesMeasured() {
+		SnowflakeQueryMetrics metrics = queryMetrics;
+		return metrics != null ? metrics.getQueries() : 0;
+	}
+
+	@Override
+	public double getAverageQueryBorrowMillis() {
+		SnowflakeQueryMetrics metrics = queryMetrics;
+		return metrics != null ? metrics.getAverageBorrowMillis() : 0;
+	}
+
+	@Override
+	public double getAverageQueryExecuteMillis() {
+		SnowflakeQueryMetrics metrics = queryMetrics;
+		return metrics != null ? metrics.getAverageExecuteMillis() : 0;
+	}
+
+	@Override
+	public double getAverageQueryFirstRowMillis() {
+		SnowflakeQueryMetrics metrics = queryMetrics;
+		return metrics != null ? metrics.getAverageFirstRowMillis() : 0;
+	}
+
+	@Override
+	public double getAverageQueryFetchMillis() {
+		SnowflakeQueryMetrics metrics = queryMetrics;
+		return metrics != null ? metrics.getAverageFetchMillis() : 0;
+	}
+
+	@Override
+	public double getAverageQueryDecodeMillis() {
+		SnowflakeQueryMetrics metrics = queryMetrics;
+		return metrics != null ? metrics.getAverageDecodeMillis() : 0;
+	}
+
+	@Override
+	public long getQueryRowsRead() {
+		SnowflakeQueryMetrics metrics = queryMetrics;
+		return metrics != null ? metrics.getRows() : 0;
+	}
+
+	@Override
+	public long getQueryGeometryBytesRead() {
+		SnowflakeQueryMetrics metrics = queryMetrics;
+		return metrics != null ? metrics.getGeometryBytes() : 0;
+	}
+
+	// Same as BasicDataSource, but with a connection factory that counts creations and caches validations
+	@Override
+	protected void createPoolableConnectionFactory(ConnectionFactory driverConnectionFactory, KeyedObjectPoolFactory statementPoolFactory,
+			AbandonedConfig configuration) throws SQLException {
+
+		try {
+			PoolableConnectionFactory connectionFactory = new SnowflakePoolableConnectionFactory(driverConnectionFactory, statementPoolFactory,
+					configuration);
+			validateConnectionFactory(connectionFactory);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SQLNestedException("Cannot create PoolableConnectionFactory (" + e.getMessage() + ")", e);
+		}
+	}
+
+	private class SnowflakePoolableConnectionFactory extends PoolableConnectionFactory {
+
+		SnowflakePoolableConnectionFactory(ConnectionFactory driverConnectionFactory, KeyedObjectPoolFactory statementPoolFactory,
+				AbandonedConfig configuration) {
+			super(driverConnectionFactory, connectionPool, statementPoolFactory, validationQuery, validationQueryTimeout, connectionInitSqls,
+					defaultReadOnly, defaultAutoCommit, defaultTransactionIsolation, defaultCatalog, configuration);
+		}
+
+		@Override
+		public Object makeObject() throws Exception {
+			Object cx = super.makeObject();
+			creates.incrementAndGet();
+			lastUsed.put((Connection) cx, System.currentTimeMillis());
+			return cx;
+		}
+
+		@Override
+		public void passivateObject(Object obj) throws Exception {
+			super.passivateObject(obj);
+			lastUsed.put((Connection) obj, System.currentTimeMillis());
+		}
+
+		// A connection that was working a moment ago only gets the local closed check instead of a round trip to Snowflake
+		@Override
+		public void validateConnection(Connection cx) throws SQLException {
+
+			Long used = lastUsed.get(cx);
+			if (used != null && System.currentTimeMillis() - used < validationIntervalMillis) {
+				if (cx.isClosed()) {
+					throw new SQLException("validateConnection: connection closed");
+				}
+				validationsSkipped.incrementAndGet();
+				return;
+			}
+
+			super.validateConnection(cx);
+			validationsRun.incrementAndGet();
+			lastUsed.put(cx, System.currentTimeMillis());
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package org.geotools.data.snowflake;
+
+// Connection pool statistics published over JMX by SnowflakeDataSource
+public interface SnowflakeDataSourceMXBean {
+
+	// Connections currently borrowed from the pool
+	int getNumActive();
+
+	// Connections waiting in the pool
+	int getNumIdle();
+
+	// Most connections the pool will open, negative for no limit
+	int getMaxActive();
+
+	// Snowflake sessions opened since the pool was created
+	long getConnectionsCreated();
+
+	// Connections handed out since the pool was created
+	long getBorrowCount();
+
+	// Average and longest time callers waited for a connection, including logins of new ones
+	double getAverageBorrowWaitMillis();
+
+	double getMaxBorrowWaitMillis();
+
+	// Validation queries sent to Snowflake, and validations skipped because the connection had just been used
+	long getValidationsRun();
+
+	long getValidationsSkipped();
+
+	// Queries answered from and missed by the result cache, both zero when it's disabled
+	long getResultCacheHits();
+
+	long getResultCacheMisses();
+
+	// Queries submitted asynchronously, and the ones currently running in the warehouse without holding a connection
+	long getAsyncQueriesSubmitted();
+
+	int getAsyncQueriesRunning();
+
+	// Counts answered from table metadata, and filtered counts estimated from a sample instead of counted
+	long getRowCountsFromMetadata();
+
+	long getRowCountsEstimated();
+
+	// Pages of sorted queries served by seeking to where the previous page ended instead of skipping rows
+	long getKeysetPageSeeks();
+
+	// Queries measured by the query metrics, and their average wait for a connection, execution, time to the first row, fetching and
+	// WKB decoding, all zero when they're disabled
+	long getQueriesMeasured();
+
+	double getAverageQueryBorrowMillis();
+
+	double getAverageQueryExecuteMillis();
+
+	double getAverageQueryFirstRowMillis();
+
+	double getAverageQueryFetchMillis();
+
+	double getAverageQueryDecodeMillis();
+
+	// Rows read and WKB bytes decoded by the measured queries
+	long getQueryRowsRead();
+
+	long getQueryGeometryBytesRead();
+}
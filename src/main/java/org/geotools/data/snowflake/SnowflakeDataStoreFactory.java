@@ -1,14 +1,21 @@
 package org.geotools.data.snowflake;
 
 import java.io.IOException;
+import java.nio.Buffer;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.sql.DataSource;
+
 import org.apache.commons.dbcp.BasicDataSource;
 import org.geotools.api.data.Parameter;
+import org.geotools.data.jdbc.datasource.AbstractManageableDataSource;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.JDBCDataStoreFactory;
 import org.geotools.jdbc.SQLDialect;
@@ -35,6 +42,42 @@ public class SnowflakeDataStoreFactory extends JDBCDataStoreFactory {
 	public static final Param ACCOUNT = new Param("Account Identifier", String.class, "Snowflake account identifier", true);
 	public static final Param SCHEMA = new Param("Schema", String.class, "Schema", false);
 	public static final Param CLOUD_SELECTION = new Param("Cloud Selection", String.class, "Cloud provider and region selection", true, "AWS : us-west-2", CloudOptions.getCloudMetadata());
+	public static final Param RESULT_FORMAT = new Param("Result Format", String.class, "Result set transfer format. ARROW is columnar and much faster, JSON is only needed on JVMs started without --add-opens=java.base/java.nio=ALL-UNNAMED", false, "ARROW",
+			Collections.singletonMap(Param.OPTIONS, Arrays.asList("ARROW", "JSON")));
+	public static final Param SRID_CACHE_TTL = new Param("SRID Cache TTL", Integer.class, "Seconds geometry column SRIDs stay cached (0 disables the cache, -1 caches until the store is reset)", false, 3600);
+	public static final Param PREPARED_STATEMENTS = new Param("Prepared Statements", Boolean.class, "Use prepared statements, binding filter values and geometries (as WKB) instead of inlining them in the SQL", false, Boolean.FALSE);
+	public static final Param ENVELOPE_COLUMNS = new Param("Envelope Columns", String.class, "Comma separated min x, min y, max x and max y columns used to prefilter BBOX queries on layers that have all four", false);
+	public static final Param CELL_INDEX_COLUMNS = new Param("Cell Index Columns", String.class, "Comma separated TABLE=COLUMN:H3:<resolution> or TABLE=COLUMN:GEOHASH:<length> cell columns of point layers, used to prefilter spatial queries on the cells covering them", false);
+	public static final Param BULK_WRITE_MODE = new Param("Bulk Write Mode", String.class, "How bulk loads reach Snowflake: BATCH (JDBC batch inserts) or STAGE (gzipped CSV, PUT and COPY INTO)", false, "BATCH",
+			Collections.singletonMap(Param.OPTIONS, Arrays.asList("BATCH", "STAGE")));
+	public static final Param BULK_WRITE_BATCH_SIZE = new Param("Bulk Write Batch Size", Integer.class, "Number of features buffered by bulk loads before they are sent to Snowflake", false, 10000);
+	public static final Param BULK_WRITE_FLUSH_ON_COMMIT = new Param("Bulk Write Flush On Commit", Boolean.class, "Send partially filled bulk load batches when the load is committed", false, Boolean.TRUE);
+	public static final Param SIMPLIFICATION = new Param("Geometry Simplification", Boolean.class, "Simplify geometries in Snowflake (ST_SIMPLIFY) to the distance renderers ask for at small scales", false, Boolean.TRUE);
+	public static final Param TILE_PUSHDOWN = new Param("Tile Pushdown", Boolean.class, "Have Snowflake clip geometries to the requested tile (and simplify them to its resolution) instead of sending them at full resolution", false, Boolean.FALSE);
+	public static final Param FILTER_GEOMETRY_TOLERANCE = new Param("Filter Geometry Tolerance", Double.class, "Distance, in the units of the layer's CRS, filter geometries are simplified to before being sent to Snowflake (0 sends them as they are)", false, 0.0);
+	public static final Param FILTER_GEOMETRY_MAX_BYTES = new Param("Filter Geometry Max Bytes", Integer.class, "Largest filter geometry, in WKB bytes, written into the SQL when prepared statements are off. Larger ones are loaded into a temporary table of the session (0 writes them all)", false, 0);
+	public static final Param WAREHOUSE = new Param("Warehouse", String.class, "Virtual warehouse to run queries on, the user's default warehouse if empty", false);
+	public static final Param PREWARM_CONNECTIONS = new Param("Prewarm Connections", Boolean.class, "Open the pool's minimum connections when the store is created instead of on the first requests", false, Boolean.FALSE);
+	public static final Param WAREHOUSE_POOL_SIZE = new Param("Warehouse Aware Pool Size", Boolean.class, "Cap max connections at the number of queries the warehouse runs concurrently (MAX_CONCURRENCY_LEVEL times MAX_CLUSTER_COUNT)", false, Boolean.FALSE);
+	public static final Param VALIDATION_INTERVAL = new Param("Validation Interval", Integer.class, "Seconds after its last use a pooled connection is handed out again without running the validation query", false, 30);
+	public static final Param SESSION_KEEP_ALIVE = new Param("Session Keep Alive", Boolean.class, "Keep idle pooled sessions alive with heartbeats instead of letting Snowflake expire them", false, Boolean.TRUE);
+	public static final Param SESSION_KEEP_ALIVE_HEARTBEAT = new Param("Session Keep Alive Heartbeat", Integer.class, "Seconds between keep alive heartbeats (900 to 3600)", false, 3600);
+	public static final Param RESULT_CACHE = new Param("Result Cache", Boolean.class, "Cache query results in memory, invalidated when the table's LAST_ALTERED changes", false, Boolean.FALSE);
+	public static final Param RESULT_CACHE_MAX_ROWS = new Param("Result Cache Max Rows", Integer.class, "Most rows kept by the result cache, a single query can use up to a tenth of them", false, 500000);
+	public static final Param RESULT_CACHE_TTL = new Param("Result Cache TTL", Integer.class, "Seconds cached results stay valid (-1 until the table changes)", false, 300);
+	public static final Param RESULT_CACHE_LAYER_TTL = new Param("Result Cache Layer TTL", String.class, "Comma separated TABLE=seconds overrides of the result cache TTL, 0 keeps a table out of the cache", false);
+	public static final Param RESULT_CACHE_CHECK_INTERVAL = new Param("Result Cache Check Interval", Integer.class, "Seconds between LAST_ALTERED checks of the cached tables", false, 30);
+	public static final Param ASYNC_QUERIES = new Param("Async Queries", Boolean.class, "Run queries asynchronously, handing the connection back to the pool while the warehouse works", false, Boolean.FALSE);
+	public static final Param ROW_COUNT_MODE = new Param("Row Count Mode", String.class, "How feature counts are answered: EXACT (COUNT(*) in the warehouse), METADATA (unfiltered counts from table metadata) or ESTIMATE (also filtered counts of large tables from a sample)", false, "EXACT",
+			Collections.singletonMap(Param.OPTIONS, Arrays.asList("EXACT", "METADATA", "ESTIMATE")));
+	public static final Param ROW_COUNT_SAMPLE_PERCENT = new Param("Row Count Sample Percent", Double.class, "Percentage of the table sampled for ESTIMATE counts", false, 1.0);
+	public static final Param ROW_COUNT_TTL = new Param("Row Count TTL", Integer.class, "Seconds metadata row counts and estimates are reused, writes through the datastore drop them sooner", false, 60);
+	public static final Param KEYSET_PAGING = new Param("Keyset Paging", Boolean.class, "Serve the next page of a sorted query by seeking to where the previous page ended instead of skipping rows with OFFSET", false, Boolean.FALSE);
+	public static final Param QUERY_TAG = new Param("Query Tag", String.class, "Application name put in the QUERY_TAG of every query, along with the layer and operation", false);
+	public static final Param QUERY_METRICS = new Param("Query Metrics", Boolean.class, "Time connection waits, execution, first row, fetching and WKB decoding of every query, logged at FINE and published over JMX", false, Boolean.FALSE);
+	public static final Param SLOW_QUERY_THRESHOLD = new Param("Slow Query Threshold", Integer.class, "Milliseconds from execution to the last row past which Query Metrics logs a query at INFO with its SQL, -1 disables it", false, -1);
+	public static final Param ASYNC_QUERY_TABLES = new Param("Async Query Tables", String.class, "Comma separated tables whose queries run asynchronously, required by Async Queries", false);
+	public static final Param SEED_GEOMETRY_METADATA = new Param("Seed Geometry Metadata", Boolean.class, "Load the SRID of every geometry column in the schema with a single query on first use", false, Boolean.FALSE);
 	
 	public static final String SNOWFLAKE_DRIVER_CLASS_NAME = "net.snowflake.client.jdbc.SnowflakeDriver";
 	
@@ -67,6 +110,21 @@ public class SnowflakeDataStoreFactory extends JDBCDataStoreFactory {
 	protected SQLDialect createSQLDialect(JDBCDataStore dataStore) {
 		return new SnowflakeDialectBasic(dataStore);
 	}
+	
+	// Returns the prepared statement dialect if the user asked for it, the basic one otherwise
+	@Override
+	protected SQLDialect createSQLDialect(JDBCDataStore dataStore, Map<String, ?> params) {
+		
+		try {
+			Boolean preparedStatements = (Boolean) PREPARED_STATEMENTS.lookUp(params);
+			if (Boolean.TRUE.equals(preparedStatements)) {
+				return new SnowflakePreparedDialect(dataStore);
+			}
+		} catch (IOException e) {
+			LOGGER.warning("Invalid " + PREPARED_STATEMENTS.key + " value, using the basic dialect: " + e.getMessage());
+		}
+		return createSQLDialect(dataStore);
+	}
 
 	// Create the map of parameters used to connect to Snowflake
 	@Override
@@ -86,6 +144,51 @@ public class SnowflakeDataStoreFactory extends JDBCDataStoreFactory {
 		// Optional params for connecting to Snowflake
 		parameters.put(DATABASE.key, DATABASE);
 		parameters.put(SCHEMA.key, SCHEMA);
+		parameters.put(WAREHOUSE.key, WAREHOUSE);
+		parameters.put(RESULT_FORMAT.key, RESULT_FORMAT);
+		parameters.put(PREPARED_STATEMENTS.key, PREPARED_STATEMENTS);
+		parameters.put(SRID_CACHE_TTL.key, SRID_CACHE_TTL);
+		parameters.put(SEED_GEOMETRY_METADATA.key, SEED_GEOMETRY_METADATA);
+		parameters.put(ENVELOPE_COLUMNS.key, ENVELOPE_COLUMNS);
+		parameters.put(CELL_INDEX_COLUMNS.key, CELL_INDEX_COLUMNS);
+		parameters.put(BULK_WRITE_MODE.key, BULK_WRITE_MODE);
+		parameters.put(BULK_WRITE_BATCH_SIZE.key, BULK_WRITE_BATCH_SIZE);
+		parameters.put(BULK_WRITE_FLUSH_ON_COMMIT.key, BULK_WRITE_FLUSH_ON_COMMIT);
+		parameters.put(SIMPLIFICATION.key, SIMPLIFICATION);
+		parameters.put(TILE_PUSHDOWN.key, TILE_PUSHDOWN);
+		parameters.put(FILTER_GEOMETRY_TOLERANCE.key, FILTER_GEOMETRY_TOLERANCE);
+		parameters.put(FILTER_GEOMETRY_MAX_BYTES.key, FILTER_GEOMETRY_MAX_BYTES);
+		
+		// Connection pool
+		parameters.put(PREWARM_CONNECTIONS.key, PREWARM_CONNECTIONS);
+		parameters.put(WAREHOUSE_POOL_SIZE.key, WAREHOUSE_POOL_SIZE);
+		parameters.put(VALIDATION_INTERVAL.key, VALIDATION_INTERVAL);
+		parameters.put(SESSION_KEEP_ALIVE.key, SESSION_KEEP_ALIVE);
+		parameters.put(SESSION_KEEP_ALIVE_HEARTBEAT.key, SESSION_KEEP_ALIVE_HEARTBEAT);
+		
+		// Result cache
+		parameters.put(RESULT_CACHE.key, RESULT_CACHE);
+		parameters.put(RESULT_CACHE_MAX_ROWS.key, RESULT_CACHE_MAX_ROWS);
+		parameters.put(RESULT_CACHE_TTL.key, RESULT_CACHE_TTL);
+		parameters.put(RESULT_CACHE_LAYER_TTL.key, RESULT_CACHE_LAYER_TTL);
+		parameters.put(RESULT_CACHE_CHECK_INTERVAL.key, RESULT_CACHE_CHECK_INTERVAL);
+		
+		// Asynchronous queries
+		parameters.put(ASYNC_QUERIES.key, ASYNC_QUERIES);
+		parameters.put(ASYNC_QUERY_TABLES.key, ASYNC_QUERY_TABLES);
+		
+		// Row counts
+		parameters.put(ROW_COUNT_MODE.key, ROW_COUNT_MODE);
+		parameters.put(ROW_COUNT_SAMPLE_PERCENT.key, ROW_COUNT_SAMPLE_PERCENT);
+		parameters.put(ROW_COUNT_TTL.key, ROW_COUNT_TTL);
+		
+		// Paging
+		parameters.put(KEYSET_PAGING.key, KEYSET_PAGING);
+		
+		// Instrumentation
+		parameters.put(QUERY_TAG.key, QUERY_TAG);
+		parameters.put(QUERY_METRICS.key, QUERY_METRICS);
+		parameters.put(SLOW_QUERY_THRESHOLD.key, SLOW_QUERY_THRESHOLD);
 	}
 
 	// Constructs the JDBCUrl based on parameters input by the user in the GeoServer UI
@@ -144,8 +247,113 @@ public class SnowflakeDataStoreFactory extends JDBCDataStoreFactory {
 	@Override
 	protected JDBCDataStore createDataStoreInternal(JDBCDataStore dataStore, Map<String, ?> params) throws IOException {
 		logParameters(params);
+		
+		SnowflakeDialect dialect = getSnowflakeDialect(dataStore);
+		
+		// Geometry metadata caching
+		Integer sridCacheTTL = (Integer) SRID_CACHE_TTL.lookUp(params);
+		if (sridCacheTTL != null) {
+			dialect.getGeometryMetadataCache().setTimeToLive(sridCacheTTL, TimeUnit.SECONDS);
+		}
+		Boolean seedGeometryMetadata = (Boolean) SEED_GEOMETRY_METADATA.lookUp(params);
+		dialect.setSeedGeometryMetadata(seedGeometryMetadata != null && seedGeometryMetadata);
+		
+		// BBOX prefilter columns
+		String envelopeColumns = (String) ENVELOPE_COLUMNS.lookUp(params);
+		if (envelopeColumns != null && !envelopeColumns.isBlank()) {
+			String[] columns = envelopeColumns.split(",");
+			if (columns.length != 4) {
+				throw new IOException(ENVELOPE_COLUMNS.key + " needs exactly four columns (min x, min y, max x, max y): " + envelopeColumns);
+			}
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = columns[i].trim();
+			}
+			dialect.setEnvelopeColumns(columns);
+		}
+		
+		// Spatial prefilter cell columns
+		String cellIndexColumns = (String) CELL_INDEX_COLUMNS.lookUp(params);
+		if (cellIndexColumns != null && !cellIndexColumns.isBlank()) {
+			Map<String, SnowflakeCellIndex> cellIndexes = new HashMap<>();
+			for (String entry : cellIndexColumns.split(",")) {
+				String[] parts = entry.split("=", 2);
+				try {
+					if (parts.length != 2 || parts[0].isBlank()) {
+						throw new IllegalArgumentException("Expected TABLE=COLUMN:TYPE:RESOLUTION");
+					}
+					cellIndexes.put(parts[0].trim().toUpperCase(), SnowflakeCellIndex.parse(parts[1]));
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Invalid " + CELL_INDEX_COLUMNS.key + " entry '" + entry.trim() + "': " + e.getMessage(), e);
+				}
+			}
+			dialect.setCellIndexes(cellIndexes);
+		}
+		
+		// Bulk writes
+		String bulkWriteMode = (String) BULK_WRITE_MODE.lookUp(params);
+		if (bulkWriteMode != null && !bulkWriteMode.isBlank()) {
+			try {
+				dialect.setBulkWriteMode(SnowflakeBulkWriter.Mode.valueOf(bulkWriteMode.trim().toUpperCase()));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unknown " + BULK_WRITE_MODE.key + ": " + bulkWriteMode, e);
+			}
+		}
+		Integer bulkWriteBatchSize = (Integer) BULK_WRITE_BATCH_SIZE.lookUp(params);
+		if (bulkWriteBatchSize != null && bulkWriteBatchSize > 0) {
+			dialect.setBulkWriteBatchSize(bulkWriteBatchSize);
+		}
+		Boolean bulkWriteFlushOnCommit = (Boolean) BULK_WRITE_FLUSH_ON_COMMIT.lookUp(params);
+		dialect.setBulkWriteFlushOnCommit(bulkWriteFlushOnCommit == null || bulkWriteFlushOnCommit);
+		
+		// Simplification and tile clipping
+		Boolean simplification = (Boolean) SIMPLIFICATION.lookUp(params);
+		dialect.setSimplification(simplification == null || simplification);
+		Boolean tilePushdown = (Boolean) TILE_PUSHDOWN.lookUp(params);
+		dialect.setTilePushdown(Boolean.TRUE.equals(tilePushdown));
+		
+		// Filter geometries
+		Double filterGeometryTolerance = (Double) FILTER_GEOMETRY_TOLERANCE.lookUp(params);
+		if (filterGeometryTolerance != null && filterGeometryTolerance > 0) {
+			dialect.setFilterGeometryTolerance(filterGeometryTolerance);
+		}
+		dialect.setFilterGeometryMaxBytes(getFilterGeometryMaxBytes(params));
+		SnowflakeDataSource dataSource = getSnowflakeDataSource(dataStore);
+		if (dataSource != null) {
+			dialect.setFilterGeometries(dataSource.getFilterGeometries());
+		}
+		
 		return dataStore;
 	}
+	
+	// Returns the size past which filter geometries are moved out of the SQL of the basic dialect, 0 when they never are
+	private static int getFilterGeometryMaxBytes(Map<String, ?> params) throws IOException {
+		Integer filterGeometryMaxBytes = (Integer) FILTER_GEOMETRY_MAX_BYTES.lookUp(params);
+		return filterGeometryMaxBytes != null && filterGeometryMaxBytes > 0 ? filterGeometryMaxBytes : 0;
+	}
+	
+	// Returns the SnowflakeDataSource of the datastore, which JDBCDataStoreFactory hands over wrapped in a DBCPDataSource, or null when
+	// the datastore was given some other data source
+	static SnowflakeDataSource getSnowflakeDataSource(JDBCDataStore dataStore) {
+		
+		DataSource dataSource = dataStore.getDataSource();
+		if (dataSource instanceof AbstractManageableDataSource) {
+			dataSource = ((AbstractManageableDataSource) dataSource).getWrapped();
+		}
+		return dataSource instanceof SnowflakeDataSource ? (SnowflakeDataSource) dataSource : null;
+	}
+	
+	// Returns the SnowflakeDialect doing the work behind whichever dialect the datastore was created with
+	static SnowflakeDialect getSnowflakeDialect(JDBCDataStore dataStore) {
+		
+		SQLDialect dialect = dataStore.getSQLDialect();
+		if (dialect instanceof SnowflakeDialectBasic) {
+			return ((SnowflakeDialectBasic) dialect).delegate;
+		}
+		if (dialect instanceof SnowflakePreparedDialect) {
+			return ((SnowflakePreparedDialect) dialect).delegate;
+		}
+		return (SnowflakeDialect) dialect;
+	}
 
 	// Helper function for logging parameters input by the user in the GeoServer UI
 	private void logParameters(Map<String, ?> params) {
@@ -163,54 +371,263 @@ public class SnowflakeDataStoreFactory extends JDBCDataStoreFactory {
 		}
 	}
 
-	// Creates a BasicDataSource using the parameters input by the user in the GeoServer UI
+	// Creates the pooled SnowflakeDataSource using the parameters input by the user in the GeoServer UI
 	@Override
 	public BasicDataSource createDataSource(Map<String, ?> params) throws IOException {
 		
-		BasicDataSource dataSource = new BasicDataSource();
+		SnowflakeDataSource dataSource = new SnowflakeDataSource();
 		
 		// Required params for connecting to Snowflake
 		String user = (String) USER.lookUp(params);
 		String password = (String) PASSWD.lookUp(params);
-		String account = (String) ACCOUNT.lookUp(params);
-		String cloudSelection = (String) CLOUD_SELECTION.lookUp(params);
 		
 		// Optional params for connecting to Snowflake
 		String database = (String) DATABASE.lookUp(params);
 		String schema = (String) SCHEMA.lookUp(params);
-		
-		// Parse the cloud provider and cloud region from the Cloud Selection dropdown
-		String cloudProvider = cloudSelection.split(" ")[0].toLowerCase();
-		String cloudRegion = cloudSelection.split(" ")[2];
+		String warehouse = (String) WAREHOUSE.lookUp(params);
 
-		// Create a mapping of properties
-		Properties properties = new Properties();
-		properties.put("user", user);
-		properties.put("password", password);
-		properties.put("account", account);
-		properties.put("database", database);
-		String connectStr = "jdbc:snowflake://" + account + "." + cloudRegion + "." + cloudProvider + ".snowflakecomputing.com/";
+		// Finish configuring the datastore
+		dataSource.setUrl(getJDBCUrl(params));
+		dataSource.setUsername(user);
+		dataSource.setPassword(password);
+		dataSource.setDriverClassName(getDriverClassName());
+		dataSource.setAccessToUnderlyingConnectionAllowed(true);
 		
-		// Append the database parameter if one was provided
+		// Login properties, the driver gets user and password from the data source itself
 		if (database != null && !database.isBlank()) {
-			properties.put("db", database);
-			connectStr += "?db=" + database;
+			dataSource.addConnectionProperty("db", database);
 		}
-		
-		// Append the schema parameter if one was provided
 		if (schema != null && !schema.isBlank()) {
-			properties.put("schema", schema);
-			connectStr += "&schema=" + schema;
+			dataSource.addConnectionProperty("schema", schema);
 		}
-		properties.put("tracing", "all");
-
-		// Finish configuring the datastore
-		dataSource.setUrl(connectStr);
-		dataSource.setUsername(user);
-		dataSource.setPassword(password);
-		dataSource.setDriverClassName(getDriverClassName());
-		dataSource.setConnectionProperties(properties.toString());
+		if (warehouse != null && !warehouse.isBlank()) {
+			dataSource.addConnectionProperty("warehouse", warehouse);
+		}
+		
+		// Session parameters can be passed as connection properties, which saves users from needing any startup SQL for the result format
+		dataSource.addConnectionProperty("JDBC_QUERY_RESULT_FORMAT", getResultFormat(params));
+		
+		// Binary values read as text (JSON results) are always hex, so geometries are never decoded in the wrong format
+		dataSource.addConnectionProperty("BINARY_OUTPUT_FORMAT", "HEX");
+		
+		// Keep idle pooled sessions from expiring, otherwise the next borrow pays for a new login
+		Boolean keepAlive = (Boolean) SESSION_KEEP_ALIVE.lookUp(params);
+		if (keepAlive == null || keepAlive) {
+			dataSource.addConnectionProperty("CLIENT_SESSION_KEEP_ALIVE", "true");
+			Integer heartbeat = (Integer) SESSION_KEEP_ALIVE_HEARTBEAT.lookUp(params);
+			if (heartbeat == null) {
+				heartbeat = (Integer) SESSION_KEEP_ALIVE_HEARTBEAT.sample;
+			}
+			if (heartbeat > 0) {
+				dataSource.addConnectionProperty("CLIENT_SESSION_KEEP_ALIVE_HEARTBEAT_FREQUENCY", heartbeat.toString());
+			}
+		}
+		
+		configurePool(dataSource, params);
+		
+		// Sessions get the table oversized filter geometries are loaded into as they are opened, prepared statements bind those instead
+		if (getFilterGeometryMaxBytes(params) > 0 && !Boolean.TRUE.equals(PREPARED_STATEMENTS.lookUp(params))) {
+			dataSource.setFilterGeometryTable(true);
+		}
+		
+		Boolean resultCache = (Boolean) RESULT_CACHE.lookUp(params);
+		if (Boolean.TRUE.equals(resultCache)) {
+			dataSource.setResultCache(createResultCache(params));
+		}
+		
+		Boolean asyncQueries = (Boolean) ASYNC_QUERIES.lookUp(params);
+		if (Boolean.TRUE.equals(asyncQueries)) {
+			SnowflakeAsyncQueries async = new SnowflakeAsyncQueries();
+			String tables = (String) ASYNC_QUERY_TABLES.lookUp(params);
+			if (tables == null || tables.isBlank()) {
+				throw new IOException(ASYNC_QUERIES.key + " needs the tables to run asynchronously in " + ASYNC_QUERY_TABLES.key);
+			}
+			for (String table : tables.split(",")) {
+				if (!table.isBlank()) {
+					async.addTable(table.trim());
+				}
+			}
+			dataSource.setAsyncQueries(async);
+		}
+		
+		SnowflakeRowCounts rowCounts = createRowCounts(params);
+		if (rowCounts != null) {
+			dataSource.setRowCounts(rowCounts);
+		}
+		
+		Boolean keysetPaging = (Boolean) KEYSET_PAGING.lookUp(params);
+		if (Boolean.TRUE.equals(keysetPaging)) {
+			dataSource.setKeysetPaging(new SnowflakeKeysetPaging());
+		}
+		
+		String queryTag = (String) QUERY_TAG.lookUp(params);
+		if (queryTag != null && !queryTag.isBlank()) {
+			dataSource.setQueryTag(queryTag.trim());
+		}
+		Boolean queryMetrics = (Boolean) QUERY_METRICS.lookUp(params);
+		if (Boolean.TRUE.equals(queryMetrics)) {
+			SnowflakeQueryMetrics metrics = new SnowflakeQueryMetrics();
+			Integer slowQueryThreshold = (Integer) SLOW_QUERY_THRESHOLD.lookUp(params);
+			if (slowQueryThreshold != null) {
+				metrics.setSlowQueryThreshold(slowQueryThreshold, TimeUnit.MILLISECONDS);
+			}
+			dataSource.setQueryMetrics(metrics);
+		}
+		
+		// Log in ahead of the first request
+		Boolean warehousePoolSize = (Boolean) WAREHOUSE_POOL_SIZE.lookUp(params);
+		Boolean prewarm = (Boolean) PREWARM_CONNECTIONS.lookUp(params);
+		try {
+			if (Boolean.TRUE.equals(warehousePoolSize)) {
+				dataSource.sizeToWarehouse();
+			}
+		} catch (SQLException e) {
+			try {
+				dataSource.close();
+			} catch (SQLException ignore) {
+				// the original failure is more useful
+			}
+			throw new IOException("Unable to open the Snowflake connection pool: " + e.getMessage(), e);
+		}
+		if (Boolean.TRUE.equals(prewarm)) {
+			// Only an optimization, the pool logs in again on the first requests if the warehouse isn't reachable yet
+			try {
+				dataSource.prewarm();
+			} catch (SQLException e) {
+				LOGGER.log(Level.WARNING, "Unable to prewarm the Snowflake connection pool, connections will be opened on demand", e);
+			}
+		}
+		
+		dataSource.registerMBean(user + "@" + dataSource.getUrl());
 
 		return dataSource;
 	}
+	
+	// Creates the result cache configured by the parameters
+	SnowflakeResultCache createResultCache(Map<String, ?> params) throws IOException {
+		
+		SnowflakeResultCache cache = new SnowflakeResultCache();
+		Integer maxRows = (Integer) RESULT_CACHE_MAX_ROWS.lookUp(params);
+		if (maxRows != null && maxRows > 0) {
+			cache.setMaxRows(maxRows);
+		}
+		Integer ttl = (Integer) RESULT_CACHE_TTL.lookUp(params);
+		if (ttl != null) {
+			cache.setTimeToLive(ttl, TimeUnit.SECONDS);
+		}
+		Integer checkInterval = (Integer) RESULT_CACHE_CHECK_INTERVAL.lookUp(params);
+		if (checkInterval != null) {
+			cache.setCheckInterval(Math.max(checkInterval, 0), TimeUnit.SECONDS);
+		}
+		
+		String layerTTLs = (String) RESULT_CACHE_LAYER_TTL.lookUp(params);
+		if (layerTTLs != null && !layerTTLs.isBlank()) {
+			for (String layerTTL : layerTTLs.split(",")) {
+				String[] parts = layerTTL.split("=");
+				try {
+					cache.setTableTimeToLive(parts[0].trim(), Long.parseLong(parts[1].trim()), TimeUnit.SECONDS);
+				} catch (RuntimeException e) {
+					throw new IOException("Invalid " + RESULT_CACHE_LAYER_TTL.key + " entry, expected TABLE=seconds: " + layerTTL, e);
+				}
+			}
+		}
+		return cache;
+	}
+	
+	// Creates the row counts configured by the parameters, null for exact counts
+	SnowflakeRowCounts createRowCounts(Map<String, ?> params) throws IOException {
+		
+		String mode = (String) ROW_COUNT_MODE.lookUp(params);
+		SnowflakeRowCounts.Mode rowCountMode = SnowflakeRowCounts.Mode.EXACT;
+		if (mode != null && !mode.isBlank()) {
+			try {
+				rowCountMode = SnowflakeRowCounts.Mode.valueOf(mode.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unknown " + ROW_COUNT_MODE.key + ": " + mode, e);
+			}
+		}
+		if (rowCountMode == SnowflakeRowCounts.Mode.EXACT) {
+			return null;
+		}
+		
+		SnowflakeRowCounts rowCounts = new SnowflakeRowCounts(rowCountMode);
+		Double samplePercent = (Double) ROW_COUNT_SAMPLE_PERCENT.lookUp(params);
+		if (samplePercent != null) {
+			rowCounts.setSamplePercent(samplePercent);
+		}
+		Integer ttl = (Integer) ROW_COUNT_TTL.lookUp(params);
+		if (ttl != null) {
+			rowCounts.setTimeToLive(Math.max(ttl, 0), TimeUnit.SECONDS);
+		}
+		return rowCounts;
+	}
+	
+	// Applies the standard GeoTools pool parameters, which are part of this factory's parameters through super.setupParameters()
+	void configurePool(SnowflakeDataSource dataSource, Map<String, ?> params) throws IOException {
+		
+		Integer minConn = (Integer) MINCONN.lookUp(params);
+		if (minConn != null) {
+			dataSource.setMinIdle(minConn);
+		}
+		Integer maxConn = (Integer) MAXCONN.lookUp(params);
+		if (maxConn != null) {
+			dataSource.setMaxActive(maxConn);
+			dataSource.setMaxIdle(maxConn);
+		}
+		Integer maxWait = (Integer) MAXWAIT.lookUp(params);
+		if (maxWait != null && maxWait != -1) {
+			dataSource.setMaxWait(maxWait * 1000L);
+		}
+		
+		Boolean validate = (Boolean) VALIDATECONN.lookUp(params);
+		if (validate != null && validate) {
+			dataSource.setTestOnBorrow(true);
+			dataSource.setValidationQuery(getValidationQuery());
+		}
+		Integer validationInterval = (Integer) VALIDATION_INTERVAL.lookUp(params);
+		if (validationInterval != null) {
+			dataSource.setValidationInterval(Math.max(validationInterval, 0), TimeUnit.SECONDS);
+		}
+		
+		// Idle eviction also tops the pool back up to its minimum idle connections
+		Boolean testWhileIdle = (Boolean) TEST_WHILE_IDLE.lookUp(params);
+		if (testWhileIdle != null && testWhileIdle) {
+			dataSource.setTestWhileIdle(true);
+			dataSource.setValidationQuery(getValidationQuery());
+		}
+		Integer evictionPeriod = (Integer) TIME_BETWEEN_EVICTOR_RUNS.lookUp(params);
+		if (evictionPeriod != null && evictionPeriod > 0) {
+			dataSource.setTimeBetweenEvictionRunsMillis(evictionPeriod * 1000L);
+		}
+		Integer minEvictableTime = (Integer) MIN_EVICTABLE_TIME.lookUp(params);
+		if (minEvictableTime != null) {
+			dataSource.setMinEvictableIdleTimeMillis(minEvictableTime * 1000L);
+		}
+		Integer testsPerRun = (Integer) EVICTOR_TESTS_PER_RUN.lookUp(params);
+		if (testsPerRun != null) {
+			dataSource.setNumTestsPerEvictionRun(testsPerRun);
+		}
+	}
+	
+	// Returns the result format requested by the user, falling back to JSON when the JVM won't let the driver's Arrow reader access java.nio
+	String getResultFormat(Map<String, ?> params) throws IOException {
+		
+		String resultFormat = (String) RESULT_FORMAT.lookUp(params);
+		if (resultFormat == null || resultFormat.isBlank()) {
+			resultFormat = (String) RESULT_FORMAT.sample;
+		}
+		resultFormat = resultFormat.trim().toUpperCase();
+		
+		if ("ARROW".equals(resultFormat) && !isArrowSupported()) {
+			LOGGER.warning("Arrow result format requested but java.nio is not opened to the Snowflake driver, falling back to JSON. "
+					+ "Start the JVM with --add-opens=java.base/java.nio=ALL-UNNAMED to use Arrow");
+			return "JSON";
+		}
+		return resultFormat;
+	}
+	
+	// The driver's Arrow reader uses reflection on java.nio buffers, which Java 16+ only allows when the package is opened to it
+	static boolean isArrowSupported() {
+		return Buffer.class.getModule().isOpen("java.nio", SnowflakeDataStoreFactory.class.getModule());
+	}
 }
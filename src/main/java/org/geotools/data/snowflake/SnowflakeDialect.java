@@ -2,19 +2,28 @@ package org.geotools.data.snowflake;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.geotools.api.feature.FeatureVisitor;
 import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
 import org.geotools.api.feature.type.GeometryDescriptor;
 import org.geotools.data.jdbc.FilterToSQL;
-import org.geotools.geometry.jts.WKBReader;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.jdbc.BasicSQLDialect;
 import org.geotools.jdbc.ColumnMetadata;
 import org.geotools.jdbc.JDBCDataStore;
@@ -32,9 +41,12 @@ import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.Polygon;
 import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
 
 public class SnowflakeDialect extends SQLDialect {
 	
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeDialect.class);
+	
 	// Enum for Geographic types to map to SQL
 	public static enum GeoTypes {POINT, MULTIPOINT, LINESTRING, MULTILINESTRING, POLYGON, MULTIPOLYGON, GEOMETRY, GEOMETRY_COLLECTION, GEOGRAPHY};
 	
@@ -48,6 +60,46 @@ public class SnowflakeDialect extends SQLDialect {
 //    protected Integer GEOMETRY_COLLECTION = Integer.valueOf(2008);
 //    protected Integer GEOGRAPHY = Integer.valueOf(2009);
 
+	// Number of pixels across the tile described by Hints.GEOMETRY_CLIP, when given geometries are also simplified to one pixel
+	public static final Hints.Key TILE_EXTENT = new Hints.Key(Integer.class);
+	
+	// Geometry column metadata shared by every layer of the datastore
+	private final SnowflakeGeometryMetadataCache metadataCache = new SnowflakeGeometryMetadataCache();
+	
+	// Whether the first SRID lookup in a schema loads the metadata of all its geometry columns. Off by default, since it probes
+	// every GEOMETRY column of the schema even when only a single layer is used
+	private boolean seedGeometryMetadata = false;
+	
+	// WKB decoders are cheap to keep but not thread safe, so each result set read from the datastore gets its own. They are weakly held
+	// by the result set and go with it, rather than stay on the threads of the container after the datastore is gone
+	private final Map<ResultSet, SnowflakeWKBDecoder> decoders = Collections.synchronizedMap(new WeakHashMap<>());
+	
+	// Plain min x, min y, max x, max y columns used to prefilter BBOX queries on the layers that have them
+	private String[] envelopeColumns;
+	
+	// H3 or geohash cell columns of point layers, keyed on upper case table names
+	private Map<String, SnowflakeCellIndex> cellIndexes = Collections.emptyMap();
+	
+	// Defaults for the SnowflakeBulkWriter instances created against this datastore
+	private SnowflakeBulkWriter.Mode bulkWriteMode = SnowflakeBulkWriter.Mode.BATCH;
+	private int bulkWriteBatchSize = 10000;
+	private boolean bulkWriteFlushOnCommit = true;
+	
+	// Whether tile requests have Snowflake clip (and simplify) geometries instead of sending them at full resolution
+	private boolean tilePushdown;
+	
+	// Whether the simplification and generalization distances of rendering queries are applied with ST_SIMPLIFY
+	private boolean simplification = true;
+	
+	// Distance literal geometries of filters are simplified to before being sent, 0 sends them as they are
+	private double filterGeometryTolerance;
+	
+	// Largest literal geometry (in WKB bytes) the basic dialect writes into a statement, 0 writes them all
+	private int filterGeometryMaxBytes;
+	
+	// Where the basic dialect registers the larger ones, those of the datastore's SnowflakeDataSource. Without it they are all written
+	private SnowflakeFilterGeometries filterGeometries;
+
 	// Constructor method
 	public SnowflakeDialect(JDBCDataStore dataStore) {
 		super(dataStore);
@@ -90,12 +142,39 @@ public class SnowflakeDialect extends SQLDialect {
 		}
     }
 	
-	// Returns the SRID of the provided geometry column
+	// Returns the SRID of the provided geometry column, served from the metadata cache whenever possible
 	@Override
 	public Integer getGeometrySRID(String schemaName, String tableName, String columnName, Connection cx)
 			throws SQLException {
 		
-		// Execute SELECT TOP 1 ST_SRID(<columnName>) FROM <tableName> WHERE <columnName> IS NOT NULL; 
+		SnowflakeGeometryMetadataCache.Entry cached = metadataCache.get(schemaName, tableName, columnName);
+		if (cached != null) {
+			return cached.getSRID();
+		}
+		
+		// Load every geometry column of the schema at once the first time one of its layers is looked up
+		if (seedGeometryMetadata && metadataCache.isEnabled() && !metadataCache.isSeeded(schemaName)) {
+			try {
+				metadataCache.seed(schemaName, cx, this);
+			} catch (SQLException e) {
+				LOGGER.log(Level.FINE, "Failed to seed geometry metadata for schema " + schemaName + ", falling back to per column lookups", e);
+			}
+			
+			cached = metadataCache.get(schemaName, tableName, columnName);
+			if (cached != null) {
+				return cached.getSRID();
+			}
+		}
+		
+		Integer srid = lookupGeometrySRID(schemaName, tableName, columnName, cx);
+		metadataCache.put(schemaName, tableName, columnName, srid, null);
+		return srid;
+	}
+	
+	// Runs SELECT TOP 1 ST_SRID(<columnName>) FROM <tableName> WHERE <columnName> IS NOT NULL against a single column
+	Integer lookupGeometrySRID(String schemaName, String tableName, String columnName, Connection cx)
+			throws SQLException {
+		
 		StringBuffer sql = new StringBuffer();
 		
 		sql.append("SELECT TOP 1 ST_SRID(");
@@ -103,17 +182,16 @@ public class SnowflakeDialect extends SQLDialect {
 		sql.append(") FROM ");
 		
 		if (schemaName != null) {
-			encodeTableName(schemaName, sql);
+			encodeSchemaName(schemaName, sql);
 			sql.append(".");
 		}
 		
-		encodeSchemaName(tableName, sql);
+		encodeTableName(tableName, sql);
 		sql.append(" WHERE ");
 		encodeColumnName(null, columnName, sql);
 		sql.append(" IS NOT NULL");
 		
-		
-		System.out.println("getGeometrySRID() -- " + sql.toString());
+		LOGGER.fine("getGeometrySRID() -- " + sql.toString());
 		
 		Statement st = cx.createStatement();
 		try {
@@ -125,7 +203,7 @@ public class SnowflakeDialect extends SQLDialect {
 					return Integer.valueOf(rs.getInt(1));
 				} else {
 					// Couldn't find SRID
-					System.out.println("Couldn't find SRID");
+					LOGGER.fine("Couldn't find SRID for " + tableName + "." + columnName);
 					return null;
 				}
 			} finally {
@@ -135,30 +213,281 @@ public class SnowflakeDialect extends SQLDialect {
 			dataStore.closeSafe(st);
 		}
 	}
+	
+	// Returns the cache holding the SRID and native type of geometry columns, e.g. to invalidate it after a schema change
+	public SnowflakeGeometryMetadataCache getGeometryMetadataCache() {
+		return metadataCache;
+	}
+	
+	// Enables loading the metadata of every geometry column in a schema with a single round trip on first use
+	public void setSeedGeometryMetadata(boolean seedGeometryMetadata) {
+		this.seedGeometryMetadata = seedGeometryMetadata;
+	}
+	
+	public boolean isSeedGeometryMetadata() {
+		return seedGeometryMetadata;
+	}
+	
+	public String[] getEnvelopeColumns() {
+		return envelopeColumns;
+	}
+	
+	public void setEnvelopeColumns(String[] envelopeColumns) {
+		this.envelopeColumns = envelopeColumns;
+	}
+	
+	public Map<String, SnowflakeCellIndex> getCellIndexes() {
+		return cellIndexes;
+	}
+	
+	public void setCellIndexes(Map<String, SnowflakeCellIndex> cellIndexes) {
+		this.cellIndexes = cellIndexes == null ? Collections.emptyMap() : cellIndexes;
+	}
+	
+	public SnowflakeBulkWriter.Mode getBulkWriteMode() {
+		return bulkWriteMode;
+	}
+	
+	public void setBulkWriteMode(SnowflakeBulkWriter.Mode bulkWriteMode) {
+		this.bulkWriteMode = bulkWriteMode;
+	}
+	
+	public int getBulkWriteBatchSize() {
+		return bulkWriteBatchSize;
+	}
+	
+	public void setBulkWriteBatchSize(int bulkWriteBatchSize) {
+		this.bulkWriteBatchSize = bulkWriteBatchSize;
+	}
+	
+	public boolean isBulkWriteFlushOnCommit() {
+		return bulkWriteFlushOnCommit;
+	}
+	
+	public void setBulkWriteFlushOnCommit(boolean bulkWriteFlushOnCommit) {
+		this.bulkWriteFlushOnCommit = bulkWriteFlushOnCommit;
+	}
+	
+	public boolean isTilePushdown() {
+		return tilePushdown;
+	}
+	
+	public void setTilePushdown(boolean tilePushdown) {
+		this.tilePushdown = tilePushdown;
+	}
+	
+	public boolean isSimplification() {
+		return simplification;
+	}
+	
+	public void setSimplification(boolean simplification) {
+		this.simplification = simplification;
+	}
+	
+	public double getFilterGeometryTolerance() {
+		return filterGeometryTolerance;
+	}
+	
+	public void setFilterGeometryTolerance(double filterGeometryTolerance) {
+		this.filterGeometryTolerance = filterGeometryTolerance;
+	}
+	
+	public int getFilterGeometryMaxBytes() {
+		return filterGeometryMaxBytes;
+	}
+	
+	public void setFilterGeometryMaxBytes(int filterGeometryMaxBytes) {
+		this.filterGeometryMaxBytes = filterGeometryMaxBytes;
+	}
+	
+	SnowflakeFilterGeometries getFilterGeometries() {
+		return filterGeometries;
+	}
+	
+	void setFilterGeometries(SnowflakeFilterGeometries filterGeometries) {
+		this.filterGeometries = filterGeometries;
+	}
+	
+	// Advertises the simplification hints, and the clip mask and tile extent hints when tile pushdown is enabled, so renderers hand the
+	// distance and the tile down with the query instead of simplifying and clipping full resolution geometries themselves
+	@Override
+	public void addSupportedHints(Set<Hints.Key> hints) {
+		
+		if (simplification) {
+			hints.add(Hints.GEOMETRY_SIMPLIFICATION);
+			hints.add(Hints.GEOMETRY_GENERALIZATION);
+		}
+		if (tilePushdown) {
+			hints.add(Hints.GEOMETRY_CLIP);
+			hints.add(TILE_EXTENT);
+		}
+	}
+	
+	// Gives the helper classes of this package access to the datastore's utility methods
+	JDBCDataStore getDataStore() {
+		return dataStore;
+	}
 
-	// Encodes the provided geometry column as Well-Known-Binary and appends it to the SQL Buffer
+	// Encodes the provided geometry column as Well-Known-Binary and appends it to the SQL Buffer, cut down to the tile when the query
+	// carries one and simplified when the renderer asked for a simplification or generalization distance
 	@Override
 	public void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, int srid, Hints hints, StringBuffer sql) {
 		
+		Geometry clip = tilePushdown && hints != null ? (Geometry) hints.get(Hints.GEOMETRY_CLIP) : null;
+		Envelope tile = clip != null && !clip.isEmpty() ? clip.getEnvelopeInternal() : null;
+		boolean geography = isGeography(gatt);
+		double tolerance = getTolerance(hints, tile, geography);
+		
 		sql.append("ST_ASWKB(");
-		encodeColumnName(prefix, gatt.getLocalName(), sql);
+		if (tile != null) {
+			encodeTileGeometry(gatt, prefix, tile, tolerance, sql);
+		} else {
+			StringBuffer column = new StringBuffer();
+			encodeColumnName(prefix, gatt.getLocalName(), column);
+			encodeSimplified(column, tolerance, geography, sql);
+		}
 		sql.append(")");
 	}
 	
-	// Appends code for getting the bounding box of the provided geometry column to the SQL Buffer
+	private static boolean isGeography(GeometryDescriptor gatt) {
+		return "GEOGRAPHY".equalsIgnoreCase((String) gatt.getUserData().get(JDBCDataStore.JDBC_NATIVE_TYPENAME));
+	}
+	
+	// Returns the ST_SIMPLIFY tolerance for the query, 0 to keep full resolution: a pixel of the tile when its extent is known, the
+	// simplification or generalization distance otherwise. Those come in the layer's units, degrees for geographies, which ST_SIMPLIFY
+	// wants in meters. Degrees of longitude shrink towards the poles, so the tile's latitude is used when there is one
+	double getTolerance(Hints hints, Envelope tile, boolean geography) {
+		
+		if (hints == null) {
+			return 0;
+		}
+		Integer extent = (Integer) hints.get(TILE_EXTENT);
+		if (tile != null && extent != null && extent > 0) {
+			return getPixelSize(tile, extent, geography);
+		}
+		if (!simplification) {
+			return 0;
+		}
+		
+		Double distance = (Double) hints.get(Hints.GEOMETRY_SIMPLIFICATION);
+		if (distance == null) {
+			distance = (Double) hints.get(Hints.GEOMETRY_GENERALIZATION);
+		}
+		if (distance == null || !(distance > 0)) {
+			return 0;
+		}
+		if (!geography) {
+			return distance;
+		}
+		double latitude = tile != null ? Math.min(Math.max(Math.abs(tile.getMinY()), Math.abs(tile.getMaxY())), 89) : 0;
+		return distance * SnowflakeFilterToSQLHelper.METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+	}
+	
+	// Appends the geometry clipped to the tile and simplified with the tolerance. Geometries inside the tile skip the intersection,
+	// which at high zoom levels is most of them. Coordinates aren't quantized here, Snowflake has no snap to grid and the tile encoder
+	// quantizes them anyway
+	void encodeTileGeometry(GeometryDescriptor gatt, String prefix, Envelope tile, double tolerance, StringBuffer sql) {
+		
+		boolean geography = isGeography(gatt);
+		Integer nativeSrid = (Integer) gatt.getUserData().get(JDBCDataStore.JDBC_NATIVE_SRID);
+		
+		// Geographies live on [-180, 180] x [-90, 90], and boxes half the world wide or more are ambiguous on the sphere
+		Envelope box = geography ? tile.intersection(new Envelope(-180, 180, -90, 90)) : tile;
+		boolean clip = !box.isNull() && (!geography || box.getWidth() < 180);
+		
+		StringBuffer column = new StringBuffer();
+		encodeColumnName(prefix, gatt.getLocalName(), column);
+		
+		if (!clip) {
+			encodeSimplified(column, tolerance, geography, sql);
+			return;
+		}
+		
+		sql.append("CASE WHEN ST_XMIN(").append(column).append(") >= ").append(toSQL(box.getMinX()));
+		sql.append(" AND ST_XMAX(").append(column).append(") <= ").append(toSQL(box.getMaxX()));
+		sql.append(" AND ST_YMIN(").append(column).append(") >= ").append(toSQL(box.getMinY()));
+		sql.append(" AND ST_YMAX(").append(column).append(") <= ").append(toSQL(box.getMaxY()));
+		sql.append(" THEN ");
+		encodeSimplified(column, tolerance, geography, sql);
+		sql.append(" ELSE ");
+		
+		StringBuffer intersection = new StringBuffer("ST_INTERSECTION(").append(column).append(", ");
+		String wkt = "POLYGON((" + toSQL(box.getMinX()) + " " + toSQL(box.getMinY()) + ", " + toSQL(box.getMaxX()) + " " + toSQL(box.getMinY())
+				+ ", " + toSQL(box.getMaxX()) + " " + toSQL(box.getMaxY()) + ", " + toSQL(box.getMinX()) + " " + toSQL(box.getMaxY()) + ", "
+				+ toSQL(box.getMinX()) + " " + toSQL(box.getMinY()) + "))";
+		if (geography) {
+			intersection.append("ST_GEOGFROMTEXT('").append(wkt).append("'))");
+		} else {
+			intersection.append("ST_GEOMFROMTEXT('").append(wkt).append("', ").append(nativeSrid != null && nativeSrid > 0 ? nativeSrid : 0)
+					.append("))");
+		}
+		encodeSimplified(intersection, tolerance, geography, sql);
+		sql.append(" END");
+	}
+	
+	// Wraps the geometry in ST_SIMPLIFY when there is a tolerance. Geographies keep the features that collapse below it, so small
+	// polygons still render as a dot instead of vanishing (GEOMETRY has no such flag)
+	private static void encodeSimplified(CharSequence geometry, double tolerance, boolean geography, StringBuffer sql) {
+		
+		if (tolerance > 0) {
+			sql.append("ST_SIMPLIFY(").append(geometry).append(", ").append(toSQL(tolerance)).append(geography ? ", TRUE)" : ")");
+		} else {
+			sql.append(geometry);
+		}
+	}
+	
+	// Returns the size of a pixel of the tile, in meters for geographies (ST_SIMPLIFY takes meters for them), measured where the
+	// tile's longitude degrees are shortest so no detail visible anywhere in the tile is dropped
+	static double getPixelSize(Envelope tile, int extent, boolean geography) {
+		
+		if (!geography) {
+			return Math.min(tile.getWidth(), tile.getHeight()) / extent;
+		}
+		double latitude = Math.min(Math.max(Math.abs(tile.getMinY()), Math.abs(tile.getMaxY())), 89);
+		double width = tile.getWidth() * SnowflakeFilterToSQLHelper.METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+		double height = tile.getHeight() * SnowflakeFilterToSQLHelper.METERS_PER_DEGREE;
+		return Math.min(width, height) / extent;
+	}
+	
+	private static String toSQL(double value) {
+		return BigDecimal.valueOf(value).toPlainString();
+	}
+	
+	// Appends a single aggregate computing the bounding box of the provided geometry column to the SQL Buffer, as the WKB of the line
+	// from its lower left to its upper right corner. Snowflake reduces the extent server side, so no geometry bytes travel over the wire
+	// and GeoTools gets one row back. The corners are GEOMETRY points, which unlike GEOGRAPHY ones take any coordinates. The aggregates
+	// are NULL when no row has a geometry, and so is the line
 	@Override
 	public void encodeGeometryEnvelope(String tableName, String geometryColumn, StringBuffer sql) {
 
-		sql.append("ST_ASWKB(ST_ENVELOPE(");
+		sql.append("ST_ASWKB(ST_MAKELINE(ST_MAKEGEOMPOINT(");
+		encodeEnvelopeBound("MIN", "ST_XMIN", geometryColumn, sql);
+		sql.append(", ");
+		encodeEnvelopeBound("MIN", "ST_YMIN", geometryColumn, sql);
+		sql.append("), ST_MAKEGEOMPOINT(");
+		encodeEnvelopeBound("MAX", "ST_XMAX", geometryColumn, sql);
+		sql.append(", ");
+		encodeEnvelopeBound("MAX", "ST_YMAX", geometryColumn, sql);
+		sql.append(")))");
+	}
+	
+	// Appends <aggregate>(<function>(<geometryColumn>)) to the SQL Buffer
+	private void encodeEnvelopeBound(String aggregate, String function, String geometryColumn, StringBuffer sql) {
+		
+		sql.append(aggregate).append("(").append(function).append("(");
 		encodeColumnName(null, geometryColumn, sql);
 		sql.append("))");
 	}
 	
-	// Converts the provided column into Well-Known-Binary and returns the bounding Envelope using the internal implementation from GeoServer
+	// Reads the extent produced by encodeGeometryEnvelope(), or any other geometry such as an ST_ENVELOPE in custom SQL, as the
+	// envelope of its WKB. NULL and empty geometries give an empty envelope
 	@Override
 	public Envelope decodeGeometryEnvelope(ResultSet rs, int column, Connection cx) throws SQLException, IOException {
 		
-		byte[] wkb = rs.getBytes(column);
+		byte[] wkb = getWKB(rs.getObject(column));
+		if (wkb == null) {
+			return new Envelope();
+		}
 		
 		try {
 			Geometry geom = new WKBReader().read(wkb);
@@ -169,21 +498,174 @@ public class SnowflakeDialect extends SQLDialect {
 		}
 	}
 	
-	// Returns the Well-Known-Binary representation of the provided geometry column
+	// Answers the bounds of unfiltered queries from the envelope columns, when the layer has them. MIN and MAX of plain numeric columns
+	// come from the micro-partition metadata, without scanning the table or computing an envelope per geometry
+	@Override
+	public List<ReferencedEnvelope> getOptimizedBounds(String schema, SimpleFeatureType featureType, Connection cx)
+			throws SQLException, IOException {
+		
+		StringBuffer sql = new StringBuffer();
+		if (!encodeOptimizedBounds(schema, featureType, sql)) {
+			return null;
+		}
+		
+		LOGGER.fine("getOptimizedBounds() -- " + sql);
+		
+		Statement st = cx.createStatement();
+		try {
+			ResultSet rs = st.executeQuery(sql.toString());
+			try {
+				ReferencedEnvelope bounds = new ReferencedEnvelope(featureType.getGeometryDescriptor().getCoordinateReferenceSystem());
+				if (rs.next() && rs.getObject(1) != null) {
+					bounds.init(rs.getDouble(1), rs.getDouble(3), rs.getDouble(2), rs.getDouble(4));
+				}
+				return Collections.singletonList(bounds);
+			} finally {
+				dataStore.closeSafe(rs);
+			}
+		} finally {
+			dataStore.closeSafe(st);
+		}
+	}
+	
+	// Appends SELECT MIN(<min x>), MIN(<min y>), MAX(<max x>), MAX(<max y>) FROM <table> for a table with one geometry and the envelope
+	// columns, returns false for the others (and for SQL views, whose bounds aren't those of a table)
+	boolean encodeOptimizedBounds(String schema, SimpleFeatureType featureType, StringBuffer sql) {
+		
+		if (envelopeColumns == null || featureType.getGeometryDescriptor() == null
+				|| (dataStore != null && dataStore.getVirtualTables().containsKey(featureType.getTypeName()))) {
+			return false;
+		}
+		int geometries = 0;
+		for (AttributeDescriptor descriptor : featureType.getAttributeDescriptors()) {
+			if (descriptor instanceof GeometryDescriptor) {
+				geometries++;
+			}
+		}
+		for (String column : envelopeColumns) {
+			if (featureType.getDescriptor(column) == null) {
+				return false;
+			}
+		}
+		if (geometries != 1) {
+			return false;
+		}
+		
+		sql.append("SELECT ");
+		for (int i = 0; i < envelopeColumns.length; i++) {
+			sql.append(i > 0 ? ", " : "").append(i < 2 ? "MIN(" : "MAX(");
+			encodeColumnName(null, envelopeColumns[i], sql);
+			sql.append(")");
+		}
+		sql.append(" FROM ");
+		if (schema != null) {
+			encodeSchemaName(schema, sql);
+			sql.append(".");
+		}
+		encodeTableName(featureType.getTypeName(), sql);
+		return true;
+	}
+	
+	// Snowflake pages with LIMIT and OFFSET, so the rows before a page don't have to be sent over and skipped on the client
+	@Override
+	public boolean isLimitOffsetSupported() {
+		return true;
+	}
+	
+	// Appends LIMIT <limit> OFFSET <offset>, with LIMIT NULL when there's only an offset
+	@Override
+	public void applyLimitOffset(StringBuffer sql, int limit, int offset) {
+		
+		if (limit >= 0 && limit < Integer.MAX_VALUE) {
+			sql.append(" LIMIT ").append(limit);
+		} else if (offset > 0) {
+			sql.append(" LIMIT NULL");
+		}
+		if (offset > 0) {
+			sql.append(" OFFSET ").append(offset);
+		}
+	}
+	
+	// Keeps the standard aggregates (count, min, max, sum, avg and unique values, grouped or not) and adds the approximate distinct count
+	@Override
+	public void registerAggregateFunctions(Map<Class<? extends FeatureVisitor>, String> aggregates) {
+		super.registerAggregateFunctions(aggregates);
+		aggregates.put(SnowflakeApproxUniqueCountVisitor.class, "APPROX_COUNT_DISTINCT");
+	}
+	
+	// Decodes the Well-Known-Binary value of the provided geometry column with the result set's reusable decoder
 	@Override
 	public Geometry decodeGeometryValue(GeometryDescriptor descriptor, ResultSet rs, String column,
 			GeometryFactory factory, Connection cx, Hints hints) throws IOException, SQLException {
 		
-		byte[] bytes = rs.getBytes(column);
+		byte[] bytes = getWKB(rs.getObject(column));
 		
 		if (bytes == null) {
 			return null;
 		}
 
+		SnowflakeQueryMetrics.Query query = SnowflakeQueryMetrics.getQuery(rs);
+		long start = query != null ? System.nanoTime() : 0;
 		try {
-			return new WKBReader(factory).read(bytes);
+			return getDecoder(rs, factory).decode(bytes);
 		} catch (ParseException e) {
 			throw (IOException) new IOException("Error decoding wkb").initCause(e);
+		} finally {
+			if (query != null) {
+				query.decoded(bytes.length, System.nanoTime() - start);
+			}
+		}
+	}
+	
+	// Records the layer a statement of the datastore works on, which tags its query and is part of its metrics
+	public void onStatement(Statement statement, SimpleFeatureType featureType) {
+		if (featureType != null) {
+			SnowflakeConnectionProxy.setLayer(statement, featureType.getTypeName());
+		}
+	}
+	
+	// Returns the decoder of the result set, replacing it when the caller switched to a different GeometryFactory
+	SnowflakeWKBDecoder getDecoder(ResultSet rs, GeometryFactory factory) {
+		
+		SnowflakeWKBDecoder decoder = decoders.get(rs);
+		if (decoder == null || decoder.getFactory() != factory) {
+			decoder = new SnowflakeWKBDecoder(factory);
+			decoders.put(rs, decoder);
+		}
+		return decoder;
+	}
+	
+	// Returns the raw Well-Known-Binary bytes of an ST_ASWKB() value regardless of the session's result format.
+	// Arrow hands BINARY columns back as byte[], while JSON results can surface them as text. Sessions of the datastore are opened with
+	// BINARY_OUTPUT_FORMAT=HEX (see SnowflakeDataStoreFactory), so text is always decoded as hex rather than guessed from its characters
+	static byte[] getWKB(Object value) throws SQLException {
+		
+		if (value == null) {
+			return null;
+		}
+		
+		if (value instanceof byte[]) {
+			return (byte[]) value;
+		}
+		
+		if (value instanceof Blob) {
+			Blob blob = (Blob) value;
+			long length = blob.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new SQLException("Geometry of " + length + " bytes is too large to decode");
+			}
+			return blob.getBytes(1, (int) length);
+		}
+		
+		String text = value.toString().trim();
+		if (text.isEmpty()) {
+			return null;
+		}
+		
+		try {
+			return HexFormat.of().parseHex(text);
+		} catch (IllegalArgumentException e) {
+			throw new SQLException("Expected a hex WKB value, check the session's BINARY_OUTPUT_FORMAT is HEX", e);
 		}
 	}
 	
@@ -5,11 +5,18 @@ import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
+import org.geotools.api.feature.FeatureVisitor;
+import org.geotools.api.feature.simple.SimpleFeatureType;
 import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.filter.Filter;
 import org.geotools.data.jdbc.FilterToSQL;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.jdbc.BasicSQLDialect;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.util.factory.Hints;
@@ -17,8 +24,6 @@ import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.io.ParseException;
-import org.locationtech.jts.io.WKBReader;
 import org.locationtech.jts.io.WKTWriter;
 
 public class SnowflakeDialectBasic extends BasicSQLDialect {
@@ -67,6 +72,12 @@ public class SnowflakeDialectBasic extends BasicSQLDialect {
 		delegate.encodeGeometryColumn(gatt, prefix, srid, hints, sql);
 	}
 	
+	// Advertises the simplification and tile hints
+	@Override
+	public void addSupportedHints(Set<Hints.Key> hints) {
+		delegate.addSupportedHints(hints);
+	}
+	
 	// Uses the default implementation of SQLDialect.encodeColumnType()
 	@Override
 	public void encodeColumnType(String sqlTypeName, StringBuffer sql) {
@@ -113,40 +124,89 @@ public class SnowflakeDialectBasic extends BasicSQLDialect {
     	}
     }
 
-    // Returns the Well-Known-Binary representation of the provided geometry column
+    // Decodes the Well-Known-Binary value of the provided geometry column
     @Override
     public Geometry decodeGeometryValue(GeometryDescriptor descriptor, ResultSet rs, String column, GeometryFactory factory, Connection cx, Hints hints) throws IOException, SQLException {
-    	
-    	byte[] bytes = rs.getBytes(column);
-    	if (bytes == null) {
-    		return null;
-    	}
-    	
-    	try {
-    		return new WKBReader(factory).read(bytes);
-    	} catch (ParseException e) {
-    		throw (IOException) new IOException("Error decoding wkb").initCause(e);
-    	}
+    	return delegate.decodeGeometryValue(descriptor, rs, column, factory, cx, hints);
+    }
+
+    // Tags the statements of the layer, see SnowflakeDialect.onStatement()
+    @Override
+    public void onSelect(Statement select, Connection cx, SimpleFeatureType featureType) throws SQLException {
+    	delegate.onStatement(select, featureType);
+    }
+    
+    @Override
+    public void onInsert(Statement insert, Connection cx, SimpleFeatureType featureType) throws SQLException {
+    	delegate.onStatement(insert, featureType);
+    }
+    
+    @Override
+    public void onUpdate(Statement update, Connection cx, SimpleFeatureType featureType) throws SQLException {
+    	delegate.onStatement(update, featureType);
+    }
+    
+    @Override
+    public void onDelete(Statement delete, Connection cx, SimpleFeatureType featureType) throws SQLException {
+    	delegate.onStatement(delete, featureType);
     }
     
-    // Appends code for getting the bounding box of the provided geometry column to the SQL Buffer
+    // Appends the aggregate computing the bounding box of the provided geometry column to the SQL Buffer
     @Override
     public void encodeGeometryEnvelope(String tableName, String geometryColumn, StringBuffer sql) {
     	delegate.encodeGeometryEnvelope(tableName, geometryColumn, sql);
     }
     
-    // Converts the provided column into Well-Known-Binary and returns the bounding Envelope using the internal implementation from GeoServer
+    // Reads the extent computed by encodeGeometryEnvelope() into an Envelope
     @Override
     public Envelope decodeGeometryEnvelope(ResultSet rs, int column, Connection cx) throws SQLException, IOException {
     	return delegate.decodeGeometryEnvelope(rs, column, cx);
     }
     
+    // Answers the bounds of unfiltered queries from the envelope columns
+    @Override
+    public List<ReferencedEnvelope> getOptimizedBounds(String schema, SimpleFeatureType featureType, Connection cx) throws SQLException, IOException {
+    	return delegate.getOptimizedBounds(schema, featureType, cx);
+    }
+    
+    // Snowflake supports LIMIT and OFFSET
+    @Override
+    public boolean isLimitOffsetSupported() {
+    	return delegate.isLimitOffsetSupported();
+    }
+    
+    // Appends LIMIT and OFFSET to page the query in Snowflake
+    @Override
+    public void applyLimitOffset(StringBuffer sql, int limit, int offset) {
+    	delegate.applyLimitOffset(sql, limit, offset);
+    }
+    
+    // Registers the standard aggregates and Snowflake's approximate distinct count
+    @Override
+    public void registerAggregateFunctions(Map<Class<? extends FeatureVisitor>, String> aggregates) {
+    	delegate.registerAggregateFunctions(aggregates);
+    }
+    
     // Creates, configures, and returns the instance of SnowflakeFilterToSQL to use with the Snowflake Datastore
     @Override
 	public FilterToSQL createFilterToSQL() {
     	
 		SnowflakeFilterToSQL fts = new SnowflakeFilterToSQL(new StringWriter());
 		fts.setEscapeBackslash(true);
+		fts.helper.setEnvelopeColumns(delegate.getEnvelopeColumns());
+		fts.helper.setCellIndexes(delegate.getCellIndexes());
+		fts.helper.setFilterGeometryTolerance(delegate.getFilterGeometryTolerance());
+		fts.setFilterGeometryTable(delegate.getFilterGeometryMaxBytes(), delegate.getFilterGeometries());
 		return fts;
 	}
+    
+    // Splits the filter into the part encoded in SQL and the part evaluated in memory, pushing an intersection prefilter down for the
+    // spatial operators Snowflake can't evaluate itself, leaving distances in units that can't be converted to memory and checking
+    // GEOGRAPHY boxes too wide for a polygon there as well
+    @Override
+    public Filter[] splitFilter(Filter filter, SimpleFeatureType schema) {
+    	return SnowflakeFilterToSQLHelper.addIntersectsPrefilters(
+    			SnowflakeFilterToSQLHelper.addWideBBoxPostfilters(
+    					SnowflakeFilterToSQLHelper.moveUnsupportedDistances(super.splitFilter(filter, schema), schema), schema));
+    }
 }
@@ -0,0 +1,137 @@
+package org.geotools.data.snowflake;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.geotools.util.logging.Logging;
+
+import net.snowflake.client.jdbc.SnowflakeConnection;
+
+// Literal geometries the basic dialect leaves out of its statements because they are larger than the filter geometry max bytes. The
+// encoder registers them here under a hash of their WKB and reads them from a temporary table of the session instead, which
+// SnowflakeConnectionProxy loads them into right before a statement referencing them runs. One instance per data source, so
+// geometries never cross datastores. Each session remembers the ids it already holds and only the others are sent
+class SnowflakeFilterGeometries {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeFilterGeometries.class);
+
+	// Temporary table of the session holding the geometries. The pool creates it when it opens a session, since creating it later
+	// would commit the transaction the session might be in
+	static final String TABLE = "GT_FILTER_GEOMETRIES";
+	static final String TABLE_DDL = "CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS " + TABLE + " (ID VARCHAR, WKB VARBINARY)";
+
+	// How statements read a geometry from the table, see SnowflakeFilterToSQL.visitLiteralGeometry()
+	private static final Pattern REFERENCE = Pattern.compile(TABLE + " WHERE ID = '([0-9a-f]{64})'");
+
+	// Registered geometries kept for the sessions that don't have them yet, the least recently used dropped past this many
+	static final int MAX_GEOMETRIES = 256;
+
+	private final Map<String, byte[]> geometries = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+			return size() > MAX_GEOMETRIES;
+		}
+	});
+
+	// Ids each session has loaded, by the driver connection of the session
+	private final Map<Object, Set<String>> loaded = Collections.synchronizedMap(new WeakHashMap<>());
+
+	// Registers the geometry and returns the id statements read it back with
+	String add(byte[] wkb) {
+
+		String id = getId(wkb);
+		geometries.put(id, wkb);
+		return id;
+	}
+
+	// Hex SHA-256 of the WKB, so the same geometry always gets the same id (and the statement the same text)
+	static String getId(byte[] wkb) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(wkb));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// Returns the ids of the geometries the statement reads from the table, in order and without repeats
+	static List<String> getIds(String sql) {
+
+		Set<String> ids = new LinkedHashSet<>();
+		Matcher matcher = REFERENCE.matcher(sql);
+		while (matcher.find()) {
+			ids.add(matcher.group(1));
+		}
+		return new ArrayList<>(ids);
+	}
+
+	// Loads the geometries the statement reads that the session doesn't hold yet, in a single INSERT that skips any already there.
+	// Fails when one is neither in the session nor registered any more, rather than let the statement compare against NULL and
+	// silently match nothing. Ids loaded inside a transaction aren't remembered, a rollback would take them back out
+	void load(Connection cx, String sql) throws SQLException {
+
+		List<String> ids = getIds(sql);
+		if (ids.isEmpty()) {
+			return;
+		}
+
+		Object session = getSession(cx);
+		Set<String> sessionIds = session != null ? loaded.computeIfAbsent(session, s -> ConcurrentHashMap.newKeySet()) : new HashSet<>();
+		Map<String, byte[]> missing = new LinkedHashMap<>();
+		for (String id : ids) {
+			if (sessionIds.contains(id)) {
+				continue;
+			}
+			byte[] wkb = geometries.get(id);
+			if (wkb == null) {
+				throw new SQLException("Filter geometry " + id + " is not in " + TABLE + " and is no longer registered");
+			}
+			missing.put(id, wkb);
+		}
+		if (missing.isEmpty()) {
+			return;
+		}
+
+		// The WKB is cast so databases typing VALUES parameters as text don't convert the bytes through a character set
+		StringBuilder insert = new StringBuilder("INSERT INTO " + TABLE + " (ID, WKB) SELECT V.ID, V.WKB FROM (VALUES ");
+		for (int i = 0; i < missing.size(); i++) {
+			insert.append(i == 0 ? "" : ", ").append("(?, CAST(? AS VARBINARY))");
+		}
+		insert.append(") AS V (ID, WKB) WHERE NOT EXISTS (SELECT 1 FROM " + TABLE + " G WHERE G.ID = V.ID)");
+
+		try (PreparedStatement ps = cx.prepareStatement(insert.toString())) {
+			int index = 1;
+			for (Map.Entry<String, byte[]> geometry : missing.entrySet()) {
+				ps.setString(index++, geometry.getKey());
+				ps.setBytes(index++, geometry.getValue());
+			}
+			ps.executeUpdate();
+		}
+		if (cx.getAutoCommit()) {
+			sessionIds.addAll(missing.keySet());
+		}
+		LOGGER.fine("Loaded " + missing.size() + " filter geometries into " + TABLE);
+	}
+
+	// Returns what identifies the session of the connection, null when it can't be told apart and every statement loads its
+	// geometries
+	Object getSession(Connection cx) throws SQLException {
+		return cx.isWrapperFor(SnowflakeConnection.class) ? cx.unwrap(SnowflakeConnection.class) : null;
+	}
+}
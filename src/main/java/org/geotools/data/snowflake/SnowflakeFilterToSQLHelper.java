@@ -0,0 +1,738 @@
+package org.geotools.data.snowflake;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.measure.Unit;
+import javax.measure.quantity.Length;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.filter.And;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.filter.expression.Literal;
+import org.geotools.api.filter.expression.PropertyName;
+import org.geotools.api.filter.spatial.BBOX;
+import org.geotools.api.filter.spatial.Beyond;
+import org.geotools.api.filter.spatial.BinarySpatialOperator;
+import org.geotools.api.filter.spatial.Contains;
+import org.geotools.api.filter.spatial.Crosses;
+import org.geotools.api.filter.spatial.DWithin;
+import org.geotools.api.filter.spatial.Disjoint;
+import org.geotools.api.filter.spatial.DistanceBufferOperator;
+import org.geotools.api.filter.spatial.Equals;
+import org.geotools.api.filter.spatial.Intersects;
+import org.geotools.api.filter.spatial.Overlaps;
+import org.geotools.api.filter.spatial.Touches;
+import org.geotools.api.filter.spatial.Within;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.crs.GeographicCRS;
+import org.geotools.data.jdbc.FilterToSQL;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.filter.FilterCapabilities;
+import org.geotools.filter.visitor.DefaultFilterVisitor;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.jdbc.JDBCDataStore;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+
+import tech.units.indriya.unit.Units;
+
+// Spatial filter encoding shared by SnowflakeFilterToSQL and SnowflakePreparedFilterToSQL. Literals are always written back through the
+// owning encoder, so the basic one inlines them while the prepared one turns them into bind parameters
+public class SnowflakeFilterToSQLHelper {
+
+    private static final FilterFactory FF = CommonFactoryFinder.getFilterFactory(null);
+
+    // Snowflake's native spatial types
+    public static final String GEOGRAPHY = "GEOGRAPHY";
+    public static final String GEOMETRY = "GEOMETRY";
+
+    // The encoder the helper writes on behalf of
+    protected FilterToSQL delegate;
+
+    // The encoder's current output, refreshed by the encoder before every call since it changes with each encoded filter
+    protected Writer out;
+
+    // The feature type being filtered, refreshed alongside out. Its user data tells GEOMETRY and GEOGRAPHY columns apart
+    protected SimpleFeatureType featureType;
+
+    // Length of a degree at the equator of the WGS 84 ellipsoid, used to express distances in the units of longitude/latitude CRSs
+    static final double METERS_PER_DEGREE = 6378137 * Math.PI / 180;
+
+    // Shortest length of a degree of latitude on the WGS 84 ellipsoid (at the equator), so expanded boxes always cover the distance
+    private static final double MIN_METERS_PER_DEGREE_LATITUDE = 110574;
+
+    // Meters per distance unit, keyed on lower case names, abbreviations and EPSG unit codes
+    private static final Map<String, Double> METERS_PER_UNIT = new HashMap<>();
+
+    static {
+        for (String unit : new String[] {"m", "meter", "meters", "metre", "metres", "9001"}) METERS_PER_UNIT.put(unit, 1d);
+        for (String unit : new String[] {"km", "kilometer", "kilometers", "kilometre", "kilometres", "9036"}) METERS_PER_UNIT.put(unit, 1000d);
+        for (String unit : new String[] {"ft", "foot", "feet", "9002"}) METERS_PER_UNIT.put(unit, 0.3048);
+        for (String unit : new String[] {"us-ft", "9003"}) METERS_PER_UNIT.put(unit, 1200d / 3937);
+        for (String unit : new String[] {"yd", "yard", "yards", "9096"}) METERS_PER_UNIT.put(unit, 0.9144);
+        for (String unit : new String[] {"mi", "mile", "miles", "9093"}) METERS_PER_UNIT.put(unit, 1609.344);
+        for (String unit : new String[] {"nmi", "nautical mile", "nautical miles", "9030"}) METERS_PER_UNIT.put(unit, 1852d);
+        for (String unit : new String[] {"deg", "degree", "degrees", "9102", "9122"}) METERS_PER_UNIT.put(unit, METERS_PER_DEGREE);
+    }
+
+    // Native type and SRID of the column the literal being encoded is compared against, only set while a spatial operator is encoded
+    private String literalNativeType;
+    private int literalSRID;
+
+    // Optional plain numeric min x, min y, max x, max y columns kept next to the geometry, which Snowflake can prune micro-partitions on
+    private String[] envelopeColumns;
+
+    // Optional H3 or geohash columns of point layers, keyed on upper case table names, prefiltering spatial filters on their cells
+    private Map<String, SnowflakeCellIndex> cellIndexes = Collections.emptyMap();
+
+    // Distance, in the units of the layer's CRS, literal geometries are simplified to before being sent. 0 keeps every vertex
+    private double filterGeometryTolerance;
+
+    // Constructor method
+    public SnowflakeFilterToSQLHelper(FilterToSQL delegate) {
+        this.delegate = delegate;
+    }
+
+    // Adds the spatial filters both encoders implement to the provided capabilities
+    public static void addSpatialCapabilities(FilterCapabilities capabilities) {
+
+        capabilities.addType(BBOX.class);
+        capabilities.addType(Contains.class);
+        capabilities.addType(Disjoint.class);
+        capabilities.addType(Intersects.class);
+        capabilities.addType(Within.class);
+        capabilities.addType(DWithin.class);
+        capabilities.addType(Beyond.class);
+    }
+
+    // Snowflake has no native Crosses, Equals, Overlaps or Touches, so those are left to the post filter. Each of them implies the two
+    // geometries intersect though, so this adds an Intersects on the same expressions to the pre filter for every one found at the top
+    // level of the post filter. Only the candidate rows then leave the warehouse, and the exact test runs on those
+    public static Filter[] addIntersectsPrefilters(Filter[] split) {
+
+        Filter post = split[1];
+        List<Filter> children = post instanceof And ? ((And) post).getChildren() : Collections.singletonList(post);
+
+        List<Filter> prefilters = new ArrayList<>();
+        for (Filter child : children) {
+            if (child instanceof Crosses || child instanceof Equals || child instanceof Overlaps || child instanceof Touches) {
+                BinarySpatialOperator operator = (BinarySpatialOperator) child;
+                if (isSimple(operator.getExpression1()) && isSimple(operator.getExpression2())) {
+                    prefilters.add(FF.intersects(operator.getExpression1(), operator.getExpression2()));
+                }
+            }
+        }
+
+        if (prefilters.isEmpty()) {
+            return split;
+        }
+        if (split[0] != null && split[0] != Filter.INCLUDE) {
+            prefilters.add(0, split[0]);
+        }
+        Filter pre = prefilters.size() == 1 ? prefilters.get(0) : FF.and(prefilters);
+        return new Filter[] {pre, post};
+    }
+
+    // DWithin and Beyond are advertised, but only distances in units getMetersPerUnit knows, against columns whose CRS unit is a length,
+    // can be converted. Distances without units on GEOGRAPHY columns are in degrees, which have no fixed length on the sphere ST_DWITHIN
+    // measures in meters. This moves every top level part of the pre filter holding one that can't to the post filter, so it's evaluated
+    // in memory instead of failing the query
+    public static Filter[] moveUnsupportedDistances(Filter[] split, SimpleFeatureType schema) {
+
+        Filter pre = split[0];
+        if (pre == null || pre == Filter.INCLUDE) {
+            return split;
+        }
+        List<Filter> children = pre instanceof And ? ((And) pre).getChildren() : Collections.singletonList(pre);
+
+        List<Filter> supported = new ArrayList<>();
+        List<Filter> unsupported = new ArrayList<>();
+        for (Filter child : children) {
+            (hasUnsupportedDistance(child, schema) ? unsupported : supported).add(child);
+        }
+
+        if (unsupported.isEmpty()) {
+            return split;
+        }
+        if (split[1] != null && split[1] != Filter.INCLUDE) {
+            unsupported.add(0, split[1]);
+        }
+        Filter newPre = supported.isEmpty() ? Filter.INCLUDE : supported.size() == 1 ? supported.get(0) : FF.and(supported);
+        Filter post = unsupported.size() == 1 ? unsupported.get(0) : FF.and(unsupported);
+        return new Filter[] {newPre, post};
+    }
+
+    private static boolean hasUnsupportedDistance(Filter filter, SimpleFeatureType schema) {
+
+        boolean[] found = new boolean[1];
+        filter.accept(new DefaultFilterVisitor() {
+            @Override
+            public Object visit(DWithin filter, Object data) {
+                found[0] |= !isSupportedDistance(filter, schema);
+                return data;
+            }
+
+            @Override
+            public Object visit(Beyond filter, Object data) {
+                found[0] |= !isSupportedDistance(filter, schema);
+                return data;
+            }
+        }, null);
+        return found[0];
+    }
+
+    // Returns whether the filter's distance units, and the units of the geometry column it's compared against, can be converted
+    static boolean isSupportedDistance(DistanceBufferOperator filter, SimpleFeatureType schema) {
+
+        String units = filter.getDistanceUnits();
+        boolean unitless = units == null || units.trim().isEmpty();
+        if (!unitless && findMetersPerUnit(units) == null) {
+            return false;
+        }
+        for (Expression expression : new Expression[] {filter.getExpression1(), filter.getExpression2()}) {
+            Object descriptor = schema != null && expression instanceof PropertyName ? expression.evaluate(schema) : null;
+            if (!(descriptor instanceof GeometryDescriptor)) {
+                continue;
+            }
+            if (GEOGRAPHY.equals(getNativeType((GeometryDescriptor) descriptor))) {
+                if (unitless) {
+                    return false;
+                }
+            } else if (Double.isNaN(getMetersPerCRSUnit(((GeometryDescriptor) descriptor).getCoordinateReferenceSystem()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A BBOX on a GEOGRAPHY column 180 degrees wide or more is only compared against the envelopes in SQL (see encodeBBOX()), which
+    // matches more than the box does, so it's repeated in the post filter. Top level parts of the pre filter holding such a box deeper
+    // down, where e.g. a Not would turn the looser test into a stricter one, are moved to the post filter instead
+    public static Filter[] addWideBBoxPostfilters(Filter[] split, SimpleFeatureType schema) {
+
+        Filter pre = split[0];
+        if (pre == null || pre == Filter.INCLUDE) {
+            return split;
+        }
+        List<Filter> children = pre instanceof And ? ((And) pre).getChildren() : Collections.singletonList(pre);
+
+        List<Filter> supported = new ArrayList<>();
+        List<Filter> post = new ArrayList<>();
+        for (Filter child : children) {
+            if (child instanceof BBOX && ((BBOX) child).getExpression1() instanceof PropertyName
+                    && ((BBOX) child).getExpression2() instanceof Literal && isWideGeographyBBOX((BBOX) child, schema)) {
+                supported.add(child);
+                post.add(child);
+            } else if (hasWideGeographyBBOX(child, schema)) {
+                post.add(child);
+            } else {
+                supported.add(child);
+            }
+        }
+
+        if (post.isEmpty()) {
+            return split;
+        }
+        if (split[1] != null && split[1] != Filter.INCLUDE) {
+            post.add(0, split[1]);
+        }
+        Filter newPre = supported.isEmpty() ? Filter.INCLUDE : supported.size() == 1 ? supported.get(0) : FF.and(supported);
+        Filter newPost = post.size() == 1 ? post.get(0) : FF.and(post);
+        return new Filter[] {newPre, newPost};
+    }
+
+    private static boolean hasWideGeographyBBOX(Filter filter, SimpleFeatureType schema) {
+
+        boolean[] found = new boolean[1];
+        filter.accept(new DefaultFilterVisitor() {
+            @Override
+            public Object visit(BBOX filter, Object data) {
+                found[0] |= isWideGeographyBBOX(filter, schema);
+                return data;
+            }
+        }, null);
+        return found[0];
+    }
+
+    private static boolean isWideGeographyBBOX(BBOX filter, SimpleFeatureType schema) {
+
+        for (Expression expression : new Expression[] {filter.getExpression1(), filter.getExpression2()}) {
+            Object descriptor = schema != null && expression instanceof PropertyName ? expression.evaluate(schema) : null;
+            if (descriptor instanceof GeometryDescriptor && GEOGRAPHY.equals(getNativeType((GeometryDescriptor) descriptor))) {
+                return isWide(new ReferencedEnvelope(filter.getBounds()));
+            }
+        }
+        return false;
+    }
+
+    // Returns whether a box is too wide to be a GEOGRAPHY polygon, whose edges take the shorter way around the globe
+    private static boolean isWide(Envelope envelope) {
+        return envelope.getWidth() >= 180;
+    }
+
+    private static boolean isSimple(Expression expression) {
+        return expression instanceof PropertyName || expression instanceof Literal;
+    }
+
+    // Sets the names of the min x, min y, max x and max y columns used to prefilter BBOX queries on layers that have all four of them
+    public void setEnvelopeColumns(String[] envelopeColumns) {
+        if (envelopeColumns != null && envelopeColumns.length != 4) {
+            throw new IllegalArgumentException("Expected min x, min y, max x and max y envelope columns");
+        }
+        this.envelopeColumns = envelopeColumns;
+    }
+
+    public String[] getEnvelopeColumns() {
+        return envelopeColumns;
+    }
+
+    // Sets the H3 or geohash cell columns of the tables, keyed on upper case table names
+    public void setCellIndexes(Map<String, SnowflakeCellIndex> cellIndexes) {
+        this.cellIndexes = cellIndexes == null ? Collections.emptyMap() : cellIndexes;
+    }
+
+    public Map<String, SnowflakeCellIndex> getCellIndexes() {
+        return cellIndexes;
+    }
+
+    // Sets the distance literal geometries are simplified to, in the units of the layer's CRS (degrees for GEOGRAPHY columns)
+    public void setFilterGeometryTolerance(double filterGeometryTolerance) {
+        this.filterGeometryTolerance = filterGeometryTolerance;
+    }
+
+    public double getFilterGeometryTolerance() {
+        return filterGeometryTolerance;
+    }
+
+    // Simplifies a literal geometry to the tolerance, preserving its topology so polygons stay valid and keep their holes. Vertices
+    // are only dropped, so the geometry stays inside the envelope the prefilters were computed from, and filters are answered for a
+    // shape within the tolerance of the original
+    public Geometry simplifyFilterGeometry(Geometry g) {
+        if (filterGeometryTolerance <= 0 || g == null || g.getDimension() == 0) {
+            return g;
+        }
+        return TopologyPreservingSimplifier.simplify(g, filterGeometryTolerance);
+    }
+
+    // Same as simplifyFilterGeometry(), for literals holding a geometry. Other literals are returned as they are
+    public Literal simplifyFilterGeometry(Literal literal) {
+        Object value = literal.getValue();
+        if (filterGeometryTolerance <= 0 || !(value instanceof Geometry)) {
+            return literal;
+        }
+        return FF.literal(simplifyFilterGeometry((Geometry) value));
+    }
+
+    // Writes the constructor of the type of the column the current literal is compared against, applied to a Well-Known-Binary
+    // expression
+    void encodeFromWKB(String wkb) throws IOException {
+        if (GEOGRAPHY.equals(literalNativeType)) {
+            out.write("ST_GEOGFROMWKB(" + wkb + ")");
+        } else if (GEOMETRY.equals(literalNativeType)) {
+            out.write("ST_GEOMFROMWKB(" + wkb + ", " + literalSRID + ")");
+        } else {
+            out.write("ST_GEOMFROMWKB(" + wkb + ")");
+        }
+    }
+
+    // Returns GEOMETRY or GEOGRAPHY when the encoder is writing a geometry literal compared against a column of that type, null otherwise
+    public String getLiteralNativeType() {
+        return literalNativeType;
+    }
+
+    // Returns the SRID of the GEOMETRY column the current geometry literal is compared against
+    public int getLiteralSRID() {
+        return literalSRID;
+    }
+
+    // This method contains the implementations of the FilterCapabilities supported from addSpatialCapabilities()
+    public Object visitBinarySpatialOperator(BinarySpatialOperator filter, Expression e1, Expression e2, boolean swapped, Object extraData) {
+
+        // Literals take the type of the column on the other side, so they are built once with the matching constructor and the
+        // column itself is never converted
+        Expression column = getNativeType(e1) != null ? e1 : e2;
+        literalNativeType = getNativeType(column);
+        literalSRID = getSRID(column);
+        try {
+            // Tile requests are all BBOX, so they get their own pruning friendly encoding
+            if (filter instanceof BBOX && e1 instanceof PropertyName && e2 instanceof Literal) {
+                encodeBBOX((BBOX) filter, (PropertyName) e1, extraData);
+                return extraData;
+            }
+
+            // Handle DWithin and Beyond filters in Snowflake
+            if (filter instanceof DistanceBufferOperator) {
+                encodeDistance((DistanceBufferOperator) filter, e1, e2, extraData);
+            } else {
+                // Every operator but Disjoint implies the geometries intersect, so the cells covering the literal can go first
+                SnowflakeCellIndex.Covering covering = null;
+                if (!(filter instanceof Disjoint) && (e1 instanceof PropertyName || e2 instanceof PropertyName)) {
+                    Geometry literal = (e1 instanceof Literal ? e1 : e2).evaluate(null, Geometry.class);
+                    if (literal != null && !literal.isEmpty()) {
+                        covering = getCellCovering(e1 instanceof PropertyName ? e1 : e2, literal.getEnvelopeInternal());
+                    }
+                }
+                if (covering != null) {
+                    out.write("(");
+                    encodeCellPrefilter(covering, extraData);
+                }
+
+            	// Handle Contains/Disjoint/Intersects/Within filters in Snowflake
+                if (filter instanceof Contains) {
+                     out.write("ST_CONTAINS(");
+                } else if (filter instanceof BBOX) {
+                    out.write("ST_INTERSECTS(");
+                } else if (filter instanceof Disjoint) {
+                    out.write("ST_DISJOINT(");
+                } else if (filter instanceof Intersects) {
+                    out.write("ST_INTERSECTS(");
+                } else if (filter instanceof Within) {
+                    out.write("ST_WITHIN(");
+                } else {
+                    throw new RuntimeException("Unknown operator: " + filter);
+                }
+
+                if (swapped) {
+                     e2.accept(delegate, extraData);
+                    out.write(", ");
+                    e1.accept(delegate, extraData);
+                } else {
+                    e1.accept(delegate, extraData);
+                    out.write(", ");
+                    e2.accept(delegate, extraData);
+                }
+
+                out.write(")");
+                if (covering != null) {
+                    out.write(")");
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            literalNativeType = null;
+            literalSRID = 0;
+        }
+        return extraData;
+    }
+
+    // Encodes a BBOX as cheap numeric envelope comparisons followed by the exact ST_INTERSECTS. The comparisons let Snowflake skip rows
+    // (and, on plain envelope columns, whole micro-partitions) before any geometry is tested. On GEOGRAPHY the exact test is against a
+    // polygon with geodesic edges, and a box 180 degrees wide or more would cover the other side of the globe, so those are only
+    // compared against the envelopes here and addWideBBoxPostfilters() leaves the exact test to the post filter
+    void encodeBBOX(BBOX filter, PropertyName property, Object extraData) throws IOException {
+
+        ReferencedEnvelope envelope = new ReferencedEnvelope(filter.getBounds());
+
+        out.write("(");
+        SnowflakeCellIndex.Covering covering = getCellCovering(property, envelope);
+        if (covering != null) {
+            encodeCellPrefilter(covering, extraData);
+        }
+        encodeEnvelopePrefilter(property, envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(), extraData);
+        if (GEOGRAPHY.equals(literalNativeType) && isWide(envelope)) {
+            out.write("TRUE)");
+            return;
+        }
+        out.write("ST_INTERSECTS(");
+        property.accept(delegate, extraData);
+        out.write(", ");
+        FF.literal(JTS.toGeometry((Envelope) envelope)).accept(delegate, extraData);
+        out.write("))");
+    }
+
+    // Encodes DWithin as ST_DWITHIN on GEOGRAPHY columns, or as a distance comparison on GEOMETRY ones, behind the envelope of the
+    // literal expanded by the distance. Beyond is the negation and can't be prefiltered. The distance is converted from the filter's
+    // units to meters for GEOGRAPHY, and for GEOMETRY to the unit of the column's CRS, e.g. degrees or US survey feet. GEOGRAPHY
+    // distances need units, splitFilter() leaves the others to the post filter (see isSupportedDistance())
+    void encodeDistance(DistanceBufferOperator filter, Expression e1, Expression e2, Object extraData) throws IOException {
+
+        boolean geography = GEOGRAPHY.equals(literalNativeType);
+        GeometryDescriptor descriptor = getGeometryDescriptor(e1) != null ? getGeometryDescriptor(e1) : getGeometryDescriptor(e2);
+        double metersPerUnit = geography ? 1 : getMetersPerCRSUnit(descriptor != null ? descriptor.getCoordinateReferenceSystem() : null);
+        if (Double.isNaN(metersPerUnit)) {
+            throw new IllegalArgumentException("Unsupported units in " + descriptor.getCoordinateReferenceSystem().getName());
+        }
+        if (geography && (filter.getDistanceUnits() == null || filter.getDistanceUnits().trim().isEmpty())) {
+            throw new IllegalArgumentException("Distance without units on GEOGRAPHY column");
+        }
+        double distance = getDistance(filter, metersPerUnit);
+        boolean within = filter instanceof DWithin;
+        if (!within && !(filter instanceof Beyond)) {
+            throw new RuntimeException("Unknown distance operator");
+        }
+
+        out.write("(");
+        Geometry literal = e2 instanceof Literal ? e2.evaluate(null, Geometry.class) : null;
+        if (within && e1 instanceof PropertyName && literal != null && !literal.isEmpty()) {
+            Envelope envelope = literal.getEnvelopeInternal();
+            Envelope expanded = geography ? getGeographyBounds(envelope, distance) : new Envelope(envelope.getMinX() - distance,
+                    envelope.getMaxX() + distance, envelope.getMinY() - distance, envelope.getMaxY() + distance);
+            SnowflakeCellIndex.Covering covering = getCellCovering(e1, expanded);
+            if (covering != null) {
+                encodeCellPrefilter(covering, extraData);
+            }
+            encodeEnvelopePrefilter((PropertyName) e1, expanded.getMinX(), expanded.getMinY(), expanded.getMaxX(), expanded.getMaxY(),
+                    extraData);
+        }
+
+        if (geography) {
+            out.write(within ? "ST_DWITHIN(" : "NOT ST_DWITHIN(");
+            e1.accept(delegate, extraData);
+            out.write(", ");
+            e2.accept(delegate, extraData);
+            out.write(", " + distance + ")");
+        } else {
+            out.write("ST_DISTANCE(");
+            e1.accept(delegate, extraData);
+            out.write(", ");
+            e2.accept(delegate, extraData);
+            out.write(within ? ") <= " : ") > ");
+            out.write(Double.toString(distance));
+        }
+        out.write(")");
+    }
+
+    // Returns the longitude/latitude box containing every point within the given meters of the envelope. A degree of latitude is never
+    // shorter than MIN_METERS_PER_DEGREE_LATITUDE, and longitude is widened for the highest latitude the box reaches. Bounds that
+    // would wrap around a pole or the antimeridian are left infinite rather than risking dropping matches
+    private static Envelope getGeographyBounds(Envelope envelope, double meters) {
+
+        double dy = meters / MIN_METERS_PER_DEGREE_LATITUDE;
+        double minY = envelope.getMinY() - dy;
+        double maxY = envelope.getMaxY() + dy;
+        double minX = Double.NEGATIVE_INFINITY;
+        double maxX = Double.POSITIVE_INFINITY;
+
+        double latitude = Math.max(Math.abs(minY), Math.abs(maxY));
+        if (latitude < 89) {
+            double dx = dy / Math.cos(Math.toRadians(latitude));
+            if (envelope.getMinX() - dx >= -180 && envelope.getMaxX() + dx <= 180) {
+                minX = envelope.getMinX() - dx;
+                maxX = envelope.getMaxX() + dx;
+            }
+        }
+        return new Envelope(minX, maxX, minY <= -90 ? Double.NEGATIVE_INFINITY : minY, maxY >= 90 ? Double.POSITIVE_INFINITY : maxY);
+    }
+
+    // Returns the cells covering the longitude/latitude envelope in the cell index column of the feature type's table, or null when the
+    // table has none, the property isn't its default geometry in longitude/latitude, or no covering is small enough
+    SnowflakeCellIndex.Covering getCellCovering(Expression property, Envelope envelope) {
+
+        if (featureType == null || cellIndexes.isEmpty()) {
+            return null;
+        }
+        SnowflakeCellIndex index = cellIndexes.get(featureType.getTypeName().toUpperCase(Locale.ROOT));
+        GeometryDescriptor descriptor = getGeometryDescriptor(property);
+        if (index == null || descriptor == null || featureType.getDescriptor(index.getColumn()) == null
+                || !descriptor.equals(featureType.getGeometryDescriptor())) {
+            return null;
+        }
+        if (!GEOGRAPHY.equals(getNativeType(property)) && !isGeographic(descriptor)) {
+            return null;
+        }
+        SnowflakeCellIndex.Covering covering = index.cover(envelope);
+        return covering == null || covering.values.isEmpty() && covering.ranges.isEmpty() ? null : covering;
+    }
+
+    // Writes "(<column> IN (<cells>) OR <column> BETWEEN <low> AND <high> ...) AND ". The cells are written as constants whatever the
+    // encoder, Snowflake only prunes micro-partitions on values it knows when compiling the query
+    private void encodeCellPrefilter(SnowflakeCellIndex.Covering covering, Object extraData) throws IOException {
+
+        PropertyName column = FF.property(covering.column);
+        String separator = "(";
+        if (!covering.values.isEmpty()) {
+            out.write(separator);
+            column.accept(delegate, extraData);
+            out.write(" IN (");
+            for (int i = 0; i < covering.values.size(); i++) {
+                out.write(i == 0 ? "" : ", ");
+                out.write(toCellLiteral(covering.values.get(i)));
+            }
+            out.write(")");
+            separator = " OR ";
+        }
+        for (Object[] range : covering.ranges) {
+            out.write(separator);
+            column.accept(delegate, extraData);
+            out.write(" BETWEEN ");
+            out.write(toCellLiteral(range[0]));
+            out.write(" AND ");
+            out.write(toCellLiteral(range[1]));
+            separator = " OR ";
+        }
+        out.write(") AND ");
+    }
+
+    // H3 cells are numbers, geohashes only hold base 32 characters
+    private static String toCellLiteral(Object cell) {
+        return cell instanceof String ? "'" + cell + "'" : cell.toString();
+    }
+
+    // Writes "<bound> AND " for each finite side of the envelope, comparing against the configured envelope columns when the feature
+    // type has them and against ST_XMIN/ST_XMAX/ST_YMIN/ST_YMAX of the property otherwise
+    private void encodeEnvelopePrefilter(PropertyName property, double minX, double minY, double maxX, double maxY, Object extraData) throws IOException {
+
+        String[] columns = getEnvelopeColumns(featureType);
+        if (columns != null) {
+            encodeEnvelopeBound(FF.property(columns[0]), " <= ", maxX, extraData);
+            encodeEnvelopeBound(FF.property(columns[2]), " >= ", minX, extraData);
+            encodeEnvelopeBound(FF.property(columns[1]), " <= ", maxY, extraData);
+            encodeEnvelopeBound(FF.property(columns[3]), " >= ", minY, extraData);
+        } else {
+            encodeEnvelopeBound("ST_XMIN", property, " <= ", maxX, extraData);
+            encodeEnvelopeBound("ST_XMAX", property, " >= ", minX, extraData);
+            encodeEnvelopeBound("ST_YMIN", property, " <= ", maxY, extraData);
+            encodeEnvelopeBound("ST_YMAX", property, " >= ", minY, extraData);
+        }
+    }
+
+    // Appends <function>(<property>) <operator> <value>
+    private void encodeEnvelopeBound(String function, PropertyName property, String operator, double value, Object extraData) throws IOException {
+        if (Double.isInfinite(value)) {
+            return;
+        }
+        out.write(function);
+        out.write("(");
+        property.accept(delegate, extraData);
+        out.write(")");
+        out.write(operator);
+        out.write(Double.toString(value));
+        out.write(" AND ");
+    }
+
+    // Appends <column> <operator> <value>
+    private void encodeEnvelopeBound(PropertyName column, String operator, double value, Object extraData) throws IOException {
+        if (Double.isInfinite(value)) {
+            return;
+        }
+        column.accept(delegate, extraData);
+        out.write(operator);
+        out.write(Double.toString(value));
+        out.write(" AND ");
+    }
+
+    // Returns the filter's distance in meters divided by the provided meters per target unit. Distances without units are taken to
+    // already be in the target units
+    static double getDistance(DistanceBufferOperator filter, double metersPerUnit) {
+
+        String units = filter.getDistanceUnits();
+        if (units == null || units.trim().isEmpty()) {
+            return filter.getDistance();
+        }
+        return filter.getDistance() * getMetersPerUnit(units) / metersPerUnit;
+    }
+
+    // Returns the number of meters in one of the provided distance units. Accepts common unit names and abbreviations as well as OGC
+    // and EPSG unit URNs/URIs
+    static double getMetersPerUnit(String units) {
+
+        Double metersPerUnit = findMetersPerUnit(units);
+        if (metersPerUnit == null) {
+            throw new IllegalArgumentException("Unsupported distance units: " + units);
+        }
+        return metersPerUnit;
+    }
+
+    // Returns the number of meters in one of the provided distance units, or null when they aren't known
+    static Double findMetersPerUnit(String units) {
+
+        String key = units.trim().toLowerCase();
+        int separator = Math.max(key.lastIndexOf(':'), key.lastIndexOf('/'));
+        if (separator >= 0 && separator < key.length() - 1) {
+            key = key.substring(separator + 1);
+        }
+
+        return METERS_PER_UNIT.get(key);
+    }
+
+    private static boolean isGeographic(GeometryDescriptor descriptor) {
+        return descriptor != null && descriptor.getCoordinateReferenceSystem() instanceof GeographicCRS;
+    }
+
+    // Returns the number of meters in one unit of the CRS's first axis, degrees for longitude/latitude CRSs. Columns without a CRS are
+    // taken to be in meters, and CRSs whose unit isn't a length return NaN
+    static double getMetersPerCRSUnit(CoordinateReferenceSystem crs) {
+
+        if (crs instanceof GeographicCRS) {
+            return METERS_PER_DEGREE;
+        }
+        if (crs == null || crs.getCoordinateSystem().getDimension() == 0) {
+            return 1;
+        }
+        Unit<?> unit = crs.getCoordinateSystem().getAxis(0).getUnit();
+        if (unit == null || !unit.isCompatible(Units.METRE)) {
+            return Double.NaN;
+        }
+        return unit.asType(Length.class).getConverterTo(Units.METRE).convert(1d);
+    }
+
+    // Returns the configured envelope columns if the feature type has all four of them, null otherwise
+    String[] getEnvelopeColumns(SimpleFeatureType featureType) {
+
+        if (envelopeColumns == null || featureType == null) {
+            return null;
+        }
+        for (String column : envelopeColumns) {
+            if (featureType.getDescriptor(column) == null) {
+                return null;
+            }
+        }
+        return envelopeColumns;
+    }
+
+    // Returns GEOMETRY or GEOGRAPHY for a geometry column of the feature type, or null when the expression isn't one
+    String getNativeType(Expression expression) {
+
+        return getNativeType(getGeometryDescriptor(expression));
+    }
+
+    private static String getNativeType(AttributeDescriptor descriptor) {
+
+        if (descriptor != null) {
+            Object typeName = descriptor.getUserData().get(JDBCDataStore.JDBC_NATIVE_TYPENAME);
+            if (typeName != null) {
+                String nativeType = typeName.toString().toUpperCase();
+                if (GEOMETRY.equals(nativeType) || GEOGRAPHY.equals(nativeType)) {
+                    return nativeType;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Returns the SRID recorded for a geometry column of the feature type, or 0 if it isn't known
+    int getSRID(Expression expression) {
+
+        AttributeDescriptor descriptor = getGeometryDescriptor(expression);
+        if (descriptor != null) {
+            Object srid = descriptor.getUserData().get(JDBCDataStore.JDBC_NATIVE_SRID);
+            if (srid instanceof Integer) {
+                return (Integer) srid;
+            }
+        }
+        return 0;
+    }
+
+    GeometryDescriptor getGeometryDescriptor(Expression expression) {
+
+        if (featureType == null || !(expression instanceof PropertyName)) {
+            return null;
+        }
+        Object descriptor = expression.evaluate(featureType);
+        return descriptor instanceof GeometryDescriptor ? (GeometryDescriptor) descriptor : null;
+    }
+}
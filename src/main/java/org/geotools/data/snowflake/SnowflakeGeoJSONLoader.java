@@ -0,0 +1,388 @@
+package org.geotools.data.snowflake;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.geotools.api.data.DataStoreFinder;
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.util.Converters;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+// Streams a GeoJSON file (a FeatureCollection or one feature per line, like the files in data/) into a Snowflake table through
+// SnowflakeBulkWriter. Only the first few features are held, to infer the table layout when it doesn't exist yet, everything after that
+// goes straight from the parser into the writer's batches, so the input can be far larger than the heap
+public class SnowflakeGeoJSONLoader {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeGeoJSONLoader.class);
+
+	// Name of the geometry column of created tables
+	public static final String GEOMETRY_COLUMN = "GEOM";
+
+	private static final Pattern TIMESTAMP = Pattern.compile("\\d{4}-\\d{2}-\\d{2}([T ]\\d{2}:\\d{2}(:\\d{2}(\\.\\d+)?)?(Z|[+-]\\d{2}:?\\d{2})?)?");
+
+	// Offsets without a colon, which java.time doesn't accept
+	private static final Pattern OFFSET = Pattern.compile("([+-]\\d{2})(\\d{2})$");
+
+	// Outcome of a load
+	public static class Result {
+
+		private final long features;
+		private final long millis;
+
+		Result(long features, long millis) {
+			this.features = features;
+			this.millis = millis;
+		}
+
+		public long getFeatures() {
+			return features;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public double getFeaturesPerSecond() {
+			return millis == 0 ? features : features * 1000.0 / millis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%d features in %.1fs (%.0f rows/s)", features, millis / 1000.0, getFeaturesPerSecond());
+		}
+	}
+
+	private final JDBCDataStore dataStore;
+
+	private SimpleFeatureType featureType;
+	private int sampleSize = 1000;
+	private boolean upperCaseNames = true;
+	private SnowflakeBulkWriter.Mode mode;
+	private int batchSize;
+	private long progressInterval = 100000;
+
+	public SnowflakeGeoJSONLoader(JDBCDataStore dataStore) {
+		this.dataStore = dataStore;
+	}
+
+	// Layout of the table to create when it doesn't exist, instead of inferring one from the first features
+	public void setFeatureType(SimpleFeatureType featureType) {
+		this.featureType = featureType;
+	}
+
+	// How many features are looked at to infer the attribute types
+	public void setSampleSize(int sampleSize) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+		}
+		this.sampleSize = sampleSize;
+	}
+
+	// Whether inferred attribute names are upper cased, so the created columns can be queried without quoting
+	public void setUpperCaseNames(boolean upperCaseNames) {
+		this.upperCaseNames = upperCaseNames;
+	}
+
+	// Bulk write mode and batch size, by default the ones the datastore was configured with
+	public void setMode(SnowflakeBulkWriter.Mode mode) {
+		this.mode = mode;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	// Number of features between progress messages, 0 to only report the total
+	public void setProgressInterval(long progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+
+	// Loads the file into the type, creating it if needed. Files ending in .gz are decompressed on the fly
+	public Result load(File file, String typeName) throws IOException {
+
+		InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16);
+		try {
+			if (file.getName().endsWith(".gz")) {
+				in = new GZIPInputStream(in, 1 << 16);
+			}
+			return load(in, typeName);
+		} finally {
+			in.close();
+		}
+	}
+
+	public Result load(InputStream in, String typeName) throws IOException {
+
+		long start = System.currentTimeMillis();
+		try (SnowflakeGeoJSONReader reader = new SnowflakeGeoJSONReader(in, new GeometryFactory())) {
+
+			List<SnowflakeGeoJSONReader.Feature> sample = new ArrayList<>();
+			SnowflakeGeoJSONReader.Feature feature;
+			while (sample.size() < sampleSize && (feature = reader.next()) != null) {
+				sample.add(feature);
+			}
+
+			SimpleFeatureType target = getTargetType(typeName, sample);
+			FeatureMapper mapper = new FeatureMapper(target);
+
+			long count = 0;
+			long lastReport = start;
+			try (SnowflakeBulkWriter writer = new SnowflakeBulkWriter(dataStore, target.getTypeName(), Transaction.AUTO_COMMIT)) {
+				if (mode != null) {
+					writer.setMode(mode);
+				}
+				if (batchSize > 0) {
+					writer.setBatchSize(batchSize);
+				}
+
+				for (SnowflakeGeoJSONReader.Feature f : sample) {
+					writer.write(mapper.map(f));
+				}
+				count = sample.size();
+				sample.clear();
+
+				while ((feature = reader.next()) != null) {
+					writer.write(mapper.map(feature));
+					count++;
+					if (progressInterval > 0 && count % progressInterval == 0) {
+						long now = System.currentTimeMillis();
+						LOGGER.info(String.format(Locale.ROOT, "Loaded %d features into %s (%.0f rows/s)", count, target.getTypeName(),
+								progressInterval * 1000.0 / Math.max(now - lastReport, 1)));
+						lastReport = now;
+					}
+				}
+				writer.commit();
+			}
+
+			Result result = new Result(count, System.currentTimeMillis() - start);
+			LOGGER.info("Loaded " + result + " into " + target.getTypeName());
+			return result;
+		}
+	}
+
+	// Returns the existing type, or creates one from the configured feature type or the sample
+	private SimpleFeatureType getTargetType(String typeName, List<SnowflakeGeoJSONReader.Feature> sample) throws IOException {
+
+		String name = upperCaseNames ? typeName.toUpperCase(Locale.ROOT) : typeName;
+		for (String existing : dataStore.getTypeNames()) {
+			if (existing.equalsIgnoreCase(typeName)) {
+				return dataStore.getSchema(existing);
+			}
+		}
+
+		SimpleFeatureType type = featureType != null ? retype(featureType, name) : inferType(name, sample);
+		LOGGER.info("Creating " + name + " as " + type);
+		dataStore.createSchema(type);
+		return dataStore.getSchema(name);
+	}
+
+	private static SimpleFeatureType retype(SimpleFeatureType type, String name) {
+		SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+		builder.init(type);
+		builder.setName(name);
+		return builder.buildFeatureType();
+	}
+
+	// Builds a type with a column for every property seen in the sample, in order of first appearance, and a WGS84 geometry. Geometries
+	// are bound to Geometry so the column is created as GEOGRAPHY whatever mix of shapes the file holds
+	SimpleFeatureType inferType(String name, List<SnowflakeGeoJSONReader.Feature> sample) {
+
+		Map<String, Class<?>> bindings = new LinkedHashMap<>();
+		for (SnowflakeGeoJSONReader.Feature feature : sample) {
+			for (Map.Entry<String, Object> property : feature.getProperties().entrySet()) {
+				String attribute = upperCaseNames ? property.getKey().toUpperCase(Locale.ROOT) : property.getKey();
+				if (attribute.equalsIgnoreCase(GEOMETRY_COLUMN)) {
+					continue;
+				}
+				bindings.put(attribute, widen(bindings.get(attribute), property.getValue()));
+			}
+		}
+
+		SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+		builder.setName(name);
+		builder.setCRS(DefaultGeographicCRS.WGS84);
+		for (Map.Entry<String, Class<?>> binding : bindings.entrySet()) {
+			builder.add(binding.getKey(), binding.getValue() != null ? binding.getValue() : String.class);
+		}
+		builder.add(upperCaseNames ? GEOMETRY_COLUMN : GEOMETRY_COLUMN.toLowerCase(Locale.ROOT), Geometry.class);
+		return builder.buildFeatureType();
+	}
+
+	// Returns the narrowest binding holding both the values seen so far and the new one, null while only nulls were seen
+	static Class<?> widen(Class<?> current, Object value) {
+
+		Class<?> binding;
+		if (value == null) {
+			return current;
+		} else if (value instanceof Boolean) {
+			binding = Boolean.class;
+		} else if (value instanceof Long) {
+			binding = Long.class;
+		} else if (value instanceof BigInteger) {
+			binding = BigInteger.class;
+		} else if (value instanceof Double) {
+			binding = Double.class;
+		} else if (value instanceof String && parseTimestamp((String) value) != null) {
+			binding = Timestamp.class;
+		} else {
+			binding = String.class;
+		}
+
+		if (current == null || current == binding) {
+			return binding;
+		}
+		if (isNumber(current) && isNumber(binding)) {
+			return current == Double.class || binding == Double.class ? Double.class : BigInteger.class;
+		}
+		return String.class;
+	}
+
+	private static boolean isNumber(Class<?> binding) {
+		return binding == Long.class || binding == BigInteger.class || binding == Double.class;
+	}
+
+	// Parses ISO 8601 dates and date times, with or without offset, returning null for anything else
+	static Timestamp parseTimestamp(String value) {
+
+		if (!TIMESTAMP.matcher(value).matches()) {
+			return null;
+		}
+		try {
+			if (value.length() == 10) {
+				return Timestamp.valueOf(LocalDate.parse(value).atStartOfDay());
+			}
+			String iso = OFFSET.matcher(value.replace(' ', 'T')).replaceFirst("$1:$2");
+			if (iso.endsWith("Z") || iso.matches(".*T.*[+-]\\d{2}:\\d{2}")) {
+				return Timestamp.from(OffsetDateTime.parse(iso).toInstant());
+			}
+			return Timestamp.valueOf(LocalDateTime.parse(iso));
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	// Turns parsed features into features of the target type, matching properties to attributes by name ignoring case
+	private static class FeatureMapper {
+
+		private final SimpleFeatureBuilder builder;
+		private final SimpleFeatureType type;
+		private final String[] properties;
+		private final int geometry;
+
+		FeatureMapper(SimpleFeatureType type) {
+			this.type = type;
+			this.builder = new SimpleFeatureBuilder(type);
+			this.properties = new String[type.getAttributeCount()];
+			this.geometry = type.getGeometryDescriptor() != null ? type.indexOf(type.getGeometryDescriptor().getLocalName()) : -1;
+		}
+
+		SimpleFeature map(SnowflakeGeoJSONReader.Feature feature) {
+
+			Map<String, Object> values = feature.getProperties();
+			for (int i = 0; i < properties.length; i++) {
+				if (i == geometry) {
+					builder.set(i, feature.getGeometry());
+					continue;
+				}
+
+				AttributeDescriptor descriptor = type.getDescriptor(i);
+				String property = resolve(i, descriptor.getLocalName(), values);
+				builder.set(i, property != null ? convert(values.get(property), descriptor.getType().getBinding()) : null);
+			}
+			return builder.buildFeature(feature.getId());
+		}
+
+		// Finds the property feeding an attribute, remembering the exact spelling as files normally use the same one throughout
+		private String resolve(int index, String attribute, Map<String, Object> values) {
+
+			String property = properties[index];
+			if (property != null && values.containsKey(property)) {
+				return property;
+			}
+			for (String name : values.keySet()) {
+				if (name.equalsIgnoreCase(attribute)) {
+					properties[index] = name;
+					return name;
+				}
+			}
+			return null;
+		}
+
+		private static Object convert(Object value, Class<?> binding) {
+
+			if (value == null || binding.isInstance(value)) {
+				return value;
+			}
+			if (value instanceof String && java.util.Date.class.isAssignableFrom(binding)) {
+				Timestamp timestamp = parseTimestamp((String) value);
+				if (timestamp != null) {
+					return Converters.convert(timestamp, binding);
+				}
+			}
+			Object converted = Converters.convert(value, binding);
+			return converted != null ? converted : value.toString();
+		}
+	}
+
+	// Loads a GeoJSON file from the command line: SnowflakeGeoJSONLoader <datastore.properties> <file> [type name]. The properties file
+	// holds the datastore parameters, the type name defaults to the file name up to its first dot
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.err.println("Usage: SnowflakeGeoJSONLoader <datastore.properties> <file.geojson> [type name]");
+			System.exit(1);
+		}
+
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(args[0])) {
+			properties.load(in);
+		}
+		Map<String, Object> params = new HashMap<>();
+		for (String key : properties.stringPropertyNames()) {
+			params.put(key, properties.getProperty(key));
+		}
+
+		File file = new File(args[1]);
+		String typeName = args.length > 2 ? args[2] : file.getName().split("\\.")[0];
+
+		JDBCDataStore dataStore = (JDBCDataStore) DataStoreFinder.getDataStore(params);
+		if (dataStore == null) {
+			throw new IOException("No datastore matches the parameters in " + args[0] + ", keys: "
+					+ Arrays.toString(properties.stringPropertyNames().toArray()));
+		}
+		try {
+			System.out.println(new SnowflakeGeoJSONLoader(dataStore).load(file, typeName));
+		} finally {
+			dataStore.dispose();
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package org.geotools.data.snowflake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+// Pull parser for GeoJSON features. Reads either a FeatureCollection, stepping through its features array, or newline delimited
+// GeoJSON (one Feature object per line, like the files in data/), keeping only the current feature in memory so inputs of any size
+// can be streamed
+public class SnowflakeGeoJSONReader implements Closeable {
+
+	// A parsed feature: its id, properties in document order and geometry, any of which may be null
+	public static class Feature {
+
+		private final String id;
+		private final Map<String, Object> properties;
+		private final Geometry geometry;
+
+		Feature(String id, Map<String, Object> properties, Geometry geometry) {
+			this.id = id;
+			this.properties = properties;
+			this.geometry = geometry;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public Map<String, Object> getProperties() {
+			return properties;
+		}
+
+		public Geometry getGeometry() {
+			return geometry;
+		}
+	}
+
+	private static final JsonFactory JSON = new JsonFactory();
+
+	private final JsonParser parser;
+	private final GeometryFactory geometryFactory;
+
+	// True while stepping through the features array of a FeatureCollection
+	private boolean inCollection;
+
+	// Root level feature already parsed by enterCollection()
+	private Feature pending;
+
+	public SnowflakeGeoJSONReader(InputStream in, GeometryFactory geometryFactory) throws IOException {
+		this.parser = JSON.createParser(in);
+		this.geometryFactory = geometryFactory;
+	}
+
+	// Returns the next feature, or null at the end of the input
+	public Feature next() throws IOException {
+
+		while (true) {
+			JsonToken token = parser.nextToken();
+			if (token == null) {
+				return null;
+			}
+
+			if (inCollection) {
+				if (token == JsonToken.END_ARRAY) {
+					// Skip whatever follows the features array in the collection
+					inCollection = false;
+					skipToEndOfObject();
+					continue;
+				}
+				return readFeature();
+			}
+
+			if (token != JsonToken.START_OBJECT) {
+				throw new IOException("Expected a GeoJSON object at " + parser.getCurrentLocation());
+			}
+			if (enterCollection()) {
+				continue;
+			}
+			return readFeature();
+		}
+	}
+
+	// Looks at the fields of the root object: a FeatureCollection is entered up to its features array, a Feature is parsed on the spot.
+	// Returns true when the parser was positioned inside a features array
+	private boolean enterCollection() throws IOException {
+
+		// A Feature's fields can come in any order, so the root object has to be read as a feature unless "features" shows up first
+		String id = null;
+		Map<String, Object> properties = null;
+		Geometry geometry = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("features".equals(field) && value == JsonToken.START_ARRAY) {
+				inCollection = true;
+				pending = null;
+				return true;
+			}
+			switch (field) {
+			case "id":
+				id = value == JsonToken.VALUE_NULL ? null : parser.getText();
+				break;
+			case "properties":
+				properties = value == JsonToken.START_OBJECT ? readProperties() : null;
+				break;
+			case "geometry":
+				geometry = value == JsonToken.START_OBJECT ? readGeometry() : null;
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+
+		pending = new Feature(id, properties != null ? properties : new LinkedHashMap<>(), geometry);
+		return false;
+	}
+
+	// Reads the Feature object the parser is positioned at the start of
+	private Feature readFeature() throws IOException {
+
+		if (pending != null) {
+			Feature feature = pending;
+			pending = null;
+			return feature;
+		}
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			throw new IOException("Expected a GeoJSON Feature at " + parser.getCurrentLocation());
+		}
+
+		String id = null;
+		Map<String, Object> properties = new LinkedHashMap<>();
+		Geometry geometry = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			switch (field) {
+			case "id":
+				id = value == JsonToken.VALUE_NULL ? null : parser.getText();
+				break;
+			case "properties":
+				if (value == JsonToken.START_OBJECT) {
+					properties = readProperties();
+				}
+				break;
+			case "geometry":
+				geometry = value == JsonToken.START_OBJECT ? readGeometry() : null;
+				break;
+			default:
+				parser.skipChildren();
+			}
+		}
+		return new Feature(id, properties, geometry);
+	}
+
+	// Reads a properties object. Scalars become String, Long (BigInteger if too large), Double or Boolean, nested objects and arrays are
+	// kept as their JSON text
+	private Map<String, Object> readProperties() throws IOException {
+
+		Map<String, Object> properties = new LinkedHashMap<>();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			properties.put(name, readValue(parser.nextToken()));
+		}
+		return properties;
+	}
+
+	private Object readValue(JsonToken token) throws IOException {
+
+		switch (token) {
+		case VALUE_STRING:
+			return parser.getText();
+		case VALUE_NUMBER_INT:
+			return parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER ? parser.getBigIntegerValue() : parser.getLongValue();
+		case VALUE_NUMBER_FLOAT:
+			return parser.getDoubleValue();
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		case START_OBJECT:
+		case START_ARRAY:
+			StringWriter json = new StringWriter();
+			try (JsonGenerator generator = JSON.createGenerator(json)) {
+				generator.copyCurrentStructure(parser);
+			}
+			return json.toString();
+		default:
+			return null;
+		}
+	}
+
+	// Reads the geometry object the parser is positioned at the start of
+	private Geometry readGeometry() throws IOException {
+
+		String type = null;
+		Object coordinates = null;
+		List<Geometry> geometries = null;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("type".equals(field)) {
+				type = parser.getText();
+			} else if ("coordinates".equals(field) && value == JsonToken.START_ARRAY) {
+				coordinates = readCoordinates();
+			} else if ("geometries".equals(field) && value == JsonToken.START_ARRAY) {
+				geometries = new ArrayList<>();
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					geometries.add(readGeometry());
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if (type == null) {
+			throw new IOException("Geometry without a type at " + parser.getCurrentLocation());
+		}
+		return createGeometry(type, coordinates, geometries);
+	}
+
+	// Reads a coordinates array into a Coordinate, or nested lists of them
+	private Object readCoordinates() throws IOException {
+
+		JsonToken token = parser.nextToken();
+		if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+			double[] ordinates = new double[3];
+			int count = 0;
+			while (token != JsonToken.END_ARRAY) {
+				if (count < 3) {
+					ordinates[count] = parser.getDoubleValue();
+				}
+				count++;
+				token = parser.nextToken();
+			}
+			return count > 2 ? new Coordinate(ordinates[0], ordinates[1], ordinates[2]) : new Coordinate(ordinates[0], ordinates[1]);
+		}
+
+		List<Object> children = new ArrayList<>();
+		while (token == JsonToken.START_ARRAY) {
+			children.add(readCoordinates());
+			token = parser.nextToken();
+		}
+		return children;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Geometry createGeometry(String type, Object coordinates, List<Geometry> geometries) throws IOException {
+
+		switch (type) {
+		case "Point":
+			return coordinates instanceof Coordinate ? geometryFactory.createPoint((Coordinate) coordinates) : geometryFactory.createPoint();
+		case "MultiPoint":
+			return geometryFactory.createMultiPointFromCoords(toArray((List<Object>) coordinates));
+		case "LineString":
+			return geometryFactory.createLineString(toArray((List<Object>) coordinates));
+		case "MultiLineString":
+			List<Object> lines = (List<Object>) coordinates;
+			LineString[] lineStrings = new LineString[lines.size()];
+			for (int i = 0; i < lineStrings.length; i++) {
+				lineStrings[i] = geometryFactory.createLineString(toArray((List<Object>) lines.get(i)));
+			}
+			return geometryFactory.createMultiLineString(lineStrings);
+		case "Polygon":
+			return createPolygon((List<Object>) coordinates);
+		case "MultiPolygon":
+			List<Object> polygons = (List<Object>) coordinates;
+			Polygon[] result = new Polygon[polygons.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = createPolygon((List<Object>) polygons.get(i));
+			}
+			return geometryFactory.createMultiPolygon(result);
+		case "GeometryCollection":
+			return geometryFactory.createGeometryCollection(geometries != null ? geometries.toArray(new Geometry[0]) : new Geometry[0]);
+		default:
+			throw new IOException("Unsupported GeoJSON geometry type " + type);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Polygon createPolygon(List<Object> rings) {
+
+		if (rings == null || rings.isEmpty()) {
+			return geometryFactory.createPolygon();
+		}
+		LinearRing shell = geometryFactory.createLinearRing(toArray((List<Object>) rings.get(0)));
+		LinearRing[] holes = new LinearRing[rings.size() - 1];
+		for (int i = 0; i < holes.length; i++) {
+			holes[i] = geometryFactory.createLinearRing(toArray((List<Object>) rings.get(i + 1)));
+		}
+		return geometryFactory.createPolygon(shell, holes);
+	}
+
+	private static Coordinate[] toArray(List<Object> coordinates) {
+		return coordinates == null ? new Coordinate[0] : coordinates.toArray(new Coordinate[0]);
+	}
+
+	private void skipToEndOfObject() throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			parser.nextToken();
+			parser.skipChildren();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		parser.close();
+	}
+}
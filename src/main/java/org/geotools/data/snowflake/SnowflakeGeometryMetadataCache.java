@@ -0,0 +1,216 @@
+package org.geotools.data.snowflake;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+// Per-datastore cache of geometry column metadata (SRID and native GEOMETRY/GEOGRAPHY type) keyed by schema.table.column.
+// Snowflake has no geometry_columns catalog, so every SRID lookup otherwise costs a query against the table itself
+public class SnowflakeGeometryMetadataCache {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeGeometryMetadataCache.class);
+
+	// GEOGRAPHY values are always WGS 84
+	public static final int GEOGRAPHY_SRID = 4326;
+
+	// Number of GEOMETRY columns probed per UNION ALL statement while seeding
+	private static final int SEED_BATCH_SIZE = 100;
+
+	// Cached metadata for a single geometry column
+	public static class Entry {
+
+		private final Integer srid;
+		private final String nativeType;
+		private final long loadedAt;
+
+		Entry(Integer srid, String nativeType, long loadedAt) {
+			this.srid = srid;
+			this.nativeType = nativeType;
+			this.loadedAt = loadedAt;
+		}
+
+		// SRID of the column, or null when the column had no values to take it from
+		public Integer getSRID() {
+			return srid;
+		}
+
+		// GEOMETRY or GEOGRAPHY, or null when the column was looked up individually rather than seeded
+		public String getNativeType() {
+			return nativeType;
+		}
+	}
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final Map<String, Long> seededSchemas = new ConcurrentHashMap<>();
+
+	private volatile long timeToLiveMillis = TimeUnit.HOURS.toMillis(1);
+
+	// Sets how long entries stay valid, zero disables caching and a negative value keeps entries until invalidated
+	public void setTimeToLive(long timeToLive, TimeUnit unit) {
+		this.timeToLiveMillis = unit.toMillis(timeToLive);
+		if (timeToLive == 0) {
+			invalidate();
+		}
+	}
+
+	public boolean isEnabled() {
+		return timeToLiveMillis != 0;
+	}
+
+	// Returns the cached metadata for the column, or null if it is missing or expired
+	public Entry get(String schemaName, String tableName, String columnName) {
+
+		if (!isEnabled()) {
+			return null;
+		}
+
+		String key = key(schemaName, tableName, columnName);
+		Entry entry = entries.get(key);
+		if (entry != null && isExpired(entry.loadedAt)) {
+			entries.remove(key, entry);
+			return null;
+		}
+		return entry;
+	}
+
+	public void put(String schemaName, String tableName, String columnName, Integer srid, String nativeType) {
+		if (isEnabled()) {
+			entries.put(key(schemaName, tableName, columnName), new Entry(srid, nativeType, System.currentTimeMillis()));
+		}
+	}
+
+	// Drops every cached entry
+	public void invalidate() {
+		entries.clear();
+		seededSchemas.clear();
+	}
+
+	// Drops the cached entries of a single table, e.g. after its geometry column was rewritten with a different SRID
+	public void invalidate(String schemaName, String tableName) {
+		String prefix = key(schemaName, tableName, "");
+		entries.keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
+	// Returns true if the schema was seeded and the seed hasn't expired yet
+	boolean isSeeded(String schemaName) {
+		Long seededAt = seededSchemas.get(schemaKey(schemaName));
+		return seededAt != null && !isExpired(seededAt);
+	}
+
+	// Loads the metadata of every geometry column in the schema in two round trips: one INFORMATION_SCHEMA query to find the columns,
+	// and one UNION ALL probe per SEED_BATCH_SIZE GEOMETRY columns. GEOGRAPHY columns need no probe at all
+	void seed(String schemaName, Connection cx, SnowflakeDialect dialect) throws SQLException {
+
+		if (!isEnabled()) {
+			return;
+		}
+
+		// Mark the schema first so a failing seed (e.g. missing privileges) doesn't get retried on every lookup
+		seededSchemas.put(schemaKey(schemaName), System.currentTimeMillis());
+
+		StringBuffer sql = new StringBuffer();
+		sql.append("SELECT TABLE_SCHEMA, TABLE_NAME, COLUMN_NAME, DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS");
+		sql.append(" WHERE DATA_TYPE IN ('GEOMETRY', 'GEOGRAPHY') AND TABLE_SCHEMA = ");
+		sql.append(schemaName != null ? "?" : "CURRENT_SCHEMA()");
+
+		List<String[]> geometryColumns = new ArrayList<>();
+		int geographyColumns = 0;
+
+		PreparedStatement ps = cx.prepareStatement(sql.toString());
+		try {
+			if (schemaName != null) {
+				ps.setString(1, schemaName);
+			}
+
+			ResultSet rs = ps.executeQuery();
+			try {
+				while (rs.next()) {
+					String schema = rs.getString(1);
+					String table = rs.getString(2);
+					String column = rs.getString(3);
+					String type = rs.getString(4);
+
+					if ("GEOGRAPHY".equals(type)) {
+						put(schemaName, table, column, GEOGRAPHY_SRID, type);
+						geographyColumns++;
+					} else {
+						geometryColumns.add(new String[] {schema, table, column});
+					}
+				}
+			} finally {
+				dialect.getDataStore().closeSafe(rs);
+			}
+		} finally {
+			dialect.getDataStore().closeSafe(ps);
+		}
+
+		for (int i = 0; i < geometryColumns.size(); i += SEED_BATCH_SIZE) {
+			seedGeometryColumns(schemaName, geometryColumns.subList(i, Math.min(i + SEED_BATCH_SIZE, geometryColumns.size())), cx, dialect);
+		}
+
+		LOGGER.fine("Seeded geometry metadata for schema " + schemaName + ": " + geographyColumns + " GEOGRAPHY and "
+				+ geometryColumns.size() + " GEOMETRY columns");
+	}
+
+	// Probes the SRID of a batch of GEOMETRY columns with a single statement
+	private void seedGeometryColumns(String schemaName, List<String[]> columns, Connection cx, SnowflakeDialect dialect) throws SQLException {
+
+		StringBuffer sql = new StringBuffer();
+		for (int i = 0; i < columns.size(); i++) {
+			String[] column = columns.get(i);
+
+			if (i > 0) {
+				sql.append(" UNION ALL ");
+			}
+			sql.append("SELECT ").append(i).append(", (SELECT ST_SRID(");
+			dialect.encodeColumnName(null, column[2], sql);
+			sql.append(") FROM ");
+			dialect.encodeSchemaName(column[0], sql);
+			sql.append(".");
+			dialect.encodeTableName(column[1], sql);
+			sql.append(" WHERE ");
+			dialect.encodeColumnName(null, column[2], sql);
+			sql.append(" IS NOT NULL LIMIT 1)");
+		}
+
+		LOGGER.fine(sql.toString());
+
+		Statement st = cx.createStatement();
+		try {
+			ResultSet rs = st.executeQuery(sql.toString());
+			try {
+				while (rs.next()) {
+					String[] column = columns.get(rs.getInt(1));
+					int srid = rs.getInt(2);
+					put(schemaName, column[1], column[2], rs.wasNull() ? null : Integer.valueOf(srid), "GEOMETRY");
+				}
+			} finally {
+				dialect.getDataStore().closeSafe(rs);
+			}
+		} finally {
+			dialect.getDataStore().closeSafe(st);
+		}
+	}
+
+	private boolean isExpired(long loadedAt) {
+		return timeToLiveMillis > 0 && System.currentTimeMillis() - loadedAt > timeToLiveMillis;
+	}
+
+	private static String schemaKey(String schemaName) {
+		return schemaName == null ? "" : schemaName;
+	}
+
+	private static String key(String schemaName, String tableName, String columnName) {
+		return schemaKey(schemaName) + "." + tableName + "." + columnName;
+	}
+}
@@ -0,0 +1,295 @@
+package org.geotools.data.snowflake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.geotools.util.logging.Logging;
+
+// Serves deep pages of sorted queries by seeking instead of skipping. Whenever a page sorted on a single column (the primary key the
+// datastore sorts paged queries on, or the requested sort) is read, the value of its last row is remembered for the query, its bind
+// values and the offset reached. When the next page asks for that offset, its LIMIT/OFFSET becomes a WHERE on the sort column, so
+// Snowflake prunes the micro-partitions before it and doesn't produce and discard every earlier row: sequential page requests cost
+// the same however deep they go. Rows sharing the sort value at the page boundary are skipped with a small OFFSET, so sort columns
+// don't have to be unique. Pages asked for out of sequence run with the plain OFFSET
+public class SnowflakeKeysetPaging {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeKeysetPaging.class);
+
+	// The paged queries of the dialects: <query> ORDER BY <column> [ASC|DESC] LIMIT <n> [OFFSET <m>]
+	private static final Pattern PAGE = Pattern.compile("^(.*\\S)\\s+ORDER\\s+BY\\s+(?:" + SnowflakeResultCache.IDENTIFIER + "\\s*\\.\\s*)?("
+			+ SnowflakeResultCache.IDENTIFIER + ")(?:\\s+(ASC|DESC))?\\s+LIMIT\\s+(\\d+|NULL)(?:\\s+OFFSET\\s+(\\d+))?\\s*$",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	// Most page boundaries remembered
+	private static final int MAX_POSITIONS = 1000;
+
+	// Where a page ended: the sort value of its last row, how many rows in a row had it, and when this stops being trusted
+	static class Position {
+
+		final Object value;
+		final long ties;
+		final long expiresAt;
+
+		Position(Object value, long ties, long expiresAt) {
+			this.value = value;
+			this.ties = ties;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final LinkedHashMap<String, Position> positions = new LinkedHashMap<String, Position>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Position> eldest) {
+			return size() > MAX_POSITIONS;
+		}
+	};
+
+	private volatile long timeToLiveMillis = TimeUnit.MINUTES.toMillis(5);
+
+	private final AtomicLong seeks = new AtomicLong();
+
+	// Sets how long a page boundary can be seeked to, rows added meanwhile by others than the datastore would shift later pages
+	public void setTimeToLive(long timeToLive, TimeUnit unit) {
+		this.timeToLiveMillis = unit.toMillis(timeToLive);
+	}
+
+	// Pages served by seeking since the datastore was created
+	public long getSeeks() {
+		return seeks.get();
+	}
+
+	// Forgets every page boundary after a write through the datastore
+	public synchronized void invalidate() {
+		positions.clear();
+	}
+
+	// Returns the page of a paged query sorted on one column, or null for any other statement
+	Page page(String sql, Map<Integer, Object> parameters) {
+
+		Matcher matcher = sql != null ? PAGE.matcher(sql) : null;
+		if (matcher == null || !matcher.matches()) {
+			return null;
+		}
+
+		String base = matcher.group(1);
+		String column = matcher.group(2);
+		boolean descending = "DESC".equalsIgnoreCase(matcher.group(3));
+		long limit = "NULL".equalsIgnoreCase(matcher.group(4)) ? -1 : Long.parseLong(matcher.group(4));
+		long offset = matcher.group(5) != null ? Long.parseLong(matcher.group(5)) : 0;
+
+		StringBuilder key = new StringBuilder(base).append('\u0000').append(column).append(descending ? " DESC" : " ASC");
+		if (parameters != null) {
+			for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+				Object value = parameter.getValue();
+				key.append('\u0000').append(parameter.getKey()).append('=');
+				key.append(value instanceof byte[] ? Base64.getEncoder().encodeToString((byte[]) value) : String.valueOf(value));
+			}
+		}
+
+		Position position = null;
+		if (offset > 0 && isSelected(base, column)) {
+			synchronized (this) {
+				position = positions.get(key + "\u0000" + offset);
+				if (position != null && position.expiresAt < System.currentTimeMillis()) {
+					positions.remove(key + "\u0000" + offset);
+					position = null;
+				}
+			}
+		}
+		return new Page(key.toString(), base, column, descending, limit, offset, parameters, position);
+	}
+
+	// The seek happens around the query, so the sort column has to be one of the columns it returns
+	private static boolean isSelected(String base, String column) {
+
+		int from = base.toUpperCase(Locale.ROOT).indexOf(" FROM ");
+		return from > 0 && (column.startsWith("\"") ? base.substring(0, from).contains(column)
+				: base.substring(0, from).toUpperCase(Locale.ROOT).contains(column.toUpperCase(Locale.ROOT)));
+	}
+
+	private synchronized void remember(String key, long offset, Object value, long ties) {
+		positions.put(key + "\u0000" + offset, new Position(value, ties, System.currentTimeMillis() + timeToLiveMillis));
+	}
+
+	// A page of a sorted query, which records where it ends and seeks to where the previous page ended when that's known
+	class Page {
+
+		private final String key;
+		private final String base;
+		private final String column;
+		private final boolean descending;
+		private final long limit;
+		private final long offset;
+		private final Map<Integer, Object> parameters;
+		private final Position position;
+
+		Page(String key, String base, String column, boolean descending, long limit, long offset, Map<Integer, Object> parameters,
+				Position position) {
+			this.key = key;
+			this.base = base;
+			this.column = column;
+			this.descending = descending;
+			this.limit = limit;
+			this.offset = offset;
+			this.parameters = parameters;
+			this.position = position;
+		}
+
+		// Returns true if the page can start from where the previous one ended
+		boolean isSeek() {
+			return position != null;
+		}
+
+		// Returns the query starting at the sort value the previous page ended on, skipping the rows of that value it already returned.
+		// Snowflake sorts nulls last when ascending, first when descending, so only ascending pages still have them ahead
+		String getSeekSQL() {
+
+			StringBuilder sql = new StringBuilder("SELECT * FROM (").append(base).append(") WHERE ");
+			if (descending) {
+				sql.append(column).append(" <= ?");
+			} else {
+				sql.append("(").append(column).append(" >= ? OR ").append(column).append(" IS NULL)");
+			}
+			sql.append(" ORDER BY ").append(column).append(descending ? " DESC" : " ASC");
+			sql.append(" LIMIT ").append(limit >= 0 ? String.valueOf(limit) : "NULL");
+			if (position.ties > 0) {
+				sql.append(" OFFSET ").append(position.ties);
+			}
+			return sql.toString();
+		}
+
+		// Runs the page from the position of the previous one, with the bind values of the original statement
+		ResultSet seek(Connection cx, Statement statement) throws SQLException {
+
+			String sql = getSeekSQL();
+			PreparedStatement ps = cx.prepareStatement(sql);
+			try {
+				int index = 1;
+				if (parameters != null) {
+					for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+						if (parameter.getValue() == null) {
+							ps.setNull(parameter.getKey(), Types.VARCHAR);
+						} else {
+							ps.setObject(parameter.getKey(), parameter.getValue());
+						}
+						index = Math.max(index, parameter.getKey() + 1);
+					}
+				}
+				ps.setObject(index, position.value);
+
+				LOGGER.fine("Seeking to offset " + offset + ": " + sql);
+				ResultSet rs = ps.executeQuery();
+				seeks.incrementAndGet();
+				return record(rs, ps, statement);
+			} catch (SQLException | RuntimeException e) {
+				ps.close();
+				throw e;
+			}
+		}
+
+		// Wraps the result of the page so the position of its last row gets remembered
+		ResultSet record(ResultSet rs, Statement statement) {
+			return record(rs, null, statement);
+		}
+
+		private ResultSet record(ResultSet rs, Statement owned, Statement statement) {
+			return (ResultSet) Proxy.newProxyInstance(SnowflakeKeysetPaging.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+					new RecordingHandler(rs, owned, statement));
+		}
+
+		// Follows the sort value of the rows read, and records it with the offset reached once the reader is done
+		private class RecordingHandler implements InvocationHandler {
+
+			private final ResultSet delegate;
+			private final Statement owned;
+			private final Statement statement;
+			private int index;
+			private long rows;
+			private Object last;
+			private long ties;
+			// Whether the ties are complete, they aren't on a page reached with OFFSET until the sort value changes within it
+			private boolean known;
+			private boolean recorded;
+
+			RecordingHandler(ResultSet delegate, Statement owned, Statement statement) {
+				this.delegate = delegate;
+				this.owned = owned;
+				this.statement = statement;
+				this.known = offset == 0 || position != null;
+				if (position != null) {
+					last = position.value;
+					ties = position.ties;
+				}
+			}
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+				String name = method.getName();
+				if ("getStatement".equals(name)) {
+					return statement;
+				}
+				if ("close".equals(name)) {
+					finish();
+					try {
+						delegate.close();
+					} finally {
+						if (owned != null) {
+							owned.close();
+						}
+					}
+					return null;
+				}
+
+				Object result = SnowflakeConnectionProxy.forward(delegate, method, args);
+				if ("next".equals(name) && !recorded) {
+					if ((Boolean) result) {
+						if (index == 0) {
+							String label = column.startsWith("\"") ? column.substring(1, column.length() - 1).replace("\"\"", "\"") : column;
+							index = delegate.findColumn(label);
+						}
+						Object value = delegate.getObject(index);
+						if ((rows > 0 || position != null) && Objects.equals(value, last)) {
+							ties++;
+						} else {
+							known |= rows > 0;
+							last = value;
+							ties = 1;
+						}
+						rows++;
+					} else {
+						finish();
+					}
+				}
+				return result;
+			}
+
+			private void finish() {
+
+				if (!recorded && rows > 0 && known && last != null) {
+					remember(key, offset + rows, last, ties);
+				}
+				recorded = true;
+			}
+		}
+	}
+}
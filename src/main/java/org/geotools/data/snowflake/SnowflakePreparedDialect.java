@@ -0,0 +1,212 @@
+package org.geotools.data.snowflake;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.geotools.api.feature.FeatureVisitor;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.filter.Filter;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PreparedFilterToSQL;
+import org.geotools.jdbc.PreparedStatementSQLDialect;
+import org.geotools.util.factory.Hints;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.io.WKBWriter;
+
+// Prepared statement flavour of the Snowflake dialect. Geometries are bound as Well-Known-Binary parameters and filter literals as bind
+// variables, so statements stay small and identical queries with different values share Snowflake's compilation and result caches
+public class SnowflakePreparedDialect extends PreparedStatementSQLDialect {
+
+	// Delegate used to run methods already implemented by SnowflakeDialect
+	SnowflakeDialect delegate;
+	
+	// Constructor method
+	public SnowflakePreparedDialect(JDBCDataStore dataStore) {
+		super(dataStore);
+		delegate = new SnowflakeDialect(dataStore);
+	}
+	
+	// Returns a string representation of Snowflake's name escape character
+	@Override
+	public String getNameEscape() {
+		return delegate.getNameEscape();
+	}
+	
+	// Returns the string representation of the mapped Geographic Type passed to the function
+	@Override
+	public String getGeometryTypeName(Integer type) {
+		return delegate.getGeometryTypeName(type);
+	}
+	
+	// Returns the SRID of the provided geometry column
+	@Override
+	public Integer getGeometrySRID(String schemaName, String tableName, String columnName, Connection cx) throws SQLException {
+		return delegate.getGeometrySRID(schemaName, tableName, columnName, cx);
+	}
+	
+	// This project currently only supports 2-D Geometric values
+	@Override
+	public int getGeometryDimension(String schemaName, String tableName, String columnName, Connection cx) throws SQLException {
+		return delegate.getGeometryDimension(schemaName, tableName, columnName, cx);
+	}
+	
+	// Encodes the provided geometry column as Well-Known-Binary and appends it to the SQL Buffer
+	@Override
+	public void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, int srid, Hints hints, StringBuffer sql) {
+		delegate.encodeGeometryColumn(gatt, prefix, srid, hints, sql);
+	}
+	
+	// Advertises the simplification and tile hints
+	@Override
+	public void addSupportedHints(Set<Hints.Key> hints) {
+		delegate.addSupportedHints(hints);
+	}
+	
+	// Creates a mapping between SQL's Geometric classes and the GeoTypes Enum declared in SnowflakeDialect
+	@Override
+	public void registerClassToSqlMappings(Map<Class<?>, Integer> mappings) {
+		delegate.registerClassToSqlMappings(mappings);
+	}
+	
+	// Creates a mapping between the GeoTypes Enum declared in SnowflakeDialect and SQL's Geometric classes
+	@Override
+	public void registerSqlTypeToClassMappings(Map<Integer, Class<?>> mappings) {
+		delegate.registerSqlTypeToClassMappings(mappings);
+	}
+	
+	// Creates a mapping of the named string from the GeoTypes Enum declared in SnowflakeDialect and SQL's Geometric classes
+	@Override
+	public void registerSqlTypeNameToClassMappings(Map<String, Class<?>> mappings) {
+		delegate.registerSqlTypeNameToClassMappings(mappings);
+	}
+	
+	// Creates a mapping to override SQL's types with Snowflake's types
+	@Override
+	public void registerSqlTypeToSqlTypeNameOverrides(Map<Integer, String> overrides) {
+		delegate.registerSqlTypeToSqlTypeNameOverrides(overrides);
+	}
+	
+	// Appends the placeholder for a geometry bound as Well-Known-Binary to the SQL Buffer
+	@Override
+	public void prepareGeometryValue(Geometry g, int dimension, int srid, Class binding, StringBuffer sql) {
+		
+		if (g != null) {
+			if (srid < 0) srid = 0;
+			sql.append("ST_GEOMFROMWKB(?, ").append(srid).append(")");
+		} else {
+			sql.append("?");
+		}
+	}
+	
+	// Binds the provided geometry as Well-Known-Binary
+	@Override
+	public void setGeometryValue(Geometry g, int dimension, int srid, Class binding, PreparedStatement ps, int column) throws SQLException {
+		
+		if (g == null) {
+			ps.setNull(column, Types.BINARY);
+			return;
+		}
+		
+		if (g instanceof LinearRing) {
+			// WKB readers expect rings to be plain line strings outside of a polygon
+			g = g.getFactory().createLineString(((LinearRing) g).getCoordinateSequence());
+		}
+		ps.setBytes(column, new WKBWriter(2).write(g));
+	}
+	
+	// Decodes the Well-Known-Binary value of the provided geometry column
+	@Override
+	public Geometry decodeGeometryValue(GeometryDescriptor descriptor, ResultSet rs, String column, GeometryFactory factory, Connection cx, Hints hints) throws IOException, SQLException {
+		return delegate.decodeGeometryValue(descriptor, rs, column, factory, cx, hints);
+	}
+
+	// Tags the statements of the layer, see SnowflakeDialect.onStatement()
+	@Override
+	public void onSelect(PreparedStatement select, Connection cx, SimpleFeatureType featureType) throws SQLException {
+		delegate.onStatement(select, featureType);
+	}
+	
+	@Override
+	public void onInsert(PreparedStatement insert, Connection cx, SimpleFeatureType featureType) throws SQLException {
+		delegate.onStatement(insert, featureType);
+	}
+	
+	@Override
+	public void onUpdate(PreparedStatement update, Connection cx, SimpleFeatureType featureType) throws SQLException {
+		delegate.onStatement(update, featureType);
+	}
+	
+	@Override
+	public void onDelete(PreparedStatement delete, Connection cx, SimpleFeatureType featureType) throws SQLException {
+		delegate.onStatement(delete, featureType);
+	}
+	
+	// Appends the aggregate computing the bounding box of the provided geometry column to the SQL Buffer
+	@Override
+	public void encodeGeometryEnvelope(String tableName, String geometryColumn, StringBuffer sql) {
+		delegate.encodeGeometryEnvelope(tableName, geometryColumn, sql);
+	}
+	
+	// Reads the extent computed by encodeGeometryEnvelope() into an Envelope
+	@Override
+	public Envelope decodeGeometryEnvelope(ResultSet rs, int column, Connection cx) throws SQLException, IOException {
+		return delegate.decodeGeometryEnvelope(rs, column, cx);
+	}
+	
+	// Answers the bounds of unfiltered queries from the envelope columns
+	@Override
+	public List<ReferencedEnvelope> getOptimizedBounds(String schema, SimpleFeatureType featureType, Connection cx) throws SQLException, IOException {
+		return delegate.getOptimizedBounds(schema, featureType, cx);
+	}
+	
+	// Snowflake supports LIMIT and OFFSET
+	@Override
+	public boolean isLimitOffsetSupported() {
+		return delegate.isLimitOffsetSupported();
+	}
+	
+	// Appends LIMIT and OFFSET to page the query in Snowflake
+	@Override
+	public void applyLimitOffset(StringBuffer sql, int limit, int offset) {
+		delegate.applyLimitOffset(sql, limit, offset);
+	}
+	
+	// Registers the standard aggregates and Snowflake's approximate distinct count
+	@Override
+	public void registerAggregateFunctions(Map<Class<? extends FeatureVisitor>, String> aggregates) {
+		delegate.registerAggregateFunctions(aggregates);
+	}
+	
+	// Creates the instance of SnowflakePreparedFilterToSQL to use with the Snowflake Datastore
+	@Override
+	public PreparedFilterToSQL createPreparedFilterToSQL() {
+		
+		SnowflakePreparedFilterToSQL fts = new SnowflakePreparedFilterToSQL(this);
+		fts.helper.setEnvelopeColumns(delegate.getEnvelopeColumns());
+		fts.helper.setCellIndexes(delegate.getCellIndexes());
+		fts.helper.setFilterGeometryTolerance(delegate.getFilterGeometryTolerance());
+		return fts;
+	}
+	
+	// Splits the filter into the part encoded in SQL and the part evaluated in memory, pushing an intersection prefilter down for the
+	// spatial operators Snowflake can't evaluate itself, leaving distances in units that can't be converted to memory and checking
+	// GEOGRAPHY boxes too wide for a polygon there as well
+	@Override
+	public Filter[] splitFilter(Filter filter, SimpleFeatureType schema) {
+		return SnowflakeFilterToSQLHelper.addIntersectsPrefilters(
+				SnowflakeFilterToSQLHelper.addWideBBoxPostfilters(
+						SnowflakeFilterToSQLHelper.moveUnsupportedDistances(super.splitFilter(filter, schema), schema), schema));
+	}
+}
@@ -0,0 +1,102 @@
+package org.geotools.data.snowflake;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.filter.expression.Literal;
+import org.geotools.api.filter.expression.PropertyName;
+import org.geotools.api.filter.spatial.BinarySpatialOperator;
+import org.geotools.filter.FilterCapabilities;
+import org.geotools.jdbc.PreparedFilterToSQL;
+import org.locationtech.jts.geom.Geometry;
+
+// Filter encoder used by SnowflakePreparedDialect: literals become bind parameters and geometries are bound as Well-Known-Binary
+public class SnowflakePreparedFilterToSQL extends PreparedFilterToSQL {
+
+    // Spatial encoding shared with SnowflakeFilterToSQL
+    SnowflakeFilterToSQLHelper helper;
+
+    // Constructor method
+    public SnowflakePreparedFilterToSQL(SnowflakePreparedDialect dialect) {
+        super(dialect);
+        helper = new SnowflakeFilterToSQLHelper(this);
+    }
+
+    // Creates and returns a 'list' of all filter capabilities the connector has implemented
+    @Override
+    protected FilterCapabilities createFilterCapabilities() {
+
+        FilterCapabilities capabilities = super.createFilterCapabilities();
+        SnowflakeFilterToSQLHelper.addSpatialCapabilities(capabilities);
+
+        return capabilities;
+    }
+
+    // Override method for passing different parameters into visitBinarySpatialOperator()
+    @Override
+    protected Object visitBinarySpatialOperator(
+            BinarySpatialOperator filter,
+            PropertyName property,
+            Literal geometry,
+            boolean swapped,
+            Object extraData) {
+        return helper().visitBinarySpatialOperator(filter, property, geometry, swapped, extraData);
+    }
+
+    // Override method for passing different parameters into visitBinarySpatialOperator()
+    @Override
+    protected Object visitBinarySpatialOperator(BinarySpatialOperator filter, Expression e1, Expression e2, Object extraData) {
+        return helper().visitBinarySpatialOperator(filter, e1, e2, false, extraData);
+    }
+
+    // Binds geometry literals compared against a GEOGRAPHY or GEOMETRY column with the constructor of that type, so the value is
+    // converted once per statement instead of the column being converted on every row
+    @Override
+    public Object visit(Literal expression, Object context) {
+
+        // Simplified geometries are bound in place of the original ones
+        expression = helper().simplifyFilterGeometry(expression);
+
+        String nativeType = helper().getLiteralNativeType();
+        if (nativeType == null) {
+            return super.visit(expression, context);
+        }
+
+        // Let the base class register the bind value, but keep the placeholder it writes so it can be wrapped
+        int bound = getLiteralValues().size();
+        Writer target = out;
+        StringWriter placeholder = new StringWriter();
+        out = placeholder;
+        try {
+            super.visit(expression, context);
+        } finally {
+            out = target;
+        }
+
+        try {
+            List<Object> values = getLiteralValues();
+            if (values.size() > bound && values.get(values.size() - 1) instanceof Geometry) {
+                if (SnowflakeFilterToSQLHelper.GEOGRAPHY.equals(nativeType)) {
+                    out.write("TO_GEOGRAPHY(?)");
+                } else {
+                    out.write("TO_GEOMETRY(?, " + helper.getLiteralSRID() + ")");
+                }
+            } else {
+                out.write(placeholder.toString());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return context;
+    }
+
+    // Returns the spatial helper, pointed at this encoder's current output and feature type
+    SnowflakeFilterToSQLHelper helper() {
+        helper.out = out;
+        helper.featureType = featureType;
+        return helper;
+    }
+}
@@ -0,0 +1,233 @@
+package org.geotools.data.snowflake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.geotools.util.logging.Logging;
+
+import net.snowflake.client.jdbc.SnowflakeResultSet;
+
+// Times each query of the datastore from the JVM's side: waiting for the connection, executing (compile, queueing and running in the
+// warehouse, which Snowflake's QUERY_HISTORY breaks down further by query id), reaching the first row, fetching the rest and decoding
+// WKB. Every query read to the end or closed is logged at FINE as one key=value line, queries slower than the slow query threshold at
+// INFO, and the totals are published with the connection pool statistics over JMX
+public class SnowflakeQueryMetrics {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeQueryMetrics.class);
+
+	// The statements of JDBCDataStore.getCount()
+	private static final Pattern COUNT = Pattern.compile("^\\s*SELECT\\s+COUNT\\s*\\(\\s*\\*\\s*\\).*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private volatile long slowQueryNanos = -1;
+
+	private final AtomicLong queries = new AtomicLong();
+	private final AtomicLong borrowNanos = new AtomicLong();
+	private final AtomicLong executeNanos = new AtomicLong();
+	private final AtomicLong firstRowNanos = new AtomicLong();
+	private final AtomicLong fetchNanos = new AtomicLong();
+	private final AtomicLong decodeNanos = new AtomicLong();
+	private final AtomicLong rows = new AtomicLong();
+	private final AtomicLong geometryBytes = new AtomicLong();
+
+	// Logs queries taking longer than this from execution to their last row at INFO, a negative value disables it
+	public void setSlowQueryThreshold(long threshold, TimeUnit unit) {
+		this.slowQueryNanos = threshold < 0 ? -1 : unit.toNanos(threshold);
+	}
+
+	// Queries measured since the datastore was created
+	public long getQueries() {
+		return queries.get();
+	}
+
+	// Average times per query, in milliseconds
+	public double getAverageBorrowMillis() {
+		return average(borrowNanos);
+	}
+
+	public double getAverageExecuteMillis() {
+		return average(executeNanos);
+	}
+
+	public double getAverageFirstRowMillis() {
+		return average(firstRowNanos);
+	}
+
+	public double getAverageFetchMillis() {
+		return average(fetchNanos);
+	}
+
+	public double getAverageDecodeMillis() {
+		return average(decodeNanos);
+	}
+
+	// Rows read and WKB bytes decoded since the datastore was created
+	public long getRows() {
+		return rows.get();
+	}
+
+	public long getGeometryBytes() {
+		return geometryBytes.get();
+	}
+
+	private double average(AtomicLong nanos) {
+		long count = queries.get();
+		return count == 0 ? 0 : nanos.get() / 1e6 / count;
+	}
+
+	// Returns what the statement does, for query tags and logs: count, select or the first keyword of other statements
+	static String getOperation(String sql) {
+
+		if (sql == null) {
+			return "batch";
+		}
+		if (COUNT.matcher(sql).matches()) {
+			return "count";
+		}
+		String trimmed = sql.trim();
+		int end = 0;
+		while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+			end++;
+		}
+		return end == 0 ? "statement" : trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+	}
+
+	// Wraps the result of a query executed from the provided start so reading it is measured
+	ResultSet track(ResultSet rs, String sql, String layer, long borrow, long start) {
+
+		Query query = new Query(sql, layer, borrow, start, System.nanoTime() - start, getQueryId(rs));
+		return (ResultSet) Proxy.newProxyInstance(SnowflakeQueryMetrics.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+				new TrackingHandler(rs, query));
+	}
+
+	// Returns the Snowflake query id of a result, null for the ones answered by the datastore itself
+	private static String getQueryId(ResultSet rs) {
+		try {
+			return rs.isWrapperFor(SnowflakeResultSet.class) ? rs.unwrap(SnowflakeResultSet.class).getQueryID() : null;
+		} catch (SQLException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	// Returns the query a result read through the datastore belongs to, null when it isn't measured
+	static Query getQuery(ResultSet rs) throws SQLException {
+		return rs instanceof Proxy && rs.isWrapperFor(Query.class) ? rs.unwrap(Query.class) : null;
+	}
+
+	// The measures of one query, filled in as its result is read
+	public class Query {
+
+		private final String sql;
+		private final String layer;
+		private final String queryId;
+		private final long start;
+		private final long borrow;
+		private final long execute;
+		private long firstRow = -1;
+		private long fetch;
+		private long decode;
+		private long rows;
+		private long bytes;
+		private boolean finished;
+
+		Query(String sql, String layer, long borrow, long start, long execute, String queryId) {
+			this.sql = sql;
+			this.layer = layer;
+			this.borrow = borrow;
+			this.start = start;
+			this.execute = execute;
+			this.queryId = queryId;
+		}
+
+		public String getQueryId() {
+			return queryId;
+		}
+
+		// Adds the time spent decoding a geometry of the provided WKB size
+		public void decoded(int wkbBytes, long nanos) {
+			bytes += wkbBytes;
+			decode += nanos;
+		}
+
+		private void finish() {
+
+			if (finished) {
+				return;
+			}
+			finished = true;
+			queries.incrementAndGet();
+			borrowNanos.addAndGet(borrow);
+			executeNanos.addAndGet(execute);
+			firstRowNanos.addAndGet(Math.max(firstRow, 0));
+			fetchNanos.addAndGet(fetch);
+			decodeNanos.addAndGet(decode);
+			SnowflakeQueryMetrics.this.rows.addAndGet(rows);
+			geometryBytes.addAndGet(bytes);
+
+			long total = System.nanoTime() - start;
+			boolean slow = slowQueryNanos >= 0 && total >= slowQueryNanos;
+			Level level = slow ? Level.INFO : Level.FINE;
+			if (LOGGER.isLoggable(level)) {
+				LOGGER.log(level, (slow ? "slow_query" : "query") + " query_id=" + queryId + " layer=" + layer + " operation=" + getOperation(sql)
+						+ " rows=" + rows + " geometry_bytes=" + bytes + " borrow_ms=" + millis(borrow) + " execute_ms=" + millis(execute)
+						+ " first_row_ms=" + (firstRow < 0 ? "-" : millis(firstRow)) + " fetch_ms=" + millis(fetch) + " decode_ms="
+						+ millis(decode) + " total_ms=" + millis(total) + (slow ? " sql=" + sql : ""));
+			}
+		}
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+	}
+
+	// Times the calls to next() and hands the query to the dialect decoding its geometries
+	private static class TrackingHandler implements InvocationHandler {
+
+		private final ResultSet delegate;
+		private final Query query;
+
+		TrackingHandler(ResultSet delegate, Query query) {
+			this.delegate = delegate;
+			this.query = query;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+			if (("unwrap".equals(name) || "isWrapperFor".equals(name)) && args[0] == Query.class) {
+				return "unwrap".equals(name) ? query : Boolean.TRUE;
+			}
+			if ("next".equals(name)) {
+				long start = System.nanoTime();
+				Object result = SnowflakeConnectionProxy.forward(delegate, method, args);
+				long end = System.nanoTime();
+				query.fetch += end - start;
+				if ((Boolean) result) {
+					if (query.rows++ == 0) {
+						query.firstRow = end - query.start;
+					}
+				} else {
+					query.finish();
+				}
+				return result;
+			}
+			if ("close".equals(name)) {
+				try {
+					return SnowflakeConnectionProxy.forward(delegate, method, args);
+				} finally {
+					query.finish();
+				}
+			}
+			return SnowflakeConnectionProxy.forward(delegate, method, args);
+		}
+	}
+}
@@ -0,0 +1,695 @@
+package org.geotools.data.snowflake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+import org.geotools.util.logging.Logging;
+
+// In-JVM cache of query results, so identical reads (the same BBOX tile or attribute filter requested by many users) are answered
+// without reaching the warehouse. Entries are keyed on the generated SQL plus its bind values, which already name the table and every
+// selected column of the feature type. They are evicted least recently used once the cache holds too many rows, expire after the TTL of
+// the tables they read, and are dropped as soon as one of those tables shows a new LAST_ALTERED in INFORMATION_SCHEMA.TABLES. The
+// LAST_ALTERED values of every cached table are refreshed with a single query at most once per check interval
+public class SnowflakeResultCache {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeResultCache.class);
+
+	// Tables named after FROM or JOIN, as up to three quoted or plain identifiers, optionally aliased and followed by more of them
+	// after commas (FROM a, b)
+	static final String IDENTIFIER = "(?:\"(?:[^\"]|\"\")+\"|[A-Za-z_][A-Za-z0-9_$]*)";
+	private static final String NAME = IDENTIFIER + "(?:\\s*\\.\\s*" + IDENTIFIER + "){0,2}";
+	private static final String ALIAS = "(?:\\s+(?:AS\\s+)?(?!(?:JOIN|INNER|LEFT|RIGHT|FULL|CROSS|NATURAL|ON|USING|WHERE|GROUP|ORDER|LIMIT|UNION)\\b)"
+			+ IDENTIFIER + ")?";
+	private static final String ALIASED_NAME = NAME + ALIAS;
+	private static final Pattern TABLE = Pattern.compile("\\b(?:FROM|JOIN)\\s+(" + ALIASED_NAME + "(?:\\s*,\\s*" + ALIASED_NAME + ")*)",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern LISTED_TABLE = Pattern.compile("\\G\\s*,?\\s*(" + NAME + ")" + ALIAS, Pattern.CASE_INSENSITIVE);
+	private static final Pattern WRITTEN_TABLE = Pattern.compile("^\\s*(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|MERGE\\s+INTO|COPY\\s+INTO|TRUNCATE\\s+(?:TABLE\\s+)?)\\s*("
+			+ IDENTIFIER + "(?:\\s*\\.\\s*" + IDENTIFIER + "){0,2})", Pattern.CASE_INSENSITIVE);
+
+	// Marks tables whose results can't be cached: views, external tables and anything missing from INFORMATION_SCHEMA.TABLES
+	private static final String UNCACHEABLE = "";
+
+	// Number of tables checked per INFORMATION_SCHEMA statement
+	private static final int CHECK_BATCH_SIZE = 100;
+
+	// A cached result
+	static class Entry {
+
+		final RowSetMetaDataImpl metaData;
+		final List<Object[]> rows;
+		final Map<String, String> versions;
+		final long expiresAt;
+
+		Entry(RowSetMetaDataImpl metaData, List<Object[]> rows, Map<String, String> versions, long expiresAt) {
+			this.metaData = metaData;
+			this.rows = rows;
+			this.versions = versions;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, String> versions = new HashMap<>();
+	private long cachedRows;
+	// Versions are loaded when results are first recorded, so the first check is only due one interval after the cache is created
+	private long lastCheck = System.currentTimeMillis();
+
+	private volatile long maxRows = 500000;
+	private volatile long timeToLiveMillis = TimeUnit.MINUTES.toMillis(5);
+	private volatile long checkIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+	private final Map<String, Long> tableTimeToLiveMillis = new HashMap<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	// Sets the most rows kept across all entries. A single result can use up to a tenth of them, larger ones are never cached
+	public void setMaxRows(long maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	// Sets how long results stay valid unless their table has its own TTL
+	public void setTimeToLive(long timeToLive, TimeUnit unit) {
+		this.timeToLiveMillis = unit.toMillis(timeToLive);
+	}
+
+	// Sets the TTL of results reading the provided table (the layer), zero keeps them out of the cache
+	public synchronized void setTableTimeToLive(String tableName, long timeToLive, TimeUnit unit) {
+		tableTimeToLiveMillis.put(tableName.toUpperCase(Locale.ROOT), unit.toMillis(timeToLive));
+	}
+
+	// Sets how often the LAST_ALTERED of the cached tables is checked
+	public void setCheckInterval(long interval, TimeUnit unit) {
+		this.checkIntervalMillis = unit.toMillis(interval);
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	// Drops every cached result
+	public synchronized void invalidate() {
+		entries.clear();
+		cachedRows = 0;
+	}
+
+	// Drops the cached results reading the provided table
+	public synchronized void invalidate(String schemaName, String tableName) {
+		String table = tableKey(schemaName, tableName);
+		String unqualified = tableKey(null, tableName);
+		removeIf(entry -> entry.versions.containsKey(table) || entry.versions.containsKey(unqualified));
+	}
+
+	// Drops the results of the table a write statement modifies, or everything if the statement can't be understood
+	void invalidateWritten(String sql) {
+
+		Matcher matcher = WRITTEN_TABLE.matcher(sql);
+		if (matcher.find()) {
+			String[] table = parseTable(matcher.group(1));
+			invalidate(table[0], table[1]);
+		} else if (!isQuery(sql)) {
+			invalidate();
+		}
+	}
+
+	// Returns the cache key of the statement and its bind values, or null if the statement isn't a cacheable query. Queries reading a
+	// table qualified with its database aren't, INFORMATION_SCHEMA.TABLES only tells when the current database's tables change
+	String key(String sql, Map<Integer, Object> parameters) {
+
+		if (!isQuery(sql)) {
+			return null;
+		}
+		List<String> names = getTableNames(sql);
+		if (names.isEmpty()) {
+			return null;
+		}
+		for (String name : names) {
+			if (parseName(name).size() > 2) {
+				return null;
+			}
+		}
+		if (parameters == null || parameters.isEmpty()) {
+			return sql;
+		}
+
+		StringBuilder key = new StringBuilder(sql);
+		for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+			Object value = parameter.getValue();
+			key.append('\u0000').append(parameter.getKey()).append('=');
+			key.append(value instanceof byte[] ? Base64.getEncoder().encodeToString((byte[]) value) : String.valueOf(value));
+		}
+		return key.toString();
+	}
+
+	// Returns the cached result of the statement, or null on a miss. Checks the LAST_ALTERED of the cached tables first when due
+	ResultSet get(String key, Connection cx, Statement statement) {
+
+		checkTables(cx);
+
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry != null && System.currentTimeMillis() > entry.expiresAt) {
+				remove(key);
+				entry = null;
+			}
+		}
+
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return CachedResultSet.create(entry, statement);
+	}
+
+	// Wraps the result of a miss so it is cached once fully read, unless it turns out too large or reads uncacheable tables
+	ResultSet record(String key, String sql, ResultSet rs, Connection cx) throws SQLException {
+
+		Map<String, String> tableVersions;
+		try {
+			tableVersions = getVersions(getTables(sql), cx);
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "Unable to load the LAST_ALTERED of the tables read by " + sql + ", not caching it", e);
+			return rs;
+		}
+		long ttl = getTimeToLive(tableVersions.keySet());
+		if (tableVersions.containsValue(UNCACHEABLE) || ttl == 0) {
+			return rs;
+		}
+		long expiresAt = ttl < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + ttl;
+		return RecordingResultSet.create(this, key, tableVersions, expiresAt, rs, Math.max(1, maxRows / 10));
+	}
+
+	synchronized void put(String key, Entry entry) {
+
+		remove(key);
+		entries.put(key, entry);
+		cachedRows += entry.rows.size();
+
+		Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+		while (cachedRows > maxRows && it.hasNext()) {
+			cachedRows -= it.next().getValue().rows.size();
+			it.remove();
+		}
+	}
+
+	private void remove(String key) {
+		Entry removed = entries.remove(key);
+		if (removed != null) {
+			cachedRows -= removed.rows.size();
+		}
+	}
+
+	private void removeIf(java.util.function.Predicate<Entry> condition) {
+
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			if (condition.test(entry)) {
+				cachedRows -= entry.rows.size();
+				it.remove();
+			}
+		}
+	}
+
+	// Returns the shortest TTL of the provided tables
+	private synchronized long getTimeToLive(Set<String> tables) {
+
+		long ttl = timeToLiveMillis;
+		for (String table : tables) {
+			Long tableTTL = tableTimeToLiveMillis.get(table.substring(table.indexOf('.') + 1));
+			if (tableTTL != null && (ttl < 0 || (tableTTL >= 0 && tableTTL < ttl))) {
+				ttl = tableTTL;
+			}
+		}
+		return ttl;
+	}
+
+	// Returns the current LAST_ALTERED of the provided tables, loading the ones never seen before
+	private Map<String, String> getVersions(Set<String> tables, Connection cx) throws SQLException {
+
+		List<String> unknown = new ArrayList<>();
+		synchronized (this) {
+			for (String table : tables) {
+				if (!versions.containsKey(table)) {
+					unknown.add(table);
+				}
+			}
+		}
+		if (!unknown.isEmpty()) {
+			Map<String, String> loaded = loadVersions(unknown, cx);
+			synchronized (this) {
+				versions.putAll(loaded);
+			}
+		}
+
+		Map<String, String> result = new HashMap<>();
+		synchronized (this) {
+			for (String table : tables) {
+				result.put(table, versions.getOrDefault(table, UNCACHEABLE));
+			}
+		}
+		return result;
+	}
+
+	// Reloads the LAST_ALTERED of every known table if the check interval elapsed, dropping the results of tables that changed
+	private void checkTables(Connection cx) {
+
+		List<String> tables;
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			if (now - lastCheck < checkIntervalMillis || entries.isEmpty()) {
+				return;
+			}
+			lastCheck = now;
+			tables = new ArrayList<>(versions.keySet());
+		}
+
+		Map<String, String> current;
+		try {
+			current = loadVersions(tables, cx);
+		} catch (SQLException e) {
+			LOGGER.log(Level.WARNING, "Unable to check the LAST_ALTERED of cached tables, dropping the result cache", e);
+			invalidate();
+			return;
+		}
+
+		synchronized (this) {
+			versions.clear();
+			versions.putAll(current);
+			removeIf(entry -> {
+				for (Map.Entry<String, String> version : entry.versions.entrySet()) {
+					if (!version.getValue().equals(versions.getOrDefault(version.getKey(), UNCACHEABLE))) {
+						return true;
+					}
+				}
+				return false;
+			});
+		}
+	}
+
+	// Loads the LAST_ALTERED of the provided tables, CHECK_BATCH_SIZE tables per statement. Tables that aren't plain tables, or can't
+	// be found, are returned as UNCACHEABLE
+	private Map<String, String> loadVersions(List<String> tables, Connection cx) throws SQLException {
+
+		Map<String, String> result = new HashMap<>();
+		for (String table : tables) {
+			result.put(table, UNCACHEABLE);
+		}
+
+		for (int i = 0; i < tables.size(); i += CHECK_BATCH_SIZE) {
+			List<String> batch = tables.subList(i, Math.min(i + CHECK_BATCH_SIZE, tables.size()));
+
+			StringBuilder sql = new StringBuilder();
+			sql.append("SELECT TABLE_SCHEMA, TABLE_NAME, TABLE_TYPE, TO_VARCHAR(LAST_ALTERED), CURRENT_SCHEMA() FROM INFORMATION_SCHEMA.TABLES WHERE ");
+			for (int j = 0; j < batch.size(); j++) {
+				if (j > 0) {
+					sql.append(" OR ");
+				}
+				sql.append(batch.get(j).startsWith(".") ? "(TABLE_SCHEMA = CURRENT_SCHEMA() AND TABLE_NAME = ?)" : "(TABLE_SCHEMA = ? AND TABLE_NAME = ?)");
+			}
+
+			PreparedStatement ps = cx.prepareStatement(sql.toString());
+			try {
+				int index = 1;
+				for (String table : batch) {
+					int dot = table.indexOf('.');
+					if (dot > 0) {
+						ps.setString(index++, table.substring(0, dot));
+					}
+					ps.setString(index++, table.substring(dot + 1));
+				}
+
+				ResultSet rs = ps.executeQuery();
+				try {
+					while (rs.next()) {
+						String version = "BASE TABLE".equals(rs.getString(3)) ? rs.getString(4) : UNCACHEABLE;
+						result.put(tableKey(rs.getString(1), rs.getString(2)), version);
+						if (rs.getString(1).equals(rs.getString(5))) {
+							result.put(tableKey(null, rs.getString(2)), version);
+						}
+					}
+				} finally {
+					rs.close();
+				}
+			} finally {
+				ps.close();
+			}
+		}
+
+		// Only keep what was asked for, the current schema duplicates aren't needed if they weren't
+		result.keySet().retainAll(tables);
+		return result;
+	}
+
+	// Returns true for statements that only read
+	static boolean isQuery(String sql) {
+		String start = sql.stripLeading().toUpperCase(Locale.ROOT);
+		return start.startsWith("SELECT") || start.startsWith("WITH");
+	}
+
+	// Returns the schema.table keys of every table the query reads, with an empty schema for unqualified ones
+	static Set<String> getTables(String sql) {
+
+		Set<String> tables = new LinkedHashSet<>();
+		for (String name : getTableNames(sql)) {
+			String[] table = parseTable(name);
+			tables.add(tableKey(table[0], table[1]));
+		}
+		return tables;
+	}
+
+	// Returns the possibly qualified names of every table the query reads, as written
+	private static List<String> getTableNames(String sql) {
+
+		List<String> names = new ArrayList<>();
+		Matcher matcher = TABLE.matcher(sql);
+		while (matcher.find()) {
+			Matcher listed = LISTED_TABLE.matcher(matcher.group(1));
+			while (listed.find()) {
+				names.add(listed.group(1));
+			}
+		}
+		return names;
+	}
+
+	// Splits a possibly qualified table name into its schema (null if absent) and table
+	static String[] parseTable(String name) {
+
+		List<String> parts = parseName(name);
+		String table = parts.get(parts.size() - 1);
+		String schema = parts.size() > 1 ? parts.get(parts.size() - 2) : null;
+		return new String[] {schema, table};
+	}
+
+	// Returns the parts of a possibly qualified name, unquoted or upper cased
+	private static List<String> parseName(String name) {
+
+		List<String> parts = new ArrayList<>();
+		Matcher matcher = Pattern.compile(IDENTIFIER).matcher(name);
+		while (matcher.find()) {
+			String part = matcher.group();
+			parts.add(part.startsWith("\"") ? part.substring(1, part.length() - 1).replace("\"\"", "\"") : part.toUpperCase(Locale.ROOT));
+		}
+		return parts;
+	}
+
+	private static String tableKey(String schemaName, String tableName) {
+		return (schemaName == null ? "" : schemaName) + "." + tableName;
+	}
+
+	// Passes the result through while copying its rows, and caches them once the reader gets to the end
+	static class RecordingResultSet implements InvocationHandler {
+
+		private final SnowflakeResultCache cache;
+		private final String key;
+		private final Map<String, String> versions;
+		private final long expiresAt;
+		private final ResultSet delegate;
+		private final long limit;
+		private final int columns;
+		private List<Object[]> rows = new ArrayList<>();
+
+		private RecordingResultSet(SnowflakeResultCache cache, String key, Map<String, String> versions, long expiresAt, ResultSet delegate,
+				long limit) throws SQLException {
+			this.cache = cache;
+			this.key = key;
+			this.versions = versions;
+			this.expiresAt = expiresAt;
+			this.delegate = delegate;
+			this.limit = limit;
+			this.columns = delegate.getMetaData().getColumnCount();
+		}
+
+		static ResultSet create(SnowflakeResultCache cache, String key, Map<String, String> versions, long expiresAt, ResultSet delegate,
+				long limit) throws SQLException {
+			return (ResultSet) Proxy.newProxyInstance(SnowflakeResultCache.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+					new RecordingResultSet(cache, key, versions, expiresAt, delegate, limit));
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			Object result;
+			try {
+				result = method.invoke(delegate, args);
+			} catch (InvocationTargetException e) {
+				rows = null;
+				throw e.getCause();
+			}
+
+			if (rows != null && "next".equals(method.getName()) && (args == null || args.length == 0)) {
+				if ((Boolean) result) {
+					if (rows.size() >= limit) {
+						rows = null;
+					} else {
+						Object[] row = new Object[columns];
+						for (int i = 0; i < columns; i++) {
+							row[i] = delegate.getObject(i + 1);
+						}
+						rows.add(row);
+					}
+				} else {
+					cache.put(key, new Entry(copyMetaData(delegate.getMetaData()), rows, versions, expiresAt));
+					rows = null;
+				}
+			} else if (rows != null && !isReadOnly(method.getName())) {
+				// Scrolling or updating the result, don't trust what was recorded
+				rows = null;
+			}
+			return result;
+		}
+
+		private static boolean isReadOnly(String name) {
+			return name.startsWith("get") || name.equals("wasNull") || name.equals("findColumn") || name.equals("isClosed")
+					|| name.equals("setFetchSize") || name.equals("unwrap") || name.equals("isWrapperFor") || name.equals("clearWarnings")
+					|| name.equals("next") || name.equals("close");
+		}
+
+		private static RowSetMetaDataImpl copyMetaData(ResultSetMetaData source) throws SQLException {
+
+			RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+			metaData.setColumnCount(source.getColumnCount());
+			for (int i = 1; i <= source.getColumnCount(); i++) {
+				metaData.setColumnName(i, source.getColumnName(i));
+				metaData.setColumnLabel(i, source.getColumnLabel(i));
+				metaData.setColumnType(i, source.getColumnType(i));
+				metaData.setColumnTypeName(i, source.getColumnTypeName(i));
+				metaData.setNullable(i, source.isNullable(i));
+				metaData.setPrecision(i, Math.max(source.getPrecision(i), 0));
+				metaData.setScale(i, Math.max(source.getScale(i), 0));
+				metaData.setTableName(i, source.getTableName(i) == null ? "" : source.getTableName(i));
+				metaData.setSchemaName(i, source.getSchemaName(i) == null ? "" : source.getSchemaName(i));
+			}
+			return metaData;
+		}
+	}
+
+	// Forward only, read only result served from a cache entry
+	static class CachedResultSet implements InvocationHandler {
+
+		private static final HexFormat HEX = HexFormat.of().withUpperCase();
+
+		private final Entry entry;
+		private final Statement statement;
+		private final Map<String, Integer> columnIndexes = new HashMap<>();
+		private int row = -1;
+		private boolean wasNull;
+		private boolean closed;
+
+		private CachedResultSet(Entry entry, Statement statement) throws SQLException {
+			this.entry = entry;
+			this.statement = statement;
+			for (int i = entry.metaData.getColumnCount(); i > 0; i--) {
+				columnIndexes.put(entry.metaData.getColumnLabel(i).toUpperCase(Locale.ROOT), i);
+			}
+		}
+
+		static ResultSet create(Entry entry, Statement statement) {
+			try {
+				return (ResultSet) Proxy.newProxyInstance(SnowflakeResultCache.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+						new CachedResultSet(entry, statement));
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+			switch (name) {
+			case "next":
+				if (row < entry.rows.size()) {
+					row++;
+				}
+				return row < entry.rows.size();
+			case "close":
+				closed = true;
+				return null;
+			case "isClosed":
+				return closed;
+			case "wasNull":
+				return wasNull;
+			case "getMetaData":
+				return entry.metaData;
+			case "getStatement":
+				return statement;
+			case "findColumn":
+				return findColumn((String) args[0]);
+			case "getType":
+				return ResultSet.TYPE_FORWARD_ONLY;
+			case "getConcurrency":
+				return ResultSet.CONCUR_READ_ONLY;
+			case "getFetchSize":
+				return entry.rows.size();
+			case "setFetchSize":
+			case "clearWarnings":
+				return null;
+			case "getWarnings":
+				return null;
+			case "isBeforeFirst":
+				return row < 0 && !entry.rows.isEmpty();
+			case "isAfterLast":
+				return row >= entry.rows.size() && !entry.rows.isEmpty();
+			case "getRow":
+				return row < entry.rows.size() ? row + 1 : 0;
+			case "unwrap":
+				if (((Class<?>) args[0]).isInstance(proxy)) {
+					return proxy;
+				}
+				throw new SQLException("Not a wrapper for " + args[0]);
+			case "isWrapperFor":
+				return ((Class<?>) args[0]).isInstance(proxy);
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			case "toString":
+				return "CachedResultSet[" + entry.rows.size() + " rows]";
+			default:
+				if (name.startsWith("get") && args != null && args.length >= 1) {
+					Object value = value(args[0]);
+					Class<?> type = name.equals("getObject") && args.length == 2 && args[1] instanceof Class ? (Class<?>) args[1]
+							: method.getReturnType();
+					return convert(value, name.equals("getObject") && type == Object.class ? null : type);
+				}
+				throw new SQLFeatureNotSupportedException(name + " is not supported on cached results");
+			}
+		}
+
+		private int findColumn(String label) throws SQLException {
+			Integer index = columnIndexes.get(label.toUpperCase(Locale.ROOT));
+			if (index == null) {
+				throw new SQLException("Unknown column " + label);
+			}
+			return index;
+		}
+
+		private Object value(Object column) throws SQLException {
+
+			if (closed) {
+				throw new SQLException("Result set is closed");
+			}
+			if (row < 0 || row >= entry.rows.size()) {
+				throw new SQLException("No current row");
+			}
+			int index = column instanceof String ? findColumn((String) column) : (Integer) column;
+			Object value = entry.rows.get(row)[index - 1];
+			wasNull = value == null;
+			return value;
+		}
+
+		// Converts a cached value the way the driver would for the getter's type, null asks for the value as it is
+		private static Object convert(Object value, Class<?> type) throws SQLException {
+
+			if (type == null || (value != null && type.isInstance(value))) {
+				return value;
+			}
+
+			if (type.isPrimitive()) {
+				if (value == null) {
+					return type == boolean.class ? Boolean.FALSE : convert(0, type);
+				}
+				if (type == boolean.class) {
+					return value instanceof Boolean ? value : value instanceof Number ? ((Number) value).doubleValue() != 0
+							: Boolean.parseBoolean(value.toString()) || "1".equals(value.toString());
+				}
+				Number number = value instanceof Number ? (Number) value : value instanceof Boolean ? ((Boolean) value ? 1 : 0)
+						: new BigDecimal(value.toString().trim());
+				if (type == int.class) return number.intValue();
+				if (type == long.class) return number.longValue();
+				if (type == double.class) return number.doubleValue();
+				if (type == float.class) return number.floatValue();
+				if (type == short.class) return number.shortValue();
+				if (type == byte.class) return number.byteValue();
+			}
+
+			if (value == null) {
+				return null;
+			}
+			if (type == String.class) {
+				return value instanceof byte[] ? HEX.formatHex((byte[]) value) : value.toString();
+			}
+			if (type == byte[].class && value instanceof String) {
+				return HEX.parseHex((String) value);
+			}
+			if (type == BigDecimal.class) {
+				return value instanceof BigDecimal ? value : new BigDecimal(value.toString().trim());
+			}
+			if (Number.class.isAssignableFrom(type) || type == Boolean.class) {
+				Class<?> primitive = type == Integer.class ? int.class : type == Long.class ? long.class : type == Double.class ? double.class
+						: type == Float.class ? float.class : type == Short.class ? short.class : type == Byte.class ? byte.class
+						: type == Boolean.class ? boolean.class : null;
+				if (primitive != null) {
+					return convert(value, primitive);
+				}
+			}
+			if (value instanceof java.util.Date && java.util.Date.class.isAssignableFrom(type)) {
+				long time = ((java.util.Date) value).getTime();
+				if (type == java.sql.Date.class) return new java.sql.Date(time);
+				if (type == java.sql.Time.class) return new java.sql.Time(time);
+				if (type == java.sql.Timestamp.class) return new java.sql.Timestamp(time);
+			}
+			throw new SQLException("Cannot convert cached " + value.getClass().getName() + " to " + type.getName());
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package org.geotools.data.snowflake;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+import org.geotools.util.logging.Logging;
+
+// Answers the COUNT(*) statements the datastore sends for feature counts (WFS resultType=hits, paging, layer previews) without
+// counting rows. Unfiltered counts come from the ROW_COUNT Snowflake keeps for every table in INFORMATION_SCHEMA.TABLES, loaded for a
+// whole schema at once and kept for the time to live unless the datastore writes to the table. In ESTIMATE mode filtered counts of
+// large tables are extrapolated from a block sample (SAMPLE SYSTEM) and cached for the time to live, so paging UIs get a total in
+// milliseconds instead of a scan. Counts that can't be answered this way, and everything inside a transaction, run as they are
+public class SnowflakeRowCounts {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeRowCounts.class);
+
+	// EXACT counts everything in the warehouse, METADATA answers unfiltered counts from table metadata (still exact), ESTIMATE also
+	// estimates filtered counts
+	public static enum Mode {EXACT, METADATA, ESTIMATE};
+
+	// The statements of JDBCDataStore.getCount(): SELECT count(*) FROM <table> [WHERE <filter>]
+	private static final Pattern COUNT = Pattern.compile("^\\s*SELECT\\s+COUNT\\s*\\(\\s*\\*\\s*\\)\\s+FROM\\s+(" + SnowflakeResultCache.IDENTIFIER
+			+ "(?:\\s*\\.\\s*" + SnowflakeResultCache.IDENTIFIER + "){0,2})\\s*(WHERE\\s.*)?$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	// Tables with fewer rows are counted exactly, a sample of them would be too small to extrapolate from
+	static final long MIN_SAMPLED_ROWS = 1000000;
+
+	// Most filtered estimates kept
+	private static final int MAX_ESTIMATES = 1000;
+
+	private final Mode mode;
+	private volatile double samplePercent = 1;
+	private volatile long timeToLiveMillis = TimeUnit.MINUTES.toMillis(1);
+
+	// Row counts of the tables of each loaded schema (the empty string for the current one), and when they were loaded
+	private final Map<String, Map<String, Long>> rowCounts = new HashMap<>();
+	private final Map<String, Long> loadedAt = new HashMap<>();
+
+	// Estimated filtered counts by statement and bind values, with the time they expire
+	private final LinkedHashMap<String, long[]> estimates = new LinkedHashMap<String, long[]>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+			return size() > MAX_ESTIMATES;
+		}
+	};
+
+	private final AtomicLong metadataCounts = new AtomicLong();
+	private final AtomicLong estimatedCounts = new AtomicLong();
+
+	public SnowflakeRowCounts(Mode mode) {
+		this.mode = mode;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	// Sets the percentage of the table's micro-partitions scanned for estimates
+	public void setSamplePercent(double samplePercent) {
+		this.samplePercent = Math.min(Math.max(samplePercent, 0.01), 100);
+	}
+
+	// Sets how long row counts and estimates are reused
+	public void setTimeToLive(long timeToLive, TimeUnit unit) {
+		this.timeToLiveMillis = unit.toMillis(timeToLive);
+	}
+
+	// Counts answered from table metadata since the datastore was created
+	public long getMetadataCounts() {
+		return metadataCounts.get();
+	}
+
+	// Counts estimated from a sample, or from a cached sample, since the datastore was created
+	public long getEstimatedCounts() {
+		return estimatedCounts.get();
+	}
+
+	// Returns a single row result with the count of the statement, or null if it has to be run as it is
+	ResultSet count(String sql, Map<Integer, Object> parameters, Connection cx, Statement statement) throws SQLException {
+
+		Matcher matcher = mode != Mode.EXACT && sql != null ? COUNT.matcher(sql) : null;
+		if (matcher == null || !matcher.matches() || !cx.getAutoCommit()) {
+			return null;
+		}
+
+		// Filtered counts only need the table's row count to be estimated
+		boolean filtered = matcher.group(2) != null;
+		if (filtered && mode != Mode.ESTIMATE) {
+			return null;
+		}
+
+		String[] table = SnowflakeResultCache.parseTable(matcher.group(1));
+		Long rows = getRowCount(table[0], table[1], cx);
+		if (!filtered) {
+			if (rows == null) {
+				return null;
+			}
+			metadataCounts.incrementAndGet();
+			LOGGER.fine("Counted " + rows + " rows of " + matcher.group(1) + " from table metadata");
+			return result(rows, statement);
+		}
+
+		if (rows == null || rows < MIN_SAMPLED_ROWS) {
+			return null;
+		}
+		Long estimate = estimate(sql, matcher.end(1), parameters, cx);
+		LOGGER.fine("Estimated " + estimate + " matching rows of " + matcher.group(1) + " from a " + samplePercent + "% sample: " + sql);
+		return result(estimate, statement);
+	}
+
+	// Returns the metadata row count of the table, null for views, external tables and tables that can't be found
+	private Long getRowCount(String schemaName, String tableName, Connection cx) throws SQLException {
+
+		String schema = schemaName == null ? "" : schemaName;
+		synchronized (this) {
+			Long loaded = loadedAt.get(schema);
+			if (loaded != null && System.currentTimeMillis() - loaded < timeToLiveMillis) {
+				return rowCounts.get(schema).get(tableName);
+			}
+		}
+
+		Map<String, Long> counts = new HashMap<>();
+		PreparedStatement ps = cx.prepareStatement("SELECT TABLE_NAME, ROW_COUNT FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_TYPE = 'BASE TABLE' AND "
+				+ (schemaName == null ? "TABLE_SCHEMA = CURRENT_SCHEMA()" : "TABLE_SCHEMA = ?"));
+		try {
+			if (schemaName != null) {
+				ps.setString(1, schemaName);
+			}
+			ResultSet rs = ps.executeQuery();
+			try {
+				while (rs.next()) {
+					long rowCount = rs.getLong(2);
+					if (!rs.wasNull()) {
+						counts.put(rs.getString(1), rowCount);
+					}
+				}
+			} finally {
+				rs.close();
+			}
+		} finally {
+			ps.close();
+		}
+
+		synchronized (this) {
+			rowCounts.put(schema, counts);
+			loadedAt.put(schema, System.currentTimeMillis());
+		}
+		return counts.get(tableName);
+	}
+
+	// Returns the cached estimate of the filtered count, or counts a sample of the table
+	private Long estimate(String sql, int tableEnd, Map<Integer, Object> parameters, Connection cx) throws SQLException {
+
+		StringBuilder key = new StringBuilder(sql);
+		if (parameters != null) {
+			for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+				Object value = parameter.getValue();
+				key.append('\u0000').append(parameter.getKey()).append('=');
+				key.append(value instanceof byte[] ? Base64.getEncoder().encodeToString((byte[]) value) : String.valueOf(value));
+			}
+		}
+		synchronized (estimates) {
+			long[] estimate = estimates.get(key.toString());
+			if (estimate != null && estimate[1] > System.currentTimeMillis()) {
+				estimatedCounts.incrementAndGet();
+				return estimate[0];
+			}
+		}
+
+		double percent = samplePercent;
+		PreparedStatement ps = cx.prepareStatement(sample(sql, tableEnd, percent));
+		long count;
+		try {
+			if (parameters != null) {
+				for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+					if (parameter.getValue() == null) {
+						ps.setNull(parameter.getKey(), Types.VARCHAR);
+					} else {
+						ps.setObject(parameter.getKey(), parameter.getValue());
+					}
+				}
+			}
+			ResultSet rs = ps.executeQuery();
+			try {
+				count = rs.next() ? rs.getLong(1) : 0;
+			} finally {
+				rs.close();
+			}
+		} finally {
+			ps.close();
+		}
+
+		long estimate = Math.round(count * 100 / percent);
+		synchronized (estimates) {
+			estimates.put(key.toString(), new long[] {estimate, System.currentTimeMillis() + timeToLiveMillis});
+		}
+		estimatedCounts.incrementAndGet();
+		return estimate;
+	}
+
+	// Adds a block sample of the provided percentage after the table name of the count statement
+	static String sample(String sql, int tableEnd, double percent) {
+		return sql.substring(0, tableEnd) + " SAMPLE SYSTEM (" + percent + ")" + sql.substring(tableEnd);
+	}
+
+	// Forgets row counts and estimates after a write through the datastore, they're loaded again by the next count
+	void invalidate() {
+
+		synchronized (this) {
+			loadedAt.clear();
+		}
+		synchronized (estimates) {
+			estimates.clear();
+		}
+	}
+
+	private static ResultSet result(long count, Statement statement) {
+
+		RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+		try {
+			metaData.setColumnCount(1);
+			metaData.setColumnName(1, "COUNT(*)");
+			metaData.setColumnLabel(1, "COUNT(*)");
+			metaData.setColumnType(1, Types.BIGINT);
+			metaData.setColumnTypeName(1, "NUMBER");
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+		SnowflakeResultCache.Entry entry = new SnowflakeResultCache.Entry(metaData, Collections.singletonList(new Object[] {count}),
+				Collections.emptyMap(), Long.MAX_VALUE);
+		return SnowflakeResultCache.CachedResultSet.create(entry, statement);
+	}
+}
@@ -0,0 +1,118 @@
+package org.geotools.data.snowflake;
+
+import java.io.IOException;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFactory;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.ByteArrayInStream;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBConstants;
+import org.locationtech.jts.io.WKBReader;
+
+// Reusable Well-Known-Binary decoder bound to a single GeometryFactory. It keeps one WKBReader and input stream alive across rows
+// instead of allocating them per value, and decodes 2D points (by far the most common row type) without going through the generic parser.
+// Instances are not thread safe, SnowflakeDialect hands out one per result set
+public class SnowflakeWKBDecoder {
+
+	// Flag set on the geometry type of EWKB values that carry an SRID
+	private static final int EWKB_SRID_FLAG = 0x20000000;
+
+	// byte order + type + x + y
+	private static final int POINT_LENGTH = 1 + 4 + 8 + 8;
+
+	private final GeometryFactory factory;
+	private final CoordinateSequenceFactory sequenceFactory;
+	private final WKBReader reader;
+	private final ByteArrayInStream in = new ByteArrayInStream(new byte[0]);
+
+	public SnowflakeWKBDecoder(GeometryFactory factory) {
+		this.factory = factory;
+		this.sequenceFactory = factory.getCoordinateSequenceFactory();
+		this.reader = new WKBReader(factory);
+	}
+
+	public GeometryFactory getFactory() {
+		return factory;
+	}
+
+	// Decodes the provided WKB or EWKB value
+	public Geometry decode(byte[] wkb) throws IOException, ParseException {
+
+		if (wkb.length == POINT_LENGTH || wkb.length == POINT_LENGTH + 4) {
+			Point point = decodePoint(wkb);
+			if (point != null) {
+				return point;
+			}
+		}
+
+		in.setBytes(wkb);
+		return reader.read(in);
+	}
+
+	// Decodes a plain 2D point, optionally carrying an EWKB SRID, or returns null if the value is anything else
+	private Point decodePoint(byte[] wkb) {
+
+		boolean littleEndian;
+		if (wkb[0] == WKBConstants.wkbNDR) {
+			littleEndian = true;
+		} else if (wkb[0] == WKBConstants.wkbXDR) {
+			littleEndian = false;
+		} else {
+			return null;
+		}
+
+		int type = readInt(wkb, 1, littleEndian);
+		int offset = 5;
+		int srid = 0;
+
+		if (type == (WKBConstants.wkbPoint | EWKB_SRID_FLAG) && wkb.length == POINT_LENGTH + 4) {
+			srid = readInt(wkb, offset, littleEndian);
+			offset += 4;
+		} else if (type != WKBConstants.wkbPoint || wkb.length != POINT_LENGTH) {
+			return null;
+		}
+
+		double x = Double.longBitsToDouble(readLong(wkb, offset, littleEndian));
+		double y = Double.longBitsToDouble(readLong(wkb, offset + 8, littleEndian));
+
+		Point point;
+		if (Double.isNaN(x) && Double.isNaN(y)) {
+			// WKB has no empty point, writers use NaN coordinates instead
+			point = factory.createPoint((CoordinateSequence) null);
+		} else {
+			CoordinateSequence sequence = sequenceFactory.create(1, 2);
+			sequence.setOrdinate(0, CoordinateSequence.X, factory.getPrecisionModel().makePrecise(x));
+			sequence.setOrdinate(0, CoordinateSequence.Y, factory.getPrecisionModel().makePrecise(y));
+			point = factory.createPoint(sequence);
+		}
+
+		if (srid != 0) {
+			point.setSRID(srid);
+		}
+		return point;
+	}
+
+	private static int readInt(byte[] buf, int offset, boolean littleEndian) {
+
+		if (littleEndian) {
+			return (buf[offset] & 0xff)
+					| (buf[offset + 1] & 0xff) << 8
+					| (buf[offset + 2] & 0xff) << 16
+					| (buf[offset + 3] & 0xff) << 24;
+		}
+		return (buf[offset] & 0xff) << 24
+				| (buf[offset + 1] & 0xff) << 16
+				| (buf[offset + 2] & 0xff) << 8
+				| (buf[offset + 3] & 0xff);
+	}
+
+	private static long readLong(byte[] buf, int offset, boolean littleEndian) {
+
+		long high = readInt(buf, littleEndian ? offset + 4 : offset, littleEndian) & 0xffffffffL;
+		long low = readInt(buf, littleEndian ? offset : offset + 4, littleEndian) & 0xffffffffL;
+		return high << 32 | low;
+	}
+}
@@ -0,0 +1,69 @@
+package org.geotools.data.snowflake;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to bulk load 10000 features through {@link SnowflakeBulkWriter} against a {@link RecordingConnection} that sleeps on every
+ * round trip like a warehouse would. A batch size of 1 is what one INSERT per feature costs. Run from the project directory, or
+ * through {@code mvn -Pbenchmark verify}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BulkWriteBenchmark {
+
+    private static final int FEATURES = 10000;
+
+    @Param({"0", "5"})
+    public long latencyMillis;
+
+    @Param({"1", "1000", "10000"})
+    public int batchSize;
+
+    private final SnowflakeDialect dialect = new SnowflakeDialect(null);
+
+    private SimpleFeatureType type;
+
+    private List<SimpleFeature> features;
+
+    @Setup
+    public void setUp() throws Exception {
+        type = SnowflakeBulkWriterTest.createType();
+        features = SnowflakeBulkWriterTest.createFeatures(type, FEATURES);
+    }
+
+    @Benchmark
+    public int write() throws Exception {
+        RecordingConnection cx = new RecordingConnection(latencyMillis);
+        try (SnowflakeBulkWriter writer = new SnowflakeBulkWriter(cx.proxy(), true, Transaction.AUTO_COMMIT, "PUBLIC", type, dialect)) {
+            writer.setBatchSize(batchSize);
+            for (SimpleFeature feature : features) {
+                writer.write(feature);
+            }
+        }
+        return cx.batchedRows.get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(new String[] {BulkWriteBenchmark.class.getName()});
+    }
+}
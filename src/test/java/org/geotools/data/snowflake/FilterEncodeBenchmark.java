@@ -0,0 +1,118 @@
+package org.geotools.data.snowflake;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.jdbc.FilterToSQL;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encodes the filters GeoServer sends for large requests through the encoders of the basic and prepared dialects, one
+ * new encoder per query as the datastore does: a long list of attribute values, an intersection with the largest polygon
+ * of {@code data/Communities.geojson.json} and a map tile's bounding box combined with attribute filters. No Snowflake
+ * connection is needed. Run from the project directory, or through {@code mvn -Pbenchmark verify}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterEncodeBenchmark {
+
+    private static final int VALUES = 1000;
+
+    @Param({"values", "polygon", "tile"})
+    public String filter;
+
+    private final FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+    private final SnowflakeDialectBasic basicDialect = new SnowflakeDialectBasic(null);
+
+    private final SnowflakePreparedDialect preparedDialect = new SnowflakePreparedDialect(null);
+
+    private final SimpleFeatureType type = SnowflakeFilterToSQLTest.createType("GEOGRAPHY", 4326);
+
+    private Filter encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        switch (filter) {
+        case "values":
+            List<Filter> names = new ArrayList<>();
+            for (int i = 0; i < VALUES; i++) {
+                names.add(ff.equals(ff.property("NAME"), ff.literal("Plant " + i)));
+            }
+            encoded = ff.or(names);
+            break;
+        case "polygon":
+            encoded = ff.intersects(ff.property("GEOM"), ff.literal(largestCommunity()));
+            break;
+        default:
+            List<Filter> tile = new ArrayList<>();
+            tile.add(ff.bbox("GEOM", -71.71875, 44.08758502824516, -71.3671875, 44.33956524809713, "EPSG:4326"));
+            tile.add(ff.greater(ff.property("COVERAGE"), ff.literal(0.25)));
+            tile.add(ff.like(ff.property("NAME"), "Pine%"));
+            encoded = ff.and(tile);
+        }
+    }
+
+    // The polygon of the sample communities with the most vertices
+    private static Geometry largestCommunity() throws Exception {
+        Geometry largest = null;
+        try (InputStream in = new FileInputStream("data/Communities.geojson.json");
+                SnowflakeGeoJSONReader reader = new SnowflakeGeoJSONReader(in, new GeometryFactory())) {
+            for (SnowflakeGeoJSONReader.Feature feature = reader.next(); feature != null; feature = reader.next()) {
+                Geometry geometry = feature.getGeometry();
+                if (largest == null || geometry.getNumPoints() > largest.getNumPoints()) {
+                    largest = geometry;
+                }
+            }
+        }
+        return largest;
+    }
+
+    @Benchmark
+    public String encodeBasic() throws Exception {
+        return encode(basicDialect.createFilterToSQL());
+    }
+
+    @Benchmark
+    public String encodePrepared() throws Exception {
+        return encode(preparedDialect.createPreparedFilterToSQL());
+    }
+
+    @Benchmark
+    public Filter[] splitFilter() {
+        return basicDialect.splitFilter(encoded, type);
+    }
+
+    private String encode(FilterToSQL fts) throws Exception {
+        fts.setSqlNameEscape("\"");
+        fts.setFeatureType(type);
+        return fts.encodeToString(encoded);
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(new String[] {FilterEncodeBenchmark.class.getName(), "-prof", "gc"});
+    }
+}
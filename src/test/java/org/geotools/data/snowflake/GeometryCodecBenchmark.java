@@ -0,0 +1,163 @@
+package org.geotools.data.snowflake;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.util.GeometricShapeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decodes and encodes the geometries of the {@code data/} sample layers the way the dialects do for every row: WKB results
+ * through {@code decodeGeometryValue}, extents (and WKB envelopes) through {@code decodeGeometryEnvelope}, and values written by the basic
+ * (WKT literal) and prepared (WKB parameter) dialects. Rows are served from in memory result sets, so no Snowflake
+ * connection is needed. Run from the project directory, or through {@code mvn -Pbenchmark verify}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GeometryCodecBenchmark {
+
+    @Param({"CommunityCentroids", "Drivepaths", "Communities", "PlantCoverage"})
+    public String layer;
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private final SnowflakeDialect dialect = new SnowflakeDialect(null);
+
+    private final SnowflakeDialectBasic basicDialect = new SnowflakeDialectBasic(null);
+
+    private final SnowflakePreparedDialect preparedDialect = new SnowflakePreparedDialect(null);
+
+    private final PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+            GeometryCodecBenchmark.class.getClassLoader(), new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> null);
+
+    private List<Geometry> geometries;
+
+    private SnowflakeResultCache.Entry rows;
+
+    private Geometry largePolygon;
+
+    @Setup
+    public void setUp() throws Exception {
+        geometries = new ArrayList<>();
+        try (InputStream in = new FileInputStream("data/" + layer + ".geojson.json");
+                SnowflakeGeoJSONReader reader = new SnowflakeGeoJSONReader(in, factory)) {
+            for (SnowflakeGeoJSONReader.Feature feature = reader.next(); feature != null; feature = reader.next()) {
+                geometries.add(feature.getGeometry());
+            }
+        }
+
+        WKBWriter writer = new WKBWriter();
+        List<Object[]> values = new ArrayList<>();
+        for (Geometry geometry : geometries) {
+            Envelope e = geometry.getEnvelopeInternal();
+            values.add(new Object[] {writer.write(geometry), e.getMinX() + "," + e.getMinY() + "," + e.getMaxX() + "," + e.getMaxY()});
+        }
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(2);
+        metaData.setColumnLabel(1, "GEOM");
+        metaData.setColumnType(1, Types.BINARY);
+        metaData.setColumnLabel(2, "EXTENT");
+        metaData.setColumnType(2, Types.VARCHAR);
+        rows = new SnowflakeResultCache.Entry(metaData, values, Collections.emptyMap(), Long.MAX_VALUE);
+
+        GeometricShapeFactory shapes = new GeometricShapeFactory(factory);
+        shapes.setNumPoints(50000);
+        shapes.setCentre(new Coordinate(-71.19, 44.39));
+        shapes.setSize(0.5);
+        largePolygon = shapes.createCircle();
+    }
+
+    @Benchmark
+    public int decodeGeometryValue() throws Exception {
+        int points = 0;
+        ResultSet rs = SnowflakeResultCache.CachedResultSet.create(rows, null);
+        while (rs.next()) {
+            points += dialect.decodeGeometryValue(null, rs, "GEOM", factory, null, null).getNumPoints();
+        }
+        return points;
+    }
+
+    @Benchmark
+    public double decodeGeometryEnvelope() throws Exception {
+        return decodeEnvelopes(2);
+    }
+
+    @Benchmark
+    public double decodeGeometryEnvelopeFromWKB() throws Exception {
+        return decodeEnvelopes(1);
+    }
+
+    private double decodeEnvelopes(int column) throws Exception {
+        double area = 0;
+        ResultSet rs = SnowflakeResultCache.CachedResultSet.create(rows, null);
+        while (rs.next()) {
+            area += dialect.decodeGeometryEnvelope(rs, column, null).getArea();
+        }
+        return area;
+    }
+
+    @Benchmark
+    public int encodeGeometryValueBasic() throws Exception {
+        int length = 0;
+        for (Geometry geometry : geometries) {
+            StringBuffer sql = new StringBuffer();
+            basicDialect.encodeGeometryValue(geometry, 2, 4326, sql);
+            length += sql.length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int encodeGeometryValuePrepared() throws Exception {
+        for (Geometry geometry : geometries) {
+            preparedDialect.setGeometryValue(geometry, 2, 4326, Geometry.class, statement, 1);
+        }
+        return geometries.size();
+    }
+
+    @Benchmark
+    public int encodeLargePolygonBasic() throws Exception {
+        StringBuffer sql = new StringBuffer();
+        basicDialect.encodeGeometryValue(largePolygon, 2, 4326, sql);
+        return sql.length();
+    }
+
+    @Benchmark
+    public Geometry encodeLargePolygonPrepared() throws Exception {
+        preparedDialect.setGeometryValue(largePolygon, 2, 4326, Geometry.class, statement, 1);
+        return largePolygon;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(new String[] {GeometryCodecBenchmark.class.getName(), "-prof", "gc"});
+    }
+}
@@ -0,0 +1,112 @@
+package org.geotools.data.snowflake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Offline stand-in for a Snowflake connection: records the SQL it is sent and the JDBC batches it receives, and can sleep on
+// every round trip to mimic the latency of a real warehouse
+class RecordingConnection implements InvocationHandler {
+
+    final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+    final AtomicInteger batchedRows = new AtomicInteger();
+
+    final AtomicInteger executedBatches = new AtomicInteger();
+
+    final AtomicInteger roundTrips = new AtomicInteger();
+
+    private final long latencyMillis;
+
+    private boolean closed;
+
+    RecordingConnection(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    Connection proxy() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class}, this);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "prepareStatement":
+                statements.add((String) args[0]);
+                return statement(PreparedStatement.class);
+            case "createStatement":
+                return statement(Statement.class);
+            case "close":
+                closed = true;
+                return null;
+            case "isClosed":
+                return closed;
+            case "getAutoCommit":
+                return true;
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private Object statement(Class<? extends Statement> type) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "addBatch":
+                    if (args == null || args.length == 0) {
+                        batchedRows.incrementAndGet();
+                    }
+                    return null;
+                case "executeBatch":
+                    roundTrip();
+                    executedBatches.incrementAndGet();
+                    return new int[0];
+                case "execute":
+                case "executeUpdate":
+                    if (args != null && args.length > 0 && args[0] instanceof String) {
+                        statements.add((String) args[0]);
+                    }
+                    roundTrip();
+                    return defaultValue(method.getReturnType());
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private void roundTrip() throws InterruptedException {
+        roundTrips.incrementAndGet();
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+    }
+
+    static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        }
+        return null;
+    }
+}
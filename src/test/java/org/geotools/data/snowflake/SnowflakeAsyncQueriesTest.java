@@ -0,0 +1,251 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.snowflake.client.core.QueryStatus;
+import net.snowflake.client.jdbc.SnowflakeConnection;
+import net.snowflake.client.jdbc.SnowflakePreparedStatement;
+import net.snowflake.client.jdbc.SnowflakeResultSet;
+import net.snowflake.client.jdbc.SnowflakeStatement;
+
+public class SnowflakeAsyncQueriesTest {
+
+    private static final String QUERY = "SELECT \"GEOM\" FROM \"PUBLIC\".\"PLANT_COVERAGE\"";
+
+    private Warehouse warehouse;
+
+    private SnowflakeAsyncQueries async;
+
+    private SnowflakeDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        warehouse = new Warehouse();
+        async = new SnowflakeAsyncQueries();
+        async.addTable("PLANT_COVERAGE");
+        async.setPollInterval(1, 10, TimeUnit.MILLISECONDS);
+        dataSource = new SnowflakeDataSource() {
+            @Override
+            Connection borrow() {
+                return warehouse.connect();
+            }
+        };
+        dataSource.setAsyncQueries(async);
+    }
+
+    @Test
+    public void testQueriesOfOtherTablesKeepTheirSession() throws Exception {
+        try (Connection cx = dataSource.getConnection(); Statement st = cx.createStatement()) {
+            st.executeQuery("SELECT * FROM COMMUNITIES").close();
+        }
+
+        assertEquals(0, async.getSubmitted());
+        assertEquals(1, warehouse.sessions.size());
+        assertEquals(Collections.singletonList("SELECT * FROM COMMUNITIES"), warehouse.sessions.get(0).statements);
+    }
+
+    @Test(timeout = 10000)
+    public void testResultsOpenedOnAnotherSession() throws Exception {
+        warehouse.runningChecks = 2;
+
+        try (Connection cx = dataSource.getConnection(); Statement st = cx.createStatement()) {
+            st.execute("ALTER SESSION SET QUERY_TAG = 'tiles'");
+            st.setFetchSize(500);
+
+            ResultSet rs = st.executeQuery(QUERY);
+            assertEquals("Q1", rs.unwrap(SnowflakeResultSet.class).getQueryID());
+            assertEquals(1, async.getSubmitted());
+            assertEquals(0, async.getRunning());
+            assertEquals(Collections.singletonList(QUERY), warehouse.queries);
+
+            // The first session went back to the pool while the query ran, three status checks borrowed one each and the results
+            // were opened on the last one, set up like the first
+            assertEquals(5, warehouse.sessions.size());
+            Session first = warehouse.sessions.get(0);
+            Session last = warehouse.sessions.get(4);
+            assertTrue(first.closed);
+            assertFalse(last.closed);
+            assertEquals(Collections.singletonList("Q1"), last.opened);
+            assertEquals(Collections.singletonList("ALTER SESSION SET QUERY_TAG = 'tiles'"), last.statements);
+
+            // The statement closed along with the first session is recreated on the current one, with its settings
+            st.executeQuery("SELECT * FROM COMMUNITIES").close();
+            assertEquals(Arrays.asList("ALTER SESSION SET QUERY_TAG = 'tiles'", "SELECT * FROM COMMUNITIES"), last.statements);
+            assertEquals(500, last.fetchSize);
+        }
+        assertTrue(warehouse.sessions.get(4).closed);
+    }
+
+    @Test(timeout = 10000)
+    public void testStatusCheckedBeforeWaiting() throws Exception {
+        async.setPollInterval(1, 1, TimeUnit.HOURS);
+
+        try (Connection cx = dataSource.getConnection(); Statement st = cx.createStatement()) {
+            st.executeQuery(QUERY).close();
+        }
+        assertEquals(1, async.getSubmitted());
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeoutCancelsQuery() throws Exception {
+        warehouse.runningChecks = Integer.MAX_VALUE;
+
+        try (Connection cx = dataSource.getConnection(); Statement st = cx.createStatement()) {
+            st.setQueryTimeout(1);
+            st.executeQuery(QUERY);
+            fail("The query should have timed out");
+        } catch (SQLTimeoutException e) {
+            assertEquals(Collections.singletonList("Q1"), warehouse.cancelled);
+            assertEquals(0, async.getRunning());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailedQuery() throws Exception {
+        warehouse.result = QueryStatus.FAILED_WITH_ERROR;
+
+        try (Connection cx = dataSource.getConnection(); Statement st = cx.createStatement()) {
+            st.executeQuery(QUERY);
+            fail("The query should have failed");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Query Q1 "));
+            assertTrue(warehouse.cancelled.isEmpty());
+        }
+    }
+
+    // A session of the fake warehouse
+    private static class Session {
+
+        final List<String> statements = new ArrayList<>();
+
+        final List<String> opened = new ArrayList<>();
+
+        int fetchSize;
+
+        boolean closed;
+    }
+
+    // Offline stand-in for the asynchronous side of the driver: queries are submitted from any session, report RUNNING for the
+    // configured number of status checks and then the configured result, and can be cancelled with SYSTEM$CANCEL_QUERY
+    private static class Warehouse {
+
+        final List<Session> sessions = Collections.synchronizedList(new ArrayList<>());
+
+        final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+
+        final List<String> cancelled = Collections.synchronizedList(new ArrayList<>());
+
+        final Map<String, Integer> checks = Collections.synchronizedMap(new HashMap<>());
+
+        volatile int runningChecks;
+
+        volatile QueryStatus result = QueryStatus.SUCCESS;
+
+        Connection connect() {
+            Session session = new Session();
+            sessions.add(session);
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class, SnowflakeConnection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "createStatement":
+                                return statement(session, null, (Connection) proxy);
+                            case "prepareStatement":
+                                return statement(session, (String) args[0], (Connection) proxy);
+                            case "createResultSet":
+                                session.opened.add((String) args[0]);
+                                return results((String) args[0]);
+                            case "unwrap":
+                                return proxy;
+                            case "isWrapperFor":
+                                return true;
+                            case "getAutoCommit":
+                                return true;
+                            case "close":
+                                session.closed = true;
+                                return null;
+                            case "isClosed":
+                                return session.closed;
+                            default:
+                                return RecordingConnection.defaultValue(method.getReturnType());
+                        }
+                    });
+        }
+
+        private Statement statement(Session session, String sql, Connection connection) {
+            Class<?>[] types = sql == null ? new Class<?>[] {Statement.class, SnowflakeStatement.class}
+                    : new Class<?>[] {PreparedStatement.class, SnowflakePreparedStatement.class};
+            Map<Integer, Object> parameters = new HashMap<>();
+            int[] timeout = new int[1];
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), types, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "executeAsyncQuery":
+                        queries.add(sql != null ? sql : (String) args[0]);
+                        return results("Q" + queries.size());
+                    case "execute":
+                    case "executeQuery":
+                        if (sql != null && sql.contains("SYSTEM$CANCEL_QUERY")) {
+                            cancelled.add((String) parameters.get(1));
+                        } else {
+                            session.statements.add(sql != null ? sql : (String) args[0]);
+                        }
+                        return "execute".equals(method.getName()) ? false : results(null);
+                    case "setString":
+                        parameters.put((Integer) args[0], args[1]);
+                        return null;
+                    case "setFetchSize":
+                        session.fetchSize = (Integer) args[0];
+                        return null;
+                    case "setQueryTimeout":
+                        timeout[0] = (Integer) args[0];
+                        return null;
+                    case "getQueryTimeout":
+                        return timeout[0];
+                    case "getConnection":
+                        return connection;
+                    case "unwrap":
+                        return proxy;
+                    default:
+                        return RecordingConnection.defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        // Results of a query, or an empty result for null
+        private ResultSet results(String queryId) {
+            return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ResultSet.class, SnowflakeResultSet.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getQueryID":
+                                return queryId;
+                            case "getStatus":
+                                return checks.merge(queryId, 1, Integer::sum) > runningChecks ? result : QueryStatus.RUNNING;
+                            case "unwrap":
+                                return proxy;
+                            default:
+                                return RecordingConnection.defaultValue(method.getReturnType());
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.util.GeometricShapeFactory;
+
+public class SnowflakeBulkWriterTest {
+
+    private final SnowflakeDialect dialect = new SnowflakeDialect(null);
+
+    @Test
+    public void testFeaturesAreSentInBatches() throws Exception {
+        RecordingConnection cx = new RecordingConnection(0);
+        SimpleFeatureType type = createType();
+
+        try (SnowflakeBulkWriter writer = new SnowflakeBulkWriter(cx.proxy(), true, Transaction.AUTO_COMMIT, "PUBLIC", type, dialect)) {
+            writer.setBatchSize(100);
+            for (SimpleFeature feature : createFeatures(type, 250)) {
+                writer.write(feature);
+            }
+            assertEquals(200, writer.getWrittenCount());
+            assertEquals(2, cx.executedBatches.get());
+        }
+
+        assertEquals(250, cx.batchedRows.get());
+        assertEquals(3, cx.executedBatches.get());
+        assertEquals(1, cx.statements.size());
+        assertEquals("INSERT INTO \"PUBLIC\".\"PLANT_COVERAGE\" (\"NAME\", \"COVERAGE\", \"GEOM\") VALUES (?, ?, ?)", cx.statements.get(0));
+        assertTrue(cx.isClosed());
+    }
+
+    @Test
+    public void testCommitFlushesPartialBatch() throws Exception {
+        RecordingConnection cx = new RecordingConnection(0);
+        SimpleFeatureType type = createType();
+
+        try (DefaultTransaction transaction = new DefaultTransaction();
+                SnowflakeBulkWriter writer = new SnowflakeBulkWriter(cx.proxy(), false, transaction, "PUBLIC", type, dialect)) {
+            writer.setBatchSize(100);
+            for (SimpleFeature feature : createFeatures(type, 10)) {
+                writer.write(feature);
+            }
+            writer.commit();
+            assertEquals(10, writer.getWrittenCount());
+        }
+    }
+
+    @Test
+    public void testCommitKeepsPartialBatchWithoutFlushOnCommit() throws Exception {
+        RecordingConnection cx = new RecordingConnection(0);
+        SimpleFeatureType type = createType();
+
+        try (SnowflakeBulkWriter writer = new SnowflakeBulkWriter(cx.proxy(), true, Transaction.AUTO_COMMIT, "PUBLIC", type, dialect)) {
+            writer.setBatchSize(100);
+            writer.setFlushOnCommit(false);
+            for (SimpleFeature feature : createFeatures(type, 10)) {
+                writer.write(feature);
+            }
+            writer.commit();
+            assertEquals(0, writer.getWrittenCount());
+        }
+        assertEquals(10, cx.batchedRows.get());
+    }
+
+    @Test
+    public void testStageModeLoadsThroughTableStage() throws Exception {
+        RecordingConnection cx = new RecordingConnection(0);
+        SimpleFeatureType type = createType();
+
+        try (SnowflakeBulkWriter writer = new SnowflakeBulkWriter(cx.proxy(), true, Transaction.AUTO_COMMIT, "PUBLIC", type, dialect)) {
+            writer.setMode(SnowflakeBulkWriter.Mode.STAGE);
+            writer.setBatchSize(1000);
+            for (SimpleFeature feature : createFeatures(type, 1500)) {
+                writer.write(feature);
+            }
+        }
+
+        // One PUT and one COPY per flushed batch
+        assertEquals(4, cx.statements.size());
+        assertTrue(cx.statements.get(0).startsWith("PUT 'file://"));
+        assertTrue(cx.statements.get(0).contains(" @\"PUBLIC\".%\"PLANT_COVERAGE\" "));
+        assertTrue(cx.statements.get(1).startsWith("COPY INTO \"PUBLIC\".\"PLANT_COVERAGE\" (\"NAME\", \"COVERAGE\", \"GEOM\") FROM @\"PUBLIC\".%\"PLANT_COVERAGE\" FILES = ('gt-bulk-"));
+        assertEquals(0, cx.batchedRows.get());
+    }
+
+    @Test
+    public void testCsvQuotingAndNulls() throws Exception {
+        StringWriter csv = new StringWriter();
+
+        SnowflakeBulkWriter.writeCsvRow(new Object[] {"say \"hi\", ok", null, 1.5}, csv);
+
+        assertEquals("\"say \"\"hi\"\", ok\",\\N,\"1.5\"\n", csv.toString());
+    }
+
+    // A bulk load pays one round trip per batch instead of one per feature, see BulkWriteBenchmark for the throughput this buys
+    @Test
+    public void testOneRoundTripPerBatch() throws Exception {
+        SimpleFeatureType type = createType();
+        RecordingConnection cx = new RecordingConnection(0);
+
+        try (SnowflakeBulkWriter writer = new SnowflakeBulkWriter(cx.proxy(), true, Transaction.AUTO_COMMIT, "PUBLIC", type, dialect)) {
+            writer.setBatchSize(100);
+            for (SimpleFeature feature : createFeatures(type, 500)) {
+                writer.write(feature);
+            }
+        }
+
+        assertEquals(5, cx.roundTrips.get());
+        assertEquals(500, cx.batchedRows.get());
+    }
+
+    static SimpleFeatureType createType() throws Exception {
+        return DataUtilities.createType("PLANT_COVERAGE", "NAME:String,COVERAGE:Double,GEOM:Polygon:srid=4326");
+    }
+
+    static List<SimpleFeature> createFeatures(SimpleFeatureType type, int count) {
+        GeometricShapeFactory shapes = new GeometricShapeFactory(new GeometryFactory());
+        shapes.setNumPoints(32);
+        shapes.setSize(0.01);
+
+        List<SimpleFeature> features = new ArrayList<>(count);
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        for (int i = 0; i < count; i++) {
+            shapes.setCentre(new Coordinate(-105 + i * 0.0001, 40));
+            builder.add("plant-" + i);
+            builder.add(i % 7 == 0 ? null : i * 0.5);
+            builder.add(shapes.createCircle());
+            features.add(builder.buildFeature("PLANT_COVERAGE." + i));
+        }
+        return features;
+    }
+}
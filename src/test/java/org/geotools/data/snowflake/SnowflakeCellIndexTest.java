@@ -0,0 +1,67 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+
+public class SnowflakeCellIndexTest {
+
+    @Test
+    public void testParse() {
+        SnowflakeCellIndex index = SnowflakeCellIndex.parse(" H3_CELL : h3 : 9 ");
+        assertEquals("H3_CELL", index.getColumn());
+        assertEquals(SnowflakeCellIndex.Type.H3, index.getType());
+        assertEquals(9, index.getResolution());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidResolution() {
+        SnowflakeCellIndex.parse("GH:GEOHASH:13");
+    }
+
+    @Test
+    public void testGeohash() {
+        assertEquals("u4pruydqqvj", SnowflakeCellIndex.geohash(57.64911, 10.40744, 11));
+    }
+
+    @Test
+    public void testGeohashCoveringAtColumnLength() {
+        SnowflakeCellIndex.Covering covering = new SnowflakeCellIndex("GH", SnowflakeCellIndex.Type.GEOHASH, 5)
+                .cover(new Envelope(10.40, 10.41, 57.64, 57.65));
+
+        // Prefix ranges also match columns holding longer geohashes, such as the 20 characters of ST_GEOHASH(GEOM)
+        assertTrue(covering.values.isEmpty());
+        assertEquals(1, covering.ranges.size());
+        assertArrayEquals(new Object[] {"u4pru", "u4pruzzzzzzzzzzzzzzz"}, covering.ranges.get(0));
+    }
+
+    @Test
+    public void testGeohashCoveringWithPrefixes() {
+        // A degree wide box takes hundreds of 7 character cells, but only a few dozen 4 character ones
+        SnowflakeCellIndex.Covering covering = new SnowflakeCellIndex("GH", SnowflakeCellIndex.Type.GEOHASH, 7)
+                .cover(new Envelope(10, 11, 57, 58));
+
+        assertTrue(covering.values.isEmpty());
+        assertTrue(covering.ranges.size() <= SnowflakeCellIndex.MAX_CELLS);
+        for (Object[] range : covering.ranges) {
+            assertEquals(4, ((String) range[0]).length());
+            assertEquals(range[0] + "zzzzzzzzzzzzzzzz", range[1]);
+        }
+    }
+
+    @Test
+    public void testNoCoveringOutsideTheWorld() {
+        assertNull(new SnowflakeCellIndex("GH", SnowflakeCellIndex.Type.GEOHASH, 7).cover(new Envelope(200, 210, 0, 10)));
+    }
+
+    @Test
+    public void testH3ChildRange() {
+        // The first and last resolution 10 children of a resolution 9 cell
+        assertArrayEquals(new long[] {0x8a28308280c7fffL, 0x8a28308280f7fffL}, SnowflakeCellIndex.childRange(0x8928308280fffffL, 9, 10));
+    }
+}
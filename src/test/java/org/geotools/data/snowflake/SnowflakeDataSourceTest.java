@@ -0,0 +1,137 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class SnowflakeDataSourceTest {
+
+    private final SnowflakeDataStoreFactory factory = new SnowflakeDataStoreFactory();
+
+    @Test
+    public void testConnectionProperties() throws Exception {
+        Map<String, Object> params = params();
+        params.put(SnowflakeDataStoreFactory.WAREHOUSE.key, "TILES_WH");
+
+        SnowflakeDataSource dataSource = (SnowflakeDataSource) factory.createDataSource(params);
+        try {
+            Properties properties = dataSource.getConnectionProperties();
+            assertEquals("GIS", properties.getProperty("db"));
+            assertEquals("PUBLIC", properties.getProperty("schema"));
+            assertEquals("TILES_WH", properties.getProperty("warehouse"));
+            assertEquals("true", properties.getProperty("CLIENT_SESSION_KEEP_ALIVE"));
+            assertEquals("3600", properties.getProperty("CLIENT_SESSION_KEEP_ALIVE_HEARTBEAT_FREQUENCY"));
+            assertFalse(properties.containsKey("tracing"));
+            assertFalse(properties.containsKey("password"));
+            assertEquals("jdbc:snowflake://myaccount.us-west-2.aws.snowflakecomputing.com/?db=GIS&schema=PUBLIC", dataSource.getUrl());
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testPoolParameters() throws Exception {
+        Map<String, Object> params = params();
+        params.put(SnowflakeDataStoreFactory.MINCONN.key, 2);
+        params.put(SnowflakeDataStoreFactory.MAXCONN.key, 16);
+        params.put(SnowflakeDataStoreFactory.MAXWAIT.key, 5);
+        params.put(SnowflakeDataStoreFactory.VALIDATECONN.key, Boolean.TRUE);
+        params.put(SnowflakeDataStoreFactory.VALIDATION_INTERVAL.key, 10);
+        params.put(SnowflakeDataStoreFactory.SESSION_KEEP_ALIVE.key, Boolean.FALSE);
+
+        SnowflakeDataSource dataSource = (SnowflakeDataSource) factory.createDataSource(params);
+        try {
+            assertEquals(2, dataSource.getMinIdle());
+            assertEquals(16, dataSource.getMaxActive());
+            assertEquals(5000, dataSource.getMaxWait());
+            assertTrue(dataSource.getTestOnBorrow());
+            assertEquals("SELECT 1", dataSource.getValidationQuery());
+            assertEquals(10000, dataSource.getValidationIntervalMillis());
+            assertFalse(dataSource.getConnectionProperties().containsKey("CLIENT_SESSION_KEEP_ALIVE"));
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testAsyncQueries() throws Exception {
+        Map<String, Object> params = params();
+        params.put(SnowflakeDataStoreFactory.ASYNC_QUERIES.key, Boolean.TRUE);
+        params.put(SnowflakeDataStoreFactory.ASYNC_QUERY_TABLES.key, "plant_coverage, DRIVEPATHS");
+
+        SnowflakeDataSource dataSource = (SnowflakeDataSource) factory.createDataSource(params);
+        try {
+            SnowflakeAsyncQueries async = dataSource.getAsyncQueries();
+            assertTrue(async.accepts("SELECT \"GEOM\" FROM \"PUBLIC\".\"PLANT_COVERAGE\" WHERE 1 = 1"));
+            assertTrue(async.accepts("SELECT * FROM drivepaths d JOIN communities c ON d.ID = c.ID"));
+            assertFalse(async.accepts("SELECT * FROM COMMUNITIES"));
+            assertFalse(async.accepts("DELETE FROM PLANT_COVERAGE"));
+            assertEquals(0, dataSource.getAsyncQueriesRunning());
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testAsyncQueriesNeedTables() throws Exception {
+        SnowflakeAsyncQueries async = new SnowflakeAsyncQueries();
+        assertFalse(async.accepts("SELECT * FROM COMMUNITIES"));
+        assertFalse(async.accepts("SELECT CURRENT_WAREHOUSE()"));
+
+        Map<String, Object> params = params();
+        params.put(SnowflakeDataStoreFactory.ASYNC_QUERIES.key, Boolean.TRUE);
+        try {
+            factory.createDataSource(params).close();
+            fail("Async queries without tables should be refused");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains(SnowflakeDataStoreFactory.ASYNC_QUERY_TABLES.key));
+        }
+    }
+
+    @Test
+    public void testFilterGeometryTableKeepsInitSqls() throws Exception {
+        Map<String, Object> params = params();
+        params.put(SnowflakeDataStoreFactory.FILTER_GEOMETRY_MAX_BYTES.key, 1024);
+
+        SnowflakeDataSource dataSource = (SnowflakeDataSource) factory.createDataSource(params);
+        try {
+            assertNotNull(dataSource.getFilterGeometries());
+            dataSource.setConnectionInitSqls(Arrays.asList("ALTER SESSION SET TIMEZONE = 'UTC'", SnowflakeFilterGeometries.TABLE_DDL));
+            dataSource.setFilterGeometryTable(true);
+            assertEquals(Arrays.asList("ALTER SESSION SET TIMEZONE = 'UTC'", SnowflakeFilterGeometries.TABLE_DDL),
+                    new ArrayList<>(dataSource.getConnectionInitSqls()));
+
+            dataSource.setFilterGeometryTable(false);
+            assertNull(dataSource.getFilterGeometries());
+            assertEquals(Arrays.asList("ALTER SESSION SET TIMEZONE = 'UTC'"), new ArrayList<>(dataSource.getConnectionInitSqls()));
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    // Offline parameters, prewarming is turned off so no login is attempted
+    private Map<String, Object> params() {
+        Map<String, Object> params = new HashMap<>();
+        params.put(SnowflakeDataStoreFactory.DBTYPE.key, "Snowflake");
+        params.put(SnowflakeDataStoreFactory.ACCOUNT.key, "myaccount");
+        params.put(SnowflakeDataStoreFactory.USER.key, "geoserver");
+        params.put(SnowflakeDataStoreFactory.PASSWD.key, "secret");
+        params.put(SnowflakeDataStoreFactory.DATABASE.key, "GIS");
+        params.put(SnowflakeDataStoreFactory.SCHEMA.key, "PUBLIC");
+        params.put(SnowflakeDataStoreFactory.CLOUD_SELECTION.key, "AWS : us-west-2");
+        params.put(SnowflakeDataStoreFactory.PREWARM_CONNECTIONS.key, Boolean.FALSE);
+        return params;
+    }
+}
@@ -0,0 +1,86 @@
+package org.geotools.data.snowflake;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+
+import org.geotools.api.data.DataStore;
+import org.geotools.api.data.Query;
+import org.geotools.api.data.SimpleFeatureSource;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.jdbc.JDBCDataStoreFactory;
+
+/**
+ * Runs the same stream of tile-sized BBOX reads through a basic (inlined literals) and a prepared (bound literals)
+ * datastore, then reads the session query history to compare compilation time and how often Snowflake could reuse a
+ * result instead of executing. Needs a live account, so it is a main() rather than a test.
+ */
+public class SnowflakeDialectBenchmark {
+
+    private static final String TABLE = "GT_DIALECT_BENCH";
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        try (Connection cx = SnowflakeTestSupport.openConnection(Collections.emptyMap());
+                Statement st = cx.createStatement()) {
+            st.executeUpdate("CREATE OR REPLACE TABLE " + TABLE + " AS SELECT SEQ4() AS ID, "
+                    + "ST_MAKEPOINT(UNIFORM(-180::FLOAT, 180::FLOAT, RANDOM()), UNIFORM(-90::FLOAT, 90::FLOAT, RANDOM())) AS GEOM "
+                    + "FROM TABLE(GENERATOR(ROWCOUNT => 1000000))");
+            try {
+                run(requests, false);
+                run(requests, true);
+            } finally {
+                st.executeUpdate("DROP TABLE IF EXISTS " + TABLE);
+            }
+        }
+    }
+
+    private static void run(int requests, boolean prepared) throws Exception {
+        String tag = "gt-dialect-bench-" + (prepared ? "prepared" : "basic") + "-" + System.currentTimeMillis();
+
+        Map<String, Object> params = SnowflakeTestSupport.dataStoreParams();
+        params.put(SnowflakeDataStoreFactory.PREPARED_STATEMENTS.key, prepared);
+        params.put(JDBCDataStoreFactory.SQL_ON_BORROW.key, "ALTER SESSION SET QUERY_TAG='" + tag + "'");
+        params.put(JDBCDataStoreFactory.MAXCONN.key, 1);
+
+        DataStore store = new SnowflakeDataStoreFactory().createDataStore(params);
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory();
+        long start = System.nanoTime();
+        long features = 0;
+
+        try {
+            SimpleFeatureSource source = store.getFeatureSource(TABLE);
+            String geometry = source.getSchema().getGeometryDescriptor().getLocalName();
+
+            // 16 distinct tiles, requested over and over like a busy tile cache would
+            for (int i = 0; i < requests; i++) {
+                int tile = i % 16;
+                double minX = -180 + (tile % 4) * 90;
+                double minY = -90 + (tile / 4) * 45;
+                Filter bbox = ff.bbox(geometry, minX, minY, minX + 90, minY + 45, "EPSG:4326");
+                features += source.getCount(new Query(TABLE, bbox));
+            }
+        } finally {
+            store.dispose();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        try (Connection cx = SnowflakeTestSupport.openConnection(Collections.emptyMap());
+                Statement st = cx.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*), AVG(COMPILATION_TIME), MAX(COMPILATION_TIME), "
+                        + "COUNT_IF(EXECUTION_TIME = 0), AVG(LENGTH(QUERY_TEXT)) "
+                        + "FROM TABLE(INFORMATION_SCHEMA.QUERY_HISTORY(RESULT_LIMIT => 10000)) "
+                        + "WHERE QUERY_TAG = '" + tag + "' AND QUERY_TYPE = 'SELECT'")) {
+            rs.next();
+            System.out.printf("%-8s requests=%d time=%.2fs features=%d queries=%d avgCompile=%.1fms maxCompile=%dms "
+                    + "reused=%d avgSqlLength=%.0f%n",
+                    prepared ? "prepared" : "basic", requests, seconds, features, rs.getLong(1), rs.getDouble(2),
+                    rs.getLong(3), rs.getLong(4), rs.getDouble(5));
+        }
+    }
+}
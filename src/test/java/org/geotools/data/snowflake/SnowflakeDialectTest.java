@@ -0,0 +1,252 @@
+package org.geotools.data.snowflake;
+
+import static org.geotools.data.snowflake.SnowflakeFilterToSQLTest.createType;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+
+import org.geotools.api.feature.FeatureVisitor;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.feature.visitor.MaxVisitor;
+import org.geotools.feature.visitor.UniqueVisitor;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.util.factory.Hints;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+public class SnowflakeDialectTest {
+
+    private final SnowflakeDialect dialect = new SnowflakeDialect(null);
+
+    @Test
+    public void testWKBTextIsHex() throws Exception {
+        byte[] point = new WKBWriter().write(JTS.toGeometry(new Envelope(1, 1, 2, 2)).getCentroid());
+
+        assertArrayEquals(point, SnowflakeDialect.getWKB(HexFormat.of().formatHex(point)));
+        assertArrayEquals(point, SnowflakeDialect.getWKB(point));
+    }
+
+    @Test(expected = SQLException.class)
+    public void testWKBTextNotHex() throws Exception {
+        SnowflakeDialect.getWKB("AAAAAAE/8AAAAAAAAEAAAAAAAAAA");
+    }
+
+    @Test
+    public void testGeometryEnvelope() {
+        StringBuffer sql = new StringBuffer();
+        dialect.encodeGeometryEnvelope("PLANTS", "GEOM", sql);
+
+        assertEquals("ST_ASWKB(ST_MAKELINE(ST_MAKEGEOMPOINT(MIN(ST_XMIN(\"GEOM\")), MIN(ST_YMIN(\"GEOM\"))), "
+                + "ST_MAKEGEOMPOINT(MAX(ST_XMAX(\"GEOM\")), MAX(ST_YMAX(\"GEOM\")))))", sql.toString());
+    }
+
+    @Test
+    public void testDecodeGeometryEnvelope() throws Exception {
+        GeometryFactory factory = new GeometryFactory();
+        byte[] line = new WKBWriter().write(factory.createLineString(new Coordinate[] {new Coordinate(-170.5, -10), new Coordinate(1e7, 45)}));
+
+        assertEquals(new Envelope(-170.5, 1e7, -10, 45), dialect.decodeGeometryEnvelope(resultSet(line), 1, null));
+        // Text results are hex WKB
+        assertEquals(new Envelope(-170.5, 1e7, -10, 45), dialect.decodeGeometryEnvelope(resultSet(HexFormat.of().formatHex(line)), 1, null));
+        // A single point has a zero area envelope, not an empty one
+        byte[] corners = new WKBWriter().write(factory.createLineString(new Coordinate[] {new Coordinate(3, 4), new Coordinate(3, 4)}));
+        assertEquals(new Envelope(3, 3, 4, 4), dialect.decodeGeometryEnvelope(resultSet(corners), 1, null));
+    }
+
+    @Test
+    public void testDecodeGeometryEnvelopeNullOrEmpty() throws Exception {
+        // No rows, or no row with a geometry
+        assertTrue(dialect.decodeGeometryEnvelope(resultSet(null), 1, null).isNull());
+        assertTrue(dialect.decodeGeometryEnvelope(resultSet(""), 1, null).isNull());
+        byte[] empty = new WKBWriter().write(new GeometryFactory().createLineString());
+        assertTrue(dialect.decodeGeometryEnvelope(resultSet(empty), 1, null).isNull());
+    }
+
+    @Test
+    public void testGeometryColumnWithoutTile() {
+        dialect.setTilePushdown(true);
+
+        assertEquals("ST_ASWKB(\"GEOM\")", encode(createType("GEOGRAPHY", 4326), null));
+        assertEquals("ST_ASWKB(\"GEOM\")", encode(createType("GEOGRAPHY", 4326), new Hints()));
+    }
+
+    @Test
+    public void testTileIgnoredWhenDisabled() {
+        Hints hints = new Hints(Hints.GEOMETRY_CLIP, JTS.toGeometry(new Envelope(0, 10, 0, 10)));
+
+        assertEquals("ST_ASWKB(\"GEOM\")", encode(createType("GEOGRAPHY", 4326), hints));
+    }
+
+    @Test
+    public void testGeographyTileClip() {
+        dialect.setTilePushdown(true);
+        Hints hints = new Hints(Hints.GEOMETRY_CLIP, JTS.toGeometry(new Envelope(0, 10, 0, 10)));
+
+        assertEquals("ST_ASWKB(CASE WHEN ST_XMIN(\"GEOM\") >= 0.0 AND ST_XMAX(\"GEOM\") <= 10.0"
+                + " AND ST_YMIN(\"GEOM\") >= 0.0 AND ST_YMAX(\"GEOM\") <= 10.0 THEN \"GEOM\""
+                + " ELSE ST_INTERSECTION(\"GEOM\", ST_GEOGFROMTEXT('POLYGON((0.0 0.0, 10.0 0.0, 10.0 10.0, 0.0 10.0, 0.0 0.0))')) END)",
+                encode(createType("GEOGRAPHY", 4326), hints));
+    }
+
+    @Test
+    public void testGeometryTileClipAndSimplify() {
+        dialect.setTilePushdown(true);
+        Hints hints = new Hints(Hints.GEOMETRY_CLIP, JTS.toGeometry(new Envelope(0, 4096, 0, 4096)));
+        hints.put(SnowflakeDialect.TILE_EXTENT, 256);
+
+        String sql = encode(createType("GEOMETRY", 3857), hints);
+
+        assertTrue(sql, sql.contains("THEN ST_SIMPLIFY(\"GEOM\", 16.0) ELSE"));
+        assertTrue(sql, sql.contains("ST_SIMPLIFY(ST_INTERSECTION(\"GEOM\", ST_GEOMFROMTEXT('POLYGON((0.0 0.0, 4096.0 0.0, "
+                + "4096.0 4096.0, 0.0 4096.0, 0.0 0.0))', 3857)), 16.0) END"));
+    }
+
+    @Test
+    public void testWorldTileOnlySimplifies() {
+        dialect.setTilePushdown(true);
+        Hints hints = new Hints(Hints.GEOMETRY_CLIP, JTS.toGeometry(new Envelope(-200, 200, -100, 100)));
+        hints.put(SnowflakeDialect.TILE_EXTENT, 256);
+
+        String sql = encode(createType("GEOGRAPHY", 4326), hints);
+
+        assertTrue(sql, sql.startsWith("ST_ASWKB(ST_SIMPLIFY(\"GEOM\", "));
+        assertFalse(sql, sql.contains("ST_INTERSECTION"));
+    }
+
+    @Test
+    public void testGeographyPixelSize() {
+        // A zoom 10 tile around 45 degrees north is narrower than it is tall, measured at its northern edge
+        Envelope tile = new Envelope(0, 0.3515625, 45, 45.35);
+        double pixel = SnowflakeDialect.getPixelSize(tile, 256, true);
+
+        assertEquals(0.3515625 * SnowflakeFilterToSQLHelper.METERS_PER_DEGREE * Math.cos(Math.toRadians(45.35)) / 256, pixel, 1e-9);
+    }
+
+    @Test
+    public void testGeometrySimplification() {
+        Hints hints = new Hints(Hints.GEOMETRY_SIMPLIFICATION, 2.5);
+
+        assertEquals("ST_ASWKB(ST_SIMPLIFY(\"GEOM\", 2.5))", encode(createType("GEOMETRY", 3857), hints));
+        assertEquals("ST_ASWKB(ST_SIMPLIFY(\"GEOM\", 2.5))",
+                encode(createType("GEOMETRY", 3857), new Hints(Hints.GEOMETRY_GENERALIZATION, 2.5)));
+    }
+
+    @Test
+    public void testGeographySimplificationInMeters() {
+        Hints hints = new Hints(Hints.GEOMETRY_SIMPLIFICATION, 0.01);
+
+        String sql = encode(createType("GEOGRAPHY", 4326), hints);
+
+        assertTrue(sql, sql.startsWith("ST_ASWKB(ST_SIMPLIFY(\"GEOM\", 1113.19"));
+        assertTrue(sql, sql.endsWith(", TRUE))"));
+    }
+
+    @Test
+    public void testSimplificationDisabled() {
+        dialect.setSimplification(false);
+
+        assertEquals("ST_ASWKB(\"GEOM\")", encode(createType("GEOMETRY", 3857), new Hints(Hints.GEOMETRY_SIMPLIFICATION, 2.5)));
+    }
+
+    @Test
+    public void testSupportedHints() {
+        Set<Hints.Key> hints = new HashSet<>();
+        dialect.addSupportedHints(hints);
+        assertFalse(hints.contains(Hints.GEOMETRY_CLIP));
+        assertTrue(hints.contains(Hints.GEOMETRY_SIMPLIFICATION));
+        assertTrue(hints.contains(Hints.GEOMETRY_GENERALIZATION));
+
+        dialect.setTilePushdown(true);
+        dialect.addSupportedHints(hints);
+        assertTrue(hints.contains(Hints.GEOMETRY_CLIP));
+        assertTrue(hints.contains(SnowflakeDialect.TILE_EXTENT));
+    }
+
+    @Test
+    public void testOptimizedBoundsFromEnvelopeColumns() {
+        SimpleFeatureType type = SimpleFeatureTypeBuilder.retype(createType("GEOGRAPHY", 4326),
+                new String[] {"NAME", "MINX", "MINY", "MAXX", "MAXY", "GEOM"});
+        StringBuffer sql = new StringBuffer();
+
+        assertFalse(dialect.encodeOptimizedBounds("PUBLIC", type, sql));
+
+        dialect.setEnvelopeColumns(new String[] {"MINX", "MINY", "MAXX", "MAXY"});
+        assertTrue(dialect.encodeOptimizedBounds("PUBLIC", type, sql));
+        assertEquals("SELECT MIN(\"MINX\"), MIN(\"MINY\"), MAX(\"MAXX\"), MAX(\"MAXY\") FROM \"PUBLIC\".\"PLANT_COVERAGE\"",
+                sql.toString());
+
+        // The envelope columns can't tell which of two geometries they describe
+        assertFalse(dialect.encodeOptimizedBounds("PUBLIC", createType("GEOGRAPHY", 4326), new StringBuffer()));
+    }
+
+    @Test
+    public void testAggregateFunctions() {
+        Map<Class<? extends FeatureVisitor>, String> aggregates = new HashMap<>();
+        dialect.registerAggregateFunctions(aggregates);
+
+        assertEquals("APPROX_COUNT_DISTINCT", aggregates.get(SnowflakeApproxUniqueCountVisitor.class));
+        assertTrue(aggregates.containsKey(UniqueVisitor.class));
+        assertTrue(aggregates.containsKey(MaxVisitor.class));
+    }
+
+    @Test
+    public void testApproxUniqueCountVisitsFeatures() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("TEST", "NAME:String");
+        SnowflakeApproxUniqueCountVisitor visitor = new SnowflakeApproxUniqueCountVisitor("NAME");
+        for (String name : new String[] {"a", "b", "a", null, "c"}) {
+            visitor.visit(SimpleFeatureBuilder.build(type, new Object[] {name}, null));
+        }
+        assertEquals(3L, visitor.getResult().getValue());
+
+        // The count the datastore computed wins over the visited features
+        visitor.setValue(7);
+        assertEquals(7L, visitor.getResult().getValue());
+    }
+
+    @Test
+    public void testLimitOffset() {
+        assertTrue(dialect.isLimitOffsetSupported());
+
+        StringBuffer sql = new StringBuffer("SELECT 1");
+        dialect.applyLimitOffset(sql, 10, 0);
+        assertEquals("SELECT 1 LIMIT 10", sql.toString());
+
+        sql = new StringBuffer("SELECT 1");
+        dialect.applyLimitOffset(sql, 10, 200000);
+        assertEquals("SELECT 1 LIMIT 10 OFFSET 200000", sql.toString());
+
+        sql = new StringBuffer("SELECT 1");
+        dialect.applyLimitOffset(sql, Integer.MAX_VALUE, 5);
+        assertEquals("SELECT 1 LIMIT NULL OFFSET 5", sql.toString());
+    }
+
+    private String encode(SimpleFeatureType type, Hints hints) {
+        StringBuffer sql = new StringBuffer();
+        GeometryDescriptor geometry = (GeometryDescriptor) type.getDescriptor("GEOM");
+        dialect.encodeGeometryColumn(geometry, null, 4326, hints, sql);
+        return sql.toString();
+    }
+
+    // A result set holding a single value in its first column
+    private static ResultSet resultSet(Object value) {
+        return (ResultSet) Proxy.newProxyInstance(SnowflakeDialectTest.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                (proxy, method, args) -> "getObject".equals(method.getName()) && Integer.valueOf(1).equals(args[0]) ? value : null);
+    }
+}
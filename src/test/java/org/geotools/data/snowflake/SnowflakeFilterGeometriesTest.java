@@ -0,0 +1,70 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SnowflakeFilterGeometriesTest {
+
+    // Tells sessions apart by their connection, which the recording connection can't be unwrapped to a Snowflake one for
+    private final SnowflakeFilterGeometries geometries = new SnowflakeFilterGeometries() {
+        @Override
+        Object getSession(Connection cx) {
+            return cx;
+        }
+    };
+
+    @Test
+    public void testIds() {
+        String a = geometries.add(new byte[] {1, 2, 3});
+        String b = geometries.add(new byte[] {4, 5, 6});
+
+        assertEquals(64, a.length());
+        assertEquals(Arrays.asList(a, b), SnowflakeFilterGeometries.getIds(select(a) + " AND " + select(b) + " OR " + select(a)));
+        assertTrue(SnowflakeFilterGeometries.getIds("SELECT * FROM PLANTS").isEmpty());
+    }
+
+    @Test
+    public void testLoadedOncePerSession() throws Exception {
+        String a = geometries.add(new byte[] {1, 2, 3});
+        String b = geometries.add(new byte[] {4, 5, 6});
+        RecordingConnection session = new RecordingConnection(0);
+        Connection cx = session.proxy();
+
+        geometries.load(cx, "SELECT * FROM PLANTS WHERE " + select(a) + " AND " + select(b));
+        assertEquals(1, session.statements.size());
+        assertEquals("INSERT INTO GT_FILTER_GEOMETRIES (ID, WKB) SELECT V.ID, V.WKB FROM (VALUES (?, CAST(? AS VARBINARY)),"
+                + " (?, CAST(? AS VARBINARY))) AS V (ID, WKB)"
+                + " WHERE NOT EXISTS (SELECT 1 FROM GT_FILTER_GEOMETRIES G WHERE G.ID = V.ID)", session.statements.get(0));
+
+        geometries.load(cx, "SELECT * FROM PLANTS WHERE " + select(b));
+        assertEquals(1, session.statements.size());
+
+        RecordingConnection other = new RecordingConnection(0);
+        geometries.load(other.proxy(), "SELECT * FROM PLANTS WHERE " + select(b));
+        assertEquals(1, other.statements.size());
+    }
+
+    @Test
+    public void testUnknownGeometryFails() throws Exception {
+        String id = SnowflakeFilterGeometries.getId(new byte[] {1, 2, 3});
+        RecordingConnection session = new RecordingConnection(0);
+        try {
+            geometries.load(session.proxy(), "SELECT * FROM PLANTS WHERE " + select(id));
+            fail("A statement reading a geometry that was never registered should fail");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains(id));
+        }
+        assertTrue(session.statements.isEmpty());
+    }
+
+    private static String select(String id) {
+        return "ST_INTERSECTS(\"GEOM\", (SELECT ST_GEOMFROMWKB(WKB, 3857) FROM GT_FILTER_GEOMETRIES WHERE ID = '" + id + "'))";
+    }
+}
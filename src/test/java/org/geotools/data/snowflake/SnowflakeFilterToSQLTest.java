@@ -0,0 +1,388 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.FilterCapabilities;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBWriter;
+
+public class SnowflakeFilterToSQLTest {
+
+    // Base64 Well-Known-Binary of the literals the tests filter on
+    private static final String BOX = "TO_BINARY('AAAAAAMAAAABAAAABQAAAAAAAAAAQBQAAAAAAABAJAAAAAAAAEAUAAAAAAAAQCQAAAAAAABANAAAAAAAAAAAAAAAAAAAQDQAAAAAAAAAAAAAAAAAAEAUAAAAAAAA', 'BASE64')";
+    private static final String POINT_1_2 = "TO_BINARY('AAAAAAE/8AAAAAAAAEAAAAAAAAAA', 'BASE64')";
+    private static final String POINT_10_20 = "TO_BINARY('AAAAAAFAJAAAAAAAAEA0AAAAAAAA', 'BASE64')";
+    private static final String POINT_10_405_57_645 = "TO_BINARY('AAAAAAFAJM9cKPXCj0BM0o9cKPXD', 'BASE64')";
+
+    // A projected CRS in US survey feet
+    private static final String LONG_ISLAND_FTUS = "PROJCS[\"NAD83 / New York Long Island (ftUS)\", GEOGCS[\"NAD83\","
+            + " DATUM[\"North_American_Datum_1983\", SPHEROID[\"GRS 1980\", 6378137, 298.257222101]], PRIMEM[\"Greenwich\", 0],"
+            + " UNIT[\"degree\", 0.0174532925199433]], PROJECTION[\"Lambert_Conformal_Conic_2SP\"],"
+            + " PARAMETER[\"standard_parallel_1\", 41.03333333333333], PARAMETER[\"standard_parallel_2\", 40.66666666666666],"
+            + " PARAMETER[\"latitude_of_origin\", 40.16666666666666], PARAMETER[\"central_meridian\", -74],"
+            + " PARAMETER[\"false_easting\", 984250], PARAMETER[\"false_northing\", 0], UNIT[\"US survey foot\", 0.3048006096012192]]";
+
+    private final FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+    @Test
+    public void testBBOXOnGeography() throws Exception {
+        Filter bbox = ff.bbox("GEOM", 0, 5, 10, 20, "EPSG:4326");
+
+        assertEquals("WHERE (ST_XMIN(\"GEOM\") <= 10.0 AND ST_XMAX(\"GEOM\") >= 0.0 AND ST_YMIN(\"GEOM\") <= 20.0"
+                + " AND ST_YMAX(\"GEOM\") >= 5.0 AND ST_INTERSECTS(\"GEOM\","
+                + " ST_GEOGFROMWKB(" + BOX + ")))",
+                encode(createType("GEOGRAPHY", 4326), bbox));
+    }
+
+    @Test
+    public void testBBOXOnGeometry() throws Exception {
+        Filter bbox = ff.bbox("GEOM", 0, 5, 10, 20, "EPSG:4326");
+
+        assertEquals("WHERE (ST_XMIN(\"GEOM\") <= 10.0 AND ST_XMAX(\"GEOM\") >= 0.0 AND ST_YMIN(\"GEOM\") <= 20.0"
+                + " AND ST_YMAX(\"GEOM\") >= 5.0 AND ST_INTERSECTS(\"GEOM\","
+                + " ST_GEOMFROMWKB(" + BOX + ", 4326)))",
+                encode(createType("GEOMETRY", 4326), bbox));
+    }
+
+    @Test
+    public void testWideBBOXOnGeography() throws Exception {
+        Filter bbox = ff.bbox("GEOM", -170, 5, 10, 20, "EPSG:4326");
+
+        assertEquals("WHERE (ST_XMIN(\"GEOM\") <= 10.0 AND ST_XMAX(\"GEOM\") >= -170.0 AND ST_YMIN(\"GEOM\") <= 20.0"
+                + " AND ST_YMAX(\"GEOM\") >= 5.0 AND TRUE)",
+                encode(createType("GEOGRAPHY", 4326), bbox));
+        // Planar boxes are fine however wide
+        assertTrue(encode(createType("GEOMETRY", 4326), bbox).contains("ST_INTERSECTS("));
+    }
+
+    @Test
+    public void testWideBBOXOnGeographyCheckedInPostFilter() {
+        Filter name = ff.equals(ff.property("NAME"), ff.literal("Plant"));
+        Filter wide = ff.bbox("GEOM", -180, -90, 180, 90, "EPSG:4326");
+        SimpleFeatureType geography = createType("GEOGRAPHY", 4326);
+
+        Filter[] split = SnowflakeFilterToSQLHelper.addWideBBoxPostfilters(new Filter[] {ff.and(name, wide), Filter.INCLUDE}, geography);
+        assertEquals(ff.and(name, wide), split[0]);
+        assertEquals(wide, split[1]);
+
+        // Under a Not the envelope test would drop features, so the whole part is left to memory
+        Filter not = ff.not(wide);
+        split = SnowflakeFilterToSQLHelper.addWideBBoxPostfilters(new Filter[] {ff.and(name, not), Filter.INCLUDE}, geography);
+        assertEquals(name, split[0]);
+        assertEquals(not, split[1]);
+
+        Filter narrow = ff.bbox("GEOM", 0, 5, 10, 20, "EPSG:4326");
+        Filter[] supported = new Filter[] {narrow, Filter.INCLUDE};
+        assertTrue(supported == SnowflakeFilterToSQLHelper.addWideBBoxPostfilters(supported, geography));
+        supported = new Filter[] {wide, Filter.INCLUDE};
+        assertTrue(supported == SnowflakeFilterToSQLHelper.addWideBBoxPostfilters(supported, createType("GEOMETRY", 4326)));
+    }
+
+    @Test
+    public void testBBOXWithEnvelopeColumns() throws Exception {
+        Filter bbox = ff.bbox("GEOM", 0, 5, 10, 20, "EPSG:4326");
+        SnowflakeFilterToSQL fts = createFilterToSQL(createType("GEOGRAPHY", 4326));
+        fts.helper.setEnvelopeColumns(new String[] {"MINX", "MINY", "MAXX", "MAXY"});
+
+        assertEquals("WHERE (\"MINX\" <= 10.0 AND \"MAXX\" >= 0.0 AND \"MINY\" <= 20.0 AND \"MAXY\" >= 5.0"
+                + " AND ST_INTERSECTS(\"GEOM\","
+                + " ST_GEOGFROMWKB(" + BOX + ")))",
+                fts.encodeToString(bbox));
+    }
+
+    @Test
+    public void testEnvelopeColumnsIgnoredWhenMissing() throws Exception {
+        Filter bbox = ff.bbox("GEOM", 0, 5, 10, 20, "EPSG:4326");
+        SnowflakeFilterToSQL fts = createFilterToSQL(createType("GEOGRAPHY", 4326));
+        fts.helper.setEnvelopeColumns(new String[] {"LEFT", "BOTTOM", "RIGHT", "TOP"});
+
+        assertEquals(encode(createType("GEOGRAPHY", 4326), bbox), fts.encodeToString(bbox));
+    }
+
+    @Test
+    public void testBBOXWithCellIndex() throws Exception {
+        Filter bbox = ff.bbox("GEOM", 10.40, 57.64, 10.41, 57.65, "EPSG:4326");
+        SnowflakeFilterToSQL fts = createFilterToSQL(createCellIndexedType());
+        fts.helper.setCellIndexes(Collections.singletonMap("PLANT_COVERAGE", SnowflakeCellIndex.parse("GH:GEOHASH:5")));
+
+        assertTrue(fts.encodeToString(bbox).startsWith("WHERE ((\"GH\" BETWEEN 'u4pru' AND 'u4pruzzzzzzzzzzzzzzz') AND ST_XMIN(\"GEOM\") <= 10.41 AND "));
+    }
+
+    @Test
+    public void testCellIndexOnlyPrefiltersIntersectingOperators() throws Exception {
+        SnowflakeFilterToSQL fts = createFilterToSQL(createCellIndexedType());
+        fts.helper.setCellIndexes(Collections.singletonMap("PLANT_COVERAGE", SnowflakeCellIndex.parse("GH:GEOHASH:5")));
+
+        assertEquals("WHERE ((\"GH\" BETWEEN 'u4pru' AND 'u4pruzzzzzzzzzzzzzzz') AND ST_WITHIN(\"GEOM\", ST_GEOGFROMWKB(" + POINT_10_405_57_645 + ")))",
+                fts.encodeToString(ff.within(ff.property("GEOM"), ff.literal(point(10.405, 57.645)))));
+        assertFalse(fts.encodeToString(ff.disjoint(ff.property("GEOM"), ff.literal(point(10.405, 57.645)))).contains("\"GH\""));
+        assertFalse(fts.encodeToString(ff.within(ff.property("OTHER_GEOM"), ff.literal(point(10.405, 57.645)))).contains("\"GH\""));
+    }
+
+    @Test
+    public void testIntersectsOnGeography() throws Exception {
+        Filter intersects = ff.intersects(ff.property("GEOM"), ff.literal(point(1, 2)));
+
+        assertEquals("WHERE ST_INTERSECTS(\"GEOM\", ST_GEOGFROMWKB(" + POINT_1_2 + "))",
+                encode(createType("GEOGRAPHY", 4326), intersects));
+    }
+
+    @Test
+    public void testIntersectsOnGeometry() throws Exception {
+        Filter intersects = ff.intersects(ff.property("GEOM"), ff.literal(point(1, 2)));
+
+        assertEquals("WHERE ST_INTERSECTS(\"GEOM\", ST_GEOMFROMWKB(" + POINT_1_2 + ", 3857))",
+                encode(createType("GEOMETRY", 3857), intersects));
+    }
+
+    @Test
+    public void testLiteralFirst() throws Exception {
+        Filter within = ff.within(ff.literal(point(1, 2)), ff.property("GEOM"));
+
+        assertEquals("WHERE ST_WITHIN(ST_GEOGFROMWKB(" + POINT_1_2 + "), \"GEOM\")",
+                encode(createType("GEOGRAPHY", 4326), within));
+    }
+
+    @Test
+    public void testIntersectsBetweenColumns() throws Exception {
+        Filter intersects = ff.intersects(ff.property("GEOM"), ff.property("OTHER_GEOM"));
+
+        assertEquals("WHERE ST_INTERSECTS(\"GEOM\", \"OTHER_GEOM\")", encode(createType("GEOGRAPHY", 4326), intersects));
+    }
+
+    @Test
+    public void testDWithinOnGeography() throws Exception {
+        Filter dwithin = ff.dwithin(ff.property("GEOM"), ff.literal(point(10, 20)), 1, "km");
+        String sql = encode(createType("GEOGRAPHY", 4326), dwithin);
+
+        assertTrue(sql, sql.startsWith("WHERE (ST_XMIN(\"GEOM\") <= 10.0"));
+        assertTrue(sql, sql.contains("ST_YMAX(\"GEOM\") >= 19.99"));
+        assertTrue(sql, sql.endsWith(" AND ST_DWITHIN(\"GEOM\", ST_GEOGFROMWKB(" + POINT_10_20 + "), 1000.0))"));
+    }
+
+    @Test
+    public void testBeyondOnGeography() throws Exception {
+        Filter beyond = ff.beyond(ff.property("GEOM"), ff.literal(point(10, 20)), 500, "m");
+
+        assertEquals("WHERE (NOT ST_DWITHIN(\"GEOM\", ST_GEOGFROMWKB(" + POINT_10_20 + "), 500.0))",
+                encode(createType("GEOGRAPHY", 4326), beyond));
+    }
+
+    @Test
+    public void testDWithinOnGeographicGeometry() throws Exception {
+        Filter dwithin = ff.dwithin(ff.property("GEOM"), ff.literal(point(1, 2)), SnowflakeFilterToSQLHelper.METERS_PER_DEGREE * 2, "m");
+
+        assertEquals("WHERE (ST_XMIN(\"GEOM\") <= 3.0 AND ST_XMAX(\"GEOM\") >= -1.0 AND ST_YMIN(\"GEOM\") <= 4.0"
+                + " AND ST_YMAX(\"GEOM\") >= 0.0 AND ST_DISTANCE(\"GEOM\", ST_GEOMFROMWKB(" + POINT_1_2 + ", 4326)) <= 2.0)",
+                encode(createType("GEOMETRY", 4326), dwithin));
+    }
+
+    @Test
+    public void testLiteralSimplified() throws Exception {
+        Polygon square = polygon(0, 0, 10, 0, 10, 10, 0, 10, 0, 0);
+        Polygon jagged = polygon(0, 0, 5, 0.5, 10, 0, 10, 10, 5, 9.5, 0, 10, 0, 0);
+        SnowflakeFilterToSQL fts = createFilterToSQL(createType("GEOGRAPHY", 4326));
+        fts.helper.setFilterGeometryTolerance(1);
+
+        assertEquals(encode(createType("GEOGRAPHY", 4326), ff.intersects(ff.property("GEOM"), ff.literal(square))),
+                fts.encodeToString(ff.intersects(ff.property("GEOM"), ff.literal(jagged))));
+        assertEquals("WHERE ST_INTERSECTS(\"GEOM\", ST_GEOGFROMWKB(" + POINT_1_2 + "))",
+                fts.encodeToString(ff.intersects(ff.property("GEOM"), ff.literal(point(1, 2)))));
+    }
+
+    @Test
+    public void testOversizedLiteralMovedToTable() throws Exception {
+        SnowflakeFilterGeometries geometries = new SnowflakeFilterGeometries();
+        SnowflakeFilterToSQL fts = createFilterToSQL(createType("GEOMETRY", 3857));
+        fts.setFilterGeometryTable(16, geometries);
+
+        String id = SnowflakeFilterGeometries.getId(new WKBWriter().write(point(1, 2)));
+        String sql = fts.encodeToString(ff.intersects(ff.property("GEOM"), ff.literal(point(1, 2))));
+        assertEquals("WHERE ST_INTERSECTS(\"GEOM\", (SELECT ST_GEOMFROMWKB(WKB, 3857) FROM GT_FILTER_GEOMETRIES WHERE ID = '" + id + "'))",
+                sql);
+        assertEquals(Collections.singletonList(id), SnowflakeFilterGeometries.getIds(sql));
+    }
+
+    @Test
+    public void testDistanceUnits() {
+        assertEquals(1000, SnowflakeFilterToSQLHelper.getMetersPerUnit("km"), 0);
+        assertEquals(1609.344, SnowflakeFilterToSQLHelper.getMetersPerUnit("Miles"), 0);
+        assertEquals(0.3048, SnowflakeFilterToSQLHelper.getMetersPerUnit("urn:ogc:def:uom:EPSG::9002"), 0);
+        assertEquals(1, SnowflakeFilterToSQLHelper.getMetersPerUnit("http://www.opengis.net/def/uom/OGC/1.0/metre"), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDistanceUnits() {
+        SnowflakeFilterToSQLHelper.getMetersPerUnit("furlong");
+    }
+
+    @Test
+    public void testCRSUnits() throws Exception {
+        assertEquals(SnowflakeFilterToSQLHelper.METERS_PER_DEGREE, SnowflakeFilterToSQLHelper.getMetersPerCRSUnit(DefaultGeographicCRS.WGS84), 0);
+        assertEquals(1200d / 3937, SnowflakeFilterToSQLHelper.getMetersPerCRSUnit(CRS.parseWKT(LONG_ISLAND_FTUS)), 1e-12);
+        assertEquals(1, SnowflakeFilterToSQLHelper.getMetersPerCRSUnit(null), 0);
+    }
+
+    @Test
+    public void testDWithinInCRSUnits() throws Exception {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName("PLANT_COVERAGE");
+        builder.add("GEOM", Polygon.class, CRS.parseWKT(LONG_ISLAND_FTUS));
+        SimpleFeatureType type = builder.buildFeatureType();
+        type.getDescriptor("GEOM").getUserData().put(JDBCDataStore.JDBC_NATIVE_TYPENAME, "GEOMETRY");
+        type.getDescriptor("GEOM").getUserData().put(JDBCDataStore.JDBC_NATIVE_SRID, 2263);
+
+        String sql = encode(type, ff.beyond(ff.property("GEOM"), ff.literal(point(1, 2)), 0.3048006096012192, "m"));
+        assertTrue(sql, sql.endsWith(") > 1.0)"));
+    }
+
+    @Test
+    public void testUnsupportedDistanceUnitsLeftToPostFilter() {
+        Filter name = ff.equals(ff.property("NAME"), ff.literal("Plant"));
+        Filter dwithin = ff.dwithin(ff.property("GEOM"), ff.literal(point(1, 2)), 3, "furlong");
+
+        Filter[] split = SnowflakeFilterToSQLHelper.moveUnsupportedDistances(new Filter[] {ff.and(name, dwithin), Filter.INCLUDE},
+                createType("GEOGRAPHY", 4326));
+        assertEquals(name, split[0]);
+        assertEquals(dwithin, split[1]);
+
+        Filter kilometers = ff.dwithin(ff.property("GEOM"), ff.literal(point(1, 2)), 3, "km");
+        Filter[] supported = new Filter[] {kilometers, Filter.INCLUDE};
+        assertTrue(supported == SnowflakeFilterToSQLHelper.moveUnsupportedDistances(supported, createType("GEOGRAPHY", 4326)));
+    }
+
+    @Test
+    public void testDistanceWithoutUnitsOnGeographyLeftToPostFilter() {
+        Filter degrees = ff.dwithin(ff.property("GEOM"), ff.literal(point(1, 2)), 0.5, null);
+        Filter blank = ff.beyond(ff.property("GEOM"), ff.literal(point(1, 2)), 0.5, " ");
+
+        Filter[] split = SnowflakeFilterToSQLHelper.moveUnsupportedDistances(new Filter[] {degrees, Filter.INCLUDE},
+                createType("GEOGRAPHY", 4326));
+        assertEquals(Filter.INCLUDE, split[0]);
+        assertEquals(degrees, split[1]);
+        split = SnowflakeFilterToSQLHelper.moveUnsupportedDistances(new Filter[] {blank, Filter.INCLUDE}, createType("GEOGRAPHY", 4326));
+        assertEquals(blank, split[1]);
+
+        // GEOMETRY columns take them in the units of their CRS
+        Filter[] supported = new Filter[] {degrees, Filter.INCLUDE};
+        assertTrue(supported == SnowflakeFilterToSQLHelper.moveUnsupportedDistances(supported, createType("GEOMETRY", 4326)));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDistanceWithoutUnitsOnGeographyNotEncoded() throws Exception {
+        encode(createType("GEOGRAPHY", 4326), ff.dwithin(ff.property("GEOM"), ff.literal(point(1, 2)), 0.5, null));
+    }
+
+    @Test
+    public void testUnsupportedOperatorsNotAdvertised() {
+        FilterCapabilities capabilities = createFilterToSQL(createType("GEOGRAPHY", 4326)).getCapabilities();
+
+        assertTrue(capabilities.fullySupports(ff.intersects(ff.property("GEOM"), ff.literal(point(1, 2)))));
+        assertFalse(capabilities.fullySupports(ff.crosses(ff.property("GEOM"), ff.literal(point(1, 2)))));
+        assertFalse(capabilities.fullySupports(ff.touches(ff.property("GEOM"), ff.literal(point(1, 2)))));
+        assertFalse(capabilities.fullySupports(ff.overlaps(ff.property("GEOM"), ff.literal(point(1, 2)))));
+        assertFalse(capabilities.fullySupports(ff.equal(ff.property("GEOM"), ff.literal(point(1, 2)))));
+    }
+
+    @Test
+    public void testIntersectsPrefilter() {
+        Filter touches = ff.touches(ff.property("GEOM"), ff.literal(point(1, 2)));
+
+        Filter[] split = SnowflakeFilterToSQLHelper.addIntersectsPrefilters(new Filter[] {Filter.INCLUDE, touches});
+        assertEquals(ff.intersects(ff.property("GEOM"), ff.literal(point(1, 2))), split[0]);
+        assertEquals(touches, split[1]);
+    }
+
+    @Test
+    public void testIntersectsPrefilterKeepsPreFilter() {
+        Filter name = ff.equals(ff.property("NAME"), ff.literal("Plant"));
+        Filter overlaps = ff.overlaps(ff.property("GEOM"), ff.literal(point(1, 2)));
+        Filter crosses = ff.crosses(ff.property("GEOM"), ff.property("OTHER_GEOM"));
+        Filter post = ff.and(overlaps, crosses);
+
+        Filter[] split = SnowflakeFilterToSQLHelper.addIntersectsPrefilters(new Filter[] {name, post});
+        assertEquals(ff.and(Arrays.asList(name, ff.intersects(ff.property("GEOM"), ff.literal(point(1, 2))),
+                ff.intersects(ff.property("GEOM"), ff.property("OTHER_GEOM")))), split[0]);
+        assertEquals(post, split[1]);
+    }
+
+    @Test
+    public void testNoPrefilterUnderOr() {
+        Filter post = ff.or(ff.touches(ff.property("GEOM"), ff.literal(point(1, 2))), ff.equals(ff.property("NAME"), ff.literal("Plant")));
+
+        Filter[] split = SnowflakeFilterToSQLHelper.addIntersectsPrefilters(new Filter[] {Filter.INCLUDE, post});
+        assertEquals(Filter.INCLUDE, split[0]);
+        assertEquals(post, split[1]);
+    }
+
+    static Point point(double x, double y) {
+        return new GeometryFactory().createPoint(new Coordinate(x, y));
+    }
+
+    private static Polygon polygon(double... ordinates) {
+        Coordinate[] coordinates = new Coordinate[ordinates.length / 2];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(ordinates[2 * i], ordinates[2 * i + 1]);
+        }
+        return new GeometryFactory().createPolygon(coordinates);
+    }
+
+    // Builds a layer with a geometry column of the given native type, envelope columns and a couple of attributes
+    static SimpleFeatureType createType(String nativeType, int srid) {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName("PLANT_COVERAGE");
+        builder.add("NAME", String.class);
+        builder.add("COVERAGE", Double.class);
+        builder.add("MINX", Double.class);
+        builder.add("MINY", Double.class);
+        builder.add("MAXX", Double.class);
+        builder.add("MAXY", Double.class);
+        builder.add("GEOM", Polygon.class, DefaultGeographicCRS.WGS84);
+        builder.add("OTHER_GEOM", Geometry.class, DefaultGeographicCRS.WGS84);
+        SimpleFeatureType type = builder.buildFeatureType();
+
+        type.getDescriptor("GEOM").getUserData().put(JDBCDataStore.JDBC_NATIVE_TYPENAME, nativeType);
+        type.getDescriptor("GEOM").getUserData().put(JDBCDataStore.JDBC_NATIVE_SRID, srid);
+        type.getDescriptor("OTHER_GEOM").getUserData().put(JDBCDataStore.JDBC_NATIVE_TYPENAME, nativeType);
+        type.getDescriptor("OTHER_GEOM").getUserData().put(JDBCDataStore.JDBC_NATIVE_SRID, srid);
+        return type;
+    }
+
+    // The layer of createType() with a geohash column
+    private static SimpleFeatureType createCellIndexedType() {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.init(createType("GEOGRAPHY", 4326));
+        builder.add("GH", String.class);
+        return builder.buildFeatureType();
+    }
+
+    static SnowflakeFilterToSQL createFilterToSQL(SimpleFeatureType type) {
+        SnowflakeFilterToSQL fts = new SnowflakeFilterToSQL(new StringWriter());
+        fts.setSqlNameEscape("\"");
+        fts.setFeatureType(type);
+        return fts;
+    }
+
+    private String encode(SimpleFeatureType type, Filter filter) throws Exception {
+        return createFilterToSQL(type).encodeToString(filter);
+    }
+}
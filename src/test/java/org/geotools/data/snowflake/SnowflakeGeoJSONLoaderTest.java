@@ -0,0 +1,99 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+
+public class SnowflakeGeoJSONLoaderTest {
+
+    @Test
+    public void testReadNewlineDelimited() throws Exception {
+        List<SnowflakeGeoJSONReader.Feature> features = read(new FileInputStream("data/CommunityCentroids.geojson.json"));
+
+        assertTrue(features.size() > 10);
+        SnowflakeGeoJSONReader.Feature first = features.get(0);
+        assertEquals(376953L, first.getProperties().get("CommunityID"));
+        assertEquals("BE001", first.getProperties().get("communityname"));
+        assertTrue(first.getGeometry() instanceof Point);
+        assertEquals(-71.1673932, first.getGeometry().getCoordinate().x, 0);
+    }
+
+    @Test
+    public void testReadFeatureCollection() throws Exception {
+        String json = "{\"type\": \"FeatureCollection\", \"crs\": {\"type\": \"name\"}, \"features\": ["
+                + "{\"geometry\": {\"coordinates\": [[[[0, 0], [1, 0], [1, 1], [0, 0]]]], \"type\": \"MultiPolygon\"},"
+                + " \"type\": \"Feature\", \"id\": 7, \"properties\": {\"tags\": {\"a\": [1, 2]}, \"empty\": null}},"
+                + "{\"type\": \"Feature\", \"properties\": {}, \"geometry\": null}"
+                + "], \"bbox\": [0, 0, 1, 1]}";
+
+        List<SnowflakeGeoJSONReader.Feature> features = read(json);
+
+        assertEquals(2, features.size());
+        assertEquals("7", features.get(0).getId());
+        assertTrue(features.get(0).getGeometry() instanceof MultiPolygon);
+        assertEquals("{\"a\":[1,2]}", features.get(0).getProperties().get("tags"));
+        assertTrue(features.get(0).getProperties().containsKey("empty"));
+        assertNull(features.get(1).getGeometry());
+    }
+
+    @Test
+    public void testInferType() throws Exception {
+        String json = "{\"type\": \"Feature\", \"properties\": {\"id\": 1, \"area\": 2, \"flag\": true, \"name\": null,"
+                + " \"Createdon\": \"2023-05-01T10:15:00Z\"}, \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}}\n"
+                + "{\"type\": \"Feature\", \"properties\": {\"id\": 2, \"area\": 2.5, \"flag\": false, \"name\": \"x\","
+                + " \"Createdon\": \"2023-05-02\", \"extra\": \"y\"}, \"geometry\": {\"type\": \"Point\", \"coordinates\": [3, 4]}}";
+
+        SimpleFeatureType type = new SnowflakeGeoJSONLoader(null).inferType("TEST", read(json));
+
+        assertEquals(Long.class, type.getDescriptor("ID").getType().getBinding());
+        assertEquals(Double.class, type.getDescriptor("AREA").getType().getBinding());
+        assertEquals(Boolean.class, type.getDescriptor("FLAG").getType().getBinding());
+        assertEquals(String.class, type.getDescriptor("NAME").getType().getBinding());
+        assertEquals(Timestamp.class, type.getDescriptor("CREATEDON").getType().getBinding());
+        assertEquals(String.class, type.getDescriptor("EXTRA").getType().getBinding());
+        assertEquals(Geometry.class, type.getGeometryDescriptor().getType().getBinding());
+        assertEquals("GEOM", type.getGeometryDescriptor().getLocalName());
+        assertNotNull(type.getCoordinateReferenceSystem());
+    }
+
+    @Test
+    public void testParseTimestamp() {
+        assertEquals(Timestamp.valueOf("2023-05-01 10:15:00"), SnowflakeGeoJSONLoader.parseTimestamp("2023-05-01T10:15"));
+        assertEquals(Timestamp.valueOf("2023-05-01 00:00:00"), SnowflakeGeoJSONLoader.parseTimestamp("2023-05-01"));
+        assertEquals(SnowflakeGeoJSONLoader.parseTimestamp("2023-05-01T10:15:00+02:00"),
+                SnowflakeGeoJSONLoader.parseTimestamp("2023-05-01T10:15:00+0200"));
+        assertNull(SnowflakeGeoJSONLoader.parseTimestamp("BE001"));
+        assertNull(SnowflakeGeoJSONLoader.parseTimestamp("2023-13-45"));
+    }
+
+    private static List<SnowflakeGeoJSONReader.Feature> read(String json) throws Exception {
+        return read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<SnowflakeGeoJSONReader.Feature> read(InputStream in) throws Exception {
+        List<SnowflakeGeoJSONReader.Feature> features = new ArrayList<>();
+        try (SnowflakeGeoJSONReader reader = new SnowflakeGeoJSONReader(in, new GeometryFactory())) {
+            SnowflakeGeoJSONReader.Feature feature;
+            while ((feature = reader.next()) != null) {
+                features.add(feature);
+            }
+        }
+        return features;
+    }
+}
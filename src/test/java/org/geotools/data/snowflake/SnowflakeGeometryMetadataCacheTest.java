@@ -0,0 +1,104 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SnowflakeGeometryMetadataCacheTest {
+
+    private final SnowflakeGeometryMetadataCache cache = new SnowflakeGeometryMetadataCache();
+
+    @Test
+    public void testKeyedBySchemaTableAndColumn() {
+        cache.put("PUBLIC", "PLANTS", "GEOM", 3857, "GEOMETRY");
+
+        SnowflakeGeometryMetadataCache.Entry entry = cache.get("PUBLIC", "PLANTS", "GEOM");
+        assertNotNull(entry);
+        assertEquals(Integer.valueOf(3857), entry.getSRID());
+        assertEquals("GEOMETRY", entry.getNativeType());
+
+        assertNull(cache.get("GIS", "PLANTS", "GEOM"));
+        assertNull(cache.get(null, "PLANTS", "GEOM"));
+        assertNull(cache.get("PUBLIC", "PLANTS_2", "GEOM"));
+        assertNull(cache.get("PUBLIC", "PLANTS", "GEOM_2"));
+    }
+
+    @Test
+    public void testDefaultSchemaIsItsOwnKey() {
+        cache.put(null, "PLANTS", "GEOM", 4326, null);
+        cache.put("PUBLIC", "PLANTS", "GEOM", 3857, null);
+
+        assertEquals(Integer.valueOf(4326), cache.get(null, "PLANTS", "GEOM").getSRID());
+        assertEquals(Integer.valueOf(3857), cache.get("PUBLIC", "PLANTS", "GEOM").getSRID());
+    }
+
+    @Test
+    public void testUnknownSRIDIsCached() {
+        cache.put("PUBLIC", "EMPTY", "GEOM", null, null);
+
+        SnowflakeGeometryMetadataCache.Entry entry = cache.get("PUBLIC", "EMPTY", "GEOM");
+        assertNotNull(entry);
+        assertNull(entry.getSRID());
+    }
+
+    @Test
+    public void testInvalidateTable() {
+        cache.put("PUBLIC", "PLANTS", "GEOM", 3857, null);
+        cache.put("PUBLIC", "PLANTS", "CENTROID", 3857, null);
+        cache.put("PUBLIC", "PLANTS_2", "GEOM", 4326, null);
+        cache.put("GIS", "PLANTS", "GEOM", 4326, null);
+
+        cache.invalidate("PUBLIC", "PLANTS");
+        assertNull(cache.get("PUBLIC", "PLANTS", "GEOM"));
+        assertNull(cache.get("PUBLIC", "PLANTS", "CENTROID"));
+        // Neither a table sharing the name prefix nor the same table in another schema
+        assertNotNull(cache.get("PUBLIC", "PLANTS_2", "GEOM"));
+        assertNotNull(cache.get("GIS", "PLANTS", "GEOM"));
+
+        cache.invalidate();
+        assertNull(cache.get("PUBLIC", "PLANTS_2", "GEOM"));
+        assertNull(cache.get("GIS", "PLANTS", "GEOM"));
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        cache.setTimeToLive(50, TimeUnit.MILLISECONDS);
+        cache.put("PUBLIC", "PLANTS", "GEOM", 3857, null);
+        assertNotNull(cache.get("PUBLIC", "PLANTS", "GEOM"));
+
+        Thread.sleep(100);
+        assertNull(cache.get("PUBLIC", "PLANTS", "GEOM"));
+    }
+
+    @Test
+    public void testNegativeTimeToLiveNeverExpires() throws Exception {
+        cache.setTimeToLive(-1, TimeUnit.SECONDS);
+        cache.put("PUBLIC", "PLANTS", "GEOM", 3857, null);
+
+        Thread.sleep(20);
+        assertNotNull(cache.get("PUBLIC", "PLANTS", "GEOM"));
+    }
+
+    @Test
+    public void testZeroTimeToLiveDisablesCache() {
+        cache.put("PUBLIC", "PLANTS", "GEOM", 3857, null);
+
+        cache.setTimeToLive(0, TimeUnit.SECONDS);
+        assertFalse(cache.isEnabled());
+        // Existing entries are dropped and new ones aren't kept
+        assertNull(cache.get("PUBLIC", "PLANTS", "GEOM"));
+        cache.put("PUBLIC", "PLANTS", "GEOM", 3857, null);
+        assertNull(cache.get("PUBLIC", "PLANTS", "GEOM"));
+
+        cache.setTimeToLive(1, TimeUnit.HOURS);
+        assertTrue(cache.isEnabled());
+        cache.put("PUBLIC", "PLANTS", "GEOM", 3857, null);
+        assertNotNull(cache.get("PUBLIC", "PLANTS", "GEOM"));
+    }
+}
@@ -0,0 +1,94 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+import org.junit.Test;
+
+public class SnowflakeKeysetPagingTest {
+
+    private static final String QUERY = "SELECT \"PK\", \"NAME\" FROM \"PUBLIC\".\"PLANTS\" WHERE \"NAME\" = ?";
+
+    private final SnowflakeKeysetPaging paging = new SnowflakeKeysetPaging();
+
+    @Test
+    public void testPagedQueries() {
+        assertNull(paging.page(QUERY, null));
+        assertNull(paging.page(QUERY + " LIMIT 10", null));
+        assertNull(paging.page(QUERY + " ORDER BY \"NAME\" ASC, \"PK\" ASC LIMIT 10", null));
+        assertFalse(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 10 OFFSET 100", null).isSeek());
+    }
+
+    @Test
+    public void testSeekToPreviousPage() throws Exception {
+        read(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 3", Collections.singletonMap(1, "a")), 1, 2, 2);
+
+        SnowflakeKeysetPaging.Page next = paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 3 OFFSET 3", Collections.singletonMap(1, "a"));
+        assertTrue(next.isSeek());
+        assertEquals("SELECT * FROM (" + QUERY + ") WHERE (\"PK\" >= ? OR \"PK\" IS NULL) ORDER BY \"PK\" ASC LIMIT 3 OFFSET 2",
+                next.getSeekSQL());
+
+        // Other bind values, or pages out of sequence, run with the plain offset
+        assertFalse(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 3 OFFSET 3", Collections.singletonMap(1, "b")).isSeek());
+        assertFalse(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 3 OFFSET 6", Collections.singletonMap(1, "a")).isSeek());
+
+        paging.invalidate();
+        assertFalse(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 3 OFFSET 3", Collections.singletonMap(1, "a")).isSeek());
+    }
+
+    @Test
+    public void testTiesAcrossPages() throws Exception {
+        String page = QUERY + " ORDER BY \"PK\" DESC LIMIT 2";
+        read(paging.page(page, null), 9, 7);
+        SnowflakeKeysetPaging.Page second = paging.page(page + " OFFSET 2", null);
+        assertEquals("SELECT * FROM (" + QUERY + ") WHERE \"PK\" <= ? ORDER BY \"PK\" DESC LIMIT 2 OFFSET 1", second.getSeekSQL());
+
+        // The second page continues the run of 7s, so the third one has to skip all three of them
+        read(second, 7, 7);
+        assertTrue(paging.page(page + " OFFSET 4", null).getSeekSQL().endsWith(" OFFSET 3"));
+    }
+
+    @Test
+    public void testUnknownTiesNotRecorded() throws Exception {
+        // Reached with OFFSET, the rows before might have the same value
+        read(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 2 OFFSET 10", null), 5, 5);
+        assertFalse(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 2 OFFSET 12", null).isSeek());
+
+        read(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 2 OFFSET 20", null), 5, 6);
+        assertTrue(paging.page(QUERY + " ORDER BY \"PK\" ASC LIMIT 2 OFFSET 22", null).getSeekSQL().endsWith(" OFFSET 1"));
+    }
+
+    private static void read(SnowflakeKeysetPaging.Page page, long... keys) throws SQLException {
+        ResultSet rs = page.record(result(keys), null);
+        while (rs.next()) {
+            rs.getString(2);
+        }
+        rs.close();
+    }
+
+    private static ResultSet result(long... keys) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(2);
+        metaData.setColumnLabel(1, "PK");
+        metaData.setColumnType(1, Types.BIGINT);
+        metaData.setColumnLabel(2, "NAME");
+        metaData.setColumnType(2, Types.VARCHAR);
+        List<Object[]> rows = new ArrayList<>();
+        for (long key : keys) {
+            rows.add(new Object[] {key, "a"});
+        }
+        return SnowflakeResultCache.CachedResultSet.create(new SnowflakeResultCache.Entry(metaData, rows, Collections.emptyMap(),
+                Long.MAX_VALUE), null);
+    }
+}
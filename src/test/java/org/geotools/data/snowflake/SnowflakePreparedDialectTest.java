@@ -0,0 +1,186 @@
+package org.geotools.data.snowflake;
+
+import static org.geotools.data.snowflake.SnowflakeFilterToSQLTest.createType;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.jdbc.PreparedFilterToSQL;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+
+public class SnowflakePreparedDialectTest {
+
+    private final SnowflakePreparedDialect dialect = new SnowflakePreparedDialect(null);
+
+    private final FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+    private final GeometryFactory gf = new GeometryFactory();
+
+    // Parameters bound by the statement, as "<method> <index>"
+    private final List<String> calls = new ArrayList<>();
+
+    private byte[] bytes;
+
+    @Test
+    public void testGeometryPlaceholder() {
+        StringBuffer sql = new StringBuffer();
+        dialect.prepareGeometryValue(point(1, 2), 2, 4326, Point.class, sql);
+        assertEquals("ST_GEOMFROMWKB(?, 4326)", sql.toString());
+
+        // Unknown SRIDs are sent as 0, and nulls bound as they are
+        sql = new StringBuffer();
+        dialect.prepareGeometryValue(point(1, 2), 2, -1, Point.class, sql);
+        assertEquals("ST_GEOMFROMWKB(?, 0)", sql.toString());
+
+        sql = new StringBuffer();
+        dialect.prepareGeometryValue(null, 2, 4326, Point.class, sql);
+        assertEquals("?", sql.toString());
+    }
+
+    @Test
+    public void testGeometryBoundAsWKB() throws Exception {
+        dialect.setGeometryValue(point(1, 2), 2, 4326, Point.class, statement(), 3);
+
+        assertEquals(Arrays.asList("setBytes 3"), calls);
+        assertArrayEquals(new WKBWriter(2).write(point(1, 2)), bytes);
+    }
+
+    @Test
+    public void testRingBoundAsLineString() throws Exception {
+        LinearRing ring = gf.createLinearRing(new Coordinate[] {
+            new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(1, 1), new Coordinate(0, 0)});
+        dialect.setGeometryValue(ring, 2, 4326, LinearRing.class, statement(), 1);
+
+        Geometry bound = new WKBReader().read(bytes);
+        assertEquals(LineString.class, bound.getClass());
+        assertTrue(bound.equalsExact(ring));
+    }
+
+    @Test
+    public void testNullGeometryBoundAsBinary() throws Exception {
+        dialect.setGeometryValue(null, 2, 4326, Point.class, statement(), 2);
+
+        assertEquals(Arrays.asList("setNull 2 " + Types.BINARY), calls);
+        assertNull(bytes);
+    }
+
+    @Test
+    public void testFilterLiteralsAreBound() throws Exception {
+        PreparedFilterToSQL fts = createFilterToSQL(createType("GEOMETRY", 4326));
+
+        assertEquals("WHERE \"NAME\" = ?", fts.encodeToString(ff.equals(ff.property("NAME"), ff.literal("Pine"))));
+        assertEquals(Arrays.asList("Pine"), fts.getLiteralValues());
+    }
+
+    @Test
+    public void testBBOXBoundOnGeography() throws Exception {
+        Filter bbox = ff.bbox("GEOM", 0, 5, 10, 20, "EPSG:4326");
+        PreparedFilterToSQL fts = createFilterToSQL(createType("GEOGRAPHY", 4326));
+
+        assertEquals("WHERE (ST_XMIN(\"GEOM\") <= 10.0 AND ST_XMAX(\"GEOM\") >= 0.0 AND ST_YMIN(\"GEOM\") <= 20.0"
+                + " AND ST_YMAX(\"GEOM\") >= 5.0 AND ST_INTERSECTS(\"GEOM\", TO_GEOGRAPHY(?)))",
+                fts.encodeToString(bbox));
+        assertEquals(1, fts.getLiteralValues().size());
+        assertTrue(fts.getLiteralValues().get(0) instanceof Polygon);
+    }
+
+    @Test
+    public void testBBOXBoundOnGeometry() throws Exception {
+        Filter bbox = ff.bbox("GEOM", 0, 5, 10, 20, "EPSG:4326");
+        PreparedFilterToSQL fts = createFilterToSQL(createType("GEOMETRY", 4326));
+
+        assertEquals("WHERE (ST_XMIN(\"GEOM\") <= 10.0 AND ST_XMAX(\"GEOM\") >= 0.0 AND ST_YMIN(\"GEOM\") <= 20.0"
+                + " AND ST_YMAX(\"GEOM\") >= 5.0 AND ST_INTERSECTS(\"GEOM\", TO_GEOMETRY(?, 4326)))",
+                fts.encodeToString(bbox));
+        assertEquals(1, fts.getLiteralValues().size());
+    }
+
+    @Test
+    public void testDistinctValuesShareStatement() throws Exception {
+        SimpleFeatureType type = createType("GEOGRAPHY", 4326);
+
+        String first = createFilterToSQL(type).encodeToString(ff.bbox("GEOM", 0, 5, 10, 20, "EPSG:4326"));
+        String second = createFilterToSQL(type).encodeToString(ff.bbox("GEOM", 1, 6, 11, 21, "EPSG:4326"));
+        // Only the envelope prefilter carries the values inline
+        assertEquals(first.substring(first.indexOf("ST_INTERSECTS")), second.substring(second.indexOf("ST_INTERSECTS")));
+    }
+
+    @Test
+    public void testGeometryDecodedFromWKB() throws Exception {
+        SimpleFeatureType type = createType("GEOGRAPHY", 4326);
+        GeometryDescriptor descriptor = (GeometryDescriptor) type.getDescriptor("GEOM");
+        Polygon box = (Polygon) point(1, 2).buffer(1, 1);
+
+        Geometry decoded = dialect.decodeGeometryValue(descriptor, resultSet(new WKBWriter().write(box)), "GEOM", gf, null, null);
+        assertTrue(decoded.equalsExact(box));
+
+        assertNull(dialect.decodeGeometryValue(descriptor, resultSet(null), "GEOM", gf, null, null));
+    }
+
+    private PreparedFilterToSQL createFilterToSQL(SimpleFeatureType type) {
+        PreparedFilterToSQL fts = dialect.createPreparedFilterToSQL();
+        fts.setSqlNameEscape("\"");
+        fts.setFeatureType(type);
+        return fts;
+    }
+
+    private Point point(double x, double y) {
+        return gf.createPoint(new Coordinate(x, y));
+    }
+
+    // A prepared statement recording the parameters bound to it
+    private PreparedStatement statement() {
+        return (PreparedStatement) Proxy.newProxyInstance(SnowflakePreparedDialectTest.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                    if ("setBytes".equals(method.getName())) {
+                        calls.add("setBytes " + args[0]);
+                        bytes = (byte[]) args[1];
+                    } else if ("setNull".equals(method.getName())) {
+                        calls.add("setNull " + args[0] + " " + args[1]);
+                    }
+                    return null;
+                });
+    }
+
+    // A result set holding a single value in its GEOM column
+    private static ResultSet resultSet(Object value) {
+        return (ResultSet) Proxy.newProxyInstance(SnowflakePreparedDialectTest.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getObject":
+                        return "GEOM".equals(args[0]) ? value : null;
+                    case "isWrapperFor":
+                        return false;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,72 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+import org.junit.Test;
+
+public class SnowflakeQueryMetricsTest {
+
+    @Test
+    public void testOperation() {
+        assertEquals("count", SnowflakeQueryMetrics.getOperation("SELECT count(*) FROM \"PUBLIC\".\"PLANTS\" WHERE \"NAME\" = ?"));
+        assertEquals("select", SnowflakeQueryMetrics.getOperation(" SELECT \"NAME\" FROM \"PUBLIC\".\"PLANTS\""));
+        assertEquals("insert", SnowflakeQueryMetrics.getOperation("INSERT INTO \"PUBLIC\".\"PLANTS\" VALUES (?)"));
+        assertEquals("batch", SnowflakeQueryMetrics.getOperation(null));
+    }
+
+    @Test
+    public void testQueryTag() {
+        assertEquals("{\"application\":\"geoserver \\\"prod\\\"\",\"layer\":\"PLANTS\",\"operation\":\"count\"}",
+                SnowflakeConnectionProxy.getQueryTag("geoserver \"prod\"", "PLANTS", "SELECT count(*) FROM \"PLANTS\""));
+        assertEquals("{\"application\":\"geoserver\",\"layer\":null,\"operation\":\"select\"}",
+                SnowflakeConnectionProxy.getQueryTag("geoserver", null, "SELECT 1"));
+    }
+
+    @Test
+    public void testTrackedQuery() throws Exception {
+        SnowflakeQueryMetrics metrics = new SnowflakeQueryMetrics();
+        ResultSet rs = metrics.track(result("a", "b", "c"), "SELECT \"NAME\" FROM \"PLANTS\"", "PLANTS", 0, System.nanoTime());
+
+        // The dialect finds the query of the result to add its geometry decoding
+        SnowflakeQueryMetrics.Query query = SnowflakeQueryMetrics.getQuery(rs);
+        assertNotNull(query);
+        assertNull(query.getQueryId());
+        while (rs.next()) {
+            query.decoded(21, 1000);
+        }
+        rs.close();
+
+        assertEquals(1, metrics.getQueries());
+        assertEquals(3, metrics.getRows());
+        assertEquals(63, metrics.getGeometryBytes());
+        assertEquals(0.003, metrics.getAverageDecodeMillis(), 1e-9);
+    }
+
+    @Test
+    public void testUntrackedResult() throws Exception {
+        assertNull(SnowflakeQueryMetrics.getQuery(result("a")));
+    }
+
+    private static ResultSet result(Object... values) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(1);
+        metaData.setColumnLabel(1, "NAME");
+        metaData.setColumnType(1, Types.VARCHAR);
+        Object[][] rows = new Object[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            rows[i] = new Object[] {values[i]};
+        }
+        return SnowflakeResultCache.CachedResultSet.create(new SnowflakeResultCache.Entry(metaData, Arrays.asList(rows), Collections.emptyMap(),
+                Long.MAX_VALUE), null);
+    }
+}
@@ -0,0 +1,147 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnowflakeResultCacheTest {
+
+    private static final String SQL = "SELECT \"NAME\", \"COVERAGE\", ST_ASWKB(\"GEOM\") as \"GEOM\" FROM \"PUBLIC\".\"PLANT_COVERAGE\""
+            + " WHERE \"COVERAGE\" > 0.5";
+
+    private SnowflakeResultCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new SnowflakeResultCache();
+        // Keep the LAST_ALTERED check from running, there is no connection to run it on
+        cache.setCheckInterval(365, TimeUnit.DAYS);
+    }
+
+    @Test
+    public void testTables() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("PUBLIC.PLANT_COVERAGE")), SnowflakeResultCache.getTables(SQL));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("GIS.Plants", ".COMMUNITIES")), SnowflakeResultCache.getTables(
+                "SELECT * FROM \"GIS\".\"Plants\" p JOIN communities c ON ST_INTERSECTS(p.\"GEOM\", c.\"GEOM\")"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("PUBLIC.DRIVEPATHS")), SnowflakeResultCache.getTables(
+                "SELECT COUNT(*) FROM (SELECT \"ID\" FROM MYDB.\"PUBLIC\".\"DRIVEPATHS\") q"));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("PUBLIC.PLANT_COVERAGE", ".COMMUNITIES", "GIS.ROADS")), SnowflakeResultCache.getTables(
+                "SELECT * FROM \"PUBLIC\".\"PLANT_COVERAGE\" p, communities AS c, GIS.ROADS WHERE ST_INTERSECTS(p.\"GEOM\", c.\"GEOM\")"));
+    }
+
+    @Test
+    public void testKeys() {
+        assertEquals(SQL, cache.key(SQL, null));
+        assertNull(cache.key("SELECT 1", null));
+        assertNull(cache.key("DELETE FROM \"PUBLIC\".\"PLANT_COVERAGE\"", null));
+        assertNull(cache.key("SELECT * FROM OTHERDB.\"PUBLIC\".\"PLANT_COVERAGE\"", null));
+
+        Map<Integer, Object> first = Collections.singletonMap(1, new byte[] {1, 2, 3});
+        Map<Integer, Object> second = Collections.singletonMap(1, new byte[] {1, 2, 4});
+        assertNotEquals(cache.key(SQL, first), cache.key(SQL, second));
+        assertEquals(cache.key(SQL, first), cache.key(SQL, Collections.singletonMap(1, new byte[] {1, 2, 3})));
+    }
+
+    @Test
+    public void testCachedResult() throws Exception {
+        cache.put(SQL, entry("PUBLIC.PLANT_COVERAGE", 2));
+
+        ResultSet rs = cache.get(SQL, null, null);
+        assertEquals(1, cache.getHits());
+        assertEquals(3, rs.getMetaData().getColumnCount());
+
+        assertTrue(rs.next());
+        assertEquals("Plant 0", rs.getString("name"));
+        assertEquals(0, rs.getInt(2));
+        assertFalse(rs.wasNull());
+        assertArrayEquals(new byte[] {0}, rs.getBytes(3));
+        assertEquals("00", rs.getString(3));
+
+        assertTrue(rs.next());
+        assertEquals(1d, rs.getDouble("COVERAGE"), 0);
+        assertEquals(Integer.valueOf(1), rs.getObject(2, Integer.class));
+
+        assertTrue(rs.next());
+        assertNull(rs.getString(1));
+        assertTrue(rs.wasNull());
+        assertEquals(0, rs.getInt(2));
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testMiss() {
+        assertNull(cache.get(SQL, null, null));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testWritesInvalidate() {
+        cache.put(SQL, entry("PUBLIC.PLANT_COVERAGE", 1));
+        cache.put("SELECT * FROM \"PUBLIC\".\"COMMUNITIES\"", entry("PUBLIC.COMMUNITIES", 1));
+
+        cache.invalidateWritten("INSERT INTO \"PUBLIC\".\"PLANT_COVERAGE\" (\"NAME\") VALUES (?)");
+        assertEquals(1, cache.size());
+        assertNull(cache.get(SQL, null, null));
+
+        cache.invalidateWritten("SELECT 1");
+        assertEquals(1, cache.size());
+
+        cache.invalidateWritten("CALL REFRESH_EVERYTHING()");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedRows() {
+        cache.setMaxRows(10);
+        cache.put("SELECT * FROM A", entry(".A", 4));
+        cache.put("SELECT * FROM B", entry(".B", 4));
+        cache.get("SELECT * FROM A", null, null);
+        cache.put("SELECT * FROM C", entry(".C", 4));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("SELECT * FROM B", null, null));
+    }
+
+    // Three column entry with the given number of rows and a trailing row of nulls
+    private static SnowflakeResultCache.Entry entry(String table, int rows) {
+        try {
+            RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+            metaData.setColumnCount(3);
+            metaData.setColumnLabel(1, "NAME");
+            metaData.setColumnType(1, Types.VARCHAR);
+            metaData.setColumnLabel(2, "COVERAGE");
+            metaData.setColumnType(2, Types.DECIMAL);
+            metaData.setColumnLabel(3, "GEOM");
+            metaData.setColumnType(3, Types.BINARY);
+
+            List<Object[]> values = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                values.add(new Object[] {"Plant " + i, Long.valueOf(i), new byte[] {(byte) i}});
+            }
+            if (rows > 1) {
+                values.add(new Object[] {null, null, null});
+            }
+            return new SnowflakeResultCache.Entry(metaData, values, Collections.singletonMap(table, "2024-01-01"), Long.MAX_VALUE);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
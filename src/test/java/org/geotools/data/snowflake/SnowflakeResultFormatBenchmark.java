@@ -0,0 +1,69 @@
+package org.geotools.data.snowflake;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBReader;
+
+/**
+ * Compares ARROW and JSON result formats on a synthetic table: rows/sec and bytes allocated by the reading thread while
+ * decoding the same ST_ASWKB() projection the dialect issues. Needs a live account, so it is a main() rather than a test.
+ *
+ * <p>Run with {@code --add-opens=java.base/java.nio=ALL-UNNAMED} or the Arrow run will fail inside the driver.
+ */
+public class SnowflakeResultFormatBenchmark {
+
+    private static final String TABLE = "GT_RESULT_FORMAT_BENCH";
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        try (Connection cx = SnowflakeTestSupport.openConnection(Collections.emptyMap());
+                Statement st = cx.createStatement()) {
+            st.executeUpdate("CREATE OR REPLACE TEMPORARY TABLE " + TABLE + " AS SELECT SEQ4() AS ID, "
+                    + "RANDSTR(16, RANDOM()) AS NAME, UNIFORM(0::FLOAT, 1000::FLOAT, RANDOM()) AS VALUE, "
+                    + "ST_MAKEPOINT(UNIFORM(-180::FLOAT, 180::FLOAT, RANDOM()), UNIFORM(-90::FLOAT, 90::FLOAT, RANDOM())) AS GEOM "
+                    + "FROM TABLE(GENERATOR(ROWCOUNT => " + rows + "))");
+
+            for (String format : new String[] {"JSON", "ARROW", "JSON", "ARROW"}) {
+                st.execute("ALTER SESSION SET JDBC_QUERY_RESULT_FORMAT='" + format + "'");
+                // Keep the result cache out of the comparison
+                st.execute("ALTER SESSION SET USE_CACHED_RESULT=FALSE");
+                run(st, format);
+            }
+        }
+    }
+
+    private static void run(Statement st, String format) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        WKBReader reader = new WKBReader(new GeometryFactory());
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long count = 0;
+        double checksum = 0;
+
+        try (ResultSet rs = st.executeQuery("SELECT ID, NAME, VALUE, ST_ASWKB(GEOM) FROM " + TABLE)) {
+            while (rs.next()) {
+                checksum += rs.getLong(1);
+                checksum += rs.getString(2).length();
+                checksum += rs.getDouble(3);
+                Geometry geometry = reader.read(SnowflakeDialect.getWKB(rs.getObject(4)));
+                checksum += geometry.getCoordinate().x;
+                count++;
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        System.out.printf("%-5s rows=%d time=%.2fs rows/sec=%.0f allocated=%.1fMB (%.0f bytes/row) checksum=%.1f%n",
+                format, count, seconds, count / seconds, allocated / 1048576.0, (double) allocated / count, checksum);
+    }
+}
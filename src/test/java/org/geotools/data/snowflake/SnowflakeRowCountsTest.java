@@ -0,0 +1,130 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+
+import org.junit.Test;
+
+public class SnowflakeRowCountsTest {
+
+    private static final String COUNT = "SELECT count(*) FROM \"PUBLIC\".\"PLANTS\"";
+
+    private final List<String> statements = new ArrayList<>();
+
+    private long tableRows = 42;
+
+    private long sampledRows = 123;
+
+    @Test
+    public void testUnfilteredCountFromMetadata() throws Exception {
+        SnowflakeRowCounts rowCounts = new SnowflakeRowCounts(SnowflakeRowCounts.Mode.METADATA);
+
+        assertEquals(42, count(rowCounts, COUNT, null));
+        assertEquals(42, count(rowCounts, "select COUNT( * ) from PUBLIC.PLANTS", null));
+        // The row counts of the schema were loaded once
+        assertEquals(1, statements.size());
+        assertTrue(statements.get(0).contains("INFORMATION_SCHEMA.TABLES"));
+        assertEquals(2, rowCounts.getMetadataCounts());
+
+        // Views, filtered counts and other queries run as they are
+        assertNull(rowCounts.count("SELECT count(*) FROM \"PUBLIC\".\"PLANTS_VIEW\"", null, connection(), null));
+        assertNull(rowCounts.count(COUNT + " WHERE \"NAME\" = 'a'", null, connection(), null));
+        assertNull(rowCounts.count("SELECT \"NAME\" FROM \"PUBLIC\".\"PLANTS\"", null, connection(), null));
+    }
+
+    @Test
+    public void testFilteredCountSkipsMetadata() throws Exception {
+        SnowflakeRowCounts rowCounts = new SnowflakeRowCounts(SnowflakeRowCounts.Mode.METADATA);
+
+        assertNull(rowCounts.count(COUNT + " WHERE \"NAME\" = 'a'", null, connection(), null));
+        assertTrue(statements.isEmpty());
+    }
+
+    @Test
+    public void testWritesReloadRowCounts() throws Exception {
+        SnowflakeRowCounts rowCounts = new SnowflakeRowCounts(SnowflakeRowCounts.Mode.METADATA);
+        count(rowCounts, COUNT, null);
+
+        tableRows = 43;
+        rowCounts.invalidate();
+        assertEquals(43, count(rowCounts, COUNT, null));
+    }
+
+    @Test
+    public void testFilteredCountEstimatedFromSample() throws Exception {
+        SnowflakeRowCounts rowCounts = new SnowflakeRowCounts(SnowflakeRowCounts.Mode.ESTIMATE);
+        tableRows = SnowflakeRowCounts.MIN_SAMPLED_ROWS * 10;
+        String sql = COUNT + " WHERE \"COVERAGE\" > ?";
+
+        assertEquals(12300, count(rowCounts, sql, Collections.singletonMap(1, 0.5)));
+        assertEquals("SELECT count(*) FROM \"PUBLIC\".\"PLANTS\" SAMPLE SYSTEM (1.0) WHERE \"COVERAGE\" > ?", statements.get(1));
+
+        // Reused for the same bind values, sampled again for others
+        assertEquals(12300, count(rowCounts, sql, Collections.singletonMap(1, 0.5)));
+        assertEquals(2, statements.size());
+        count(rowCounts, sql, Collections.singletonMap(1, 0.75));
+        assertEquals(3, statements.size());
+        assertEquals(3, rowCounts.getEstimatedCounts());
+    }
+
+    @Test
+    public void testSmallTablesCountedExactly() throws Exception {
+        SnowflakeRowCounts rowCounts = new SnowflakeRowCounts(SnowflakeRowCounts.Mode.ESTIMATE);
+
+        assertNull(rowCounts.count(COUNT + " WHERE \"NAME\" = 'a'", null, connection(), null));
+        assertEquals(0, rowCounts.getEstimatedCounts());
+    }
+
+    private long count(SnowflakeRowCounts rowCounts, String sql, Map<Integer, Object> parameters) throws SQLException {
+        ResultSet rs = rowCounts.count(sql, parameters, connection(), null);
+        assertTrue(rs.next());
+        return rs.getLong(1);
+    }
+
+    // Answers INFORMATION_SCHEMA queries with the PLANTS table and sampled counts with sampledRows
+    private Connection connection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAutoCommit":
+                    return true;
+                case "prepareStatement":
+                    String sql = (String) args[0];
+                    statements.add(sql);
+                    return statement(sql.contains("INFORMATION_SCHEMA") ? result(new Object[] {"PLANTS", tableRows})
+                            : result(new Object[] {sampledRows}));
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static PreparedStatement statement(ResultSet rs) {
+        return (PreparedStatement) Proxy.newProxyInstance(SnowflakeRowCountsTest.class.getClassLoader(), new Class<?>[] {PreparedStatement.class},
+                (proxy, method, args) -> "executeQuery".equals(method.getName()) ? rs : null);
+    }
+
+    private static ResultSet result(Object[] row) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(row.length);
+        for (int i = 1; i <= row.length; i++) {
+            metaData.setColumnLabel(i, "C" + i);
+            metaData.setColumnType(i, Types.OTHER);
+        }
+        return SnowflakeResultCache.CachedResultSet.create(new SnowflakeResultCache.Entry(metaData, Collections.singletonList(row),
+                Collections.emptyMap(), Long.MAX_VALUE), null);
+    }
+}
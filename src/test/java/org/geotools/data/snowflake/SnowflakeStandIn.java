@@ -0,0 +1,609 @@
+package org.geotools.data.snowflake;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.io.WKTReader;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+
+import net.snowflake.client.jdbc.SnowflakeConnection;
+
+// An in-memory Snowflake for tests and benchmarks: while installed it answers the jdbc:snowflake:// URLs built by
+// SnowflakeDataStoreFactory.getJDBCUrl() with H2 databases named after the account and database, one schema per Snowflake schema.
+// The ST_* functions, ST_ASWKB, TO_GEOGRAPHY/TO_GEOMETRY and the GEOGRAPHY type the dialects use are emulated on JTS (distances and
+// simplification of geographies are planar, converted at SnowflakeFilterToSQLHelper.METERS_PER_DEGREE), SELECT TOP, LIMIT NULL,
+// APPROX_COUNT_DISTINCT and session commands are rewritten, and every statement can be delayed to mimic warehouse round trips.
+// QUERY_TAG, async queries, stages and the INFORMATION_SCHEMA columns behind the row counts and result cache are not emulated
+public class SnowflakeStandIn implements Driver {
+
+	private static final Logger LOGGER = Logging.getLogger(SnowflakeStandIn.class);
+
+	static final String URL_PREFIX = "jdbc:snowflake://";
+
+	private static final SnowflakeStandIn DRIVER = new SnowflakeStandIn();
+
+	private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+	private static final Pattern TOP = Pattern.compile("^(\\s*SELECT\\s+)TOP\\s+(\\d+)\\s+(.*)$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern LIMIT = Pattern.compile("\\bLIMIT\\s+(\\d+|NULL)(?:\\s+OFFSET\\s+(\\d+))?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern CURRENT_SCHEMA = Pattern.compile("\\bCURRENT_SCHEMA\\s*\\(\\s*\\)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern APPROX_COUNT_DISTINCT = Pattern.compile("\\bAPPROX_COUNT_DISTINCT\\s*\\(", Pattern.CASE_INSENSITIVE);
+	private static final Pattern SESSION = Pattern.compile("^\\s*(ALTER\\s+SESSION|USE\\s+(WAREHOUSE|ROLE))\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern HEX_WKB = Pattern.compile("^0[01][0-9A-Fa-f]{8,}$");
+
+	// The Snowflake types created by the dialects, which H2 gets as domains
+	private static final Map<String, String> DOMAINS = new LinkedHashMap<>();
+	static {
+		for (String type : new String[] {"GEOGRAPHY", "POINT", "MULTIPOINT", "LINESTRING", "MULTILINESTRING", "POLYGON", "MULTIPOLYGON",
+				"GEOMETRY_COLLECTION"}) {
+			DOMAINS.put(type, "GEOMETRY");
+		}
+		DOMAINS.put("STRING", "VARCHAR");
+	}
+
+	// Snowflake function, method of this class emulating it
+	private static final String[][] FUNCTIONS = {
+		{"ST_ASWKB", "asWKB"},
+		{"ST_GEOMFROMTEXT", "geomFromText"},
+		{"ST_GEOGFROMTEXT", "geogFromText"},
+		{"ST_GEOMFROMWKB", "geomFromWKB"},
+		{"ST_GEOGFROMWKB", "geogFromWKB"},
+		{"TO_BINARY", "toBinary"},
+		{"TO_GEOGRAPHY", "toGeography"},
+		{"TO_GEOMETRY", "toGeometry"},
+		{"ST_SRID", "srid"},
+		{"ST_XMIN", "xMin"},
+		{"ST_YMIN", "yMin"},
+		{"ST_XMAX", "xMax"},
+		{"ST_YMAX", "yMax"},
+		{"ST_ENVELOPE", "envelope"},
+		{"ST_MAKEGEOMPOINT", "makeGeomPoint"},
+		{"ST_MAKELINE", "makeLine"},
+		{"ST_INTERSECTS", "intersects"},
+		{"ST_CONTAINS", "contains"},
+		{"ST_DISJOINT", "disjoint"},
+		{"ST_WITHIN", "within"},
+		{"ST_DWITHIN", "dWithin"},
+		{"ST_DISTANCE", "distance"},
+		{"ST_INTERSECTION", "intersection"},
+		{"ST_SIMPLIFY", "simplify"},
+		{"CURRENT_WAREHOUSE", "currentWarehouse"}
+	};
+
+	private static volatile long latencyNanos;
+	private static volatile long loginLatencyNanos;
+
+	private static final AtomicLong statements = new AtomicLong();
+
+	// SQL of the statements executed while recording, as the stand-in received it
+	private static volatile List<String> recorded;
+
+	// H2 URL of every database opened since the stand-in was installed, with the login that created it
+	private static final Map<String, Properties> databases = new LinkedHashMap<>();
+
+	// Schemas whose domains and functions exist, by H2 URL and schema
+	private static final List<String> initialized = new ArrayList<>();
+
+	private static boolean installed;
+
+	// Registers the stand-in ahead of the Snowflake driver, so connection pools asking DriverManager for a jdbc:snowflake:// URL get it
+	public static synchronized void install() throws SQLException {
+
+		if (installed) {
+			return;
+		}
+		List<Driver> displaced = new ArrayList<>();
+		for (Driver driver : Collections.list(DriverManager.getDrivers())) {
+			if (driver.acceptsURL(URL_PREFIX)) {
+				DriverManager.deregisterDriver(driver);
+				displaced.add(driver);
+			}
+		}
+		DriverManager.registerDriver(DRIVER);
+		for (Driver driver : displaced) {
+			DriverManager.registerDriver(driver);
+		}
+		installed = true;
+	}
+
+	// Unregisters the stand-in and drops every database it created, the Snowflake driver answers its URLs again
+	public static synchronized void uninstall() throws SQLException {
+
+		if (!installed) {
+			return;
+		}
+		DriverManager.deregisterDriver(DRIVER);
+		installed = false;
+		synchronized (databases) {
+			for (Map.Entry<String, Properties> database : databases.entrySet()) {
+				try (Connection cx = new org.h2.Driver().connect(database.getKey(), database.getValue()); Statement st = cx.createStatement()) {
+					st.execute("SHUTDOWN");
+				} catch (SQLException e) {
+					LOGGER.fine("Error dropping " + database.getKey() + ": " + e.getMessage());
+				}
+			}
+			databases.clear();
+			initialized.clear();
+		}
+		latencyNanos = 0;
+		loginLatencyNanos = 0;
+		recorded = null;
+	}
+
+	// Delays every statement execution (and batch) by the provided time, like the round trip to a warehouse would
+	public static void setLatency(long latency, TimeUnit unit) {
+		latencyNanos = unit.toNanos(latency);
+	}
+
+	// Delays opening connections by the provided time, like a Snowflake login would
+	public static void setLoginLatency(long latency, TimeUnit unit) {
+		loginLatencyNanos = unit.toNanos(latency);
+	}
+
+	// Statements executed since the JVM started, batches count once
+	public static long getStatementsExecuted() {
+		return statements.get();
+	}
+
+	// Keeps the SQL of every statement executed from now on, until the stand-in is uninstalled
+	public static void record() {
+		recorded = Collections.synchronizedList(new ArrayList<>());
+	}
+
+	// Statements executed since record() was called, in order, batches as the SQL of their statement
+	public static List<String> getRecorded() {
+		List<String> statements = recorded;
+		if (statements == null) {
+			return Collections.emptyList();
+		}
+		synchronized (statements) {
+			return new ArrayList<>(statements);
+		}
+	}
+
+	// Rewrites the Snowflake only parts of a statement into H2
+	static String translate(String sql) {
+
+		if (sql == null) {
+			return null;
+		}
+		if (SESSION.matcher(sql).matches()) {
+			return "SET @SNOWFLAKE_SESSION = 0";
+		}
+		Matcher top = TOP.matcher(sql);
+		if (top.matches()) {
+			sql = top.group(1) + top.group(3) + " FETCH FIRST " + top.group(2) + " ROWS ONLY";
+		}
+		Matcher limit = LIMIT.matcher(sql);
+		StringBuffer translated = new StringBuffer();
+		while (limit.find()) {
+			String replacement = (limit.group(2) != null ? "OFFSET " + limit.group(2) + " ROWS" : "")
+					+ (limit.group(1).equalsIgnoreCase("NULL") ? "" : (limit.group(2) != null ? " " : "") + "FETCH FIRST " + limit.group(1)
+							+ " ROWS ONLY");
+			limit.appendReplacement(translated, replacement);
+		}
+		limit.appendTail(translated);
+		sql = CURRENT_SCHEMA.matcher(translated).replaceAll("CURRENT_SCHEMA");
+		return APPROX_COUNT_DISTINCT.matcher(sql).replaceAll("COUNT(DISTINCT ");
+	}
+
+	@Override
+	public boolean acceptsURL(String url) {
+		return url != null && url.startsWith(URL_PREFIX);
+	}
+
+	// Opens the H2 database of jdbc:snowflake://<account>.<region>.<cloud>.snowflakecomputing.com/?db=<database>&schema=<schema>, the
+	// db and schema connection properties taking precedence like they do with the Snowflake driver
+	@Override
+	public Connection connect(String url, Properties info) throws SQLException {
+
+		if (!acceptsURL(url)) {
+			return null;
+		}
+		pause(loginLatencyNanos);
+
+		String rest = url.substring(URL_PREFIX.length());
+		int end = rest.indexOf('/');
+		String host = end >= 0 ? rest.substring(0, end) : rest;
+		String account = host.contains(".") ? host.substring(0, host.indexOf('.')) : host;
+		Map<String, String> query = new LinkedHashMap<>();
+		int start = rest.indexOf('?');
+		if (start >= 0) {
+			for (String parameter : rest.substring(start + 1).split("&")) {
+				String[] pair = parameter.split("=", 2);
+				query.put(pair[0].toLowerCase(), pair.length > 1 ? pair[1] : "");
+			}
+		}
+		String database = info.getProperty("db", query.getOrDefault("db", "SNOWFLAKE"));
+		String schema = info.getProperty("schema", query.getOrDefault("schema", "PUBLIC"));
+
+		String h2Url = "jdbc:h2:mem:" + (account + "_" + database).replaceAll("[^A-Za-z0-9_]", "_") + ";DB_CLOSE_DELAY=-1";
+		Properties login = new Properties();
+		login.setProperty("user", info.getProperty("user", "sa"));
+		login.setProperty("password", info.getProperty("password", ""));
+
+		Connection cx = new org.h2.Driver().connect(h2Url, login);
+		try {
+			initialize(cx, h2Url, login, schema);
+		} catch (SQLException | RuntimeException e) {
+			cx.close();
+			throw e;
+		}
+		return (Connection) Proxy.newProxyInstance(SnowflakeStandIn.class.getClassLoader(),
+				new Class<?>[] {Connection.class, SnowflakeConnection.class}, new ConnectionHandler(cx));
+	}
+
+	// Creates the schema with the Snowflake types and functions the first time it is used, and makes it the session's schema
+	private static void initialize(Connection cx, String h2Url, Properties login, String schema) throws SQLException {
+
+		String quoted = "\"" + schema.replace("\"", "\"\"") + "\"";
+		try (Statement st = cx.createStatement()) {
+			synchronized (databases) {
+				databases.putIfAbsent(h2Url, login);
+				if (!initialized.contains(h2Url + "|" + schema)) {
+					st.execute("CREATE SCHEMA IF NOT EXISTS " + quoted);
+					st.execute("SET SCHEMA " + quoted);
+					for (Map.Entry<String, String> domain : DOMAINS.entrySet()) {
+						try {
+							st.execute("CREATE DOMAIN IF NOT EXISTS " + domain.getKey() + " AS " + domain.getValue());
+						} catch (SQLException e) {
+							// A built-in type of the same name does just as well
+							LOGGER.fine("Not creating type " + domain.getKey() + ": " + e.getMessage());
+						}
+					}
+					for (String[] function : FUNCTIONS) {
+						st.execute("CREATE ALIAS IF NOT EXISTS " + function[0] + " FOR '" + SnowflakeStandIn.class.getName() + "." + function[1]
+								+ "'");
+					}
+					initialized.add(h2Url + "|" + schema);
+				}
+			}
+			st.execute("SET SCHEMA " + quoted);
+		}
+	}
+
+	private static void pause(long nanos) throws SQLException {
+		if (nanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while waiting for the stand-in warehouse", e);
+			}
+		}
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+		return new DriverPropertyInfo[0];
+	}
+
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return LOGGER;
+	}
+
+	// Translates the statements of the connection and lists H2's BASE TABLEs as the TABLEs JDBCDataStore looks for. The connection
+	// unwraps to a SnowflakeConnection like the driver's does, so sessions can be told apart, but none of its methods are emulated
+	private static class ConnectionHandler implements InvocationHandler {
+
+		private final Connection delegate;
+
+		ConnectionHandler(Connection delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+			if (method.getDeclaringClass() == SnowflakeConnection.class) {
+				throw new SQLFeatureNotSupportedException("The stand-in doesn't emulate SnowflakeConnection." + name + "()");
+			}
+			if ((name.equals("isWrapperFor") || name.equals("unwrap")) && args[0] == SnowflakeConnection.class) {
+				return name.equals("unwrap") ? proxy : Boolean.TRUE;
+			}
+			if (name.equals("createStatement")) {
+				return wrap((Statement) SnowflakeStandIn.invoke(delegate, method, args), Statement.class, null);
+			}
+			if (name.equals("prepareStatement")) {
+				Object[] translated = args.clone();
+				translated[0] = translate((String) args[0]);
+				return wrap((Statement) SnowflakeStandIn.invoke(delegate, method, translated), PreparedStatement.class, (String) args[0]);
+			}
+			if (name.equals("getMetaData")) {
+				DatabaseMetaData metaData = delegate.getMetaData();
+				return Proxy.newProxyInstance(SnowflakeStandIn.class.getClassLoader(), new Class<?>[] {DatabaseMetaData.class},
+						(p, m, a) -> {
+							if (m.getName().equals("getTables") && a[3] != null) {
+								List<String> types = new ArrayList<>(Arrays.asList((String[]) a[3]));
+								if (types.contains("TABLE") && !types.contains("BASE TABLE")) {
+									types.add("BASE TABLE");
+								}
+								a = a.clone();
+								a[3] = types.toArray(new String[0]);
+							}
+							return SnowflakeStandIn.invoke(metaData, m, a);
+						});
+			}
+			return SnowflakeStandIn.invoke(delegate, method, args);
+		}
+
+		private Statement wrap(Statement statement, Class<? extends Statement> type, String sql) {
+			return (Statement) Proxy.newProxyInstance(SnowflakeStandIn.class.getClassLoader(), new Class<?>[] {type},
+					new StatementHandler(statement, sql));
+		}
+	}
+
+	// Translates and delays executions. Hex EWKB strings bound to inserts, which Snowflake converts into geography and geometry
+	// columns on its own, are bound as binary for H2 to do the same
+	private static class StatementHandler implements InvocationHandler {
+
+		private final Statement delegate;
+		private final String sql;
+
+		StatementHandler(Statement delegate, String sql) {
+			this.delegate = delegate;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+			String name = method.getName();
+			if ((name.equals("setObject") || name.equals("setString")) && args[1] instanceof String && isInsert()) {
+				byte[] wkb = toWKB((String) args[1]);
+				if (wkb != null) {
+					((PreparedStatement) delegate).setBytes((Integer) args[0], wkb);
+					return null;
+				}
+			}
+			if (name.startsWith("execute")) {
+				pause(latencyNanos);
+				statements.incrementAndGet();
+				List<String> executed = recorded;
+				String text = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+				if (executed != null && text != null) {
+					executed.add(text);
+				}
+				if (args != null && args.length > 0 && args[0] instanceof String) {
+					args = args.clone();
+					args[0] = translate((String) args[0]);
+				}
+			} else if (name.equals("addBatch") && args != null && args.length == 1) {
+				args = new Object[] {translate((String) args[0])};
+			}
+			return SnowflakeStandIn.invoke(delegate, method, args);
+		}
+
+		private boolean isInsert() {
+			return sql != null && sql.trim().regionMatches(true, 0, "INSERT", 0, 6);
+		}
+
+		private static byte[] toWKB(String value) {
+			if (value.length() % 2 != 0 || !HEX_WKB.matcher(value).matches()) {
+				return null;
+			}
+			byte[] wkb = HexFormat.of().parseHex(value);
+			try {
+				new WKBReader().read(wkb);
+				return wkb;
+			} catch (ParseException | RuntimeException e) {
+				// Any other hex, such as a hash
+				return null;
+			}
+		}
+	}
+
+	// The emulated functions, called by H2 with JTS geometries
+
+	public static byte[] asWKB(Geometry g) {
+		return g == null ? null : new WKBWriter(2).write(g);
+	}
+
+	public static Geometry geomFromText(String wkt) throws SQLException {
+		return geomFromText(wkt, 0);
+	}
+
+	public static Geometry geomFromText(String wkt, int srid) throws SQLException {
+		if (wkt == null) {
+			return null;
+		}
+		try {
+			return withSRID(new WKTReader().read(wkt), srid);
+		} catch (ParseException e) {
+			throw new SQLException("Invalid WKT: " + wkt, e);
+		}
+	}
+
+	public static Geometry geogFromText(String wkt) throws SQLException {
+		return geomFromText(wkt, SnowflakeGeometryMetadataCache.GEOGRAPHY_SRID);
+	}
+
+	public static Geometry geomFromWKB(byte[] wkb) throws SQLException {
+		return geomFromWKB(wkb, 0);
+	}
+
+	public static Geometry geomFromWKB(byte[] wkb, int srid) throws SQLException {
+		if (wkb == null) {
+			return null;
+		}
+		try {
+			return withSRID(new WKBReader().read(wkb), srid);
+		} catch (ParseException e) {
+			throw new SQLException("Invalid WKB", e);
+		}
+	}
+
+	public static Geometry geogFromWKB(byte[] wkb) throws SQLException {
+		return geomFromWKB(wkb, SnowflakeGeometryMetadataCache.GEOGRAPHY_SRID);
+	}
+
+	public static byte[] toBinary(String text, String format) throws SQLException {
+		if (text == null) {
+			return null;
+		}
+		if ("BASE64".equalsIgnoreCase(format)) {
+			return Base64.getDecoder().decode(text);
+		}
+		if ("HEX".equalsIgnoreCase(format)) {
+			return HexFormat.of().parseHex(text);
+		}
+		throw new SQLException("Unsupported binary format: " + format);
+	}
+
+	public static Geometry toGeography(byte[] wkb) throws SQLException {
+		return geomFromWKB(wkb, SnowflakeGeometryMetadataCache.GEOGRAPHY_SRID);
+	}
+
+	public static Geometry toGeometry(byte[] wkb) throws SQLException {
+		return geomFromWKB(wkb, 0);
+	}
+
+	public static Geometry toGeometry(byte[] wkb, int srid) throws SQLException {
+		return geomFromWKB(wkb, srid);
+	}
+
+	private static Geometry withSRID(Geometry g, int srid) {
+		g.setSRID(srid);
+		return g;
+	}
+
+	public static Integer srid(Geometry g) {
+		return g == null ? null : g.getSRID();
+	}
+
+	public static Double xMin(Geometry g) {
+		return g == null || g.isEmpty() ? null : g.getEnvelopeInternal().getMinX();
+	}
+
+	public static Double yMin(Geometry g) {
+		return g == null || g.isEmpty() ? null : g.getEnvelopeInternal().getMinY();
+	}
+
+	public static Double xMax(Geometry g) {
+		return g == null || g.isEmpty() ? null : g.getEnvelopeInternal().getMaxX();
+	}
+
+	public static Double yMax(Geometry g) {
+		return g == null || g.isEmpty() ? null : g.getEnvelopeInternal().getMaxY();
+	}
+
+	public static Geometry envelope(Geometry g) {
+		return g == null ? null : withSRID(g.getEnvelope(), g.getSRID());
+	}
+
+	public static Geometry makeGeomPoint(Double x, Double y) {
+		return x == null || y == null ? null : GEOMETRY_FACTORY.createPoint(new Coordinate(x, y));
+	}
+
+	public static Geometry makeLine(Geometry a, Geometry b) {
+		if (a == null || b == null) {
+			return null;
+		}
+		List<Coordinate> coordinates = new ArrayList<>(Arrays.asList(a.getCoordinates()));
+		coordinates.addAll(Arrays.asList(b.getCoordinates()));
+		return withSRID(GEOMETRY_FACTORY.createLineString(coordinates.toArray(new Coordinate[0])), a.getSRID());
+	}
+
+	public static Boolean intersects(Geometry a, Geometry b) {
+		return a == null || b == null ? null : a.intersects(b);
+	}
+
+	public static Boolean contains(Geometry a, Geometry b) {
+		return a == null || b == null ? null : a.contains(b);
+	}
+
+	public static Boolean disjoint(Geometry a, Geometry b) {
+		return a == null || b == null ? null : a.disjoint(b);
+	}
+
+	public static Boolean within(Geometry a, Geometry b) {
+		return a == null || b == null ? null : a.within(b);
+	}
+
+	// Only used on geographies, the distance is in meters
+	public static Boolean dWithin(Geometry a, Geometry b, double meters) {
+		return a == null || b == null ? null : a.isWithinDistance(b, meters / SnowflakeFilterToSQLHelper.METERS_PER_DEGREE);
+	}
+
+	public static Double distance(Geometry a, Geometry b) {
+		return a == null || b == null ? null : a.distance(b);
+	}
+
+	public static Geometry intersection(Geometry a, Geometry b) {
+		return a == null || b == null ? null : withSRID(a.intersection(b), a.getSRID());
+	}
+
+	public static Geometry simplify(Geometry g, double tolerance) {
+		return g == null ? null : withSRID(DouglasPeuckerSimplifier.simplify(g, tolerance), g.getSRID());
+	}
+
+	// The geography variant, the tolerance is in meters and collapsed geometries are kept as they were
+	public static Geometry simplify(Geometry g, double meters, boolean keepCollapsed) {
+		if (g == null) {
+			return null;
+		}
+		Geometry simplified = simplify(g, meters / SnowflakeFilterToSQLHelper.METERS_PER_DEGREE);
+		return simplified.isEmpty() && keepCollapsed ? g : simplified;
+	}
+
+	public static String currentWarehouse() {
+		return "STAND_IN_WH";
+	}
+}
@@ -0,0 +1,179 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.api.data.Query;
+import org.geotools.api.data.SimpleFeatureStore;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.jdbc.JDBCDataStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+public class SnowflakeStandInTest {
+
+	private final FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+	private JDBCDataStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		SnowflakeStandIn.install();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (store != null) {
+			store.dispose();
+		}
+		SnowflakeStandIn.uninstall();
+	}
+
+	@Test
+	public void testTranslate() {
+		assertEquals("SELECT ST_SRID(\"GEOM\") FROM \"PLANTS\" WHERE \"GEOM\" IS NOT NULL FETCH FIRST 1 ROWS ONLY",
+				SnowflakeStandIn.translate("SELECT TOP 1 ST_SRID(\"GEOM\") FROM \"PLANTS\" WHERE \"GEOM\" IS NOT NULL"));
+		assertEquals("SELECT * FROM \"PLANTS\" ORDER BY \"NAME\" OFFSET 20 ROWS FETCH FIRST 10 ROWS ONLY",
+				SnowflakeStandIn.translate("SELECT * FROM \"PLANTS\" ORDER BY \"NAME\" LIMIT 10 OFFSET 20"));
+		assertEquals("SELECT * FROM \"PLANTS\" OFFSET 20 ROWS", SnowflakeStandIn.translate("SELECT * FROM \"PLANTS\" LIMIT NULL OFFSET 20"));
+		assertEquals("SELECT COUNT(DISTINCT \"NAME\") FROM \"PLANTS\" WHERE TABLE_SCHEMA = CURRENT_SCHEMA",
+				SnowflakeStandIn.translate("SELECT APPROX_COUNT_DISTINCT(\"NAME\") FROM \"PLANTS\" WHERE TABLE_SCHEMA = CURRENT_SCHEMA()"));
+		assertEquals("SET @SNOWFLAKE_SESSION = 0", SnowflakeStandIn.translate("ALTER SESSION SET QUERY_TAG = 'tiles'"));
+	}
+
+	@Test
+	public void testBasicDialect() throws Exception {
+		readWriteAndFilter(params());
+	}
+
+	@Test
+	public void testPreparedDialect() throws Exception {
+		Map<String, Object> params = params();
+		params.put(SnowflakeDataStoreFactory.PREPARED_STATEMENTS.key, Boolean.TRUE);
+		readWriteAndFilter(params);
+	}
+
+	@Test
+	public void testFilterGeometryTable() throws Exception {
+		Map<String, Object> params = params();
+		params.put(SnowflakeDataStoreFactory.FILTER_GEOMETRY_MAX_BYTES.key, 1);
+		// A single session, which every statement then shares
+		params.put(SnowflakeDataStoreFactory.MAXCONN.key, 1);
+		SnowflakeStandIn.record();
+		readWriteAndFilter(params);
+
+		String reference = "FROM " + SnowflakeFilterGeometries.TABLE + " WHERE ID = '";
+		String load = "INSERT INTO " + SnowflakeFilterGeometries.TABLE;
+		List<String> reads = new ArrayList<>();
+		List<String> loads = new ArrayList<>();
+		for (String sql : SnowflakeStandIn.getRecorded()) {
+			if (sql.startsWith(load)) {
+				loads.add(sql);
+			} else if (sql.contains(reference)) {
+				reads.add(sql);
+			}
+		}
+		// Both BBOX queries read the box from the table, which the session loaded it into once
+		assertTrue(reads.toString(), reads.size() >= 2);
+		assertEquals(1, loads.size());
+		assertEquals(1, SnowflakeFilterGeometries.getIds(reads.get(0)).size());
+		for (String read : reads) {
+			assertEquals(SnowflakeFilterGeometries.getIds(reads.get(0)), SnowflakeFilterGeometries.getIds(read));
+		}
+	}
+
+	@Test
+	public void testLatency() throws Exception {
+		store = (JDBCDataStore) new SnowflakeDataStoreFactory().createDataStore(params());
+		SimpleFeatureStore plants = createPlants();
+
+		SnowflakeStandIn.setLatency(100, TimeUnit.MILLISECONDS);
+		long statements = SnowflakeStandIn.getStatementsExecuted();
+		long start = System.nanoTime();
+		assertEquals(3, plants.getCount(Query.ALL));
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertTrue(SnowflakeStandIn.getStatementsExecuted() > statements);
+	}
+
+	private void readWriteAndFilter(Map<String, Object> params) throws Exception {
+		store = (JDBCDataStore) new SnowflakeDataStoreFactory().createDataStore(params);
+		SimpleFeatureStore plants = createPlants();
+
+		assertEquals(3, plants.getCount(Query.ALL));
+		assertEquals(new Envelope(0, 11, 0, 11), new Envelope(plants.getBounds()));
+
+		Filter bbox = ff.bbox("GEOM", 0.8, 0.8, 0.9, 0.9, null);
+		assertEquals(new HashSet<>(Arrays.asList("Pine", "Fir")), names(plants, bbox));
+		Filter coverage = ff.greater(ff.property("COVERAGE"), ff.literal(0.3));
+		assertEquals(new HashSet<>(Arrays.asList("Pine", "Fir")), names(plants, coverage));
+		assertEquals(1, plants.getCount(new Query("PLANTS", ff.and(bbox, ff.equals(ff.property("NAME"), ff.literal("Fir"))))));
+
+		try (SimpleFeatureIterator it = plants.getFeatures(ff.equals(ff.property("NAME"), ff.literal("Oak"))).features()) {
+			assertTrue(((Geometry) it.next().getDefaultGeometry()).equalsExact(JTS.toGeometry(new Envelope(10, 11, 10, 11))));
+		}
+
+		plants.removeFeatures(ff.equals(ff.property("NAME"), ff.literal("Oak")));
+		assertEquals(2, plants.getCount(Query.ALL));
+	}
+
+	private SimpleFeatureStore createPlants() throws Exception {
+		SimpleFeatureType type = DataUtilities.createType("PLANTS", "NAME:String,COVERAGE:Double,GEOM:Polygon");
+		store.createSchema(type);
+		SimpleFeatureStore plants = (SimpleFeatureStore) store.getFeatureSource("PLANTS");
+		plants.addFeatures(DataUtilities.collection(new SimpleFeature[] {
+			plant(plants.getSchema(), "Pine", 0.5, new Envelope(0, 1, 0, 1)),
+			plant(plants.getSchema(), "Oak", 0.25, new Envelope(10, 11, 10, 11)),
+			plant(plants.getSchema(), "Fir", 0.75, new Envelope(0.5, 2, 0.5, 2))
+		}));
+		return plants;
+	}
+
+	private static SimpleFeature plant(SimpleFeatureType type, String name, double coverage, Envelope box) {
+		return SimpleFeatureBuilder.build(type, new Object[] {name, coverage, JTS.toGeometry(box)}, null);
+	}
+
+	private static Set<String> names(SimpleFeatureStore plants, Filter filter) throws Exception {
+		Set<String> names = new HashSet<>();
+		try (SimpleFeatureIterator it = plants.getFeatures(filter).features()) {
+			while (it.hasNext()) {
+				names.add((String) it.next().getAttribute("NAME"));
+			}
+		}
+		return names;
+	}
+
+	// The stand-in's account, prewarming checks the login like it would against Snowflake
+	static Map<String, Object> params() {
+		Map<String, Object> params = new HashMap<>();
+		params.put(SnowflakeDataStoreFactory.DBTYPE.key, "Snowflake");
+		params.put(SnowflakeDataStoreFactory.ACCOUNT.key, "standin");
+		params.put(SnowflakeDataStoreFactory.USER.key, "geoserver");
+		params.put(SnowflakeDataStoreFactory.PASSWD.key, "secret");
+		params.put(SnowflakeDataStoreFactory.DATABASE.key, "GIS");
+		params.put(SnowflakeDataStoreFactory.SCHEMA.key, "PUBLIC");
+		params.put(SnowflakeDataStoreFactory.CLOUD_SELECTION.key, "AWS : us-west-2");
+		params.put(SnowflakeDataStoreFactory.PREWARM_CONNECTIONS.key, Boolean.TRUE);
+		return params;
+	}
+}
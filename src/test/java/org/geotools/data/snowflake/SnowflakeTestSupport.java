@@ -0,0 +1,70 @@
+package org.geotools.data.snowflake;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+// Shared helpers for the tests and benchmarks that need a live Snowflake account described by snowflake.properties
+class SnowflakeTestSupport {
+
+    private SnowflakeTestSupport() {
+    }
+
+    // Loads snowflake.properties from the test classpath
+    static Properties loadProperties() throws Exception {
+        Properties properties = new Properties();
+
+        try (InputStream input =
+                SnowflakeTestSupport.class.getClassLoader().getResourceAsStream("snowflake.properties")) {
+            if (input == null) {
+                throw new RuntimeException("Unable to find snowflake.properties");
+            }
+            properties.load(input);
+        }
+
+        if (properties.getProperty("user") == null
+                || properties.getProperty("password") == null
+                || properties.getProperty("account") == null
+                || properties.getProperty("db") == null
+                || properties.getProperty("schema") == null
+                || properties.getProperty("connectStr") == null) {
+            throw new RuntimeException("Missing required connection properties");
+        }
+        return properties;
+    }
+
+    // Opens a connection with the given session parameters passed as connection properties
+    static Connection openConnection(Map<String, String> sessionParameters) throws Exception {
+        Properties properties = loadProperties();
+        String connectStr = properties.getProperty("connectStr");
+        properties.remove("connectStr");
+        properties.putAll(sessionParameters);
+
+        Class.forName(SnowflakeDataStoreFactory.SNOWFLAKE_DRIVER_CLASS_NAME);
+        DriverManager.setLoginTimeout(10);
+        return DriverManager.getConnection(connectStr, properties);
+    }
+
+    // Builds the datastore parameters matching snowflake.properties, deriving the cloud selection from the connect string host
+    static Map<String, Object> dataStoreParams() throws Exception {
+        Properties properties = loadProperties();
+
+        // jdbc:snowflake://<account>.<region>.<provider>.snowflakecomputing.com
+        String host = properties.getProperty("connectStr").replace("jdbc:snowflake://", "");
+        String[] parts = host.split("\\.");
+        String provider = parts[2].equals("aws") ? "AWS" : parts[2].equals("gcp") ? "GCP" : "Azure";
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(SnowflakeDataStoreFactory.DBTYPE.key, "Snowflake");
+        params.put(SnowflakeDataStoreFactory.ACCOUNT.key, properties.getProperty("account"));
+        params.put(SnowflakeDataStoreFactory.USER.key, properties.getProperty("user"));
+        params.put(SnowflakeDataStoreFactory.PASSWD.key, properties.getProperty("password"));
+        params.put(SnowflakeDataStoreFactory.DATABASE.key, properties.getProperty("db"));
+        params.put(SnowflakeDataStoreFactory.SCHEMA.key, properties.getProperty("schema"));
+        params.put(SnowflakeDataStoreFactory.CLOUD_SELECTION.key, provider + " : " + parts[1]);
+        return params;
+    }
+}
@@ -0,0 +1,78 @@
+package org.geotools.data.snowflake;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.io.ByteOrderValues;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.io.WKTReader;
+
+public class SnowflakeWKBDecoderTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private final SnowflakeWKBDecoder decoder = new SnowflakeWKBDecoder(factory);
+
+    @Test
+    public void testLittleEndianPoint() throws Exception {
+        Point point = factory.createPoint(new Coordinate(-105.2705, 40.015));
+        byte[] wkb = new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN).write(point);
+
+        Geometry decoded = decoder.decode(wkb);
+
+        assertTrue(decoded instanceof Point);
+        assertTrue(point.equalsExact(decoded));
+        assertSame(factory, decoded.getFactory());
+    }
+
+    @Test
+    public void testBigEndianPoint() throws Exception {
+        Point point = factory.createPoint(new Coordinate(12.5, -33.25));
+        byte[] wkb = new WKBWriter(2, ByteOrderValues.BIG_ENDIAN).write(point);
+
+        assertTrue(point.equalsExact(decoder.decode(wkb)));
+    }
+
+    @Test
+    public void testPointWithSRID() throws Exception {
+        Point point = factory.createPoint(new Coordinate(1, 2));
+        point.setSRID(3857);
+        byte[] ewkb = new WKBWriter(2, ByteOrderValues.LITTLE_ENDIAN, true).write(point);
+
+        Geometry decoded = decoder.decode(ewkb);
+
+        assertTrue(point.equalsExact(decoded));
+        assertEquals(3857, decoded.getSRID());
+    }
+
+    @Test
+    public void testPrecisionModelIsApplied() throws Exception {
+        GeometryFactory fixed = new GeometryFactory(new PrecisionModel(100));
+        byte[] wkb = new WKBWriter().write(factory.createPoint(new Coordinate(1.23456, 6.54321)));
+
+        Geometry decoded = new SnowflakeWKBDecoder(fixed).decode(wkb);
+
+        assertEquals(1.23, decoded.getCoordinate().x, 0);
+        assertEquals(6.54, decoded.getCoordinate().y, 0);
+    }
+
+    @Test
+    public void testGenericGeometriesReuseTheReader() throws Exception {
+        WKTReader wkt = new WKTReader(factory);
+        Geometry polygon = wkt.read("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 2 4, 4 4, 2 2))");
+        Geometry lines = wkt.read("MULTILINESTRING((0 0, 1 1), (2 2, 3 3, 4 5))");
+        WKBWriter writer = new WKBWriter();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(polygon.equalsExact(decoder.decode(writer.write(polygon))));
+            assertTrue(lines.equalsExact(decoder.decode(writer.write(lines))));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.geotools.data.snowflake;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.api.data.Query;
+import org.geotools.api.data.SimpleFeatureStore;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.jdbc.JDBCDataStore;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end throughput of the datastore against {@link SnowflakeStandIn}, loaded with {@code data/PlantCoverage.geojson.json}:
+ * map tile reads, filtered counts and batches of inserts and deletes, through the basic and prepared dialects. The latency
+ * parameter delays every statement like a warehouse round trip would, which shows how much of a request is spent waiting on
+ * Snowflake rather than in the datastore. Run from the project directory, or through {@code mvn -Pbenchmark verify}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StandInThroughputBenchmark {
+
+    private static final int WRITE_BATCH = 100;
+
+    @Param({"0", "20"})
+    public int latencyMillis;
+
+    @Param({"false", "true"})
+    public boolean preparedStatements;
+
+    private final FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+
+    private JDBCDataStore store;
+
+    private SimpleFeatureStore plants;
+
+    private List<SimpleFeature> features;
+
+    private Filter tile;
+
+    private Filter community;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SnowflakeStandIn.install();
+        Map<String, Object> params = SnowflakeStandInTest.params();
+        params.put(SnowflakeDataStoreFactory.PREPARED_STATEMENTS.key, preparedStatements);
+        store = (JDBCDataStore) new SnowflakeDataStoreFactory().createDataStore(params);
+
+        SimpleFeatureType type = DataUtilities.createType("PLANT_COVERAGE", "COMMUNITYID:Integer,DRIVEPATHID:Integer,GEOM:MultiPolygon");
+        store.createSchema(type);
+        plants = (SimpleFeatureStore) store.getFeatureSource("PLANT_COVERAGE");
+
+        features = new ArrayList<>();
+        try (InputStream in = new FileInputStream("data/PlantCoverage.geojson.json");
+                SnowflakeGeoJSONReader reader = new SnowflakeGeoJSONReader(in, new GeometryFactory())) {
+            for (SnowflakeGeoJSONReader.Feature feature = reader.next(); feature != null; feature = reader.next()) {
+                Map<String, Object> properties = feature.getProperties();
+                features.add(SimpleFeatureBuilder.build(plants.getSchema(), new Object[] {properties.get("communityid"),
+                        properties.get("DrivepathID"), feature.getGeometry()}, null));
+            }
+        }
+        plants.addFeatures(DataUtilities.collection(features));
+
+        // A zoom 12 tile in the middle of the plants, and the community of the first one
+        tile = ff.bbox("GEOM", -71.455, 44.418, -71.367, 44.481, null);
+        community = ff.equals(ff.property("COMMUNITYID"), ff.literal(features.get(0).getAttribute("COMMUNITYID")));
+
+        SnowflakeStandIn.setLatency(latencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        store.dispose();
+        SnowflakeStandIn.uninstall();
+    }
+
+    @Benchmark
+    public int readTile() throws Exception {
+        int points = 0;
+        try (SimpleFeatureIterator it = plants.getFeatures(tile).features()) {
+            while (it.hasNext()) {
+                points += ((Geometry) it.next().getDefaultGeometry()).getNumPoints();
+            }
+        }
+        return points;
+    }
+
+    @Benchmark
+    public int countCommunity() throws Exception {
+        return plants.getCount(new Query(plants.getSchema().getTypeName(), community));
+    }
+
+    @Benchmark
+    public int writeBatch() throws Exception {
+        List<SimpleFeature> batch = new ArrayList<>(WRITE_BATCH);
+        for (int i = 0; i < WRITE_BATCH; i++) {
+            SimpleFeature feature = features.get(i);
+            batch.add(SimpleFeatureBuilder.build(plants.getSchema(), new Object[] {-1, feature.getAttribute("DRIVEPATHID"),
+                    feature.getDefaultGeometry()}, null));
+        }
+        int added = plants.addFeatures(DataUtilities.collection(batch)).size();
+        plants.removeFeatures(ff.equals(ff.property("COMMUNITYID"), ff.literal(-1)));
+        return added;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(new String[] {StandInThroughputBenchmark.class.getName()});
+    }
+}
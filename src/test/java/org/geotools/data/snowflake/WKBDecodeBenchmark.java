@@ -0,0 +1,102 @@
+package org.geotools.data.snowflake;
+
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.locationtech.jts.util.GeometricShapeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the per-row {@code new WKBReader(factory).read(bytes)} decoding the dialects used to do with the reusable
+ * {@link SnowflakeWKBDecoder}. Run with {@code -prof gc} to see the allocation rate per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WKBDecodeBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private byte[][] points;
+
+    private byte[][] polygons;
+
+    private SnowflakeWKBDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        WKBWriter writer = new WKBWriter();
+        GeometricShapeFactory shapes = new GeometricShapeFactory(factory);
+        shapes.setNumPoints(64);
+        shapes.setSize(0.01);
+
+        points = new byte[ROWS][];
+        polygons = new byte[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            Coordinate c = new Coordinate(-105 + i * 0.001, 40 + i * 0.0005);
+            points[i] = writer.write(factory.createPoint(c));
+            shapes.setCentre(c);
+            polygons[i] = writer.write(shapes.createCircle());
+        }
+        decoder = new SnowflakeWKBDecoder(factory);
+    }
+
+    @Benchmark
+    public double pointsWithNewReader() throws Exception {
+        double sum = 0;
+        for (byte[] wkb : points) {
+            sum += new WKBReader(factory).read(wkb).getCoordinate().x;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double pointsWithDecoder() throws Exception {
+        double sum = 0;
+        for (byte[] wkb : points) {
+            sum += decoder.decode(wkb).getCoordinate().x;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int polygonsWithNewReader() throws Exception {
+        int sum = 0;
+        for (byte[] wkb : polygons) {
+            Geometry g = new WKBReader(factory).read(wkb);
+            sum += g.getNumPoints();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int polygonsWithDecoder() throws Exception {
+        int sum = 0;
+        for (byte[] wkb : polygons) {
+            sum += decoder.decode(wkb).getNumPoints();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(new String[] {WKBDecodeBenchmark.class.getName(), "-prof", "gc"});
+    }
+}